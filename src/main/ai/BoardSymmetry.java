@@ -0,0 +1,330 @@
+package src.main.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.HexPiece;
+
+/**
+ * The rotations and reflections that carry a layout onto itself, and a canonical form of a
+ * board under them. Two boards that are the same up to turning or flipping the table get
+ * the same canonical form, so anything learned about one applies to the other.
+ *
+ * A board is described by a byte per hex, its resource and number, followed by a byte per
+ * vertex, the harbor it's on. Symmetry g moves what's on hex h to hex mapHex(g, h), and the
+ * canonical form is the smallest description of the board moved by any of the symmetries.
+ * Symmetry 0 is always the identity.
+ *
+ * The symmetries are found by trying the twelve rotations and reflections of the hex grid
+ * in cube coordinates, each shifted so the shape lines up, and keeping those that map every
+ * hex of the layout onto a hex of the layout.
+ */
+public final class BoardSymmetry {
+    /** The layout. */
+    private final BoardLayout layout;
+
+    /** Where each symmetry sends each valid hex, at g * validCount + hex. */
+    private final int[] hexMap;
+
+    /** Where each symmetry sends each vertex, at g * vertexCount + vertex. */
+    private final int[] vertexMap;
+
+    /** Where the inverse of each symmetry sends each vertex. */
+    private final int[] vertexUnmap;
+
+    /** The number of symmetries. */
+    private final int count;
+
+    /**
+     * Finds the symmetries of a layout.
+     *
+     * @param layout  the layout
+     */
+    public BoardSymmetry(BoardLayout layout) {
+        this.layout = layout;
+        int hexes = layout.validCount();
+        int vertices = layout.vertexCount();
+        Map<Long, Integer> byCube = new HashMap<>();
+        int[][] cube = new int[layout.size()][];
+        for (int h = 0; h < layout.size(); h++) {
+            cube[h] = cube(layout, h);
+            if (h < hexes) {
+                byCube.put(key(cube[h][0], cube[h][1]), h);
+            }
+        }
+        int[][] dirs = new int[6][];
+        for (int d = 0; d < 6; d++) {
+            int n = layout.neighbor(0, d);
+            dirs[d] = new int[] {cube[n][0] - cube[0][0], cube[n][1] - cube[0][1]};
+        }
+
+        List<int[]> hexMaps = new ArrayList<>();
+        List<int[]> vertexMaps = new ArrayList<>();
+        for (int t = 0; t < TRANSFORMS; t++) {
+            int[] map = new int[hexes];
+            int[] low = null;
+            int[] lowMapped = null;
+            for (int h = 0; h < hexes; h++) {
+                int[] p = transform(t, cube[h][0], cube[h][1]);
+                if (low == null || less(cube[h], low)) {
+                    low = cube[h];
+                }
+                if (lowMapped == null || less(p, lowMapped)) {
+                    lowMapped = p;
+                }
+            }
+            int dx = low[0] - lowMapped[0];
+            int dz = low[1] - lowMapped[1];
+            boolean fits = true;
+            for (int h = 0; h < hexes && fits; h++) {
+                int[] p = transform(t, cube[h][0], cube[h][1]);
+                Integer image = byCube.get(key(p[0] + dx, p[1] + dz));
+                fits = image != null;
+                map[h] = fits ? image : -1;
+            }
+            if (!fits) {
+                continue;
+            }
+            int[] dirMap = new int[6];
+            for (int d = 0; d < 6; d++) {
+                int[] p = transform(t, dirs[d][0], dirs[d][1]);
+                for (int e = 0; e < 6; e++) {
+                    if (dirs[e][0] == p[0] && dirs[e][1] == p[1]) {
+                        dirMap[d] = e;
+                    }
+                }
+            }
+            // Corner c lies between sides c and c + 1. A rotation keeps the order of the
+            // sides, so it lands between dirMap[c] and the side after; a reflection reverses
+            // it, so it lands between dirMap[c + 1] and the side after that.
+            int[] cornerMap = new int[6];
+            for (int c = 0; c < 6; c++) {
+                boolean kept = dirMap[(c + 1) % 6] == (dirMap[c] + 1) % 6;
+                cornerMap[c] = kept ? dirMap[c] : dirMap[(c + 1) % 6];
+            }
+            int[] vmap = new int[vertices];
+            for (int v = 0; v < vertices; v++) {
+                int h = layout.vertexHex(v, 0);
+                vmap[v] = layout.vertexOf(map[h], cornerMap[layout.vertexCorner(v, 0)]);
+            }
+            hexMaps.add(map);
+            vertexMaps.add(vmap);
+        }
+
+        this.count = hexMaps.size();
+        this.hexMap = new int[count * hexes];
+        this.vertexMap = new int[count * vertices];
+        this.vertexUnmap = new int[count * vertices];
+        for (int g = 0; g < count; g++) {
+            System.arraycopy(hexMaps.get(g), 0, hexMap, g * hexes, hexes);
+            System.arraycopy(vertexMaps.get(g), 0, vertexMap, g * vertices, vertices);
+            for (int v = 0; v < vertices; v++) {
+                vertexUnmap[g * vertices + vertexMaps.get(g)[v]] = v;
+            }
+        }
+    }
+
+    /**
+     * Returns the layout.
+     *
+     * @return the layout
+     */
+    public BoardLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Returns the number of symmetries, counting the identity.
+     *
+     * @return the number of symmetries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the length of a board's description.
+     *
+     * @return the bytes of a description
+     */
+    public int descriptionLength() {
+        return layout.validCount() + layout.vertexCount();
+    }
+
+    /**
+     * Returns where a symmetry sends a hex.
+     *
+     * @param g  the symmetry
+     * @param hex  the valid hex
+     *
+     * @return the hex it's sent to
+     */
+    public int mapHex(int g, int hex) {
+        return hexMap[g * layout.validCount() + hex];
+    }
+
+    /**
+     * Returns where a symmetry sends a vertex.
+     *
+     * @param g  the symmetry
+     * @param vertex  the vertex
+     *
+     * @return the vertex it's sent to
+     */
+    public int mapVertex(int g, int vertex) {
+        return vertexMap[g * layout.vertexCount() + vertex];
+    }
+
+    /**
+     * Returns the vertex a symmetry sends to a vertex.
+     *
+     * @param g  the symmetry
+     * @param vertex  the vertex
+     *
+     * @return the vertex sent there
+     */
+    public int unmapVertex(int g, int vertex) {
+        return vertexUnmap[g * layout.vertexCount() + vertex];
+    }
+
+    /**
+     * Writes the description of a board: for each valid hex its resource ordinal plus one
+     * (0 for a desert) times 16 plus its number, then for each vertex its harbor's ordinal
+     * plus one, or 0.
+     *
+     * @param board  the board, on this layout
+     * @param out  where the description goes, descriptionLength() bytes
+     */
+    public void describe(CatanBoard board, byte[] out) {
+        int hexes = layout.validCount();
+        for (int h = 0; h < hexes; h++) {
+            HexPiece hex = board.hex(h);
+            int res = hex.resource() == null ? 0 : hex.resource().ordinal() + 1;
+            out[h] = (byte) (res << 4 | hex.roll());
+        }
+        for (int v = 0; v < layout.vertexCount(); v++) {
+            out[hexes + v] = (byte) (board.harbor(v) == null ? 0 : board.harbor(v).ordinal() + 1);
+        }
+    }
+
+    /**
+     * Moves a board's description by a symmetry.
+     *
+     * @param g  the symmetry
+     * @param description  the description
+     * @param out  where the moved description goes, not the same array
+     */
+    public void transform(int g, byte[] description, byte[] out) {
+        int hexes = layout.validCount();
+        for (int h = 0; h < hexes; h++) {
+            out[hexMap[g * hexes + h]] = description[h];
+        }
+        int vertices = layout.vertexCount();
+        for (int v = 0; v < vertices; v++) {
+            out[hexes + vertexMap[g * vertices + v]] = description[hexes + v];
+        }
+    }
+
+    /**
+     * Finds the canonical form of a board's description.
+     *
+     * @param description  the description
+     * @param out  where the canonical form goes, descriptionLength() bytes
+     *
+     * @return the symmetry that moves the description to its canonical form
+     */
+    public int canonicalize(byte[] description, byte[] out) {
+        byte[] moved = new byte[description.length];
+        System.arraycopy(description, 0, out, 0, description.length);
+        int best = 0;
+        for (int g = 1; g < count; g++) {
+            transform(g, description, moved);
+            if (Arrays.compare(moved, out) < 0) {
+                System.arraycopy(moved, 0, out, 0, moved.length);
+                best = g;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Hashes a description into 64 bits.
+     *
+     * @param description  the description
+     *
+     * @return the fingerprint
+     */
+    public static long fingerprint(byte[] description) {
+        long h = FNV_OFFSET;
+        for (byte b : description) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Returns the cube (x, z) coordinates of a hex, as BoardLayout describes them.
+     *
+     * @param layout  the layout
+     * @param h  the hex
+     *
+     * @return the coordinates
+     */
+    private static int[] cube(BoardLayout layout, int h) {
+        int col = layout.point(h).col();
+        int row = layout.point(h).row();
+        return new int[] {col, row - (col + (col & 1)) / 2};
+    }
+
+    /**
+     * Applies one of the twelve rotations and reflections to cube coordinates. Transform t
+     * reflects when it's odd, then turns by a sixth t / 2 times.
+     *
+     * @param t  the transform
+     * @param x  the cube x
+     * @param z  the cube z
+     *
+     * @return the new (x, z)
+     */
+    private static int[] transform(int t, int x, int z) {
+        int y = -x - z;
+        if ((t & 1) == 1) {
+            int tmp = y;
+            y = z;
+            z = tmp;
+        }
+        for (int r = 0; r < t / 2; r++) {
+            int nx = -z;
+            int ny = -x;
+            int nz = -y;
+            x = nx;
+            y = ny;
+            z = nz;
+        }
+        return new int[] {x, z};
+    }
+
+    /** Orders cube coordinates by x, then z. */
+    private static boolean less(int[] a, int[] b) {
+        return a[0] < b[0] || (a[0] == b[0] && a[1] < b[1]);
+    }
+
+    /** Packs cube coordinates into one key. */
+    private static long key(int x, int z) {
+        return ((long) x << 32) ^ (z & 0xffffffffL);
+    }
+
+    /** The number of rotations and reflections of the hex grid. */
+    private static final int TRANSFORMS = 12;
+
+    /** The FNV-1a offset basis. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** The FNV-1a prime. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+}
@@ -0,0 +1,44 @@
+package src.main.ai;
+
+import java.util.Random;
+
+import src.main.model.CatanGame;
+
+/**
+ * Picks actions for whichever player is acting in a game, by the numbering of the game's
+ * ActionSpace. A policy is shared by every game it plays in, possibly on several threads at
+ * once, so it shouldn't keep state between calls; anything random should come from the
+ * Random it's given, which keeps games with the same seed the same.
+ */
+public interface BotPolicy {
+    /**
+     * Picks an action for the acting player.
+     *
+     * @param game  the game, which the policy shouldn't change
+     * @param rand  the random numbers to use
+     *
+     * @return a legal action
+     */
+    int act(CatanGame game, Random rand);
+
+    /**
+     * Has a policy pick an action for the acting player of a game and takes it. A policy
+     * that picks an action the game won't take is broken, so rather than quietly taking
+     * another action in its place, which would skew whatever the games are measuring, this
+     * throws.
+     *
+     * @param policy  the policy
+     * @param game  the game
+     * @param rand  the random numbers the policy uses
+     *
+     * @throws IllegalStateException if the action picked isn't legal
+     */
+    static void play(BotPolicy policy, CatanGame game, Random rand) {
+        int action = policy.act(game, rand);
+        if (!game.act(action)) {
+            throw new IllegalStateException(policy.getClass().getSimpleName()
+                                            + " picked illegal action " + action
+                                            + " in phase " + game.phase());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package src.main.ai;
+
+import java.util.Random;
+
+import src.main.model.CatanGame;
+import src.main.model.DevelopmentCard;
+import src.main.model.Player;
+
+/**
+ * Samples the development cards a player can't see: what each opponent holds and what is
+ * left in the deck. Each sample, or world, is consistent with everything public (the size of
+ * every hand and deck, the cards already played, and the points on the table) and with the
+ * observer's own hand.
+ *
+ * Everything is done on counts. A world is an int array holding the number of each card for
+ * every seat, followed by the number of each card left in the deck, so drawing a world costs
+ * a few dozen random numbers and no allocation. The order of the deck only matters when a
+ * card is drawn, so it is either drawn lazily from the counts with drawCard, or laid out when
+ * a world is applied to a game.
+ *
+ * Victory point cards are never played, but a player holding enough of them to reach the
+ * winning total would already have won, so each opponent's share of them is drawn from the
+ * hypergeometric distribution truncated at what they could hold without winning. Opponents
+ * are drawn one after another, so the truncation is exact for each opponent given the ones
+ * drawn before, which only differs from the exact joint distribution when more than one
+ * opponent is close to winning.
+ */
+public class DeterminizationSampler {
+    /** The number of seats in the game. */
+    private final int numPlayers;
+
+    /** The seat of the player whose view is being sampled. */
+    private int observer;
+
+    /** The cards that could be anywhere hidden, indexed by card ordinal. */
+    private final int[] unseen;
+
+    /** The number of hidden cards each seat holds, 0 for the observer. */
+    private final int[] hidden;
+
+    /** The most victory point cards each seat could hold without having won. */
+    private final int[] vpCap;
+
+    /** The observer's own cards, indexed by card ordinal. */
+    private final int[] own;
+
+    /** Scratch weights for the truncated hypergeometric draw, one past the largest deck seen. */
+    private double[] weights;
+
+    /** Scratch pool of unseen cards while a world is being drawn. */
+    private final int[] pool;
+
+    /**
+     * Creates a sampler for a game with some number of players.
+     *
+     * @param numPlayers  the number of seats in the game
+     */
+    public DeterminizationSampler(int numPlayers) {
+        this.numPlayers = numPlayers;
+        this.unseen = new int[DevelopmentCard.COUNT];
+        this.hidden = new int[numPlayers];
+        this.vpCap = new int[numPlayers];
+        this.own = new int[DevelopmentCard.COUNT];
+        this.weights = new double[1];
+        this.pool = new int[DevelopmentCard.COUNT];
+    }
+
+    /**
+     * Returns the length of the array a world is written into.
+     *
+     * @return the size of a world
+     */
+    public int worldSize() {
+        return (numPlayers + 1) * DevelopmentCard.COUNT;
+    }
+
+    /**
+     * Takes in the public information of a game, as seen by one player. Has to be called
+     * again whenever the game changes, before sampling.
+     *
+     * @param game  the game
+     * @param viewer  the player whose view is being sampled
+     */
+    public void observe(CatanGame game, Player viewer) {
+        observer = viewer.index();
+        int deck = game.board().layout().devDeckSize();
+        if (weights.length <= deck) {
+            weights = new double[deck + 1];
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            DevelopmentCard card = DevelopmentCard.get(c);
+            int count = game.deckCount(card);
+            for (int p = 0; p < numPlayers; p++) {
+                count -= game.player(p).playedCount(card);
+            }
+            own[c] = viewer.devCount(card);
+            unseen[c] = count - own[c];
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            Player player = game.player(p);
+            hidden[p] = p == observer ? 0 : player.devHandSize();
+            vpCap[p] = Math.max(0, CatanGame.WINNING_POINTS - 1 - player.points());
+        }
+    }
+
+    /**
+     * Draws one world consistent with the last observed game.
+     *
+     * @param rand  the random number generator
+     * @param world  where the world is written, at least worldSize long
+     */
+    public void sample(Random rand, int[] world) {
+        System.arraycopy(unseen, 0, pool, 0, DevelopmentCard.COUNT);
+        int vp = DevelopmentCard.VICTORY.ordinal();
+        for (int p = 0; p < numPlayers; p++) {
+            int base = p * DevelopmentCard.COUNT;
+            if (p == observer) {
+                System.arraycopy(own, 0, world, base, DevelopmentCard.COUNT);
+                continue;
+            }
+            for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+                world[base + c] = 0;
+            }
+            int total = 0;
+            for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+                total += pool[c];
+            }
+            int others = total - pool[vp];
+            int vps = drawVictoryCards(rand, pool[vp], others, hidden[p], vpCap[p]);
+            world[base + vp] = vps;
+            pool[vp] -= vps;
+            for (int n = hidden[p] - vps; n > 0; n--) {
+                int pick = rand.nextInt(others);
+                for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+                    if (c == vp) {
+                        continue;
+                    }
+                    pick -= pool[c];
+                    if (pick < 0) {
+                        pool[c] -= 1;
+                        world[base + c] += 1;
+                        break;
+                    }
+                }
+                others -= 1;
+            }
+        }
+        System.arraycopy(pool, 0, world, numPlayers * DevelopmentCard.COUNT,
+                         DevelopmentCard.COUNT);
+    }
+
+    /**
+     * Draws how many victory point cards a hand holds: the number of successes when drawing
+     * the hand from the pool without replacement, conditioned on being at most the cap. The
+     * weights come from the ratio of consecutive hypergeometric terms, so no factorials are
+     * needed.
+     *
+     * @param rand  the random number generator
+     * @param vps  the victory point cards in the pool
+     * @param others  the other cards in the pool
+     * @param hand  the size of the hand
+     * @param cap  the most victory point cards the hand can hold
+     *
+     * @return the number of victory point cards in the hand
+     */
+    private int drawVictoryCards(Random rand, int vps, int others, int hand, int cap) {
+        int low = Math.max(0, hand - others);
+        int high = Math.min(Math.min(vps, hand), Math.max(cap, low));
+        double total = 1;
+        weights[low] = 1;
+        for (int k = low; k < high; k++) {
+            double ratio = (double) (vps - k) * (hand - k) / ((k + 1) * (others - hand + k + 1));
+            weights[k + 1] = weights[k] * ratio;
+            total += weights[k + 1];
+        }
+        double pick = rand.nextDouble() * total;
+        for (int k = low; k < high; k++) {
+            pick -= weights[k];
+            if (pick < 0) {
+                return k;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Draws the next card of a world's deck and removes it from the world.
+     *
+     * @param rand  the random number generator
+     * @param world  the world to draw from, which has to have cards left in its deck
+     *
+     * @return the card drawn
+     */
+    public DevelopmentCard drawCard(Random rand, int[] world) {
+        int base = numPlayers * DevelopmentCard.COUNT;
+        int left = 0;
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            left += world[base + c];
+        }
+        int pick = rand.nextInt(left);
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            pick -= world[base + c];
+            if (pick < 0) {
+                world[base + c] -= 1;
+                return DevelopmentCard.get(c);
+            }
+        }
+        throw new IllegalStateException("the deck is empty");
+    }
+
+    /**
+     * Makes a game match a world: every opponent of the observer gets the sampled hand, and
+     * the undrawn deck is reordered from the sampled counts. Meant for a copy of the game
+     * that a search owns.
+     *
+     * @param game  the game to change
+     * @param world  the world
+     * @param rand  the random number generator used to order the deck
+     */
+    public void apply(CatanGame game, int[] world, Random rand) {
+        for (int p = 0; p < numPlayers; p++) {
+            if (p != observer) {
+                game.player(p).setDevHand(world, p * DevelopmentCard.COUNT);
+            }
+        }
+        game.setDevDeck(world, numPlayers * DevelopmentCard.COUNT, rand);
+    }
+}
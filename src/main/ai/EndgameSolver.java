@@ -0,0 +1,606 @@
+package src.main.ai;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import src.main.model.CatanGame;
+import src.main.model.DevelopmentCard;
+import src.main.model.Player;
+import src.main.model.Resource;
+
+/**
+ * Searches for the best play near the end of a game, when a player is within a few points of
+ * winning and heuristics aren't good enough. The search is expectimax: the player to move
+ * maximizes their chance of winning, their opponents are assumed to minimize it, and the
+ * dice and development card draws are chance nodes weighted by their probabilities. Wins
+ * are worth 1, losses -1, and positions at the depth limit get a heuristic score in between.
+ *
+ * Chance nodes are pruned with Star1: since every value is between -1 and 1, the outcomes
+ * already searched bound the expected value, and the remaining outcomes are searched with
+ * windows narrowed so that the node stops as soon as it can't change the result. Decision
+ * nodes use alpha-beta, and both share a lockless transposition table.
+ *
+ * The search deepens one ply at a time until the time budget runs out, and returns the best
+ * move of the deepest search that finished. At the root, the first move is searched alone
+ * to set a bound, and the rest are shared out among the worker threads.
+ *
+ * States are copied rather than undone: each thread keeps a stack of SearchStates, and each
+ * child is a copy of its parent with one move made.
+ */
+public class EndgameSolver {
+    /** The threads that search root moves. */
+    private final ExecutorService pool;
+
+    /** The number of worker threads. */
+    private final int threads;
+
+    /** The table shared by every thread. */
+    private final TranspositionTable table;
+
+    /**
+     * Creates a solver with a thread for each core and the default table size.
+     */
+    public EndgameSolver() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * Creates a solver.
+     *
+     * @param threads  the number of threads to search with
+     * @param tableBits  the log base 2 of the number of transposition table entries
+     */
+    public EndgameSolver(int threads, int tableBits) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("a solver needs at least one thread");
+        }
+        this.threads = threads;
+        this.table = new TranspositionTable(tableBits);
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "endgame-solver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns true if some player is close enough to winning for the solver to be worth
+     * running.
+     *
+     * @param game  the game
+     * @param margin  how many points short of winning counts as close
+     *
+     * @return whether the game is in its endgame
+     */
+    public static boolean isEndgame(CatanGame game, int margin) {
+        for (int p = 0; p < game.numPlayers(); p++) {
+            if (game.player(p).points() >= CatanGame.WINNING_POINTS - margin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the best move for the current player, who has already rolled this turn.
+     *
+     * @param game  the game, which isn't changed
+     * @param budgetMillis  how long to search for
+     * @param maxDepth  the deepest search to try, in moves
+     *
+     * @return the best move found, with its value and how deep the search got
+     *
+     * @throws IllegalArgumentException if the layout has too many edges for a move to hold
+     */
+    public Result solve(CatanGame game, long budgetMillis, int maxDepth) {
+        if (game.board().layout().edgeCount() > MAX_ARG + 1) {
+            throw new IllegalArgumentException("the layout is too big for the solver's moves");
+        }
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        SearchBoard board = new SearchBoard(game);
+        Searcher[] searchers = new Searcher[threads];
+        for (int i = 0; i < threads; i++) {
+            searchers[i] = new Searcher(board, game.currentPlayer().index(), deadline,
+                                        Math.min(maxDepth, MAX_DEPTH));
+            searchers[i].stack[0].load(game);
+        }
+        table.clear();
+        int[] moves = new int[MAX_MOVES];
+        int n = searchers[0].stack[0].generate(moves);
+        Result result = new Result(moves[0], 0, 0, 0);
+        for (int depth = 1; depth <= Math.min(maxDepth, MAX_DEPTH); depth++) {
+            Root root = new Root(moves, n, depth);
+            searchers[0].searchRootMove(root, 0);
+            if (!searchers[0].aborted) {
+                root.claimed.set(1);
+                Future<?>[] tasks = new Future<?>[threads];
+                for (int i = 0; i < threads; i++) {
+                    Searcher s = searchers[i];
+                    tasks[i] = pool.submit(() -> s.searchRoot(root));
+                }
+                for (Future<?> task : tasks) {
+                    try {
+                        task.get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("a search thread failed", e);
+                    }
+                }
+            }
+            long nodes = 0;
+            boolean aborted = false;
+            for (Searcher s : searchers) {
+                nodes += s.nodes;
+                aborted |= s.aborted;
+            }
+            if (aborted) {
+                return new Result(result.move, result.value, result.depth, nodes);
+            }
+            result = new Result(root.bestMove, root.bestValue, depth, nodes);
+            moveToFront(moves, n, root.bestMove);
+            if (Math.abs(root.bestValue) >= WIN) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Makes a move found by the solver in a real game.
+     *
+     * @param game  the game
+     * @param move  the move
+     *
+     * @return true if the game accepted the move
+     */
+    public static boolean play(CatanGame game, int move) {
+        Player player = game.currentPlayer();
+        int arg = moveArg(move);
+        switch (moveType(move)) {
+            case BUILD_ROAD:
+                return game.buildRoad(arg, player);
+            case BUILD_SETTLEMENT:
+                return game.buildSettlement(arg, player);
+            case BUILD_CITY:
+                return game.buildCity(arg, player);
+            case BUY_DEV_CARD:
+                return game.buyDevCard(player) != null;
+            case TRADE:
+                return game.maritimeTrade(player, Resource.get(arg / Resource.COUNT),
+                                          Resource.get(arg % Resource.COUNT));
+            case PLAY_KNIGHT:
+                return game.playKnight(player, arg, victim(game, arg, player));
+            case END_TURN:
+                game.endTurn();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Picks who a knight played onto a hex steals from: the opponent with a building there
+     * who holds the most resource cards.
+     *
+     * @param game  the game
+     * @param hex  the hex
+     * @param player  the player playing the knight
+     *
+     * @return the victim, or null if no opponent has a building there
+     */
+    private static Player victim(CatanGame game, int hex, Player player) {
+        Player victim = null;
+        for (int p = 0; p < game.numPlayers(); p++) {
+            Player other = game.player(p);
+            if (other != player && game.board().production(hex, p) > 0
+                    && (victim == null || other.resHandSize() > victim.resHandSize())) {
+                victim = other;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Stops the worker threads. The solver can't be used afterwards.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Packs a move.
+     *
+     * @param type  the kind of move, such as BUILD_ROAD
+     * @param arg  the vertex, edge or trade the move is about
+     *
+     * @return the move
+     */
+    public static int move(int type, int arg) {
+        return type << TYPE_SHIFT | arg;
+    }
+
+    /**
+     * Returns the kind of a move.
+     *
+     * @param move  the move
+     *
+     * @return the kind of move, such as BUILD_ROAD
+     */
+    public static int moveType(int move) {
+        return move >>> TYPE_SHIFT;
+    }
+
+    /**
+     * Returns what a move is about: the vertex or edge built on, the hex a knight moves the
+     * robber to, or for a trade the resource given times Resource.COUNT plus the resource
+     * received.
+     *
+     * @param move  the move
+     *
+     * @return the argument of the move
+     */
+    public static int moveArg(int move) {
+        return move & MAX_ARG;
+    }
+
+    /**
+     * Moves a move to the front of a list, keeping the order of the rest.
+     *
+     * @param moves  the moves
+     * @param n  the number of moves
+     * @param move  the move to put first
+     */
+    private static void moveToFront(int[] moves, int n, int move) {
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The result of a solve.
+     */
+    public static final class Result {
+        private final int move;
+        private final double value;
+        private final int depth;
+        private final long nodes;
+
+        private Result(int move, double value, int depth, long nodes) {
+            this.move = move;
+            this.value = value;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Returns the best move found.
+         *
+         * @return the move
+         */
+        public int move() {
+            return move;
+        }
+
+        /**
+         * Returns the value of the best move for the player to move, from -1 (a certain loss)
+         * to 1 (a certain win).
+         *
+         * @return the value
+         */
+        public double value() {
+            return value;
+        }
+
+        /**
+         * Returns the depth of the deepest search that finished, or 0 if none did in time.
+         *
+         * @return the depth
+         */
+        public int depth() {
+            return depth;
+        }
+
+        /**
+         * Returns the number of nodes searched.
+         *
+         * @return the node count
+         */
+        public long nodes() {
+            return nodes;
+        }
+    }
+
+    /**
+     * The root of one iteration, shared by the threads searching it.
+     */
+    private static final class Root {
+        final int[] moves;
+        final int count;
+        final int depth;
+
+        /** The next root move to hand out. */
+        final AtomicInteger claimed = new AtomicInteger();
+
+        /** The best value so far, read without locking to narrow later windows. */
+        volatile double bestValue = -WIN;
+
+        /** The best move so far. */
+        int bestMove;
+
+        Root(int[] moves, int count, int depth) {
+            this.moves = moves;
+            this.count = count;
+            this.depth = depth;
+            this.bestMove = moves[0];
+        }
+
+        /**
+         * Records the value of a root move if it's the best so far.
+         *
+         * @param move  the move
+         * @param value  its value
+         */
+        synchronized void report(int move, double value) {
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+            }
+        }
+    }
+
+    /**
+     * The search run by one thread, with its own stack of states and move lists.
+     */
+    private final class Searcher {
+        final SearchState[] stack;
+        final int[][] moveLists;
+        final int root;
+        final long deadline;
+        long nodes;
+        boolean aborted;
+
+        Searcher(SearchBoard board, int root, long deadline, int maxDepth) {
+            int plies = 2 * maxDepth + 3;
+            this.stack = new SearchState[plies];
+            for (int i = 0; i < plies; i++) {
+                stack[i] = new SearchState(board);
+            }
+            this.moveLists = new int[plies][MAX_MOVES];
+            this.root = root;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Claims and searches root moves until there are none left.
+         *
+         * @param root  the root being searched
+         */
+        void searchRoot(Root root) {
+            int i;
+            while (!aborted && (i = root.claimed.getAndIncrement()) < root.count) {
+                searchRootMove(root, i);
+            }
+        }
+
+        /**
+         * Searches one root move with a window above the best value so far.
+         *
+         * @param root  the root being searched
+         * @param i  the index of the move
+         */
+        void searchRootMove(Root root, int i) {
+            int move = root.moves[i];
+            double alpha = i == 0 ? -WIN : root.bestValue;
+            double value = searchMove(0, move, root.depth, alpha, WIN);
+            if (!aborted) {
+                root.report(move, value);
+            }
+        }
+
+        /**
+         * Makes a move from the state at some ply and searches the result.
+         *
+         * @param ply  the ply of the state the move is made from
+         * @param move  the move
+         * @param depth  the remaining depth, counting this move
+         * @param alpha  the lower bound of the window
+         * @param beta  the upper bound of the window
+         *
+         * @return the value of the move
+         */
+        double searchMove(int ply, int move, int depth, double alpha, double beta) {
+            SearchState child = stack[ply + 1];
+            child.copyFrom(stack[ply]);
+            child.play(move);
+            if (moveType(move) == BUY_DEV_CARD) {
+                return chance(ply + 1, depth - 1, alpha, beta);
+            }
+            return search(ply + 1, depth - 1, alpha, beta);
+        }
+
+        /**
+         * Searches the state at some ply.
+         *
+         * @param ply  the ply
+         * @param depth  the remaining depth
+         * @param alpha  the lower bound of the window
+         * @param beta  the upper bound of the window
+         *
+         * @return the value, exact if it's inside the window and a bound otherwise
+         */
+        double search(int ply, int depth, double alpha, double beta) {
+            SearchState s = stack[ply];
+            if ((++nodes & CLOCK_MASK) == 0 && System.nanoTime() > deadline) {
+                aborted = true;
+            }
+            if (aborted) {
+                return 0;
+            }
+            if (s.winner() != -1) {
+                return s.winner() == root ? WIN : -WIN;
+            }
+            if (depth == 0) {
+                return s.evaluate(root);
+            }
+            if (s.waitingForRoll()) {
+                return chance(ply, depth, alpha, beta);
+            }
+
+            long entry = table.probe(s.hash());
+            int hashMove = 0;
+            if (entry != TranspositionTable.MISS) {
+                hashMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    double v = TranspositionTable.value(entry);
+                    int flag = TranspositionTable.flag(entry);
+                    if (flag == TranspositionTable.EXACT
+                            || (flag == TranspositionTable.LOWER && v >= beta)
+                            || (flag == TranspositionTable.UPPER && v <= alpha)) {
+                        return v;
+                    }
+                }
+            }
+
+            int[] moves = moveLists[ply];
+            int n = s.generate(moves);
+            if (hashMove != 0) {
+                moveToFront(moves, n, hashMove);
+            }
+            boolean maximizing = s.current() == root;
+            double a = alpha;
+            double b = beta;
+            double best = maximizing ? -WIN : WIN;
+            int bestMove = moves[0];
+            for (int i = 0; i < n; i++) {
+                double v = searchMove(ply, moves[i], depth, a, b);
+                if (aborted) {
+                    return 0;
+                }
+                if (maximizing ? v > best : v < best) {
+                    best = v;
+                    bestMove = moves[i];
+                }
+                if (maximizing) {
+                    a = Math.max(a, v);
+                } else {
+                    b = Math.min(b, v);
+                }
+                if (a >= b) {
+                    break;
+                }
+            }
+            int flag = TranspositionTable.EXACT;
+            if (best <= alpha) {
+                flag = TranspositionTable.UPPER;
+            } else if (best >= beta) {
+                flag = TranspositionTable.LOWER;
+            }
+            table.store(s.hash(), best, depth, flag, bestMove);
+            return best;
+        }
+
+        /**
+         * Searches a chance node with Star1 pruning: either the dice about to be rolled, or
+         * the development card about to be drawn. The remaining depth isn't used up by the
+         * chance node itself.
+         *
+         * @param ply  the ply of the state waiting on chance
+         * @param depth  the remaining depth
+         * @param alpha  the lower bound of the window
+         * @param beta  the upper bound of the window
+         *
+         * @return the expected value, or a bound on it if it's outside the window
+         */
+        double chance(int ply, int depth, double alpha, double beta) {
+            SearchState s = stack[ply];
+            boolean dice = s.waitingForRoll();
+            int outcomes = dice ? 13 : DevelopmentCard.COUNT;
+            double total = 0;
+            if (!dice) {
+                for (int c = 0; c < outcomes; c++) {
+                    total += s.unseen(c);
+                }
+                if (total == 0) {
+                    return search(ply, depth, alpha, beta);
+                }
+            }
+            double sum = 0;
+            double left = 1;
+            for (int o = dice ? 2 : 0; o < outcomes; o++) {
+                double p = dice ? (6 - Math.abs(7 - o)) / 36.0 : s.unseen(o) / total;
+                if (p == 0) {
+                    continue;
+                }
+                left -= p;
+                double a = Math.max(-WIN, (alpha - sum - WIN * left) / p);
+                double b = Math.min(WIN, (beta - sum + WIN * left) / p);
+                SearchState child = stack[ply + 1];
+                child.copyFrom(s);
+                if (dice) {
+                    child.roll(o);
+                } else {
+                    child.drawDevCard(o);
+                }
+                double v = search(ply + 1, depth, a, b);
+                if (aborted) {
+                    return 0;
+                }
+                sum += p * v;
+                if (sum + WIN * left <= alpha) {
+                    return sum + WIN * left;
+                }
+                if (sum - WIN * left >= beta) {
+                    return sum - WIN * left;
+                }
+            }
+            return sum;
+        }
+    }
+
+    /** Moves that build a road, with the edge as the argument. */
+    public static final int BUILD_ROAD = 1;
+
+    /** Moves that build a settlement, with the vertex as the argument. */
+    public static final int BUILD_SETTLEMENT = 2;
+
+    /** Moves that upgrade a settlement to a city, with the vertex as the argument. */
+    public static final int BUILD_CITY = 3;
+
+    /** Moves that buy a development card. */
+    public static final int BUY_DEV_CARD = 4;
+
+    /** Moves that make a maritime trade. */
+    public static final int TRADE = 5;
+
+    /** Moves that end the turn. */
+    public static final int END_TURN = 6;
+
+    /** Moves that play a knight, with the hex the robber moves to as the argument. */
+    public static final int PLAY_KNIGHT = 7;
+
+    /** The value of a win. Every other value is between this and its negative. */
+    public static final double WIN = 1.0;
+
+    /** The default log base 2 of the number of transposition table entries. */
+    public static final int DEFAULT_TABLE_BITS = 20;
+
+    /** The deepest search the solver will try. */
+    public static final int MAX_DEPTH = 64;
+
+    /** The most moves a state can have. */
+    static final int MAX_MOVES = 512;
+
+    /** Where the type of a move starts, above its argument. */
+    private static final int TYPE_SHIFT = 18;
+
+    /** The largest argument a move can hold, and the mask that takes it out of a move. */
+    private static final int MAX_ARG = (1 << TYPE_SHIFT) - 1;
+
+    /** The clock is checked every time the node count passes a multiple of this plus one. */
+    private static final int CLOCK_MASK = 1023;
+}
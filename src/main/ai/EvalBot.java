@@ -0,0 +1,102 @@
+package src.main.ai;
+
+import java.util.Random;
+
+import src.main.model.ActionSpace;
+import src.main.model.CatanGame;
+import src.main.model.Purchase;
+import src.main.model.TurnPhase;
+
+/**
+ * Plays like GreedyBot, except that where to build, and whether a road is worth building at
+ * all, is decided by an Evaluator with the bot's own weights. Every legal build is scored
+ * with evaluateBuild, and the best is made if it beats the position as it stands; when a
+ * build has to be made, in the opening or with a road building card, the best is made
+ * whatever it scores. Everything else, and a GreedyBot choice of build the weights turn
+ * down, falls back to GreedyBot or to ending the turn.
+ *
+ * Unlike other policies, an EvalBot is tied to one game, the one its evaluator follows.
+ * Several bots can share an evaluator, since each puts its own weights in before scoring.
+ */
+public class EvalBot implements BotPolicy {
+    /** The evaluator, listening to the game. */
+    private final Evaluator evaluator;
+
+    /** The bot's weights. */
+    private final EvaluatorWeights weights;
+
+    /** What plays everything but the builds. */
+    private final GreedyBot greedy = new GreedyBot();
+
+    /**
+     * Creates a bot.
+     *
+     * @param evaluator  the evaluator of the game the bot plays in
+     * @param weights  the bot's weights
+     */
+    public EvalBot(Evaluator evaluator, EvaluatorWeights weights) {
+        this.evaluator = evaluator;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the bot's weights.
+     *
+     * @return the weights
+     */
+    public EvaluatorWeights weights() {
+        return weights;
+    }
+
+    @Override
+    public int act(CatanGame game, Random rand) {
+        evaluator.setWeights(weights);
+        ActionSpace space = game.actionSpace();
+        int seat = game.actingPlayer().index();
+        TurnPhase phase = game.phase();
+        boolean forced = phase == TurnPhase.INITIAL_SETTLEMENT || phase == TurnPhase.INITIAL_ROAD
+                         || phase == TurnPhase.ROAD_BUILDING;
+        int best = -1;
+        double bestScore = forced ? Double.NEGATIVE_INFINITY : evaluator.evaluate(seat);
+        for (int a = 0; a < space.size(); a++) {
+            Purchase piece = piece(space.type(a));
+            if (piece == null || !game.isLegal(a)) {
+                continue;
+            }
+            double score = evaluator.evaluateBuild(seat, piece, space.target(a));
+            if (score > bestScore) {
+                best = a;
+                bestScore = score;
+            }
+        }
+        if (best != -1) {
+            return best;
+        }
+        int fallback = greedy.act(game, rand);
+        if (piece(space.type(fallback)) == null) {
+            return fallback;
+        }
+        int end = space.action(ActionSpace.Type.END_TURN, 0);
+        return game.isLegal(end) ? end : fallback;
+    }
+
+    /**
+     * Returns the piece a kind of action builds.
+     *
+     * @param type  the kind of action
+     *
+     * @return ROAD, SETTLEMENT or CITY, or null if it doesn't build
+     */
+    private static Purchase piece(ActionSpace.Type type) {
+        switch (type) {
+            case ROAD:
+                return Purchase.ROAD;
+            case SETTLEMENT:
+                return Purchase.SETTLEMENT;
+            case CITY:
+                return Purchase.CITY;
+            default:
+                return null;
+        }
+    }
+}
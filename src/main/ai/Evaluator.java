@@ -0,0 +1,434 @@
+package src.main.ai;
+
+import java.util.Arrays;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.GameListener;
+import src.main.model.Harbor;
+import src.main.model.Player;
+import src.main.model.Purchase;
+import src.main.model.Resource;
+
+/**
+ * Scores positions for bots from a vector of features per seat, kept up to date as the game
+ * is played instead of being worked out from the board each time. Add the evaluator to the
+ * game as a listener: builds and robber moves update the features they touch, a vertex and
+ * the hexes and vertices around it, and evaluating a seat is then a dot product with the
+ * weights, or a small network's worth of them.
+ *
+ * The features of a seat are their points, knights played, development cards held and
+ * roads, which the Player already counts and are copied in when a seat is evaluated; the
+ * pips they collect of each resource, not counting the hex under the robber; how many
+ * resources they collect at all; how much their harbors save on trades with the bank; how
+ * many empty vertices their roads reach where they could build; and the pips of theirs the
+ * robber is sitting on. Trades and development cards only change the counters.
+ *
+ * A position is worth a seat's value less the average value of the other seats. The value
+ * of a candidate build can be had without making it, from the features it would change.
+ * An evaluator follows one game and isn't safe to share between threads; if the game is
+ * changed other than by being played, call rebuild.
+ */
+public class Evaluator implements GameListener {
+    /** The game. */
+    private final CatanGame game;
+
+    /** The layout of the game's board. */
+    private final BoardLayout layout;
+
+    /** The number of seats. */
+    private final int numPlayers;
+
+    /** The weights. */
+    private EvaluatorWeights weights;
+
+    /** The features of each seat, at seat * FEATURES + feature. */
+    private final double[] features;
+
+    /** Whether each seat could build on each vertex, at seat * vertexCount + vertex. */
+    private final boolean[] sites;
+
+    /** A copy of the features for trying out a build. */
+    private final double[] scratch;
+
+    /**
+     * Creates an evaluator for a game, with its features worked out from the game as it is.
+     *
+     * @param game  the game
+     * @param weights  the weights
+     */
+    public Evaluator(CatanGame game, EvaluatorWeights weights) {
+        this.game = game;
+        this.layout = game.board().layout();
+        this.numPlayers = game.numPlayers();
+        this.weights = weights;
+        this.features = new double[numPlayers * FEATURES];
+        this.scratch = new double[features.length];
+        this.sites = new boolean[numPlayers * layout.vertexCount()];
+        rebuild();
+    }
+
+    /**
+     * Returns the weights.
+     *
+     * @return the weights
+     */
+    public EvaluatorWeights weights() {
+        return weights;
+    }
+
+    /**
+     * Changes the weights. The features don't depend on them, so nothing is worked out
+     * again.
+     *
+     * @param weights  the new weights
+     */
+    public void setWeights(EvaluatorWeights weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Works every feature out from the game from scratch.
+     */
+    public void rebuild() {
+        Arrays.fill(features, 0.0);
+        CatanBoard board = game.board();
+        for (int v = 0; v < layout.vertexCount(); v++) {
+            int owner = board.vertexOwner(v);
+            if (owner != -1) {
+                addProduction(features, owner, v, board.vertexLevel(v));
+            }
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            updateHarbors(features, p);
+            for (int v = 0; v < layout.vertexCount(); v++) {
+                sites[p * layout.vertexCount() + v] = false;
+                updateSite(features, p, v);
+            }
+        }
+    }
+
+    /**
+     * Returns one feature of a seat.
+     *
+     * @param seat  the seat
+     * @param feature  the feature, one of the constants
+     *
+     * @return its value
+     */
+    public double feature(int seat, int feature) {
+        copyCounters(features);
+        return features[seat * FEATURES + feature];
+    }
+
+    /**
+     * Returns what the weights make of a seat's features, without comparing with anyone.
+     *
+     * @param seat  the seat
+     *
+     * @return the value
+     */
+    public double value(int seat) {
+        copyCounters(features);
+        return weights.apply(features, seat * FEATURES);
+    }
+
+    /**
+     * Scores the position for a seat: their value less the average of everyone else's.
+     *
+     * @param seat  the seat
+     *
+     * @return the score, higher is better for the seat
+     */
+    public double evaluate(int seat) {
+        copyCounters(features);
+        return score(features, seat);
+    }
+
+    /**
+     * Scores the position a build would lead to, without making it. The build is assumed to
+     * be legal. The point it brings is counted, but not an award it might win; what it costs
+     * isn't a feature.
+     *
+     * @param seat  the seat that would build and whose score is wanted
+     * @param piece  ROAD, SETTLEMENT or CITY
+     * @param location  the edge of a road, or the vertex of a settlement or city
+     *
+     * @return the score
+     */
+    public double evaluateBuild(int seat, Purchase piece, int location) {
+        copyCounters(features);
+        System.arraycopy(features, 0, scratch, 0, features.length);
+        int base = seat * FEATURES;
+        if (piece == Purchase.ROAD) {
+            scratch[base + ROADS] += 1;
+            for (int k = 0; k < 2; k++) {
+                int v = layout.edgeVertex(location, k);
+                if (!sites[seat * layout.vertexCount() + v] && open(v)) {
+                    scratch[base + SITES] += 1;
+                }
+            }
+        } else {
+            scratch[base + POINTS] += 1;
+            addProduction(scratch, seat, location, 1);
+            if (piece == Purchase.SETTLEMENT) {
+                for (int p = 0; p < numPlayers; p++) {
+                    for (int k = -1; k < 3; k++) {
+                        int v = k == -1 ? location : layout.vertexNeighbor(location, k);
+                        if (v != -1 && sites[p * layout.vertexCount() + v]) {
+                            scratch[p * FEATURES + SITES] -= 1;
+                        }
+                    }
+                }
+                Harbor harbor = game.board().harbor(location);
+                if (harbor != null) {
+                    Player player = game.player(seat);
+                    int saved = 0;
+                    for (int r = 0; r < Resource.COUNT; r++) {
+                        int cost = player.tradeCost(Resource.get(r));
+                        if (harbor.resource() == null || harbor.resource().ordinal() == r) {
+                            cost = Math.min(cost, harbor.rate());
+                        }
+                        saved += Player.INIT_MARITIME_COST - cost;
+                    }
+                    scratch[base + HARBORS] = saved;
+                }
+            }
+        }
+        return score(scratch, seat);
+    }
+
+    @Override
+    public void gameStarted(CatanGame game) {
+        rebuild();
+    }
+
+    @Override
+    public void built(CatanGame game, Player player, Purchase piece, int location) {
+        int p = player.index();
+        if (piece == Purchase.ROAD) {
+            for (int k = 0; k < 2; k++) {
+                updateSite(features, p, layout.edgeVertex(location, k));
+            }
+            return;
+        }
+        addProduction(features, p, location, 1);
+        if (piece == Purchase.SETTLEMENT) {
+            updateHarbors(features, p);
+            for (int q = 0; q < numPlayers; q++) {
+                updateSite(features, q, location);
+                for (int k = 0; k < 3; k++) {
+                    int v = layout.vertexNeighbor(location, k);
+                    if (v != -1) {
+                        updateSite(features, q, v);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void robberMoved(CatanGame game, Player player, int from, int to) {
+        CatanBoard board = game.board();
+        for (int p = 0; p < numPlayers; p++) {
+            if (from != -1) {
+                blockHex(features, p, from, board.production(from, p), -1);
+            }
+            blockHex(features, p, to, board.production(to, p), 1);
+        }
+    }
+
+    /**
+     * Adds the production of a building, or of upgrading one, to a seat's features.
+     *
+     * @param f  the features
+     * @param seat  the seat
+     * @param vertex  the vertex built on
+     * @param units  how much more the seat collects from each hex around it
+     */
+    private void addProduction(double[] f, int seat, int vertex, int units) {
+        CatanBoard board = game.board();
+        for (int k = 0; k < 3; k++) {
+            int hex = layout.vertexHex(vertex, k);
+            if (hex == -1 || !layout.isValid(hex) || board.hex(hex).resource() == null) {
+                continue;
+            }
+            int pips = board.pips(hex) * units;
+            if (hex == board.robberHex()) {
+                f[seat * FEATURES + BLOCKED] += pips;
+            } else {
+                f[seat * FEATURES + PRODUCTION + board.hex(hex).resource().ordinal()] += pips;
+            }
+        }
+        updateVariety(f, seat);
+    }
+
+    /**
+     * Moves a seat's production on a hex between their production and what the robber
+     * blocks.
+     *
+     * @param f  the features
+     * @param seat  the seat
+     * @param hex  the hex
+     * @param units  the seat's production weight on the hex
+     * @param sign  1 when the robber arrives, -1 when it leaves
+     */
+    private void blockHex(double[] f, int seat, int hex, int units, int sign) {
+        CatanBoard board = game.board();
+        if (units == 0 || board.hex(hex).resource() == null) {
+            return;
+        }
+        int pips = board.pips(hex) * units * sign;
+        f[seat * FEATURES + PRODUCTION + board.hex(hex).resource().ordinal()] -= pips;
+        f[seat * FEATURES + BLOCKED] += pips;
+        updateVariety(f, seat);
+    }
+
+    /**
+     * Counts the resources a seat collects at all.
+     *
+     * @param f  the features
+     * @param seat  the seat
+     */
+    private static void updateVariety(double[] f, int seat) {
+        int count = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            count += f[seat * FEATURES + PRODUCTION + r] > 0 ? 1 : 0;
+        }
+        f[seat * FEATURES + VARIETY] = count;
+    }
+
+    /**
+     * Adds up what a seat's harbors save them on trades with the bank.
+     *
+     * @param f  the features
+     * @param seat  the seat
+     */
+    private void updateHarbors(double[] f, int seat) {
+        Player player = game.player(seat);
+        int saved = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            saved += Player.INIT_MARITIME_COST - player.tradeCost(Resource.get(r));
+        }
+        f[seat * FEATURES + HARBORS] = saved;
+    }
+
+    /**
+     * Checks whether a seat could build on a vertex and counts it if that has changed.
+     *
+     * @param f  the features
+     * @param seat  the seat
+     * @param vertex  the vertex
+     */
+    private void updateSite(double[] f, int seat, int vertex) {
+        int i = seat * layout.vertexCount() + vertex;
+        boolean now = open(vertex) && reaches(seat, vertex);
+        if (now != sites[i]) {
+            f[seat * FEATURES + SITES] += now ? 1 : -1;
+            sites[i] = now;
+        }
+    }
+
+    /**
+     * Returns true if a vertex and every vertex next to it are empty.
+     *
+     * @param vertex  the vertex
+     *
+     * @return whether a settlement could go there
+     */
+    private boolean open(int vertex) {
+        CatanBoard board = game.board();
+        if (board.vertexOwner(vertex) != -1) {
+            return false;
+        }
+        for (int k = 0; k < 3; k++) {
+            int v = layout.vertexNeighbor(vertex, k);
+            if (v != -1 && board.vertexOwner(v) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if one of a seat's roads touches a vertex.
+     *
+     * @param seat  the seat
+     * @param vertex  the vertex
+     *
+     * @return whether the seat's roads reach it
+     */
+    private boolean reaches(int seat, int vertex) {
+        for (int k = 0; k < 3; k++) {
+            int e = layout.vertexEdge(vertex, k);
+            if (e != -1 && game.board().edgeOwner(e) == seat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the counters the players keep into the features.
+     *
+     * @param f  the features
+     */
+    private void copyCounters(double[] f) {
+        for (int p = 0; p < numPlayers; p++) {
+            Player player = game.player(p);
+            f[p * FEATURES + POINTS] = player.points();
+            f[p * FEATURES + KNIGHTS] = player.knights();
+            f[p * FEATURES + DEV_CARDS] = player.devHandSize();
+            f[p * FEATURES + ROADS] = player.roads();
+        }
+    }
+
+    /**
+     * Scores a seat from a set of features.
+     *
+     * @param f  the features
+     * @param seat  the seat
+     *
+     * @return the seat's value less the average of the others'
+     */
+    private double score(double[] f, int seat) {
+        double others = 0;
+        for (int p = 0; p < numPlayers; p++) {
+            if (p != seat) {
+                others += weights.apply(f, p * FEATURES);
+            }
+        }
+        return weights.apply(f, seat * FEATURES) - others / (numPlayers - 1);
+    }
+
+    /** The seat's points. */
+    public static final int POINTS = 0;
+
+    /** The knights the seat has played. */
+    public static final int KNIGHTS = 1;
+
+    /** The development cards the seat holds. */
+    public static final int DEV_CARDS = 2;
+
+    /** The roads the seat has built. */
+    public static final int ROADS = 3;
+
+    /** The pips the seat collects of each resource, at PRODUCTION + ordinal. */
+    public static final int PRODUCTION = 4;
+
+    /** The number of resources the seat collects at all. */
+    public static final int VARIETY = PRODUCTION + Resource.COUNT;
+
+    /** How many cards the seat's harbors save, over every resource, on a trade each. */
+    public static final int HARBORS = VARIETY + 1;
+
+    /** The empty vertices the seat's roads reach that they could build on. */
+    public static final int SITES = HARBORS + 1;
+
+    /** The seat's pips the robber is sitting on. */
+    public static final int BLOCKED = SITES + 1;
+
+    /** The number of features per seat. */
+    public static final int FEATURES = BLOCKED + 1;
+}
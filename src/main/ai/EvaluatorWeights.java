@@ -0,0 +1,240 @@
+package src.main.ai;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The weights of an Evaluator: either a linear function of the features, or a network with
+ * one hidden layer of rectified units. Weights are immutable, so one set can be shared by
+ * every evaluator and thread; a tuner makes new sets with different parameters.
+ *
+ * The parameters are kept flat. A linear set has a weight per feature and then a bias. A
+ * network with h hidden units has, for each unit, a weight per feature and a bias, then a
+ * weight per unit for the output and the output's bias.
+ *
+ * On disk, weights are text: the number of hidden units, 0 for linear, followed by the
+ * parameters in order, separated by whitespace. Anything from a # to the end of a line is a
+ * comment.
+ */
+public final class EvaluatorWeights {
+    /** The number of hidden units, 0 for linear. */
+    private final int hidden;
+
+    /** The parameters, flat. */
+    private final double[] params;
+
+    /**
+     * Creates a set of weights.
+     *
+     * @param hidden  the number of hidden units, 0 for linear
+     * @param params  the parameters, flat, copied
+     */
+    public EvaluatorWeights(int hidden, double[] params) {
+        if (hidden < 0 || hidden > MAX_HIDDEN || params.length != size(hidden)) {
+            throw new IllegalArgumentException("bad evaluator weights");
+        }
+        this.hidden = hidden;
+        this.params = params.clone();
+    }
+
+    /**
+     * Creates a linear set of weights.
+     *
+     * @param weights  a weight per feature, then the bias
+     *
+     * @return the weights
+     */
+    public static EvaluatorWeights linear(double... weights) {
+        return new EvaluatorWeights(0, weights);
+    }
+
+    /**
+     * Reads a set of weights from a file.
+     *
+     * @param file  the file
+     *
+     * @return the weights
+     *
+     * @throws IOException if the file can't be read
+     */
+    public static EvaluatorWeights load(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : Files.readAllLines(file)) {
+            int comment = line.indexOf('#');
+            text.append(comment == -1 ? line : line.substring(0, comment)).append(' ');
+        }
+        String[] tokens = text.toString().trim().split("\\s+");
+        try {
+            int hidden = Integer.parseInt(tokens[0]);
+            if (hidden < 0 || hidden > MAX_HIDDEN || tokens.length != size(hidden) + 1) {
+                throw new IllegalArgumentException("wrong number of evaluator weights");
+            }
+            double[] params = new double[tokens.length - 1];
+            for (int i = 0; i < params.length; i++) {
+                params[i] = Double.parseDouble(tokens[i + 1]);
+            }
+            return new EvaluatorWeights(hidden, params);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not an evaluator weights file", e);
+        }
+    }
+
+    /**
+     * Writes the weights to a file in the form load reads, replacing the file. Each hidden
+     * unit, and the output, gets a line of its own.
+     *
+     * @param file  the file
+     *
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("# hidden units, then per unit a weight per feature and a bias\n");
+            out.write(Integer.toString(hidden));
+            out.newLine();
+            int row = Evaluator.FEATURES + 1;
+            for (int start = 0; start < params.length; start += row) {
+                int end = Math.min(params.length, start + row);
+                if (hidden > 0 && start == hidden * row) {
+                    end = params.length;
+                }
+                for (int i = start; i < end; i++) {
+                    out.write(i == start ? "" : " ");
+                    out.write(Double.toString(params[i]));
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of hidden units.
+     *
+     * @return the hidden units, 0 for linear
+     */
+    public int hidden() {
+        return hidden;
+    }
+
+    /**
+     * Returns the number of parameters.
+     *
+     * @return the length of the flat parameters
+     */
+    public int size() {
+        return params.length;
+    }
+
+    /**
+     * Returns one parameter.
+     *
+     * @param i  the index in the flat parameters
+     *
+     * @return the parameter
+     */
+    public double get(int i) {
+        return params[i];
+    }
+
+    /**
+     * Returns a copy of the parameters.
+     *
+     * @return the flat parameters
+     */
+    public double[] toArray() {
+        return params.clone();
+    }
+
+    /**
+     * Returns weights of the same shape with other parameters.
+     *
+     * @param params  the flat parameters, copied
+     *
+     * @return the new weights
+     */
+    public EvaluatorWeights with(double[] params) {
+        return new EvaluatorWeights(hidden, params);
+    }
+
+    /**
+     * Works out the value of a feature vector.
+     *
+     * @param features  the features
+     * @param offset  where the vector starts
+     *
+     * @return the value
+     */
+    double apply(double[] features, int offset) {
+        int n = Evaluator.FEATURES;
+        if (hidden == 0) {
+            double total = params[n];
+            for (int f = 0; f < n; f++) {
+                total += params[f] * features[offset + f];
+            }
+            return total;
+        }
+        int out = hidden * (n + 1);
+        double total = params[out + hidden];
+        for (int h = 0; h < hidden; h++) {
+            int base = h * (n + 1);
+            double sum = params[base + n];
+            for (int f = 0; f < n; f++) {
+                sum += params[base + f] * features[offset + f];
+            }
+            if (sum > 0) {
+                total += params[out + h] * sum;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of parameters of a shape of weights.
+     *
+     * @param hidden  the number of hidden units, 0 for linear
+     *
+     * @return the number of parameters
+     */
+    static int size(int hidden) {
+        int row = Evaluator.FEATURES + 1;
+        return hidden == 0 ? row : hidden * row + hidden + 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EvaluatorWeights && ((EvaluatorWeights) o).hidden == hidden
+            && Arrays.equals(((EvaluatorWeights) o).params, params);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * hidden + Arrays.hashCode(params);
+    }
+
+    /** The most hidden units a network can have. */
+    public static final int MAX_HIDDEN = 256;
+
+    /**
+     * Hand-set linear weights: a point is worth 1, and a pip of production around a twelfth
+     * of one, a little more for the ore and wheat that cities take.
+     */
+    public static final EvaluatorWeights DEFAULT = linear(
+        1.0,    // points
+        0.15,   // knights played
+        0.2,    // development cards held
+        0.03,   // roads
+        0.07,   // brick pips
+        0.06,   // sheep pips
+        0.09,   // ore pips
+        0.09,   // wheat pips
+        0.07,   // wood pips
+        0.12,   // resources produced at all
+        0.05,   // harbor savings
+        0.1,    // open settlement sites
+        -0.04,  // pips under the robber
+        0.0     // bias
+    );
+}
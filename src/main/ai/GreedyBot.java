@@ -0,0 +1,132 @@
+package src.main.ai;
+
+import java.util.Random;
+
+import src.main.model.ActionSpace;
+import src.main.model.CatanGame;
+import src.main.model.Player;
+import src.main.model.Purchase;
+import src.main.model.Resource;
+
+/**
+ * Plays the best-looking action right now without looking ahead. Actions are ranked by kind,
+ * from cities down to ending the turn, and actions of the same kind by how much they
+ * produce: building spots by the pips of the hexes around them, and robber hexes by a
+ * RobberEvaluator. It only trades with the bank when the trade lets it afford a settlement
+ * or a city it couldn't before, and plays no development card but the knight. Ties go to the
+ * lowest action, so the bot doesn't use its Random.
+ */
+public class GreedyBot implements BotPolicy {
+    /** Scores the hexes the robber can move to. */
+    private final RobberEvaluator robber = new RobberEvaluator();
+
+    @Override
+    public int act(CatanGame game, Random rand) {
+        ActionSpace space = game.actionSpace();
+        Player me = game.actingPlayer();
+        int best = -1;
+        long bestScore = Long.MIN_VALUE;
+        for (int a = 0; a < space.size(); a++) {
+            if (!game.isLegal(a)) {
+                continue;
+            }
+            long score = (long) rank(space.type(a)) << 32;
+            switch (space.type(a)) {
+                case TRADE:
+                    if (enablesBuilding(me, space.target(a))) {
+                        score += (long) TRADE_RANK << 32;
+                    }
+                    break;
+                case SETTLEMENT:
+                case CITY:
+                    score += game.board().vertexPips(space.target(a));
+                    break;
+                case ROBBER:
+                    score += robber.score(game, me, space.target(a));
+                    break;
+                default:
+                    break;
+            }
+            if (score > bestScore) {
+                best = a;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Ranks the kinds of action, higher first. Kinds that are only legal in a phase of their
+     * own, like rolling or discarding, all share one rank.
+     *
+     * @param type  the kind of action
+     *
+     * @return the rank
+     */
+    private static int rank(ActionSpace.Type type) {
+        switch (type) {
+            case CITY:
+                return 7;
+            case SETTLEMENT:
+                return 6;
+            case BUY_DEV_CARD:
+                return 5;
+            case ROAD:
+                return 4;
+            case PLAY_KNIGHT:
+                return 3;
+            case END_TURN:
+                return 1;
+            case TRADE:
+            case MONOPOLY:
+            case YEAR_OF_PLENTY:
+            case PLAY_ROAD_BUILDING:
+                return 0;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Returns true if a trade with the bank lets a player afford a settlement or a city they
+     * can't afford now.
+     *
+     * @param player  the player
+     * @param trade  the trade, as give * Resource.COUNT + get
+     *
+     * @return whether the trade is worth making
+     */
+    private static boolean enablesBuilding(Player player, int trade) {
+        if (player.canAfford(Purchase.SETTLEMENT) || player.canAfford(Purchase.CITY)) {
+            return false;
+        }
+        Resource give = Resource.get(trade / Resource.COUNT);
+        int[] hand = new int[Resource.COUNT];
+        for (int r = 0; r < Resource.COUNT; r++) {
+            hand[r] = player.resourceCount(Resource.get(r));
+        }
+        hand[give.ordinal()] -= player.tradeCost(give);
+        hand[trade % Resource.COUNT] += 1;
+        return affords(hand, Purchase.SETTLEMENT) || affords(hand, Purchase.CITY);
+    }
+
+    /**
+     * Returns true if a hand covers a purchase.
+     *
+     * @param hand  the number of each resource
+     * @param purchase  the purchase
+     *
+     * @return whether the hand is enough
+     */
+    private static boolean affords(int[] hand, Purchase purchase) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if (hand[r] < purchase.cost(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The rank a trade gets when it leads to a settlement or a city, above ending the turn. */
+    private static final int TRADE_RANK = 3;
+}
@@ -0,0 +1,754 @@
+package src.main.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.Player;
+import src.main.model.Purchase;
+import src.main.model.Resource;
+
+/**
+ * Works out exactly what each player collects per roll of the dice, and from that how many
+ * rolls they can expect to wait before they can afford something or gather enough to win.
+ * Nothing is sampled: the income of a roll is a list of at most eleven outcomes, one per
+ * dice sum, each with its probability out of 36, and waiting times come from a dynamic
+ * program over how many of each resource a player is still short and how many they have
+ * spare. Spare resources are traded with the bank at the player's own rates as soon as
+ * there are enough of them, for whatever is missing that they earn least of.
+ *
+ * A roll of 7 produces nothing, and a hex under the robber produces nothing. A resource the
+ * bank can't cover on some roll goes to nobody on that roll, as in distributeResources.
+ * Waiting times count rolls, not the player's own turns, since every roll pays everyone;
+ * they ignore trades with other players, discards, development cards and the income that
+ * buildings bought on the way would add.
+ *
+ * What each hex pays out is rebuilt only when the board's version changes, that is, when a
+ * building goes up or the robber moves. The outcomes also depend on which resources the bank
+ * is short of, so they and every cached waiting time are kept until either the version or
+ * the set of rolls the bank can't cover changes. An engine follows one game and isn't safe
+ * to share between threads.
+ */
+public class IncomeEngine {
+    /** The game. */
+    private final CatanGame game;
+
+    /** The number of seats. */
+    private final int numPlayers;
+
+    /** The board version the payouts were worked out for. */
+    private long version = -1;
+
+    /** What each player collects per resource on each sum, at (roll * seats + seat) * COUNT. */
+    private final int[] payouts;
+
+    /** The total of each resource paid out on each sum, at roll * COUNT + resource. */
+    private final int[] totals = new int[ROLLS * Resource.COUNT];
+
+    /** A bit at roll * COUNT + resource for each resource the bank can't cover on a sum. */
+    private long shortMask = -1;
+
+    /** The amounts of each player's distinct outcomes, COUNT per outcome. */
+    private final int[][] amounts;
+
+    /** The probability of each player's distinct outcomes. */
+    private final double[][] probabilities;
+
+    /** The number of distinct outcomes of each player. */
+    private final int[] outcomes;
+
+    /** The resources of each player from the one they earn least of, which trades go to. */
+    private final int[][] priority;
+
+    /** Expected waits, by player, shortfall and spares. */
+    private final Map<Long, Double> expected = new HashMap<>();
+
+    /** The chances of being done within each number of rolls, by player, shortfall and spares. */
+    private final Map<Long, double[]> within = new HashMap<>();
+
+    /**
+     * Creates an engine for a game.
+     *
+     * @param game  the game
+     */
+    public IncomeEngine(CatanGame game) {
+        this.game = game;
+        this.numPlayers = game.numPlayers();
+        this.payouts = new int[ROLLS * numPlayers * Resource.COUNT];
+        this.amounts = new int[numPlayers][MAX_OUTCOMES * Resource.COUNT];
+        this.probabilities = new double[numPlayers][MAX_OUTCOMES];
+        this.outcomes = new int[numPlayers];
+        this.priority = new int[numPlayers][Resource.COUNT];
+    }
+
+    /**
+     * Returns the probability of rolling a sum with two dice.
+     *
+     * @param sum  the sum
+     *
+     * @return the probability, 0 for sums that can't be rolled
+     */
+    public static double rollProbability(int sum) {
+        return sum < 2 || sum > 12 ? 0 : (6 - Math.abs(7 - sum)) / 36.0;
+    }
+
+    /**
+     * Writes what a player collects on a sum, after shortages.
+     *
+     * @param player  the seat
+     * @param sum  the dice sum
+     * @param out  where the amounts go, by resource ordinal
+     */
+    public void income(int player, int sum, int[] out) {
+        refresh();
+        collect(player, sum, out);
+    }
+
+    /**
+     * Writes what a player collects on a sum under the current shortages, without bringing
+     * anything up to date first.
+     *
+     * @param player  the seat
+     * @param sum  the dice sum
+     * @param out  where the amounts go, by resource ordinal
+     */
+    private void collect(int player, int sum, int[] out) {
+        Arrays.fill(out, 0, Resource.COUNT, 0);
+        if (sum < 2 || sum > 12 || sum == 7) {
+            return;
+        }
+        int roll = sum - 2;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if ((shortMask & (1L << (roll * Resource.COUNT + r))) == 0) {
+                out[r] = payouts[(roll * numPlayers + player) * Resource.COUNT + r];
+            }
+        }
+    }
+
+    /**
+     * Returns how much of a resource a player collects per roll on average, after shortages.
+     *
+     * @param player  the seat
+     * @param res  the resource
+     *
+     * @return the expected amount
+     */
+    public double expectedIncome(int player, Resource res) {
+        refresh();
+        double total = 0;
+        for (int o = 0; o < outcomes[player]; o++) {
+            int amount = amounts[player][o * Resource.COUNT + res.ordinal()];
+            total += probabilities[player][o] * amount;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the distribution of a player's income per roll: each distinct outcome once,
+     * with its probability, the empty outcome included.
+     *
+     * @param player  the seat
+     * @param amounts  where the outcomes go, COUNT amounts each, with room for MAX_OUTCOMES
+     * @param probabilities  where their probabilities go, with room for MAX_OUTCOMES
+     *
+     * @return the number of outcomes
+     */
+    public int distribution(int player, int[] amounts, double[] probabilities) {
+        refresh();
+        int n = outcomes[player];
+        System.arraycopy(this.amounts[player], 0, amounts, 0, n * Resource.COUNT);
+        System.arraycopy(this.probabilities[player], 0, probabilities, 0, n);
+        return n;
+    }
+
+    /**
+     * Returns the expected number of rolls until a player can afford a purchase, trading
+     * with the bank along the way.
+     *
+     * @param player  the seat
+     * @param purchase  the purchase
+     *
+     * @return the expected rolls, 0 if they can afford it now, or infinity if they have no
+     *         income at all
+     */
+    public double expectedRolls(int player, Purchase purchase) {
+        int[] cost = new int[Resource.COUNT];
+        for (int r = 0; r < Resource.COUNT; r++) {
+            cost[r] = purchase.cost(r);
+        }
+        return expectedRolls(player, cost);
+    }
+
+    /**
+     * Returns the expected number of rolls until a player holds some amounts of resources,
+     * trading with the bank along the way.
+     *
+     * @param player  the seat
+     * @param cost  the amounts, by resource ordinal
+     *
+     * @return the expected rolls, 0 if they hold them now, or infinity if they have no
+     *         income at all
+     */
+    public double expectedRolls(int player, int[] cost) {
+        refresh();
+        return expected(wait(player, hand(player), cost));
+    }
+
+    /**
+     * Returns the probability that a player holds some amounts of resources within a number
+     * of rolls, trading with the bank along the way.
+     *
+     * @param player  the seat
+     * @param cost  the amounts, by resource ordinal
+     * @param rolls  the number of rolls
+     *
+     * @return the probability
+     */
+    public double probabilityWithin(int player, int[] cost, int rolls) {
+        refresh();
+        return cumulative(wait(player, hand(player), cost), rolls)[rolls];
+    }
+
+    /**
+     * Returns the expected number of rolls until a player has gathered the resources to
+     * win. The points they're missing are bought one build at a time, cities on their
+     * settlements first and then new settlements with two roads each; the first build is
+     * paid for partly from their hand and the rest from scratch. Development cards, longest
+     * road and largest army aren't counted.
+     *
+     * @param player  the seat
+     *
+     * @return the expected rolls, 0 if they have already won
+     */
+    public double expectedRollsToWin(int player) {
+        refresh();
+        double total = 0;
+        int[] hand = hand(player);
+        for (int[] cost : winPlan(player)) {
+            total += expected(wait(player, hand, cost));
+            hand = new int[Resource.COUNT];
+        }
+        return total;
+    }
+
+    /**
+     * Estimates each player's chance of being the first to gather the resources to win
+     * within a number of rolls, from the distribution of each player's wait. The waits are
+     * treated as independent, which the shared dice make only approximately true, and a tie
+     * on the same roll is split between the players in it. Chances don't add up to 1 when
+     * someone might not finish within the rolls.
+     *
+     * @param rolls  the number of rolls to look ahead
+     * @param out  where the chances go, by seat
+     */
+    public void winProbabilities(int rolls, double[] out) {
+        refresh();
+        double[][] done = new double[numPlayers][];
+        for (int p = 0; p < numPlayers; p++) {
+            done[p] = winWithin(p, rolls);
+        }
+        Arrays.fill(out, 0, numPlayers, 0.0);
+        for (int n = 0; n <= rolls; n++) {
+            for (int p = 0; p < numPlayers; p++) {
+                double now = done[p][n] - (n == 0 ? 0 : done[p][n - 1]);
+                if (now <= 0) {
+                    continue;
+                }
+                double rest = now;
+                for (int q = 0; q < numPlayers; q++) {
+                    if (q != p) {
+                        double qNow = done[q][n] - (n == 0 ? 0 : done[q][n - 1]);
+                        rest *= 1 - done[q][n] + qNow / 2;
+                    }
+                }
+                out[p] += rest;
+            }
+        }
+    }
+
+    /**
+     * Returns the chance of a player having gathered the resources to win within each
+     * number of rolls, adding up the waits of the builds in their plan.
+     *
+     * @param player  the seat
+     * @param rolls  the limit
+     *
+     * @return the chances, by number of rolls from 0 to the limit
+     */
+    private double[] winWithin(int player, int rolls) {
+        double[] density = new double[rolls + 1];
+        density[0] = 1;
+        int[] hand = hand(player);
+        for (int[] cost : winPlan(player)) {
+            double[] step = cumulative(wait(player, hand, cost), rolls);
+            hand = new int[Resource.COUNT];
+            double[] sum = new double[rolls + 1];
+            for (int k = 0; k <= rolls; k++) {
+                double now = step[k] - (k == 0 ? 0 : step[k - 1]);
+                if (now <= 0) {
+                    continue;
+                }
+                for (int n = 0; n + k <= rolls; n++) {
+                    sum[n + k] += density[n] * now;
+                }
+            }
+            density = sum;
+        }
+        double[] done = new double[rolls + 1];
+        double total = 0;
+        for (int n = 0; n <= rolls; n++) {
+            total += density[n];
+            done[n] = total;
+        }
+        return done;
+    }
+
+    /**
+     * Brings the payouts and outcomes up to date with the board and the bank, dropping the
+     * cached waits if anything changed.
+     */
+    private void refresh() {
+        CatanBoard board = game.board();
+        if (board.version() != version) {
+            version = board.version();
+            shortMask = -1;
+            Arrays.fill(payouts, 0);
+            Arrays.fill(totals, 0);
+            BoardLayout layout = board.layout();
+            for (int sum = 2; sum <= 12; sum++) {
+                if (sum == 7) {
+                    continue;
+                }
+                int roll = sum - 2;
+                for (int h : board.hexesForRoll(layout.rollFor(sum))) {
+                    if (h == board.robberHex()) {
+                        continue;
+                    }
+                    int r = board.hex(h).resource().ordinal();
+                    for (int p = 0; p < numPlayers; p++) {
+                        int amount = board.production(h, p);
+                        payouts[(roll * numPlayers + p) * Resource.COUNT + r] += amount;
+                        totals[roll * Resource.COUNT + r] += amount;
+                    }
+                }
+            }
+        }
+        long mask = 0;
+        for (int roll = 0; roll < ROLLS; roll++) {
+            for (int r = 0; r < Resource.COUNT; r++) {
+                if (totals[roll * Resource.COUNT + r] > game.resourceLeft(Resource.get(r))) {
+                    mask |= 1L << (roll * Resource.COUNT + r);
+                }
+            }
+        }
+        if (mask == shortMask) {
+            return;
+        }
+        shortMask = mask;
+        expected.clear();
+        within.clear();
+        int[] income = new int[Resource.COUNT];
+        for (int p = 0; p < numPlayers; p++) {
+            int n = 0;
+            for (int sum = 2; sum <= 12; sum++) {
+                collect(p, sum, income);
+                int o = 0;
+                while (o < n && !same(amounts[p], o, income)) {
+                    o++;
+                }
+                if (o == n) {
+                    System.arraycopy(income, 0, amounts[p], n * Resource.COUNT, Resource.COUNT);
+                    probabilities[p][n] = 0;
+                    n += 1;
+                }
+                probabilities[p][o] += rollProbability(sum);
+            }
+            outcomes[p] = n;
+            double[] earned = new double[Resource.COUNT];
+            Integer[] order = new Integer[Resource.COUNT];
+            for (int r = 0; r < Resource.COUNT; r++) {
+                order[r] = r;
+                for (int o = 0; o < n; o++) {
+                    earned[r] += probabilities[p][o] * amounts[p][o * Resource.COUNT + r];
+                }
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(earned[a], earned[b]));
+            for (int r = 0; r < Resource.COUNT; r++) {
+                priority[p][r] = order[r];
+            }
+        }
+    }
+
+    /**
+     * Returns the expected number of rolls a wait takes, cached.
+     *
+     * @param wait  the wait
+     *
+     * @return the expected rolls, or infinity if it never ends
+     */
+    private double expected(Wait wait) {
+        if (wait == null) {
+            return 0;
+        }
+        Double cached = expected.get(wait.key);
+        if (cached != null) {
+            return cached;
+        }
+        transitions(wait);
+        int n = outcomes[wait.player];
+        double[] p = probabilities[wait.player];
+        double[] rolls = new double[wait.states];
+        for (int s : order(wait)) {
+            if (wait.finished[s]) {
+                continue;
+            }
+            double stay = 0;
+            double sum = 0;
+            for (int o = 0; o < n; o++) {
+                int t = wait.next[s * n + o];
+                if (t == s) {
+                    stay += p[o];
+                } else {
+                    sum += p[o] * rolls[t];
+                }
+            }
+            rolls[s] = stay >= 1 - EPSILON ? Double.POSITIVE_INFINITY : (1 + sum) / (1 - stay);
+        }
+        double result = rolls[wait.start];
+        expected.put(wait.key, result);
+        return result;
+    }
+
+    /**
+     * Returns the chance of a wait being over within each number of rolls up to some limit,
+     * cached and extended as longer limits are asked for.
+     *
+     * @param wait  the wait
+     * @param rolls  the limit
+     *
+     * @return the chances, by number of rolls from 0 to at least the limit
+     */
+    private double[] cumulative(Wait wait, int rolls) {
+        if (wait == null) {
+            double[] done = new double[rolls + 1];
+            Arrays.fill(done, 1.0);
+            return done;
+        }
+        double[] cached = within.get(wait.key);
+        if (cached != null && cached.length > rolls) {
+            return cached;
+        }
+        transitions(wait);
+        int n = outcomes[wait.player];
+        double[] p = probabilities[wait.player];
+        double[] done = new double[rolls + 1];
+        double[] chance = new double[wait.states];
+        double[] following = new double[wait.states];
+        for (int s = 0; s < wait.states; s++) {
+            chance[s] = wait.finished[s] ? 1 : 0;
+        }
+        for (int k = 1; k <= rolls; k++) {
+            for (int s = 0; s < wait.states; s++) {
+                if (wait.finished[s]) {
+                    following[s] = 1;
+                    continue;
+                }
+                double total = 0;
+                for (int o = 0; o < n; o++) {
+                    total += p[o] * chance[wait.next[s * n + o]];
+                }
+                following[s] = total;
+            }
+            double[] tmp = chance;
+            chance = following;
+            following = tmp;
+            done[k] = chance[wait.start];
+        }
+        within.put(wait.key, done);
+        return done;
+    }
+
+    /**
+     * Sets up a wait for some amounts, starting from a hand. What the hand holds beyond the
+     * amounts is traded for what's missing straight away, as far as it goes.
+     *
+     * @param player  the seat
+     * @param hand  what they hold, by resource ordinal
+     * @param cost  the amounts
+     *
+     * @return the wait, or null if the hand already covers the amounts
+     */
+    private Wait wait(int player, int[] hand, int[] cost) {
+        Player owner = game.player(player);
+        Wait wait = new Wait(player, priority[player]);
+        int[] need = new int[Resource.COUNT];
+        int[] spare = new int[Resource.COUNT];
+        for (int r = 0; r < Resource.COUNT; r++) {
+            wait.rate[r] = owner.tradeCost(Resource.get(r));
+            need[r] = Math.max(0, cost[r] - hand[r]);
+            spare[r] = Math.max(0, hand[r] - cost[r]);
+            if (need[r] > MAX_SHORTFALL) {
+                throw new IllegalArgumentException("too many resources to wait for");
+            }
+        }
+        if (wait.trade(need, spare)) {
+            return null;
+        }
+        long key = player;
+        wait.states = 1;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            wait.radix[r] = need[r] + wait.rate[r];
+            wait.states *= wait.radix[r];
+            key = key << 11 | need[r] << 3 | spare[r];
+        }
+        wait.key = key;
+        wait.start = wait.index(need, spare);
+        return wait;
+    }
+
+    /**
+     * Works out where each outcome takes each state of a wait, if that hasn't been done.
+     *
+     * @param wait  the wait
+     */
+    private void transitions(Wait wait) {
+        if (wait.next != null) {
+            return;
+        }
+        int n = outcomes[wait.player];
+        int[] amount = amounts[wait.player];
+        wait.next = new int[wait.states * n];
+        wait.finished = new boolean[wait.states];
+        int[] digits = new int[Resource.COUNT];
+        int[] need = new int[Resource.COUNT];
+        int[] spare = new int[Resource.COUNT];
+        for (int s = 0; s < wait.states; s++) {
+            boolean finished = true;
+            for (int r = 0; r < Resource.COUNT; r++) {
+                finished &= digits[r] < wait.rate[r];
+            }
+            wait.finished[s] = finished;
+            for (int o = 0; o < n && !finished; o++) {
+                for (int r = 0; r < Resource.COUNT; r++) {
+                    int missing = Math.max(0, digits[r] - wait.rate[r] + 1);
+                    int got = amount[o * Resource.COUNT + r];
+                    int used = Math.min(got, missing);
+                    need[r] = missing - used;
+                    spare[r] = (missing > 0 ? 0 : wait.rate[r] - 1 - digits[r]) + got - used;
+                }
+                wait.next[s * n + o] = wait.trade(need, spare) ? 0 : wait.index(need, spare);
+            }
+            for (int r = 0; r < Resource.COUNT && ++digits[r] == wait.radix[r]; r++) {
+                digits[r] = 0;
+            }
+        }
+    }
+
+    /**
+     * Orders the states of a wait so that every outcome but nothing at all takes a state to
+     * one earlier in the order. Each resource still missing counts 1 and each spare one
+     * counts minus one over its trade rate; income always lowers the total, and trades
+     * leave it as it is.
+     *
+     * @param wait  the wait
+     *
+     * @return the states, in order
+     */
+    private static int[] order(Wait wait) {
+        double[] potential = new double[wait.states];
+        Integer[] order = new Integer[wait.states];
+        int[] digits = new int[Resource.COUNT];
+        for (int s = 0; s < wait.states; s++) {
+            order[s] = s;
+            for (int r = 0; r < Resource.COUNT; r++) {
+                int k = wait.rate[r];
+                potential[s] += digits[r] >= k ? digits[r] - k + 1
+                                               : -(double) (k - 1 - digits[r]) / k;
+            }
+            for (int r = 0; r < Resource.COUNT && ++digits[r] == wait.radix[r]; r++) {
+                digits[r] = 0;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(potential[a], potential[b]));
+        int[] sorted = new int[wait.states];
+        for (int s = 0; s < wait.states; s++) {
+            sorted[s] = order[s];
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns what a player holds.
+     *
+     * @param player  the seat
+     *
+     * @return the counts, by resource ordinal
+     */
+    private int[] hand(int player) {
+        int[] hand = new int[Resource.COUNT];
+        for (int r = 0; r < Resource.COUNT; r++) {
+            hand[r] = game.player(player).resourceCount(Resource.get(r));
+        }
+        return hand;
+    }
+
+    /**
+     * Lists the builds that would bring a player the points they're missing.
+     *
+     * @param player  the seat
+     *
+     * @return the cost of each build, by resource ordinal, in the order they're made
+     */
+    private List<int[]> winPlan(int player) {
+        List<int[]> plan = new ArrayList<>();
+        int missing = CatanGame.WINNING_POINTS - game.player(player).points();
+        if (missing <= 0) {
+            return plan;
+        }
+        CatanBoard board = game.board();
+        int settlements = 0;
+        int cities = 0;
+        for (int v = 0; v < board.layout().vertexCount(); v++) {
+            if (board.vertexOwner(v) == player) {
+                if (board.vertexLevel(v) == CatanBoard.SETTLEMENT) {
+                    settlements += 1;
+                } else {
+                    cities += 1;
+                }
+            }
+        }
+        int citiesLeft = board.layout().maxCities() - cities;
+        int upgrades = Math.min(missing, Math.min(settlements, citiesLeft));
+        int[] city = new int[Resource.COUNT];
+        int[] settlement = new int[Resource.COUNT];
+        for (int r = 0; r < Resource.COUNT; r++) {
+            city[r] = Purchase.CITY.cost(r);
+            settlement[r] = Purchase.SETTLEMENT.cost(r) + 2 * Purchase.ROAD.cost(r);
+        }
+        for (int k = 0; k < missing; k++) {
+            plan.add(k < upgrades ? city : settlement);
+        }
+        return plan;
+    }
+
+    /**
+     * Returns true if an outcome has the given amounts.
+     *
+     * @param amounts  the outcomes
+     * @param o  the outcome
+     * @param income  the amounts
+     *
+     * @return whether they match
+     */
+    private static boolean same(int[] amounts, int o, int[] income) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if (amounts[o * Resource.COUNT + r] != income[r]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A player waiting for some amounts of resources. A state holds, for each resource, a
+     * digit that is the number still missing plus the trade rate minus one, or, once none
+     * are missing, the rate minus one minus the number spare; a spare pile big enough to
+     * trade is always traded at once, so the digits stay below the radix. States number the
+     * digits in mixed radix, the first resource lowest, and every state with nothing missing
+     * is the same as state 0.
+     */
+    private static final class Wait {
+        /** The seat. */
+        final int player;
+
+        /** The resources that trades bring in, the one the player earns least of first. */
+        final int[] priority;
+
+        /** The player's trade rate for each resource. */
+        final int[] rate = new int[Resource.COUNT];
+
+        /** The number of values of each digit. */
+        final int[] radix = new int[Resource.COUNT];
+
+        /** The number of states. */
+        int states;
+
+        /** The state the wait starts in. */
+        int start;
+
+        /** The cache key, from the seat and the starting shortfall and spares. */
+        long key;
+
+        /** The next state at state * outcomes + outcome, once worked out. */
+        int[] next;
+
+        /** Whether nothing is missing in each state, once worked out. */
+        boolean[] finished;
+
+        /**
+         * Creates a wait.
+         *
+         * @param player  the seat
+         * @param priority  the order resources are traded for in
+         */
+        Wait(int player, int[] priority) {
+            this.player = player;
+            this.priority = priority;
+        }
+
+        /**
+         * Trades spare resources with the bank for missing ones while both are left.
+         *
+         * @param need  how many of each resource are missing, updated
+         * @param spare  how many of each resource are spare, updated
+         *
+         * @return true if nothing is missing afterwards
+         */
+        boolean trade(int[] need, int[] spare) {
+            boolean done = true;
+            for (int target : priority) {
+                for (int r = 0; r < Resource.COUNT && need[target] > 0; r++) {
+                    int trades = Math.min(spare[r] / rate[r], need[target]);
+                    spare[r] -= trades * rate[r];
+                    need[target] -= trades;
+                }
+                done &= need[target] == 0;
+            }
+            return done;
+        }
+
+        /**
+         * Returns the state of a shortfall that isn't made up, after trading.
+         *
+         * @param need  how many of each resource are missing
+         * @param spare  how many of each resource are spare
+         *
+         * @return the state
+         */
+        int index(int[] need, int[] spare) {
+            int state = 0;
+            for (int r = Resource.COUNT - 1; r >= 0; r--) {
+                int digit = need[r] > 0 ? need[r] + rate[r] - 1 : rate[r] - 1 - spare[r];
+                state = state * radix[r] + digit;
+            }
+            return state;
+        }
+    }
+
+    /** The most distinct outcomes a roll can have, one per sum. */
+    public static final int MAX_OUTCOMES = 11;
+
+    /** The number of dice sums, 2 to 12. */
+    private static final int ROLLS = 11;
+
+    /** The most of one resource a wait can be worked out for. */
+    private static final int MAX_SHORTFALL = 255;
+
+    /** How close to certain staying put has to be to count as never getting anywhere. */
+    private static final double EPSILON = 1e-12;
+}
@@ -0,0 +1,172 @@
+package src.main.ai;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import src.main.model.ActionSpace;
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.TurnPhase;
+
+/**
+ * The best places for an opening settlement on boards that have been studied in advance,
+ * read from a file that OpeningBookBuilder writes. Boards are looked up by the fingerprint
+ * of their canonical form under BoardSymmetry, so one entry covers every rotation and
+ * reflection of a board, and the places are stored as vertices of the canonical board and
+ * moved back onto the board asked about.
+ *
+ * The file is memory-mapped and never read into the heap. It has a header, the sorted
+ * fingerprints, and then a fixed number of vertices per entry, best first and padded with
+ * -1, so a lookup is a binary search over the fingerprints. Lookups don't change anything,
+ * so threads can share a book.
+ */
+public class OpeningBook {
+    /** What the book's boards look like. */
+    private final BoardSymmetry symmetry;
+
+    /** The file, mapped. */
+    private final MappedByteBuffer data;
+
+    /** The number of entries. */
+    private final int entries;
+
+    /** The number of vertices kept per entry. */
+    private final int width;
+
+    /**
+     * Opens a book.
+     *
+     * @param file  the file
+     * @param layout  the layout the book was built for
+     *
+     * @throws IOException if the file can't be read
+     */
+    public OpeningBook(Path file, BoardLayout layout) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not an opening book");
+        }
+        if (data.getInt(4) != layout.validCount() || data.getInt(8) != layout.vertexCount()) {
+            throw new IllegalArgumentException("the book was built for another layout");
+        }
+        this.symmetry = new BoardSymmetry(layout);
+        this.width = data.getInt(12);
+        this.entries = data.getInt(16);
+        if ((long) HEADER_BYTES + (long) entries * (Long.BYTES + width * Short.BYTES)
+                != data.capacity()) {
+            throw new IllegalArgumentException("the book is truncated");
+        }
+    }
+
+    /**
+     * Returns the number of boards in the book.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Returns the most places the book keeps for a board.
+     *
+     * @return the number of vertices per entry
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Looks up the best places for an opening settlement on a board.
+     *
+     * @param board  the board
+     * @param out  where the vertices go, best first, with room for width() of them
+     *
+     * @return the number of vertices written, 0 if the board isn't in the book
+     */
+    public int placements(CatanBoard board, int[] out) {
+        byte[] description = new byte[symmetry.descriptionLength()];
+        byte[] canonical = new byte[description.length];
+        symmetry.describe(board, description);
+        int g = symmetry.canonicalize(description, canonical);
+        int entry = find(BoardSymmetry.fingerprint(canonical));
+        if (entry == -1) {
+            return 0;
+        }
+        int base = HEADER_BYTES + entries * Long.BYTES + entry * width * Short.BYTES;
+        int n = 0;
+        for (int k = 0; k < width; k++) {
+            int vertex = data.getShort(base + k * Short.BYTES);
+            if (vertex == -1) {
+                break;
+            }
+            out[n++] = symmetry.unmapVertex(g, vertex);
+        }
+        return n;
+    }
+
+    /**
+     * Picks an opening settlement for the player to act, the best place in the book that's
+     * still open. The places are ranked for the first settlement on an empty board, and the
+     * ranking is used as it is for the later opening settlements too.
+     *
+     * @param game  the game, waiting for an opening settlement
+     *
+     * @return the action that builds it, or -1 if it isn't time for an opening settlement,
+     *         the board isn't in the book, or every place in the book is taken
+     */
+    public int bestSettlement(CatanGame game) {
+        if (game.phase() != TurnPhase.INITIAL_SETTLEMENT) {
+            return -1;
+        }
+        int[] places = new int[width];
+        int n = placements(game.board(), places);
+        ActionSpace space = game.actionSpace();
+        for (int k = 0; k < n; k++) {
+            int action = space.action(ActionSpace.Type.SETTLEMENT, places[k]);
+            if (game.isLegal(action)) {
+                return action;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds an entry by binary search.
+     *
+     * @param fingerprint  the fingerprint
+     *
+     * @return the entry, or -1
+     */
+    private int find(long fingerprint) {
+        int lo = 0;
+        int hi = entries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long key = data.getLong(HEADER_BYTES + mid * Long.BYTES);
+            if (key < fingerprint) {
+                lo = mid + 1;
+            } else if (key > fingerprint) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** The first four bytes of a book. */
+    static final int MAGIC = 0x4f50454e;
+
+    /**
+     * The bytes before the fingerprints: the magic, the layout's hex and vertex counts, the
+     * vertices per entry, the number of entries and padding.
+     */
+    static final int HEADER_BYTES = 24;
+}
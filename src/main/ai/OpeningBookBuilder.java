@@ -0,0 +1,273 @@
+package src.main.ai;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import src.main.model.ActionSpace;
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.DevelopmentCard;
+import src.main.model.TurnPhase;
+
+/**
+ * Writes an opening book by playing games out, meant to run offline as a batch job. Each
+ * seed deals a board, and boards that are rotations or reflections of one already seen are
+ * skipped. For each board, the places with the most pips are tried as the first player's
+ * first settlement, each in a number of games the bot plays out for every seat with its own
+ * dice, and the places are ranked by how often the first player wins, then by their points.
+ * The dice have random numbers of their own, apart from the ones the bot and the deck
+ * shuffle use, so every place is played with the same dice sequences however differently
+ * the bot plays, and the comparison between places isn't swamped by luck.
+ *
+ * The boards are shared out among worker threads, each with a CatanGame of its own. Which
+ * seed stands for a board doesn't depend on the threads, and neither does its ranking, so
+ * the same seeds always give the same book.
+ */
+public class OpeningBookBuilder {
+    /** What the boards look like. */
+    private final BoardSymmetry symmetry;
+
+    /** The number of seats. */
+    private final int numPlayers;
+
+    /** The bot that plays the games out. */
+    private final BotPolicy policy;
+
+    /** The number of games played for each place tried. */
+    private final int playouts;
+
+    /** The number of threads playing games. */
+    private final int threads;
+
+    /**
+     * Creates a builder.
+     *
+     * @param layout  the layout of the boards
+     * @param numPlayers  the number of seats
+     * @param policy  the bot that plays the games out, shared by the threads
+     * @param playouts  the number of games played for each place tried
+     * @param threads  the number of threads playing games
+     */
+    public OpeningBookBuilder(BoardLayout layout, int numPlayers, BotPolicy policy,
+                              int playouts, int threads) {
+        if (numPlayers < CatanGame.MIN_PLAYERS || numPlayers > CatanGame.MAX_PLAYERS
+                || playouts < 1 || threads < 1) {
+            throw new IllegalArgumentException("bad opening book settings");
+        }
+        this.symmetry = new BoardSymmetry(layout);
+        this.numPlayers = numPlayers;
+        this.policy = policy;
+        this.playouts = playouts;
+        this.threads = threads;
+    }
+
+    /**
+     * Studies the board of each seed and writes the book, replacing the file.
+     *
+     * @param seeds  the seeds of the boards
+     * @param file  the file to write
+     *
+     * @return the number of distinct boards in the book
+     *
+     * @throws IOException if the file can't be written
+     */
+    public int build(long[] seeds, Path file) throws IOException {
+        CatanGame game = newGame();
+        byte[] description = new byte[symmetry.descriptionLength()];
+        byte[] canonical = new byte[description.length];
+        Map<Long, Integer> firstSeed = new HashMap<>();
+        for (int i = 0; i < seeds.length; i++) {
+            game.reset(seeds[i]);
+            symmetry.describe(game.board(), description);
+            symmetry.canonicalize(description, canonical);
+            firstSeed.putIfAbsent(BoardSymmetry.fingerprint(canonical), i);
+        }
+        long[] keys = new long[firstSeed.size()];
+        int[] chosen = new int[keys.length];
+        int n = 0;
+        for (Map.Entry<Long, Integer> e : firstSeed.entrySet()) {
+            keys[n] = e.getKey();
+            n += 1;
+        }
+        Arrays.sort(keys);
+        for (int k = 0; k < keys.length; k++) {
+            chosen[k] = firstSeed.get(keys[k]);
+        }
+
+        short[] places = new short[keys.length * WIDTH];
+        AtomicInteger next = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        RuntimeException[] failure = new RuntimeException[1];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    CatanGame own = newGame();
+                    for (int k = next.getAndIncrement(); k < keys.length;
+                         k = next.getAndIncrement()) {
+                        study(own, seeds[chosen[k]], keys[k], places, k * WIDTH);
+                    }
+                } catch (RuntimeException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "opening-book-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for the book", e);
+            }
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+
+        BoardLayout layout = symmetry.layout();
+        ByteBuffer out = ByteBuffer.allocate(OpeningBook.HEADER_BYTES
+                                             + keys.length * (Long.BYTES + WIDTH * Short.BYTES));
+        out.putInt(OpeningBook.MAGIC);
+        out.putInt(layout.validCount());
+        out.putInt(layout.vertexCount());
+        out.putInt(WIDTH);
+        out.putInt(keys.length);
+        out.putInt(0);
+        for (long key : keys) {
+            out.putLong(key);
+        }
+        for (short place : places) {
+            out.putShort(place);
+        }
+        out.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        return keys.length;
+    }
+
+    /**
+     * Ranks the opening places of one board and writes the best as vertices of its
+     * canonical form.
+     *
+     * @param game  the thread's game
+     * @param seed  the seed that deals the board
+     * @param key  the fingerprint of the board
+     * @param places  where the ranked vertices go
+     * @param offset  where this board's vertices start
+     */
+    private void study(CatanGame game, long seed, long key, short[] places, int offset) {
+        game.reset(seed);
+        CatanBoard board = game.board();
+        byte[] description = new byte[symmetry.descriptionLength()];
+        symmetry.describe(board, description);
+        int g = symmetry.canonicalize(description, new byte[description.length]);
+
+        int vertices = board.layout().vertexCount();
+        Integer[] byPips = new Integer[vertices];
+        for (int v = 0; v < vertices; v++) {
+            byPips[v] = v;
+        }
+        int[] pips = new int[vertices];
+        for (int v = 0; v < vertices; v++) {
+            pips[v] = board.vertexPips(v);
+        }
+        Arrays.sort(byPips, (a, b) -> pips[b] != pips[a] ? pips[b] - pips[a] : a - b);
+        int tried = Math.min(CANDIDATES, vertices);
+        double[] scores = new double[tried];
+        Random dice = new Random();
+        Random rand = new Random();
+        int[] counts = new int[DevelopmentCard.COUNT];
+        for (int c = 0; c < counts.length; c++) {
+            counts[c] = game.deckCount(DevelopmentCard.get(c));
+        }
+        ActionSpace space = game.actionSpace();
+        for (int c = 0; c < tried; c++) {
+            for (int p = 0; p < playouts; p++) {
+                dice.setSeed(key * 31 + p);
+                rand.setSeed(~(key * 31 + p));
+                game.reset(seed);
+                game.setDevDeck(counts, 0, rand);
+                if (!game.act(space.action(ActionSpace.Type.SETTLEMENT, byPips[c]))) {
+                    throw new IllegalStateException("can't open on vertex " + byPips[c]);
+                }
+                playOut(game, dice, rand);
+                int points = game.player(0).points();
+                boolean won = game.winner() != null && game.winner().index() == 0;
+                scores[c] += (won ? 1 : 0) + points / POINTS_SCALE;
+            }
+        }
+        Integer[] order = new Integer[tried];
+        for (int c = 0; c < tried; c++) {
+            order[c] = c;
+        }
+        Arrays.sort(order, (a, b) -> scores[a] != scores[b]
+                                     ? Double.compare(scores[b], scores[a]) : a - b);
+        Arrays.fill(places, offset, offset + WIDTH, (short) -1);
+        for (int k = 0; k < Math.min(WIDTH, tried); k++) {
+            places[offset + k] = (short) symmetry.mapVertex(g, byPips[order[k]]);
+        }
+    }
+
+    /**
+     * Plays a game to the end, or until it has gone on too long.
+     *
+     * @param game  the game
+     * @param dice  the source of the dice
+     * @param rand  the source of the bot's choices
+     */
+    private void playOut(CatanGame game, Random dice, Random rand) {
+        for (int actions = 0; actions < MAX_ACTIONS && game.phase() != TurnPhase.GAME_OVER;
+             actions++) {
+            if (game.phase() == TurnPhase.ROLL) {
+                game.roll(dice.nextInt(6) + dice.nextInt(6) + 2);
+            } else {
+                BotPolicy.play(policy, game, rand);
+            }
+        }
+    }
+
+    /**
+     * Creates a game with the builder's layout and seats.
+     *
+     * @return the game
+     */
+    private CatanGame newGame() {
+        return new CatanGame(0L, symmetry.layout(), Arrays.copyOf(COLORS, numPlayers));
+    }
+
+    /** The number of places kept for each board. */
+    public static final int WIDTH = 4;
+
+    /** The number of places tried on each board, those with the most pips. */
+    public static final int CANDIDATES = 10;
+
+    /** The most actions a game is played for. */
+    private static final int MAX_ACTIONS = 3000;
+
+    /** Points are divided by this to break ties between equal numbers of wins. */
+    private static final double POINTS_SCALE = 100.0;
+
+    /** The colors of the seats. */
+    private static final Color[] COLORS = {
+        Color.WHITE, Color.BLUE, Color.RED, Color.ORANGE, Color.GREEN, Color.MAGENTA
+    };
+}
@@ -0,0 +1,348 @@
+package src.main.ai;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import src.main.model.ActionSpace;
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+import src.main.model.GameCodec;
+import src.main.model.TurnPhase;
+
+/**
+ * Counts every sequence of moves to some depth from a game, the way chess engines test
+ * their move generators. The counts are exact, so they make an oracle for rule changes: a
+ * change to how roads or settlements are checked that wasn't meant to change the rules
+ * shouldn't change any count. Counting is also a benchmark for generating and making moves.
+ *
+ * A move is a legal action of the game's ActionSpace, or an outcome of the dice: the roll
+ * action is expanded into one move for each sum from 2 to 12, written as minus the sum, so
+ * each sum is a branch of its own. Everything else random in a game, like which card is
+ * stolen, comes from the game's seed and is the same whenever the same moves are made. A
+ * finished game has no moves, so sequences that end the game early aren't counted, and the
+ * last ply is counted without being made.
+ *
+ * A position is a seed, a prefix of moves from the start of that game, and a path of moves
+ * from there. CatanGame has no way to take a move back, so a task starts by resetting the
+ * game and replaying its moves, and below that each ply keeps its node encoded with
+ * GameCodec and decodes it to go back before the next sibling. Each thread keeps its own
+ * game for this, and the top of the tree is split into tasks for a fork-join pool.
+ */
+public class Perft {
+    /** The seed every game starts from. */
+    private final long seed;
+
+    /** The layout of the board. */
+    private final BoardLayout layout;
+
+    /** The colors of the seats. */
+    private final Color[] colors;
+
+    /** The moves from the start of the game to the position counted from. */
+    private final int[] prefix;
+
+    /** The longest a list of moves can be. */
+    private final int maxMoves;
+
+    /** The pool the subtrees are counted in. */
+    private final ForkJoinPool pool;
+
+    /** The game and move lists of each thread. */
+    private final ThreadLocal<Walker> walkers;
+
+    /** The number of moves made while counting. */
+    private final LongAdder made = new LongAdder();
+
+    /**
+     * Creates a counter from the start of a game, after the initial placement has begun.
+     *
+     * @param seed  the seed of the game
+     * @param layout  the layout of the board
+     * @param colors  the colors of the seats
+     * @param threads  the number of threads to count with
+     */
+    public Perft(long seed, BoardLayout layout, Color[] colors, int threads) {
+        this(seed, layout, colors, new int[0], threads);
+    }
+
+    /**
+     * Creates a counter from a position some moves into a game.
+     *
+     * @param seed  the seed of the game
+     * @param layout  the layout of the board
+     * @param colors  the colors of the seats
+     * @param prefix  the moves from the start of the game, with rolls as minus their sum
+     * @param threads  the number of threads to count with
+     */
+    public Perft(long seed, BoardLayout layout, Color[] colors, int[] prefix, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("perft needs at least one thread");
+        }
+        this.seed = seed;
+        this.layout = layout;
+        this.colors = colors.clone();
+        this.prefix = prefix.clone();
+        this.maxMoves = layout.actionSpace().size() + ROLL_OUTCOMES;
+        this.pool = new ForkJoinPool(threads);
+        this.walkers = ThreadLocal.withInitial(Walker::new);
+        CatanGame game = new CatanGame(seed, layout, this.colors);
+        for (int i = 0; i < prefix.length; i++) {
+            if (!play(game, prefix[i])) {
+                throw new IllegalArgumentException("move " + i + " of the prefix is illegal");
+            }
+        }
+    }
+
+    /**
+     * Counts the sequences of moves of some length from the position.
+     *
+     * @param depth  the number of moves in each sequence
+     *
+     * @return the number of sequences
+     */
+    public long count(int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long total = 0;
+        for (long n : divide(depth).values()) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Counts the sequences of moves of some length from the position, split up by their
+     * first move. Comparing two splits shows which move a difference is under.
+     *
+     * @param depth  the number of moves in each sequence, at least 1
+     *
+     * @return the number of sequences starting with each move, in the order generated
+     */
+    public Map<Integer, Long> divide(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("divide needs a depth of at least 1");
+        }
+        CatanGame game = walkers.get().restore(new int[0], 0);
+        int[] moves = new int[maxMoves];
+        int n = game.phase() == TurnPhase.GAME_OVER ? 0 : moves(game, moves);
+        Subtree[] tasks = new Subtree[n];
+        for (int i = 0; i < n; i++) {
+            tasks[i] = new Subtree(new int[] {moves[i]}, depth - 1);
+            pool.execute(tasks[i]);
+        }
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            counts.put(moves[i], tasks[i].join());
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of moves made so far by this counter, counting the moves on the
+     * way down the tree but not those replayed or decoded to go back to a position.
+     *
+     * @return the number of moves made
+     */
+    public long movesMade() {
+        return made.sum();
+    }
+
+    /**
+     * Stops the pool's threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Lists the moves of a game: its legal actions, with the roll replaced by the sums of
+     * the dice.
+     *
+     * @param game  the game
+     * @param out  where to write the moves, at least the size of the action space plus 10
+     *
+     * @return the number of moves
+     */
+    public static int moves(CatanGame game, int[] out) {
+        ActionSpace space = game.actionSpace();
+        int n = 0;
+        for (int a = 0; a < space.size(); a++) {
+            if (!game.isLegal(a)) {
+                continue;
+            }
+            if (space.type(a) == ActionSpace.Type.ROLL) {
+                for (int sum = 2; sum <= 12; sum++) {
+                    out[n++] = -sum;
+                }
+            } else {
+                out[n++] = a;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Makes a move in a game.
+     *
+     * @param game  the game
+     * @param move  an action, or minus the sum of a roll
+     *
+     * @return true if the move was made, false if it was illegal
+     */
+    public static boolean play(CatanGame game, int move) {
+        return move < 0 ? game.roll(-move) : game.act(move);
+    }
+
+    /**
+     * Counts the sequences under a path of moves from the position, splitting itself into a
+     * task per move near the top of the tree.
+     */
+    @SuppressWarnings("serial")
+    private final class Subtree extends RecursiveTask<Long> {
+        /** The moves from the position to the root of the subtree. */
+        private final int[] path;
+
+        /** The number of moves left to count. */
+        private final int depth;
+
+        Subtree(int[] path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (path.length >= SPLIT_PLIES || depth <= SEQUENTIAL_DEPTH) {
+                return walkers.get().count(path, depth);
+            }
+            CatanGame game = walkers.get().restore(path, path.length);
+            if (game.phase() == TurnPhase.GAME_OVER) {
+                return 0L;
+            }
+            int[] moves = new int[maxMoves];
+            int n = moves(game, moves);
+            Subtree[] children = new Subtree[n];
+            for (int i = 0; i < n; i++) {
+                int[] next = Arrays.copyOf(path, path.length + 1);
+                next[path.length] = moves[i];
+                children[i] = new Subtree(next, depth - 1);
+            }
+            ForkJoinTask.invokeAll(children);
+            long total = 0;
+            for (Subtree child : children) {
+                total += child.join();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The game a thread counts with, and a list of moves and an encoded node for each ply.
+     */
+    private final class Walker {
+        /** The game. */
+        private final CatanGame game = new CatanGame(seed, layout, colors);
+
+        /** The moves at each number of plies left. */
+        private int[][] moves = new int[0][];
+
+        /** The node at each number of plies left, encoded to go back to between siblings. */
+        private ByteBuffer[] nodes = new ByteBuffer[0];
+
+        /**
+         * Resets the game to the position and then follows a path.
+         *
+         * @param steps  the path
+         * @param length  how much of the path to follow
+         *
+         * @return the game
+         */
+        CatanGame restore(int[] steps, int length) {
+            game.reset(seed);
+            for (int move : prefix) {
+                play(game, move);
+            }
+            for (int i = 0; i < length; i++) {
+                if (!play(game, steps[i])) {
+                    throw new IllegalStateException("replaying move " + steps[i] + " failed");
+                }
+            }
+            return game;
+        }
+
+        /**
+         * Counts the sequences under a path.
+         *
+         * @param start  the path
+         * @param depth  the number of moves left to count
+         *
+         * @return the number of sequences
+         */
+        long count(int[] start, int depth) {
+            if (moves.length <= depth) {
+                moves = new int[depth + 1][maxMoves];
+                nodes = new ByteBuffer[depth + 1];
+                for (int d = 0; d <= depth; d++) {
+                    nodes[d] = ByteBuffer.allocate(GameCodec.encodedSize(layout, colors.length));
+                }
+            }
+            restore(start, start.length);
+            return search(depth);
+        }
+
+        /**
+         * Counts the sequences under the node the game is at.
+         *
+         * @param depth  the number of moves left to count
+         *
+         * @return the number of sequences
+         */
+        private long search(int depth) {
+            if (depth == 0) {
+                return 1;
+            }
+            if (game.phase() == TurnPhase.GAME_OVER) {
+                return 0;
+            }
+            int[] list = moves[depth];
+            int n = moves(game, list);
+            if (depth == 1) {
+                return n;
+            }
+            ByteBuffer node = nodes[depth];
+            node.clear();
+            GameCodec.encode(game, node);
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    node.rewind();
+                    GameCodec.decode(node, game);
+                }
+                if (!play(game, list[i])) {
+                    throw new IllegalStateException("generated move " + list[i]
+                                                    + " was rejected");
+                }
+                made.increment();
+                total += search(depth - 1);
+            }
+            return total;
+        }
+    }
+
+    /** The number of sums two dice can roll. */
+    private static final int ROLL_OUTCOMES = 11;
+
+    /** How many plies from the position are split into separate tasks. */
+    private static final int SPLIT_PLIES = 2;
+
+    /** Subtrees this shallow are counted by one thread without splitting. */
+    private static final int SEQUENTIAL_DEPTH = 2;
+}
@@ -0,0 +1,356 @@
+package src.main.ai;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+import src.main.model.GameCodec;
+import src.main.model.TurnPhase;
+
+/**
+ * Thinks about a bot's next decision while the other players are still taking their turns.
+ * From the position it's given, the ponderer plays the others forward with a model of how
+ * they play, branches on every sum of the dice, and searches each position where the bot
+ * will have to decide, the likeliest first, on threads of its own. When the bot's turn
+ * comes, a position that was searched already is answered at once, or as soon as its search
+ * ends; any other position is searched then, on the caller's thread.
+ *
+ * Positions are told apart by their encoding without the dice, so a position reached by
+ * actually rolling matches one reached by choosing the sum. Each time the game moves on and
+ * ponder is called again, the searches of positions that can still be reached are kept and
+ * the rest are cancelled, as is everything but the answer once the bot decides.
+ */
+public class Ponderer {
+    /**
+     * Picks the bot's action in a position, by the numbering of the game's ActionSpace. A
+     * search running when it's cancelled is interrupted, and its answer is thrown away.
+     */
+    public interface Search {
+        /**
+         * Picks an action for the acting player.
+         *
+         * @param game  a copy of the game, which the search may change
+         *
+         * @return a legal action
+         */
+        int decide(CatanGame game);
+    }
+
+    /** The bot's search. */
+    private final Search search;
+
+    /** How the other players are expected to play. */
+    private final BotPolicy model;
+
+    /** The most positions pondered at once. */
+    private final int maxPositions;
+
+    /** The threads that ponder. */
+    private final ExecutorService pool;
+
+    /** The searches of the positions being pondered, by position. */
+    private Map<ByteBuffer, Future<Integer>> pondering = new HashMap<>();
+
+    /** The decisions answered by pondering. */
+    private int hits;
+
+    /** The decisions that had to be searched when asked for. */
+    private int misses;
+
+    /**
+     * Creates a ponderer.
+     *
+     * @param search  the bot's search
+     * @param model  how the other players are expected to play
+     * @param threads  the number of threads to ponder on
+     * @param maxPositions  the most positions pondered at once
+     */
+    public Ponderer(Search search, BotPolicy model, int threads, int maxPositions) {
+        if (threads < 1 || maxPositions < 1) {
+            throw new IllegalArgumentException("a ponderer needs a thread and a position");
+        }
+        this.search = search;
+        this.model = model;
+        this.maxPositions = maxPositions;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ponderer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts pondering the positions where a seat will next have to decide, from a game as
+     * it stands, keeping the searches already under way for positions that can still be
+     * reached and cancelling the others. The game isn't changed.
+     *
+     * @param game  the game
+     * @param seat  the bot's seat
+     */
+    public void ponder(CatanGame game, int seat) {
+        List<ByteBuffer> positions = predict(game, seat);
+        BoardLayout layout = game.board().layout();
+        Color[] colors = colors(game);
+        synchronized (this) {
+            Map<ByteBuffer, Future<Integer>> next = new HashMap<>();
+            for (ByteBuffer position : positions) {
+                Future<Integer> task = pondering.remove(position);
+                if (task == null || task.isCancelled()) {
+                    task = pool.submit(() -> search.decide(copy(position, layout, colors)));
+                }
+                next.put(position, task);
+            }
+            cancel(pondering);
+            pondering = next;
+        }
+    }
+
+    /**
+     * Picks the acting player's action in a game, with the answer pondered for its position
+     * if there is one and the search otherwise. Every other position being pondered is
+     * cancelled.
+     *
+     * @param game  the game, which isn't changed
+     *
+     * @return the action
+     *
+     * @throws IllegalStateException if interrupted waiting for a pondered answer
+     */
+    public int decide(CatanGame game) {
+        ByteBuffer position = position(game);
+        Future<Integer> task;
+        synchronized (this) {
+            task = pondering.remove(position);
+            cancel(pondering);
+            pondering = new HashMap<>();
+        }
+        if (task != null) {
+            try {
+                int action = task.get();
+                synchronized (this) {
+                    hits += 1;
+                }
+                return action;
+            } catch (CancellationException | ExecutionException e) {
+                // searched again below
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for a pondered answer", e);
+            }
+        }
+        synchronized (this) {
+            misses += 1;
+        }
+        return search.decide(copy(position, game.board().layout(), colors(game)));
+    }
+
+    /**
+     * Cancels everything being pondered, interrupting the searches under way.
+     */
+    public synchronized void cancel() {
+        cancel(pondering);
+        pondering = new HashMap<>();
+    }
+
+    /**
+     * Returns the number of positions being pondered or with an answer waiting.
+     *
+     * @return the positions
+     */
+    public synchronized int pending() {
+        int count = 0;
+        for (Future<Integer> task : pondering.values()) {
+            if (!task.isCancelled()) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of decisions answered by pondering.
+     *
+     * @return the hits
+     */
+    public synchronized int hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of decisions that had to be searched when asked for.
+     *
+     * @return the misses
+     */
+    public synchronized int misses() {
+        return misses;
+    }
+
+    /**
+     * Stops the threads. The ponderer can't be used afterwards.
+     */
+    public void shutdown() {
+        cancel();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Finds the positions where a seat will next have to decide, the likeliest first, up to
+     * the most that are pondered. The others are played by the model until the seat acts or
+     * the dice are due, and a roll branches into every sum.
+     *
+     * @param game  the game
+     * @param seat  the bot's seat
+     *
+     * @return the positions
+     */
+    private List<ByteBuffer> predict(CatanGame game, int seat) {
+        CatanGame scratch = new CatanGame(0L, game.board().layout(), colors(game));
+        Random rand = new Random(MODEL_SEED);
+        int size = GameCodec.encodedSize(game.board().layout(), game.numPlayers());
+        PriorityQueue<Node> queue = new PriorityQueue<>();
+        queue.add(new Node(encode(game, size), 1.0));
+        List<ByteBuffer> positions = new ArrayList<>();
+        int expanded = 0;
+        while (!queue.isEmpty() && positions.size() < maxPositions
+               && expanded < maxPositions * SUMS.length) {
+            Node node = queue.poll();
+            expanded += 1;
+            GameCodec.decode(ByteBuffer.wrap(node.state), scratch);
+            int steps = 0;
+            while (scratch.phase() != TurnPhase.GAME_OVER && scratch.phase() != TurnPhase.ROLL
+                   && scratch.actingPlayer().index() != seat && steps < MAX_STEPS) {
+                if (!scratch.act(model.act(scratch, rand))) {
+                    break;
+                }
+                steps += 1;
+            }
+            if (scratch.phase() == TurnPhase.GAME_OVER || steps == MAX_STEPS) {
+                continue;
+            }
+            if (scratch.phase() != TurnPhase.ROLL) {
+                if (scratch.actingPlayer().index() == seat) {
+                    ByteBuffer position = position(scratch);
+                    if (!positions.contains(position)) {
+                        positions.add(position);
+                    }
+                }
+                continue;
+            }
+            byte[] state = encode(scratch, size);
+            for (int sum : SUMS) {
+                GameCodec.decode(ByteBuffer.wrap(state), scratch);
+                scratch.roll(sum);
+                queue.add(new Node(encode(scratch, size),
+                                   node.probability * IncomeEngine.rollProbability(sum)));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Encodes a game, dice and all.
+     *
+     * @param game  the game
+     * @param size  the size of its encoding
+     *
+     * @return the encoding
+     */
+    private static byte[] encode(CatanGame game, int size) {
+        byte[] state = new byte[size];
+        GameCodec.encode(game, ByteBuffer.wrap(state));
+        return state;
+    }
+
+    /**
+     * Returns a game's position, its encoding without the dice.
+     *
+     * @param game  the game
+     *
+     * @return the position
+     */
+    private static ByteBuffer position(CatanGame game) {
+        byte[] state = new byte[GameCodec.encodedSize(game.board().layout(), game.numPlayers())];
+        GameCodec.encodePosition(game, ByteBuffer.wrap(state));
+        return ByteBuffer.wrap(state);
+    }
+
+    /**
+     * Makes a game in a position.
+     *
+     * @param position  the position
+     * @param layout  the game's layout
+     * @param colors  the seats' colors
+     *
+     * @return the game
+     */
+    private static CatanGame copy(ByteBuffer position, BoardLayout layout, Color[] colors) {
+        CatanGame game = new CatanGame(0L, layout, colors);
+        GameCodec.decode(position.duplicate(), game);
+        return game;
+    }
+
+    /**
+     * Returns the colors of a game's seats.
+     *
+     * @param game  the game
+     *
+     * @return the colors
+     */
+    private static Color[] colors(CatanGame game) {
+        Color[] colors = new Color[game.numPlayers()];
+        for (int p = 0; p < colors.length; p++) {
+            colors[p] = game.player(p).color();
+        }
+        return colors;
+    }
+
+    /**
+     * Cancels searches, interrupting those under way.
+     *
+     * @param tasks  the searches
+     */
+    private static void cancel(Map<ByteBuffer, Future<Integer>> tasks) {
+        for (Future<Integer> task : tasks.values()) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * A game waiting to be played forward, and the chance of reaching it.
+     */
+    private static final class Node implements Comparable<Node> {
+        final byte[] state;
+        final double probability;
+
+        Node(byte[] state, double probability) {
+            this.state = state;
+            this.probability = probability;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return Double.compare(other.probability, probability);
+        }
+    }
+
+    /** The sums of the dice, the likeliest first. */
+    private static final int[] SUMS = {7, 6, 8, 5, 9, 4, 10, 3, 11, 2, 12};
+
+    /** The most actions the others are played forward from a position. */
+    private static final int MAX_STEPS = 256;
+
+    /** The seed of the random numbers the model plays with. */
+    private static final long MODEL_SEED = 0x5eed;
+}
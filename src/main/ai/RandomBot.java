@@ -0,0 +1,26 @@
+package src.main.ai;
+
+import java.util.Random;
+
+import src.main.model.CatanGame;
+
+/**
+ * Plays a legal action chosen uniformly at random, as a baseline for other bots.
+ */
+public class RandomBot implements BotPolicy {
+    @Override
+    public int act(CatanGame game, Random rand) {
+        int size = game.actionSpace().size();
+        int chosen = -1;
+        int seen = 0;
+        for (int a = 0; a < size; a++) {
+            if (game.isLegal(a)) {
+                seen += 1;
+                if (rand.nextInt(seen) == 0) {
+                    chosen = a;
+                }
+            }
+        }
+        return chosen;
+    }
+}
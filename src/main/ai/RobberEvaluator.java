@@ -0,0 +1,153 @@
+package src.main.ai;
+
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.Player;
+
+/**
+ * Chooses where to move the robber. The board keeps each valid hex's pips and each player's
+ * production weight on it up to date as pieces are built, so scoring every candidate is a
+ * scan over a few primitive entries per hex instead of walking tiles and buildings.
+ *
+ * A hex scores the production it blocks from opponents, minus the production it blocks from
+ * the player moving the robber, plus a bonus if there is an opponent on it with cards to
+ * steal. Production is measured in pips (ways out of 36) times settlements and cities.
+ */
+public class RobberEvaluator {
+    /** How much blocking a pip of opponent production is worth. */
+    private final int opponentWeight;
+
+    /** How much blocking a pip of the mover's own production costs. */
+    private final int selfWeight;
+
+    /** How much being able to steal a card is worth. */
+    private final int stealWeight;
+
+    /**
+     * Creates an evaluator with the default weights.
+     */
+    public RobberEvaluator() {
+        this(DEFAULT_OPPONENT_WEIGHT, DEFAULT_SELF_WEIGHT, DEFAULT_STEAL_WEIGHT);
+    }
+
+    /**
+     * Creates an evaluator with custom weights.
+     *
+     * @param opponentWeight  the value of blocking a pip of opponent production
+     * @param selfWeight  the cost of blocking a pip of the mover's own production
+     * @param stealWeight  the value of having a card to steal
+     */
+    public RobberEvaluator(int opponentWeight, int selfWeight, int stealWeight) {
+        this.opponentWeight = opponentWeight;
+        this.selfWeight = selfWeight;
+        this.stealWeight = stealWeight;
+    }
+
+    /**
+     * Scores moving the robber onto a hex.
+     *
+     * @param game  the game
+     * @param mover  the player moving the robber
+     * @param hex  the index of a valid hex
+     *
+     * @return the score, higher is better for the mover
+     */
+    public int score(CatanGame game, Player mover, int hex) {
+        CatanBoard board = game.board();
+        int pips = board.pips(hex);
+        int score = 0;
+        boolean canSteal = false;
+        for (int p = 0; p < game.numPlayers(); p++) {
+            int production = board.production(hex, p);
+            if (production == 0) {
+                continue;
+            }
+            if (p == mover.index()) {
+                score -= pips * production * selfWeight;
+            } else {
+                score += pips * production * opponentWeight;
+                canSteal |= game.player(p).resHandSize() > 0;
+            }
+        }
+        return canSteal ? score + stealWeight : score;
+    }
+
+    /**
+     * Finds the best hex to move the robber onto. The hex the robber is already on is never
+     * chosen, since the robber has to move.
+     *
+     * @param game  the game
+     * @param mover  the player moving the robber
+     *
+     * @return the index of the best hex
+     */
+    public int bestHex(CatanGame game, Player mover) {
+        CatanBoard board = game.board();
+        int current = board.robberHex();
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int hex = 0; hex < board.layout().validCount(); hex++) {
+            if (hex == current) {
+                continue;
+            }
+            int score = score(game, mover, hex);
+            if (score > bestScore) {
+                best = hex;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Picks who to steal from on a hex: the opponent with the most cards, breaking ties by
+     * their production there.
+     *
+     * @param game  the game
+     * @param mover  the player moving the robber
+     * @param hex  the index of a valid hex
+     *
+     * @return the player to steal from, or null if no opponent is on the hex
+     */
+    public Player victim(CatanGame game, Player mover, int hex) {
+        CatanBoard board = game.board();
+        Player victim = null;
+        int bestCards = -1;
+        int bestProduction = 0;
+        for (int p = 0; p < game.numPlayers(); p++) {
+            int production = board.production(hex, p);
+            if (p == mover.index() || production == 0) {
+                continue;
+            }
+            int cards = game.player(p).resHandSize();
+            if (cards > bestCards || (cards == bestCards && production > bestProduction)) {
+                victim = game.player(p);
+                bestCards = cards;
+                bestProduction = production;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Moves the robber to the best hex and steals from the best victim there.
+     *
+     * @param game  the game
+     * @param mover  the player moving the robber
+     *
+     * @return true if the robber was moved
+     */
+    public boolean moveRobber(CatanGame game, Player mover) {
+        int hex = bestHex(game, mover);
+        return hex >= 0 && game.moveRobber(hex, mover, victim(game, mover, hex));
+    }
+
+    /** The default value of blocking a pip of opponent production. */
+    public static final int DEFAULT_OPPONENT_WEIGHT = 4;
+
+    /** The default cost of blocking a pip of the mover's own production. */
+    public static final int DEFAULT_SELF_WEIGHT = 6;
+
+    /** The default value of having a card to steal, about one and a half pips. */
+    public static final int DEFAULT_STEAL_WEIGHT = 6;
+}
@@ -0,0 +1,157 @@
+package src.main.ai;
+
+import java.util.Random;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.DevelopmentCard;
+import src.main.model.Harbor;
+import src.main.model.HexPiece;
+import src.main.model.Resource;
+
+/**
+ * The parts of a board that don't change during a search, flattened into primitive tables:
+ * the layout, what each hex produces, the harbor on each vertex, and the random keys used to
+ * hash search states. Built once per solve and shared by every search thread.
+ */
+final class SearchBoard {
+    /** The layout of the board. */
+    final BoardLayout layout;
+
+    /** The number of seats in the game. */
+    final int numPlayers;
+
+    /** The resource ordinal each valid hex produces, or -1 for a desert. */
+    final int[] hexResource;
+
+    /** The pips of each valid hex. */
+    final int[] hexPips;
+
+    /** The valid hexes that produce on each dice sum from 0 to 12. */
+    final int[][] hexesForSum;
+
+    /** The harbor ordinal on each vertex, or -1 if there isn't one. */
+    final int[] vertexHarbor;
+
+    /** Keys for a settlement or city of each player on each vertex. */
+    final long[] vertexKeys;
+
+    /** Keys for a road of each player on each edge. */
+    final long[] edgeKeys;
+
+    /** Keys for each count of each resource in each player's hand. */
+    final long[] handKeys;
+
+    /** Keys for each point total of each player. */
+    final long[] pointKeys;
+
+    /** Keys for each count of each unseen development card. */
+    final long[] deckKeys;
+
+    /** Keys for the robber on each hex. */
+    final long[] robberKeys;
+
+    /** Keys for whose turn it is. */
+    final long[] playerKeys;
+
+    /** The key for a state waiting on the dice. */
+    final long rollKey;
+
+    /** Keys for each number of knights each player holds and can play. */
+    final long[] knightKeys;
+
+    /** Keys for each number of knights the current player bought this turn. */
+    final long[] newKnightKeys;
+
+    /** Keys for each number of knights each player has played. */
+    final long[] armyKeys;
+
+    /** Keys for who holds the Longest Road award, by seat plus one so no one is 0. */
+    final long[] roadHolderKeys;
+
+    /** Keys for who holds the Largest Army award, by seat plus one so no one is 0. */
+    final long[] armyHolderKeys;
+
+    /** The key for a current player who has played a development card this turn. */
+    final long playedDevKey;
+
+    /**
+     * Flattens a game's board.
+     *
+     * @param game  the game
+     */
+    SearchBoard(CatanGame game) {
+        CatanBoard board = game.board();
+        this.layout = board.layout();
+        this.numPlayers = game.numPlayers();
+        int hexes = layout.validCount();
+        this.hexResource = new int[hexes];
+        this.hexPips = new int[hexes];
+        for (int h = 0; h < hexes; h++) {
+            HexPiece tile = board.hex(h);
+            hexResource[h] = tile.resource() == null ? -1 : tile.resource().ordinal();
+            hexPips[h] = board.pips(h);
+        }
+        this.hexesForSum = new int[13][];
+        for (int sum = 0; sum <= 12; sum++) {
+            hexesForSum[sum] = board.hexesForRoll(layout.rollFor(sum));
+        }
+        this.vertexHarbor = new int[layout.vertexCount()];
+        for (int v = 0; v < vertexHarbor.length; v++) {
+            Harbor harbor = board.harbor(v);
+            vertexHarbor[v] = harbor == null ? -1 : harbor.ordinal();
+        }
+
+        Random keys = new Random(KEY_SEED);
+        this.vertexKeys = randomKeys(keys, layout.vertexCount() * numPlayers * 2);
+        this.edgeKeys = randomKeys(keys, layout.edgeCount() * numPlayers);
+        this.handKeys = randomKeys(keys, numPlayers * Resource.COUNT * (MAX_KEYED_COUNT + 1));
+        this.pointKeys = randomKeys(keys, numPlayers * (MAX_KEYED_COUNT + 1));
+        this.deckKeys = randomKeys(keys, DevelopmentCard.COUNT * (layout.devDeckSize() + 1));
+        this.robberKeys = randomKeys(keys, hexes);
+        this.playerKeys = randomKeys(keys, numPlayers);
+        this.rollKey = keys.nextLong();
+        this.knightKeys = randomKeys(keys, numPlayers * (MAX_KEYED_COUNT + 1));
+        this.newKnightKeys = randomKeys(keys, MAX_KEYED_COUNT + 1);
+        this.armyKeys = randomKeys(keys, numPlayers * (MAX_KEYED_COUNT + 1));
+        this.roadHolderKeys = randomKeys(keys, numPlayers + 1);
+        this.armyHolderKeys = randomKeys(keys, numPlayers + 1);
+        this.playedDevKey = keys.nextLong();
+    }
+
+    /**
+     * Returns the key for a count, with counts too large to key sharing the last one.
+     *
+     * @param keys  the keys
+     * @param slot  which thing is being counted
+     * @param count  the count
+     *
+     * @return the key
+     */
+    static long countKey(long[] keys, int slot, int count) {
+        return keys[slot * (MAX_KEYED_COUNT + 1) + Math.min(count, MAX_KEYED_COUNT)];
+    }
+
+    /**
+     * Fills an array with random keys.
+     *
+     * @param rand  the random number generator
+     * @param n  the number of keys
+     *
+     * @return the keys
+     */
+    private static long[] randomKeys(Random rand, int n) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = rand.nextLong();
+        }
+        return keys;
+    }
+
+    /** The largest count with its own key in a hand, point total or army. */
+    static final int MAX_KEYED_COUNT = 31;
+
+    /** Keys are the same for every solve, so states hash the same way across solves. */
+    private static final long KEY_SEED = 0x5EA4C4B0A4DL;
+}
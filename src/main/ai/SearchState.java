@@ -0,0 +1,932 @@
+package src.main.ai;
+
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.DevelopmentCard;
+import src.main.model.Harbor;
+import src.main.model.Player;
+import src.main.model.Purchase;
+import src.main.model.Resource;
+import src.main.model.ScoreKeeper;
+
+/**
+ * A game state stripped down to primitive arrays so that a search can copy it and make a
+ * move in a few array copies. Searches keep a stack of these, one per ply, and copy the
+ * parent into the child before making each move, so nothing is ever undone.
+ *
+ * The rules follow CatanGame for building, buying and trading. Where the game leaves a
+ * choice to a player that the search doesn't branch on, the state makes it the way a
+ * reasonable player would: on a 7 or a knight the robber goes to the hex that hurts their
+ * opponents most, without stealing. Knights are played, at most one development card a turn
+ * and never on the turn it was bought; other development cards besides victory points are
+ * kept but not played. The cards an opponent might draw are the cards the searching player
+ * hasn't seen, which by symmetry is exactly the distribution of the next card off the deck;
+ * the cards they already held when the search started are unknown, so none of them are
+ * counted as knights.
+ *
+ * The Longest Road and Largest Army awards move by the rules of ScoreKeeper, carrying their
+ * points with them: a road can lengthen its builder's longest road, a settlement can cut an
+ * opponent's, and a knight grows its player's army.
+ *
+ * The state keeps a Zobrist hash up to date as it changes, for the transposition table.
+ */
+final class SearchState {
+    /** The board the state is on. */
+    private final SearchBoard board;
+
+    /** The number of seats in the game. */
+    private final int numPlayers;
+
+    /** The owner of each vertex, or -1. */
+    private final int[] vertexOwner;
+
+    /** The level of each vertex: EMPTY, SETTLEMENT or CITY. */
+    private final int[] vertexLevel;
+
+    /** The owner of each edge, or -1. */
+    private final int[] edgeOwner;
+
+    /** The resource cards each player holds, indexed by seat then resource ordinal. */
+    private final int[] hand;
+
+    /** The maritime trade cost for each player, indexed by seat then resource ordinal. */
+    private final int[] tradeCost;
+
+    /** The resource cards left in the bank. */
+    private final int[] bank;
+
+    /** The points each player has, counting victory point cards they are known to hold. */
+    private final int[] points;
+
+    /** The pieces each player has left, indexed by seat then ROAD, SETTLEMENT or CITY. */
+    private final int[] piecesLeft;
+
+    /** The development cards the searching player hasn't seen, indexed by card ordinal. */
+    private final int[] unseen;
+
+    /** The length of each player's longest road. */
+    private final int[] roadLength;
+
+    /** The knights each player has played. */
+    private final int[] army;
+
+    /** The knights each player is known to hold from before this turn. */
+    private final int[] knightsHeld;
+
+    /** The knights the current player bought this turn, which they can play next turn. */
+    private int newKnights;
+
+    /** The seat holding the Longest Road award, or -1. */
+    private int roadHolder;
+
+    /** The seat holding the Largest Army award, or -1. */
+    private int armyHolder;
+
+    /** True if the current player has played a development card this turn. */
+    private boolean playedDev;
+
+    /** The number of cards left in the deck. */
+    private int deckLeft;
+
+    /** The hex the robber is on, or -1. */
+    private int robber;
+
+    /** The seat of the player whose turn it is. */
+    private int current;
+
+    /** True if the current player hasn't rolled yet. */
+    private boolean waitingForRoll;
+
+    /** The seat of the player who has won, or -1. */
+    private int winner;
+
+    /** The Zobrist hash of the state. */
+    private long hash;
+
+    /** Scratch space for each player's score in evaluate. */
+    private final double[] scores;
+
+    /** The edges on the road being walked, scratch space for walk. */
+    private final boolean[] walked;
+
+    /**
+     * Creates an empty state for a board.
+     *
+     * @param board  the board
+     */
+    SearchState(SearchBoard board) {
+        this.board = board;
+        this.numPlayers = board.numPlayers;
+        this.vertexOwner = new int[board.layout.vertexCount()];
+        this.vertexLevel = new int[board.layout.vertexCount()];
+        this.edgeOwner = new int[board.layout.edgeCount()];
+        this.hand = new int[numPlayers * Resource.COUNT];
+        this.tradeCost = new int[numPlayers * Resource.COUNT];
+        this.bank = new int[Resource.COUNT];
+        this.points = new int[numPlayers];
+        this.piecesLeft = new int[numPlayers * PIECES];
+        this.unseen = new int[DevelopmentCard.COUNT];
+        this.roadLength = new int[numPlayers];
+        this.army = new int[numPlayers];
+        this.knightsHeld = new int[numPlayers];
+        this.scores = new double[numPlayers];
+        this.walked = new boolean[board.layout.edgeCount()];
+    }
+
+    /**
+     * Loads a game as the player to move sees it, after they have rolled.
+     *
+     * @param game  the game
+     */
+    void load(CatanGame game) {
+        CatanBoard b = game.board();
+        Player viewer = game.currentPlayer();
+        for (int v = 0; v < vertexOwner.length; v++) {
+            vertexOwner[v] = b.vertexOwner(v);
+            vertexLevel[v] = b.vertexLevel(v);
+        }
+        for (int e = 0; e < edgeOwner.length; e++) {
+            edgeOwner[e] = b.edgeOwner(e);
+        }
+        for (int r = 0; r < Resource.COUNT; r++) {
+            bank[r] = game.resourceLeft(Resource.get(r));
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            Player player = game.player(p);
+            for (int r = 0; r < Resource.COUNT; r++) {
+                hand[p * Resource.COUNT + r] = player.resourceCount(Resource.get(r));
+                tradeCost[p * Resource.COUNT + r] = player.tradeCost(Resource.get(r));
+            }
+            points[p] = player.points();
+            piecesLeft[p * PIECES + ROAD] = board.layout.maxRoads() - player.roads();
+            piecesLeft[p * PIECES + SETTLEMENT] =
+                board.layout.maxSettlements() - player.settlements();
+            piecesLeft[p * PIECES + CITY] = board.layout.maxCities() - player.cities();
+            roadLength[p] = game.longestRoad(player);
+            army[p] = player.knights();
+            knightsHeld[p] = 0;
+        }
+        knightsHeld[viewer.index()] = viewer.playableCount(DevelopmentCard.KNIGHT);
+        newKnights = viewer.devCount(DevelopmentCard.KNIGHT) - knightsHeld[viewer.index()];
+        playedDev = viewer.hasPlayedDev();
+        roadHolder = game.longestRoadOwner() == null ? -1 : game.longestRoadOwner().index();
+        armyHolder = game.longestArmyOwner() == null ? -1 : game.longestArmyOwner().index();
+        points[viewer.index()] += viewer.devCount(DevelopmentCard.VICTORY);
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            DevelopmentCard card = DevelopmentCard.get(c);
+            unseen[c] = game.deckCount(card) - viewer.devCount(card);
+            for (int p = 0; p < numPlayers; p++) {
+                unseen[c] -= game.player(p).playedCount(card);
+            }
+        }
+        deckLeft = game.devDeckSize();
+        robber = b.robberHex();
+        current = viewer.index();
+        waitingForRoll = false;
+        winner = -1;
+        for (int p = 0; p < numPlayers; p++) {
+            if (points[p] >= CatanGame.WINNING_POINTS) {
+                winner = p;
+            }
+        }
+        hash = computeHash();
+    }
+
+    /**
+     * Makes this state a copy of another state on the same board.
+     *
+     * @param other  the state to copy
+     */
+    void copyFrom(SearchState other) {
+        System.arraycopy(other.vertexOwner, 0, vertexOwner, 0, vertexOwner.length);
+        System.arraycopy(other.vertexLevel, 0, vertexLevel, 0, vertexLevel.length);
+        System.arraycopy(other.edgeOwner, 0, edgeOwner, 0, edgeOwner.length);
+        System.arraycopy(other.hand, 0, hand, 0, hand.length);
+        System.arraycopy(other.tradeCost, 0, tradeCost, 0, tradeCost.length);
+        System.arraycopy(other.bank, 0, bank, 0, bank.length);
+        System.arraycopy(other.points, 0, points, 0, points.length);
+        System.arraycopy(other.piecesLeft, 0, piecesLeft, 0, piecesLeft.length);
+        System.arraycopy(other.unseen, 0, unseen, 0, unseen.length);
+        System.arraycopy(other.roadLength, 0, roadLength, 0, roadLength.length);
+        System.arraycopy(other.army, 0, army, 0, army.length);
+        System.arraycopy(other.knightsHeld, 0, knightsHeld, 0, knightsHeld.length);
+        newKnights = other.newKnights;
+        roadHolder = other.roadHolder;
+        armyHolder = other.armyHolder;
+        playedDev = other.playedDev;
+        deckLeft = other.deckLeft;
+        robber = other.robber;
+        current = other.current;
+        waitingForRoll = other.waitingForRoll;
+        winner = other.winner;
+        hash = other.hash;
+    }
+
+    /**
+     * Returns the hash of the state.
+     *
+     * @return the hash
+     */
+    long hash() {
+        return hash;
+    }
+
+    /**
+     * Returns the seat of the player whose turn it is.
+     *
+     * @return the current seat
+     */
+    int current() {
+        return current;
+    }
+
+    /**
+     * Returns true if the current player has to roll before doing anything else.
+     *
+     * @return whether the state is waiting on the dice
+     */
+    boolean waitingForRoll() {
+        return waitingForRoll;
+    }
+
+    /**
+     * Returns the seat of the player who has won.
+     *
+     * @return the winner, or -1 if the game isn't over
+     */
+    int winner() {
+        return winner;
+    }
+
+    /**
+     * Returns the number of unseen copies of a development card.
+     *
+     * @param card  the card ordinal
+     *
+     * @return the number unseen
+     */
+    int unseen(int card) {
+        return unseen[card];
+    }
+
+    /**
+     * Writes the moves the current player can make into an array, roughly best first:
+     * cities, settlements, knights, development cards, roads, trades, and ending the turn
+     * last.
+     *
+     * @param moves  where the moves are written, at least MAX_MOVES long
+     *
+     * @return the number of moves
+     */
+    int generate(int[] moves) {
+        int me = current;
+        int base = me * Resource.COUNT;
+        int n = 0;
+        if (piecesLeft[me * PIECES + CITY] > 0 && canAfford(me, Purchase.CITY)) {
+            for (int v = 0; v < vertexOwner.length; v++) {
+                if (vertexOwner[v] == me && vertexLevel[v] == CatanBoard.SETTLEMENT) {
+                    moves[n++] = EndgameSolver.move(EndgameSolver.BUILD_CITY, v);
+                }
+            }
+        }
+        if (piecesLeft[me * PIECES + SETTLEMENT] > 0 && canAfford(me, Purchase.SETTLEMENT)) {
+            for (int v = 0; v < vertexOwner.length; v++) {
+                if (canSettle(v, me)) {
+                    moves[n++] = EndgameSolver.move(EndgameSolver.BUILD_SETTLEMENT, v);
+                }
+            }
+        }
+        if (knightsHeld[me] > 0 && !playedDev) {
+            moves[n++] = EndgameSolver.move(EndgameSolver.PLAY_KNIGHT, robberTarget());
+        }
+        if (deckLeft > 0 && canAfford(me, Purchase.DEV_CARD)) {
+            moves[n++] = EndgameSolver.move(EndgameSolver.BUY_DEV_CARD, 0);
+        }
+        if (piecesLeft[me * PIECES + ROAD] > 0 && canAfford(me, Purchase.ROAD)) {
+            for (int e = 0; e < edgeOwner.length; e++) {
+                if (canRoad(e, me)) {
+                    moves[n++] = EndgameSolver.move(EndgameSolver.BUILD_ROAD, e);
+                }
+            }
+        }
+        int affordable = affordableMask(me);
+        for (int give = 0; give < Resource.COUNT; give++) {
+            if (hand[base + give] < tradeCost[base + give]) {
+                continue;
+            }
+            for (int get = 0; get < Resource.COUNT; get++) {
+                if (get == give || bank[get] == 0) {
+                    continue;
+                }
+                hand[base + give] -= tradeCost[base + give];
+                hand[base + get] += 1;
+                boolean useful = (affordableMask(me) & ~affordable) != 0;
+                hand[base + give] += tradeCost[base + give];
+                hand[base + get] -= 1;
+                if (useful) {
+                    moves[n++] = EndgameSolver.move(EndgameSolver.TRADE,
+                                                    give * Resource.COUNT + get);
+                }
+            }
+        }
+        moves[n++] = EndgameSolver.move(EndgameSolver.END_TURN, 0);
+        return n;
+    }
+
+    /**
+     * Makes a move for the current player. Buying a development card only pays for it; the
+     * card is drawn with drawDevCard, since which card it is is up to chance.
+     *
+     * @param move  a move generated for this state
+     */
+    void play(int move) {
+        int me = current;
+        int arg = EndgameSolver.moveArg(move);
+        switch (EndgameSolver.moveType(move)) {
+            case EndgameSolver.BUILD_ROAD:
+                pay(me, Purchase.ROAD);
+                edgeOwner[arg] = me;
+                piecesLeft[me * PIECES + ROAD] -= 1;
+                hash ^= board.edgeKeys[arg * numPlayers + me];
+                roadLength[me] = Math.max(roadLength[me], longestRoad(me));
+                updateRoadHolder();
+                break;
+            case EndgameSolver.BUILD_SETTLEMENT:
+                pay(me, Purchase.SETTLEMENT);
+                vertexOwner[arg] = me;
+                vertexLevel[arg] = CatanBoard.SETTLEMENT;
+                piecesLeft[me * PIECES + SETTLEMENT] -= 1;
+                hash ^= vertexKey(arg, me, CatanBoard.SETTLEMENT);
+                if (board.vertexHarbor[arg] != -1) {
+                    useHarbor(me, Harbor.get(board.vertexHarbor[arg]));
+                }
+                addPoints(me, 1);
+                if (cutRoads(arg, me)) {
+                    updateRoadHolder();
+                }
+                break;
+            case EndgameSolver.BUILD_CITY:
+                pay(me, Purchase.CITY);
+                vertexLevel[arg] = CatanBoard.CITY;
+                piecesLeft[me * PIECES + CITY] -= 1;
+                piecesLeft[me * PIECES + SETTLEMENT] += 1;
+                hash ^= vertexKey(arg, me, CatanBoard.SETTLEMENT);
+                hash ^= vertexKey(arg, me, CatanBoard.CITY);
+                addPoints(me, 1);
+                break;
+            case EndgameSolver.BUY_DEV_CARD:
+                pay(me, Purchase.DEV_CARD);
+                break;
+            case EndgameSolver.PLAY_KNIGHT:
+                setKnightsHeld(me, knightsHeld[me] - 1);
+                playedDev = true;
+                hash ^= board.playedDevKey;
+                moveRobber(arg);
+                hash ^= SearchBoard.countKey(board.armyKeys, me, army[me]);
+                army[me] += 1;
+                hash ^= SearchBoard.countKey(board.armyKeys, me, army[me]);
+                int holder = ScoreKeeper.largestArmy(army, armyHolder);
+                if (holder != armyHolder) {
+                    hash ^= board.armyHolderKeys[armyHolder + 1];
+                    hash ^= board.armyHolderKeys[holder + 1];
+                    moveAward(armyHolder, holder);
+                    armyHolder = holder;
+                }
+                break;
+            case EndgameSolver.TRADE:
+                int give = arg / Resource.COUNT;
+                int get = arg % Resource.COUNT;
+                int cost = tradeCost[me * Resource.COUNT + give];
+                setHand(me, give, hand[me * Resource.COUNT + give] - cost);
+                bank[give] += cost;
+                setHand(me, get, hand[me * Resource.COUNT + get] + 1);
+                bank[get] -= 1;
+                break;
+            default:
+                if (playedDev) {
+                    playedDev = false;
+                    hash ^= board.playedDevKey;
+                }
+                setKnightsHeld(current, knightsHeld[current] + newKnights);
+                setNewKnights(0);
+                hash ^= board.playerKeys[current];
+                current = (current + 1) % numPlayers;
+                hash ^= board.playerKeys[current];
+                waitingForRoll = true;
+                hash ^= board.rollKey;
+                break;
+        }
+    }
+
+    /**
+     * Hands the current player the development card they just paid for.
+     *
+     * @param card  the ordinal of the card drawn, which has to be unseen
+     */
+    void drawDevCard(int card) {
+        hash ^= board.deckKeys[card * (board.layout.devDeckSize() + 1) + unseen[card]];
+        unseen[card] -= 1;
+        hash ^= board.deckKeys[card * (board.layout.devDeckSize() + 1) + unseen[card]];
+        deckLeft -= 1;
+        if (card == DevelopmentCard.VICTORY.ordinal()) {
+            addPoints(current, 1);
+        } else if (card == DevelopmentCard.KNIGHT.ordinal()) {
+            setNewKnights(newKnights + 1);
+        }
+    }
+
+    /**
+     * Rolls the dice for the current player: hands out resources like CatanGame does, or on
+     * a 7 moves the robber for them.
+     *
+     * @param sum  the dice sum, from 2 to 12
+     */
+    void roll(int sum) {
+        waitingForRoll = false;
+        hash ^= board.rollKey;
+        if (sum == 7) {
+            moveRobber(robberTarget());
+            return;
+        }
+        for (int r = 0; r < Resource.COUNT; r++) {
+            int total = 0;
+            for (int h : board.hexesForSum[sum]) {
+                if (h != robber && board.hexResource[h] == r) {
+                    total += collectors(h, -1);
+                }
+            }
+            if (total == 0 || total > bank[r]) {
+                continue;
+            }
+            bank[r] -= total;
+            for (int h : board.hexesForSum[sum]) {
+                if (h == robber || board.hexResource[h] != r) {
+                    continue;
+                }
+                for (int corner = 0; corner < 6; corner++) {
+                    int v = board.layout.vertexOf(h, corner);
+                    if (v != -1 && vertexOwner[v] != -1) {
+                        int owner = vertexOwner[v];
+                        setHand(owner, r, hand[owner * Resource.COUNT + r] + vertexLevel[v]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores the state for a player without searching, from -1 to 1 but always short of a
+     * win or loss: their points and income against the best of their opponents.
+     *
+     * @param root  the seat of the player the score is for
+     *
+     * @return the score
+     */
+    double evaluate(int root) {
+        for (int p = 0; p < numPlayers; p++) {
+            int cards = 0;
+            for (int r = 0; r < Resource.COUNT; r++) {
+                cards += hand[p * Resource.COUNT + r];
+            }
+            scores[p] = points[p] + Math.min(cards, CARD_LIMIT) * CARD_WEIGHT;
+        }
+        for (int v = 0; v < vertexOwner.length; v++) {
+            if (vertexOwner[v] == -1) {
+                continue;
+            }
+            int pips = 0;
+            for (int k = 0; k < 3; k++) {
+                int h = board.layout.vertexHex(v, k);
+                if (board.layout.isValid(h) && h != robber) {
+                    pips += board.hexPips[h];
+                }
+            }
+            scores[vertexOwner[v]] += pips * vertexLevel[v] * INCOME_WEIGHT;
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < numPlayers; p++) {
+            if (p != root) {
+                best = Math.max(best, scores[p]);
+            }
+        }
+        double diff = (scores[root] - best) / CatanGame.WINNING_POINTS;
+        return Math.max(-EVAL_LIMIT, Math.min(EVAL_LIMIT, diff));
+    }
+
+    /**
+     * Finds the hex where the robber blocks the most opponent pips for the fewest of the
+     * current player's own.
+     *
+     * @return the hex
+     */
+    private int robberTarget() {
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int h = 0; h < board.hexPips.length; h++) {
+            if (h == robber) {
+                continue;
+            }
+            int score = board.hexPips[h] * collectors(h, current);
+            if (score > bestScore) {
+                best = h;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Moves the robber onto a hex.
+     *
+     * @param h  the hex
+     */
+    private void moveRobber(int h) {
+        if (robber != -1) {
+            hash ^= board.robberKeys[robber];
+        }
+        robber = h;
+        hash ^= board.robberKeys[robber];
+    }
+
+    /**
+     * Adds up what the buildings around a hex collect from it. With a seat given, that
+     * seat's buildings count against the total instead.
+     *
+     * @param h  the hex
+     * @param self  the seat whose buildings count negatively, or -1
+     *
+     * @return the total production weight
+     */
+    private int collectors(int h, int self) {
+        int total = 0;
+        for (int corner = 0; corner < 6; corner++) {
+            int v = board.layout.vertexOf(h, corner);
+            if (v == -1 || vertexOwner[v] == -1) {
+                continue;
+            }
+            total += vertexOwner[v] == self ? -vertexLevel[v] : vertexLevel[v];
+        }
+        return total;
+    }
+
+    /**
+     * Follows CatanBoard.canBuildSettlement, outside of the initial placement.
+     *
+     * @param v  the vertex
+     * @param me  the seat of the player
+     *
+     * @return whether the player can settle there
+     */
+    private boolean canSettle(int v, int me) {
+        if (vertexOwner[v] != -1) {
+            return false;
+        }
+        boolean connected = false;
+        for (int k = 0; k < 3; k++) {
+            int neighbor = board.layout.vertexNeighbor(v, k);
+            if (neighbor != -1 && vertexOwner[neighbor] != -1) {
+                return false;
+            }
+            int edge = board.layout.vertexEdge(v, k);
+            if (edge != -1 && edgeOwner[edge] == me) {
+                connected = true;
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * Follows CatanBoard.canBuildRoad.
+     *
+     * @param e  the edge
+     * @param me  the seat of the player
+     *
+     * @return whether the player can build a road there
+     */
+    private boolean canRoad(int e, int me) {
+        if (edgeOwner[e] != -1) {
+            return false;
+        }
+        for (int k = 0; k < 2; k++) {
+            int v = board.layout.edgeVertex(e, k);
+            if (vertexOwner[v] == me) {
+                return true;
+            }
+            if (vertexOwner[v] != -1) {
+                continue;
+            }
+            for (int j = 0; j < 3; j++) {
+                int other = board.layout.vertexEdge(v, j);
+                if (other != -1 && other != e && edgeOwner[other] == me) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if a player's hand covers a purchase.
+     *
+     * @param p  the seat
+     * @param purchase  the purchase
+     *
+     * @return whether they can afford it
+     */
+    private boolean canAfford(int p, Purchase purchase) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if (hand[p * Resource.COUNT + r] < purchase.cost(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns which purchases a player's hand covers, as a bit for each Purchase ordinal.
+     *
+     * @param p  the seat
+     *
+     * @return the mask of affordable purchases
+     */
+    private int affordableMask(int p) {
+        int mask = 0;
+        for (int i = 0; i < PURCHASES.length; i++) {
+            if (canAfford(p, PURCHASES[i])) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Moves the cost of a purchase from a player's hand into the bank.
+     *
+     * @param p  the seat
+     * @param purchase  the purchase
+     */
+    private void pay(int p, Purchase purchase) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            int cost = purchase.cost(r);
+            if (cost > 0) {
+                setHand(p, r, hand[p * Resource.COUNT + r] - cost);
+                bank[r] += cost;
+            }
+        }
+    }
+
+    /**
+     * Lowers a player's trade costs for a harbor, like Player.useHarbor.
+     *
+     * @param p  the seat
+     * @param harbor  the harbor
+     */
+    private void useHarbor(int p, Harbor harbor) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if (harbor.resource() == null || harbor.resource().ordinal() == r) {
+                int i = p * Resource.COUNT + r;
+                tradeCost[i] = Math.min(tradeCost[i], harbor.rate());
+            }
+        }
+    }
+
+    /**
+     * Sets how many of a resource a player holds, keeping the hash up to date.
+     *
+     * @param p  the seat
+     * @param r  the resource ordinal
+     * @param count  the new count
+     */
+    private void setHand(int p, int r, int count) {
+        int slot = p * Resource.COUNT + r;
+        hash ^= SearchBoard.countKey(board.handKeys, slot, hand[slot]);
+        hand[slot] = count;
+        hash ^= SearchBoard.countKey(board.handKeys, slot, count);
+    }
+
+    /**
+     * Adds points to a player, keeping the hash up to date and checking for a win.
+     *
+     * @param p  the seat
+     * @param n  the points to add
+     */
+    private void addPoints(int p, int n) {
+        hash ^= SearchBoard.countKey(board.pointKeys, p, points[p]);
+        points[p] += n;
+        hash ^= SearchBoard.countKey(board.pointKeys, p, points[p]);
+        if (points[p] >= CatanGame.WINNING_POINTS && winner == -1) {
+            winner = p;
+        }
+    }
+
+    /**
+     * Sets how many knights a player holds, keeping the hash up to date.
+     *
+     * @param p  the seat
+     * @param count  the new count
+     */
+    private void setKnightsHeld(int p, int count) {
+        hash ^= SearchBoard.countKey(board.knightKeys, p, knightsHeld[p]);
+        knightsHeld[p] = count;
+        hash ^= SearchBoard.countKey(board.knightKeys, p, count);
+    }
+
+    /**
+     * Sets how many knights the current player bought this turn, keeping the hash up to
+     * date.
+     *
+     * @param count  the new count
+     */
+    private void setNewKnights(int count) {
+        hash ^= SearchBoard.countKey(board.newKnightKeys, 0, newKnights);
+        newKnights = count;
+        hash ^= SearchBoard.countKey(board.newKnightKeys, 0, count);
+    }
+
+    /**
+     * Moves an award's points from one player to another.
+     *
+     * @param from  the seat losing it, or -1
+     * @param to  the seat getting it, or -1
+     */
+    private void moveAward(int from, int to) {
+        if (from != -1) {
+            addPoints(from, -CatanGame.AWARD_POINTS);
+        }
+        if (to != -1) {
+            addPoints(to, CatanGame.AWARD_POINTS);
+        }
+    }
+
+    /**
+     * Hands the Longest Road award to whoever should have it after a road length changed.
+     */
+    private void updateRoadHolder() {
+        int holder = ScoreKeeper.longestRoad(roadLength, roadHolder);
+        if (holder != roadHolder) {
+            hash ^= board.roadHolderKeys[roadHolder + 1];
+            hash ^= board.roadHolderKeys[holder + 1];
+            moveAward(roadHolder, holder);
+            roadHolder = holder;
+        }
+    }
+
+    /**
+     * Counts again the roads of the opponents that a new settlement cuts, those with two
+     * or more roads meeting at its vertex, like ScoreKeeper.settlementBuilt.
+     *
+     * @param v  the vertex
+     * @param me  the seat that built it
+     *
+     * @return true if any road was counted again
+     */
+    private boolean cutRoads(int v, int me) {
+        boolean cut = false;
+        for (int p = 0; p < numPlayers; p++) {
+            if (p == me) {
+                continue;
+            }
+            int meeting = 0;
+            for (int k = 0; k < 3; k++) {
+                int edge = board.layout.vertexEdge(v, k);
+                if (edge != -1 && edgeOwner[edge] == p) {
+                    meeting += 1;
+                }
+            }
+            if (meeting >= 2) {
+                roadLength[p] = longestRoad(p);
+                cut = true;
+            }
+        }
+        return cut;
+    }
+
+    /**
+     * Finds the length of a player's longest road by walking it from both ends of each of
+     * their roads, like ScoreKeeper does.
+     *
+     * @param p  the seat
+     *
+     * @return the number of roads in the longest road
+     */
+    private int longestRoad(int p) {
+        int best = 0;
+        for (int e = 0; e < edgeOwner.length; e++) {
+            if (edgeOwner[e] != p) {
+                continue;
+            }
+            for (int k = 0; k < 2; k++) {
+                best = Math.max(best, walk(p, board.layout.edgeVertex(e, k), true));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the most roads of a player that can be walked from a vertex without using a
+     * road twice or going on through another player's building.
+     *
+     * @param p  the seat
+     * @param v  the vertex reached
+     * @param start  true if the walk starts here
+     *
+     * @return the number of roads walked
+     */
+    private int walk(int p, int v, boolean start) {
+        if (!start && vertexOwner[v] != -1 && vertexOwner[v] != p) {
+            return 0;
+        }
+        int best = 0;
+        for (int k = 0; k < 3; k++) {
+            int edge = board.layout.vertexEdge(v, k);
+            if (edge == -1 || walked[edge] || edgeOwner[edge] != p) {
+                continue;
+            }
+            walked[edge] = true;
+            best = Math.max(best, 1 + walk(p, board.layout.vertexNeighbor(v, k), false));
+            walked[edge] = false;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the key for a building on a vertex.
+     *
+     * @param v  the vertex
+     * @param p  the seat of the owner
+     * @param level  SETTLEMENT or CITY
+     *
+     * @return the key
+     */
+    private long vertexKey(int v, int p, int level) {
+        return board.vertexKeys[(v * numPlayers + p) * 2 + level - 1];
+    }
+
+    /**
+     * Hashes the whole state from scratch.
+     *
+     * @return the hash
+     */
+    private long computeHash() {
+        long h = 0;
+        for (int v = 0; v < vertexOwner.length; v++) {
+            if (vertexOwner[v] != -1) {
+                h ^= vertexKey(v, vertexOwner[v], vertexLevel[v]);
+            }
+        }
+        for (int e = 0; e < edgeOwner.length; e++) {
+            if (edgeOwner[e] != -1) {
+                h ^= board.edgeKeys[e * numPlayers + edgeOwner[e]];
+            }
+        }
+        for (int i = 0; i < hand.length; i++) {
+            h ^= SearchBoard.countKey(board.handKeys, i, hand[i]);
+        }
+        for (int p = 0; p < numPlayers; p++) {
+            h ^= SearchBoard.countKey(board.pointKeys, p, points[p]);
+            h ^= SearchBoard.countKey(board.knightKeys, p, knightsHeld[p]);
+            h ^= SearchBoard.countKey(board.armyKeys, p, army[p]);
+        }
+        h ^= SearchBoard.countKey(board.newKnightKeys, 0, newKnights);
+        h ^= board.roadHolderKeys[roadHolder + 1];
+        h ^= board.armyHolderKeys[armyHolder + 1];
+        if (playedDev) {
+            h ^= board.playedDevKey;
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            h ^= board.deckKeys[c * (board.layout.devDeckSize() + 1) + unseen[c]];
+        }
+        if (robber != -1) {
+            h ^= board.robberKeys[robber];
+        }
+        h ^= board.playerKeys[current];
+        return waitingForRoll ? h ^ board.rollKey : h;
+    }
+
+    /** The number of kinds of pieces a player has. */
+    private static final int PIECES = 3;
+
+    /** Index of roads in the pieces left. */
+    private static final int ROAD = 0;
+
+    /** Index of settlements in the pieces left. */
+    private static final int SETTLEMENT = 1;
+
+    /** Index of cities in the pieces left. */
+    private static final int CITY = 2;
+
+    /** What a pip of income on a building is worth in points, per roll. */
+    private static final double INCOME_WEIGHT = 1.0 / 36;
+
+    /** What a resource card in hand is worth in points. */
+    private static final double CARD_WEIGHT = 0.1;
+
+    /** The most cards that count towards the score, since more risk losing half on a 7. */
+    private static final int CARD_LIMIT = 7;
+
+    /** The largest score a position gets without a win or loss. */
+    private static final double EVAL_LIMIT = 0.9;
+
+    /** The purchases, cached for affordableMask. */
+    private static final Purchase[] PURCHASES = Purchase.values();
+}
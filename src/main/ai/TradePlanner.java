@@ -0,0 +1,253 @@
+package src.main.ai;
+
+import src.main.model.CatanGame;
+import src.main.model.Player;
+import src.main.model.Purchase;
+import src.main.model.Resource;
+
+/**
+ * Works out whether a hand can afford something through maritime trades, and the cheapest
+ * way to do it. Hands, trade costs and plans are packed into primitives so that bots can ask
+ * at every decision point without allocating.
+ *
+ * A hand is packed 5 bits per resource (counts are capped at 31), trade costs are packed 2
+ * bits per resource as the cost minus 2, and a plan is packed 5 bits per resource for the
+ * cards given followed by 5 bits per resource for the cards received.
+ *
+ * Every maritime trade turns at least 2 cards into 1, so a card gained by trading is never
+ * worth trading away again. That means the best plan never chains trades: it covers each
+ * missing card with exactly one trade, paid for out of the cards the target doesn't need,
+ * and the cheapest such plan takes from the lowest rates first. So instead of searching
+ * over sequences of trades the planner answers in a single pass over the five resources.
+ */
+public final class TradePlanner {
+    private TradePlanner() {
+    }
+
+    /**
+     * Packs a player's hand.
+     *
+     * @param player  the player
+     *
+     * @return the packed hand
+     */
+    public static int packHand(Player player) {
+        int hand = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            int count = Math.min(player.resourceCount(Resource.get(r)), MAX_COUNT);
+            hand |= count << (r * BITS);
+        }
+        return hand;
+    }
+
+    /**
+     * Packs a player's maritime trade costs.
+     *
+     * @param player  the player
+     *
+     * @return the packed trade costs
+     */
+    public static int packCosts(Player player) {
+        int costs = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            costs |= (player.tradeCost(Resource.get(r)) - 2) << (r * 2);
+        }
+        return costs;
+    }
+
+    /**
+     * Packs the cost of a purchase in the same format as a hand.
+     *
+     * @param purchase  the purchase
+     *
+     * @return the packed cost
+     */
+    public static int packCost(Purchase purchase) {
+        int cost = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            cost |= purchase.cost(r) << (r * BITS);
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the count of a resource in a packed hand.
+     *
+     * @param hand  the packed hand
+     * @param r  the resource ordinal
+     *
+     * @return the count
+     */
+    public static int count(int hand, int r) {
+        return (hand >>> (r * BITS)) & MAX_COUNT;
+    }
+
+    /**
+     * Returns the trade cost of a resource in packed trade costs.
+     *
+     * @param costs  the packed trade costs
+     * @param r  the resource ordinal
+     *
+     * @return the trade cost, from 2 to 4
+     */
+    public static int rate(int costs, int r) {
+        return ((costs >>> (r * 2)) & 3) + 2;
+    }
+
+    /**
+     * Finds the cheapest set of maritime trades that turns a hand into one that covers a
+     * target, where cheapest means the fewest cards given away. The number of trades is
+     * always the number of missing cards.
+     *
+     * @param hand  the packed hand
+     * @param costs  the packed trade costs
+     * @param target  the packed cost of what the hand should cover
+     *
+     * @return the packed plan, NO_TRADES if the hand already covers it, or IMPOSSIBLE
+     */
+    public static long plan(int hand, int costs, int target) {
+        int missing = 0;
+        long plan = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            int needed = count(target, r) - count(hand, r);
+            if (needed > 0) {
+                missing += needed;
+                plan |= (long) needed << ((Resource.COUNT + r) * BITS);
+            }
+        }
+        if (missing == 0) {
+            return NO_TRADES;
+        }
+        for (int rate = 2; rate <= 4 && missing > 0; rate++) {
+            for (int r = 0; r < Resource.COUNT && missing > 0; r++) {
+                if (rate(costs, r) != rate) {
+                    continue;
+                }
+                int spare = count(hand, r) - count(target, r);
+                int trades = Math.min(spare / rate, missing);
+                if (trades > 0) {
+                    plan |= (long) (trades * rate) << (r * BITS);
+                    missing -= trades;
+                }
+            }
+        }
+        return missing == 0 ? plan : IMPOSSIBLE;
+    }
+
+    /**
+     * Returns how many cards of a resource a plan gives away.
+     *
+     * @param plan  the packed plan
+     * @param r  the resource ordinal
+     *
+     * @return the number of cards given
+     */
+    public static int given(long plan, int r) {
+        return (int) (plan >>> (r * BITS)) & MAX_COUNT;
+    }
+
+    /**
+     * Returns how many cards of a resource a plan receives.
+     *
+     * @param plan  the packed plan
+     * @param r  the resource ordinal
+     *
+     * @return the number of cards received
+     */
+    public static int received(long plan, int r) {
+        return (int) (plan >>> ((Resource.COUNT + r) * BITS)) & MAX_COUNT;
+    }
+
+    /**
+     * Returns the number of trades in a plan, one for each card received.
+     *
+     * @param plan  the packed plan, not IMPOSSIBLE
+     *
+     * @return the number of trades
+     */
+    public static int trades(long plan) {
+        int trades = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            trades += received(plan, r);
+        }
+        return trades;
+    }
+
+    /**
+     * Returns which purchases a hand can afford once trades are allowed, as a bit for each
+     * Purchase ordinal.
+     *
+     * @param hand  the packed hand
+     * @param costs  the packed trade costs
+     *
+     * @return the mask of affordable purchases
+     */
+    public static int affordableMask(int hand, int costs) {
+        int mask = 0;
+        for (int p = 0; p < PURCHASE_COSTS.length; p++) {
+            if (plan(hand, costs, PURCHASE_COSTS[p]) != IMPOSSIBLE) {
+                mask |= 1 << p;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Finds the cheapest plan for a player to afford a purchase.
+     *
+     * @param player  the player
+     * @param purchase  what the player wants to buy
+     *
+     * @return the packed plan, NO_TRADES, or IMPOSSIBLE
+     */
+    public static long plan(Player player, Purchase purchase) {
+        return plan(packHand(player), packCosts(player), PURCHASE_COSTS[purchase.ordinal()]);
+    }
+
+    /**
+     * Carries out a plan for a player in a game, one maritime trade at a time. Stops at the
+     * first trade the game refuses, for example because the bank has run out of a resource.
+     *
+     * @param game  the game
+     * @param player  the player trading
+     * @param plan  the packed plan, not IMPOSSIBLE
+     *
+     * @return true if every trade in the plan went through
+     */
+    public static boolean execute(CatanGame game, Player player, long plan) {
+        int give = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            for (int n = received(plan, r); n > 0; n--) {
+                while (given(plan, give) / player.tradeCost(Resource.get(give)) == 0) {
+                    give += 1;
+                }
+                if (!game.maritimeTrade(player, Resource.get(give), Resource.get(r))) {
+                    return false;
+                }
+                plan -= (long) player.tradeCost(Resource.get(give)) << (give * BITS);
+            }
+        }
+        return true;
+    }
+
+    /** The number of bits for each resource in a packed hand or plan. */
+    private static final int BITS = 5;
+
+    /** The largest count a packed hand can hold for a resource. */
+    public static final int MAX_COUNT = (1 << BITS) - 1;
+
+    /** The plan for a hand that already covers its target. */
+    public static final long NO_TRADES = 0L;
+
+    /** The plan for a target that trades can't reach. */
+    public static final long IMPOSSIBLE = -1L;
+
+    /** The packed cost of each purchase, indexed by Purchase ordinal. */
+    private static final int[] PURCHASE_COSTS = new int[Purchase.values().length];
+
+    static {
+        for (Purchase p : Purchase.values()) {
+            PURCHASE_COSTS[p.ordinal()] = packCost(p);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package src.main.ai;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results shared by every search thread without locks.
+ * Each entry is a key and a data word, and the key is stored xor'ed with the data. If two
+ * threads write the same slot at once and their words get mixed up, the stored key no longer
+ * matches the data, so the torn entry reads as a miss instead of as a wrong result.
+ *
+ * The data word packs the value as float bits, the depth searched, whether the value is
+ * exact or a bound, and the best move found.
+ */
+final class TranspositionTable {
+    /** The stored keys, each xor'ed with its data word. */
+    private final long[] keys;
+
+    /** The stored data words. */
+    private final long[] data;
+
+    /** The mask that turns a hash into a slot. */
+    private final int mask;
+
+    /**
+     * Creates a table.
+     *
+     * @param bits  the log base 2 of the number of entries
+     */
+    TranspositionTable(int bits) {
+        this.keys = new long[1 << bits];
+        this.data = new long[1 << bits];
+        this.mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Looks up a state.
+     *
+     * @param hash  the hash of the state
+     *
+     * @return the data word, or MISS
+     */
+    long probe(long hash) {
+        int slot = (int) hash & mask;
+        long d = data[slot];
+        return (keys[slot] ^ d) == hash ? d : MISS;
+    }
+
+    /**
+     * Stores a result, unless the slot already holds a deeper result for the same state.
+     *
+     * @param hash  the hash of the state
+     * @param value  the value found
+     * @param depth  the depth searched
+     * @param flag  EXACT, LOWER or UPPER
+     * @param move  the best move found, or 0
+     */
+    void store(long hash, double value, int depth, int flag, int move) {
+        int slot = (int) hash & mask;
+        long old = data[slot];
+        if ((keys[slot] ^ old) == hash && depth(old) > depth) {
+            return;
+        }
+        long d = (Float.floatToRawIntBits((float) value) & 0xFFFFFFFFL)
+                 | (long) depth << DEPTH_SHIFT
+                 | (long) flag << FLAG_SHIFT
+                 | (long) (move & MOVE_MASK) << MOVE_SHIFT
+                 | VALID;
+        data[slot] = d;
+        keys[slot] = hash ^ d;
+    }
+
+    /**
+     * Empties the table.
+     */
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * Returns the value in a data word.
+     *
+     * @param d  the data word
+     *
+     * @return the value
+     */
+    static double value(long d) {
+        return Float.intBitsToFloat((int) d);
+    }
+
+    /**
+     * Returns the depth in a data word.
+     *
+     * @param d  the data word
+     *
+     * @return the depth searched
+     */
+    static int depth(long d) {
+        return (int) (d >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the flag in a data word.
+     *
+     * @param d  the data word
+     *
+     * @return EXACT, LOWER or UPPER
+     */
+    static int flag(long d) {
+        return (int) (d >>> FLAG_SHIFT) & 3;
+    }
+
+    /**
+     * Returns the best move in a data word.
+     *
+     * @param d  the data word
+     *
+     * @return the move, or 0
+     */
+    static int move(long d) {
+        return (int) (d >>> MOVE_SHIFT) & MOVE_MASK;
+    }
+
+    /** The value is exact. */
+    static final int EXACT = 0;
+
+    /** The value is a lower bound. */
+    static final int LOWER = 1;
+
+    /** The value is an upper bound. */
+    static final int UPPER = 2;
+
+    /** What probe returns when the state isn't in the table. */
+    static final long MISS = 0L;
+
+    /** Where the depth starts in a data word, above the value. */
+    private static final int DEPTH_SHIFT = 32;
+
+    /** Where the flag starts in a data word. */
+    private static final int FLAG_SHIFT = 40;
+
+    /** Where the move starts in a data word. */
+    private static final int MOVE_SHIFT = 42;
+
+    /** The bits of a move kept, all those between the flag and VALID. */
+    private static final int MOVE_MASK = (1 << 21) - 1;
+
+    /** Set on every stored data word, so that no stored word equals MISS. */
+    private static final long VALID = 1L << 63;
+}
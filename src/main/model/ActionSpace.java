@@ -0,0 +1,196 @@
+package src.main.model;
+
+/**
+ * Numbers every action a player can take in a game on some layout, so that actions can be
+ * sent as plain ints and the legal ones kept as a bitmask. The numbering is fixed for a
+ * layout: the single actions come first, then one action for each vertex, edge, resource or
+ * hex a kind of action can target. The kind and target of every action are precomputed, so
+ * decoding an action is two array lookups.
+ *
+ * The same action can mean slightly different things in different phases: a settlement
+ * action places a free settlement during the initial placement, and a road action places a
+ * free road during the initial placement and after a road building card.
+ */
+public class ActionSpace {
+    /** The kinds of action. */
+    public enum Type {
+        /** End the turn. */
+        END_TURN,
+
+        /** Roll the dice. */
+        ROLL,
+
+        /** Buy a development card. */
+        BUY_DEV_CARD,
+
+        /** Play a knight, moving the robber. */
+        PLAY_KNIGHT,
+
+        /** Play a road building card, placing two free roads. */
+        PLAY_ROAD_BUILDING,
+
+        /** Build a settlement on a vertex. */
+        SETTLEMENT,
+
+        /** Upgrade a settlement on a vertex to a city. */
+        CITY,
+
+        /** Build a road on an edge. */
+        ROAD,
+
+        /** Trade with the bank, targeting give * Resource.COUNT + get. */
+        TRADE,
+
+        /** Discard a resource after a 7. */
+        DISCARD,
+
+        /** Move the robber onto a hex. */
+        ROBBER,
+
+        /** Steal from a seat. */
+        STEAL,
+
+        /** Play a monopoly card on a resource. */
+        MONOPOLY,
+
+        /** Play a year of plenty card, targeting first * Resource.COUNT + second. */
+        YEAR_OF_PLENTY;
+
+        private static final Type[] cachedValues = values();
+
+        /**
+         * Returns the type with the given ordinal, without copying the values array.
+         *
+         * @param ordinal  the ordinal of the type
+         *
+         * @return the type
+         */
+        public static Type get(int ordinal) {
+            return cachedValues[ordinal];
+        }
+
+        /**
+         * Returns the number of targets actions of this type have on a layout.
+         *
+         * @param layout  the layout
+         *
+         * @return the number of actions of this type
+         */
+        int targets(BoardLayout layout) {
+            switch (this) {
+                case SETTLEMENT:
+                case CITY:
+                    return layout.vertexCount();
+                case ROAD:
+                    return layout.edgeCount();
+                case TRADE:
+                case YEAR_OF_PLENTY:
+                    return Resource.COUNT * Resource.COUNT;
+                case DISCARD:
+                case MONOPOLY:
+                    return Resource.COUNT;
+                case ROBBER:
+                    return layout.validCount();
+                case STEAL:
+                    return CatanGame.MAX_PLAYERS;
+                default:
+                    return 1;
+            }
+        }
+    }
+
+    /** The first action of each type, indexed by type ordinal. */
+    private final int[] offsets;
+
+    /** The type ordinal of each action. */
+    private final byte[] types;
+
+    /** The target of each action. */
+    private final int[] targets;
+
+    /**
+     * Numbers the actions for a layout.
+     *
+     * @param layout  the layout
+     */
+    public ActionSpace(BoardLayout layout) {
+        Type[] all = Type.values();
+        this.offsets = new int[all.length + 1];
+        for (Type t : all) {
+            offsets[t.ordinal() + 1] = offsets[t.ordinal()] + t.targets(layout);
+        }
+        int size = offsets[all.length];
+        this.types = new byte[size];
+        this.targets = new int[size];
+        for (Type t : all) {
+            for (int a = offsets[t.ordinal()]; a < offsets[t.ordinal() + 1]; a++) {
+                types[a] = (byte) t.ordinal();
+                targets[a] = a - offsets[t.ordinal()];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of actions.
+     *
+     * @return the size of the action space
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns the number of longs needed for a bitmask of the actions.
+     *
+     * @return the length of a mask
+     */
+    public int maskLength() {
+        return (types.length + 63) >>> 6;
+    }
+
+    /**
+     * Returns the action of some type with some target.
+     *
+     * @param type  the type
+     * @param target  the vertex, edge, hex, seat or resource code
+     *
+     * @return the action
+     */
+    public int action(Type type, int target) {
+        return offsets[type.ordinal()] + target;
+    }
+
+    /**
+     * Returns the type of an action.
+     *
+     * @param action  the action
+     *
+     * @return the type
+     */
+    public Type type(int action) {
+        return Type.get(types[action]);
+    }
+
+    /**
+     * Returns the target of an action.
+     *
+     * @param action  the action
+     *
+     * @return the vertex, edge, hex, seat or resource code
+     */
+    public int target(int action) {
+        return targets[action];
+    }
+
+    /**
+     * Returns true if an action is in a mask.
+     *
+     * @param mask  the mask
+     * @param action  the action
+     *
+     * @return whether its bit is set
+     */
+    public static boolean isSet(long[] mask, int action) {
+        return (mask[action >>> 6] & (1L << action)) != 0;
+    }
+}
@@ -0,0 +1,1034 @@
+package src.main.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describes the shape of a board: which hexes are on it, the order that the dice numbers are
+ * laid down in, how many of each kind of tile there are, and how the hexes are connected. A
+ * layout knows nothing about a particular game, so a single instance is shared by every board
+ * built from it. It also carries the parts of the rules that go with the board: how many
+ * pieces each player has, and what's in the development deck.
+ *
+ * Hexes are identified by the same (row, col) points used by HexPoint, and internally by a
+ * dense index. The valid hexes take the indices [0, validCount()) in spiral order, and the
+ * sentinel hexes that surround them are generated automatically and take the indices after
+ * that. Every lookup (point to index, index to point, neighbor in some direction) is a single
+ * array access, so the cost of a query doesn't depend on how large the board is.
+ *
+ * The grid uses the same column convention as the original two-player board: odd columns sit
+ * half a hex higher than even columns. Converting a point to cube coordinates (x, y, z) for
+ * the generated layouts uses x = col and z = row - (col + (col & 1)) / 2.
+ */
+public final class BoardLayout {
+    /** The row offset for each RoadLoc direction from a hex in an even column. */
+    private static final int[] EVEN_ROW_OFFSETS = {-1, 0, 1, 1, 1, 0};
+
+    /** The row offset for each RoadLoc direction from a hex in an odd column. */
+    private static final int[] ODD_ROW_OFFSETS = {-1, -1, 0, 1, 0, -1};
+
+    /** The col offset for each RoadLoc direction, the same for both column parities. */
+    private static final int[] COL_OFFSETS = {0, 1, 1, 0, -1, -1};
+
+    /** A readable name for the layout. */
+    private final String name;
+
+    /** The number of hexes that are actually on the board. */
+    private final int validCount;
+
+    /** The row of each hex, indexed by hex index. */
+    private final int[] rows;
+
+    /** The col of each hex, indexed by hex index. */
+    private final int[] cols;
+
+    /** The shared point objects for each hex, indexed by hex index. */
+    private final HexPoint[] points;
+
+    /** The neighbors of each hex, at index * 6 + RoadLoc ordinal, or -1 if off the layout. */
+    private final int[] neighbors;
+
+    /**
+     * The vertex at each corner of each hex, at index * 6 + BuildingLoc ordinal, or -1 for
+     * corners that only touch sentinels. Vertices are numbered densely from 0.
+     */
+    private final int[] vertexOf;
+
+    /**
+     * The edge on each side of each hex, at index * 6 + RoadLoc ordinal, or -1 for sides
+     * between two sentinels. Edges are numbered densely from 0.
+     */
+    private final int[] edgeOf;
+
+    /** The (up to) three vertices next to each vertex, at vertex * 3 + k, or -1. */
+    private final int[] vertexNeighbors;
+
+    /** The (up to) three edges touching each vertex, at vertex * 3 + k, or -1. */
+    private final int[] vertexEdges;
+
+    /** The three hexes around each vertex, at vertex * 3 + k, or -1 if off the layout. */
+    private final int[] vertexHexes;
+
+    /** The corner of each hex in vertexHexes that is the vertex, as a BuildingLoc ordinal. */
+    private final int[] vertexCorners;
+
+    /** The two vertices at the ends of each edge, at edge * 2 + k. */
+    private final int[] edgeVertices;
+
+    /** The two hexes on each side of an edge, at edge * 2 + k, the first one valid. */
+    private final int[] edgeHexes;
+
+    /** The side of each hex in edgeHexes that is the edge, as a RoadLoc ordinal. */
+    private final int[] edgeSides;
+
+    /** The smallest row of any hex, sentinels included. */
+    private final int minRow;
+
+    /** The smallest col of any hex, sentinels included. */
+    private final int minCol;
+
+    /** The number of rows in the bounding box of the layout. */
+    private final int gridRows;
+
+    /** The number of cols in the bounding box of the layout. */
+    private final int gridCols;
+
+    /** The hex index for each cell of the bounding box, or -1 for cells without a hex. */
+    private final int[] grid;
+
+    /** The dice numbers in the order they are placed on the non-desert hexes. */
+    private final int[] diceNums;
+
+    /** The number of tiles for each resource, indexed by resource ordinal. */
+    private final int[] tileCounts;
+
+    /** The number of desert tiles. */
+    private final int deserts;
+
+    /**
+     * Every tile of the layout in a fixed order, with deserts as null. Boards copy this and
+     * shuffle the copy to deal a new game.
+     */
+    private final Resource[] tiles;
+
+    /** True if the 2 and the 12 share a single hex, as on the two-player board. */
+    private final boolean mergedTwelve;
+
+    /** The coastal edges where a harbor may go, spread evenly around the coast. */
+    private final int[] harborSlots;
+
+    /** The harbors that are shuffled into the slots, only the first harborsPlaced are used. */
+    private final Harbor[] harborBag;
+
+    /** The number of harbors placed on each board. */
+    private final int harborsPlaced;
+
+    /** The most roads each player can build. */
+    private final int maxRoads;
+
+    /** The most settlements each player can have on the board at once. */
+    private final int maxSettlements;
+
+    /** The most cities each player can build. */
+    private final int maxCities;
+
+    /** The number of each development card in the deck, indexed by card ordinal. */
+    private final int[] devCards;
+
+    /** The unshuffled development deck, which every game on this layout copies. */
+    private final DevelopmentCard[] devDeck;
+
+    /** The numbering of the actions on this layout, made the first time it's asked for. */
+    private volatile ActionSpace actionSpace;
+
+    /**
+     * Creates a new layout. The sentinel hexes and the adjacency are derived from the points.
+     *
+     * @param name  a readable name for the layout
+     * @param validPoints  the (row, col) points of the hexes on the board, in spiral order
+     * @param diceNums  the dice numbers in the order they are placed, skipping deserts
+     * @param tileCounts  the number of tiles for each resource, indexed by resource ordinal
+     * @param deserts  the number of desert tiles
+     * @param mergedTwelve  whether the 2 and the 12 share a single hex
+     * @param slots  the number of places on the coast where a harbor may go
+     * @param harborBag  the harbors to shuffle into those places
+     * @param harborsPlaced  how many of the shuffled harbors are placed
+     * @param maxRoads  the most roads each player can build
+     * @param maxSettlements  the most settlements each player can have at once
+     * @param maxCities  the most cities each player can build
+     * @param devCards  the number of each development card in the deck, indexed by card
+     *                  ordinal
+     */
+    public BoardLayout(String name, int[][] validPoints, int[] diceNums, int[] tileCounts,
+                       int deserts, boolean mergedTwelve, int slots, Harbor[] harborBag,
+                       int harborsPlaced, int maxRoads, int maxSettlements, int maxCities,
+                       int[] devCards) {
+        int tiles = deserts;
+        for (int count : tileCounts) {
+            tiles += count;
+        }
+        if (tiles != validPoints.length || diceNums.length != tiles - deserts) {
+            throw new IllegalArgumentException("tile and dice counts don't match the layout");
+        }
+        if (harborsPlaced > slots || harborsPlaced > harborBag.length) {
+            throw new IllegalArgumentException("more harbors placed than there is room for");
+        }
+        if (devCards.length != DevelopmentCard.COUNT) {
+            throw new IllegalArgumentException("a count is needed for every development card");
+        }
+        this.harborBag = harborBag.clone();
+        this.harborsPlaced = harborsPlaced;
+        this.maxRoads = maxRoads;
+        this.maxSettlements = maxSettlements;
+        this.maxCities = maxCities;
+        this.devCards = devCards.clone();
+        int cards = 0;
+        for (int count : devCards) {
+            cards += count;
+        }
+        this.devDeck = new DevelopmentCard[cards];
+        int dealt = 0;
+        for (int c = 0; c < devCards.length; c++) {
+            for (int i = 0; i < devCards[c]; i++) {
+                devDeck[dealt++] = DevelopmentCard.get(c);
+            }
+        }
+        this.name = name;
+        this.validCount = validPoints.length;
+        this.diceNums = diceNums.clone();
+        this.tileCounts = tileCounts.clone();
+        this.deserts = deserts;
+        this.mergedTwelve = mergedTwelve;
+        this.tiles = new Resource[tiles];
+        int next = 0;
+        for (Resource r : Resource.values()) {
+            for (int i = 0; i < tileCounts[r.ordinal()]; i++) {
+                this.tiles[next++] = r;
+            }
+        }
+
+        // Sentinels are every point next to a valid hex that isn't a valid hex itself.
+        List<int[]> all = new ArrayList<int[]>(Arrays.asList(validPoints));
+        int lo = Integer.MAX_VALUE;
+        int hi = Integer.MIN_VALUE;
+        int left = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        for (int[] p : validPoints) {
+            lo = Math.min(lo, p[0] - 1);
+            hi = Math.max(hi, p[0] + 1);
+            left = Math.min(left, p[1] - 1);
+            right = Math.max(right, p[1] + 1);
+        }
+        this.minRow = lo;
+        this.minCol = left;
+        this.gridRows = hi - lo + 1;
+        this.gridCols = right - left + 1;
+        this.grid = new int[gridRows * gridCols];
+        Arrays.fill(grid, -1);
+        for (int i = 0; i < validPoints.length; i++) {
+            int cell = cell(validPoints[i][0], validPoints[i][1]);
+            if (grid[cell] != -1) {
+                throw new IllegalArgumentException("duplicate hex point in layout");
+            }
+            grid[cell] = i;
+        }
+        for (int i = 0; i < validPoints.length; i++) {
+            for (int d = 0; d < 6; d++) {
+                int r = neighborRow(validPoints[i][0], validPoints[i][1], d);
+                int c = validPoints[i][1] + COL_OFFSETS[d];
+                int cell = cell(r, c);
+                if (grid[cell] == -1) {
+                    grid[cell] = all.size();
+                    all.add(new int[] {r, c});
+                }
+            }
+        }
+
+        int size = all.size();
+        this.rows = new int[size];
+        this.cols = new int[size];
+        this.points = new HexPoint[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = all.get(i)[0];
+            cols[i] = all.get(i)[1];
+            points[i] = new HexPoint(rows[i], cols[i]);
+        }
+        this.neighbors = new int[size * 6];
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < 6; d++) {
+                neighbors[i * 6 + d] = indexOf(neighborRow(rows[i], cols[i], d),
+                                               cols[i] + COL_OFFSETS[d]);
+            }
+        }
+
+        // Corner c of a hex sits between its sides c and c + 1. The same point is corner
+        // c + 2 of the hex across side c, and corner c + 4 of the hex across side c + 1.
+        this.vertexOf = new int[size * 6];
+        Arrays.fill(vertexOf, -1);
+        int vertices = 0;
+        for (int i = 0; i < validCount; i++) {
+            for (int c = 0; c < 6; c++) {
+                if (vertexOf[i * 6 + c] != -1) {
+                    continue;
+                }
+                vertexOf[i * 6 + c] = vertices;
+                int a = neighbors[i * 6 + c];
+                int b = neighbors[i * 6 + (c + 1) % 6];
+                if (a != -1) {
+                    vertexOf[a * 6 + (c + 2) % 6] = vertices;
+                }
+                if (b != -1) {
+                    vertexOf[b * 6 + (c + 4) % 6] = vertices;
+                }
+                vertices += 1;
+            }
+        }
+        // Side d of a hex is side d + 3 of the hex across it.
+        this.edgeOf = new int[size * 6];
+        Arrays.fill(edgeOf, -1);
+        int edges = 0;
+        for (int i = 0; i < validCount; i++) {
+            for (int d = 0; d < 6; d++) {
+                if (edgeOf[i * 6 + d] != -1) {
+                    continue;
+                }
+                edgeOf[i * 6 + d] = edges;
+                int n = neighbors[i * 6 + d];
+                if (n != -1) {
+                    edgeOf[n * 6 + (d + 3) % 6] = edges;
+                }
+                edges += 1;
+            }
+        }
+
+        this.vertexNeighbors = new int[vertices * 3];
+        this.vertexEdges = new int[vertices * 3];
+        this.vertexHexes = new int[vertices * 3];
+        this.vertexCorners = new int[vertices * 3];
+        Arrays.fill(vertexNeighbors, -1);
+        Arrays.fill(vertexEdges, -1);
+        Arrays.fill(vertexHexes, -1);
+        boolean[] done = new boolean[vertices];
+        for (int i = 0; i < validCount; i++) {
+            for (int c = 0; c < 6; c++) {
+                int v = vertexOf[i * 6 + c];
+                if (done[v]) {
+                    continue;
+                }
+                done[v] = true;
+                int a = neighbors[i * 6 + c];
+                int b = neighbors[i * 6 + (c + 1) % 6];
+                vertexHexes[v * 3] = i;
+                vertexCorners[v * 3] = c;
+                vertexHexes[v * 3 + 1] = a;
+                vertexCorners[v * 3 + 1] = (c + 2) % 6;
+                vertexHexes[v * 3 + 2] = b;
+                vertexCorners[v * 3 + 2] = (c + 4) % 6;
+                vertexNeighbors[v * 3] = vertexOf[i * 6 + (c + 5) % 6];
+                vertexNeighbors[v * 3 + 1] = vertexOf[i * 6 + (c + 1) % 6];
+                vertexEdges[v * 3] = edgeOf[i * 6 + c];
+                vertexEdges[v * 3 + 1] = edgeOf[i * 6 + (c + 1) % 6];
+                // The third edge runs between the two other hexes, away from this one.
+                if (a != -1 && edgeOf[a * 6 + (c + 2) % 6] != -1) {
+                    vertexEdges[v * 3 + 2] = edgeOf[a * 6 + (c + 2) % 6];
+                    vertexNeighbors[v * 3 + 2] = vertexOf[a * 6 + (c + 1) % 6];
+                }
+            }
+        }
+
+        // Side d of a hex runs from corner d - 1 to corner d.
+        this.edgeVertices = new int[edges * 2];
+        this.edgeHexes = new int[edges * 2];
+        this.edgeSides = new int[edges * 2];
+        done = new boolean[edges];
+        for (int i = 0; i < validCount; i++) {
+            for (int d = 0; d < 6; d++) {
+                int e = edgeOf[i * 6 + d];
+                if (done[e]) {
+                    continue;
+                }
+                done[e] = true;
+                edgeVertices[e * 2] = vertexOf[i * 6 + (d + 5) % 6];
+                edgeVertices[e * 2 + 1] = vertexOf[i * 6 + d];
+                edgeHexes[e * 2] = i;
+                edgeSides[e * 2] = d;
+                edgeHexes[e * 2 + 1] = neighbors[i * 6 + d];
+                edgeSides[e * 2 + 1] = (d + 3) % 6;
+            }
+        }
+
+        // The coast is every edge between a valid hex and a sentinel. Walking it in order of
+        // angle around the middle of the board and taking every few edges keeps the harbors
+        // apart from each other.
+        List<Integer> coast = new ArrayList<Integer>();
+        double cx = 0;
+        double cy = 0;
+        for (int i = 0; i < validCount; i++) {
+            cx += centerX(cubeX(i));
+            cy += centerY(cubeX(i), cubeZ(i));
+        }
+        final double midX = cx / validCount;
+        final double midY = cy / validCount;
+        final double[] edgeAngles = new double[edges];
+        for (int e = 0; e < edges; e++) {
+            int a = edgeHexes[e * 2];
+            int b = edgeHexes[e * 2 + 1];
+            if (isValid(b)) {
+                continue;
+            }
+            double x = (centerX(cubeX(a)) + centerX(cubeX(b))) / 2;
+            double y = (centerY(cubeX(a), cubeZ(a)) + centerY(cubeX(b), cubeZ(b))) / 2;
+            edgeAngles[e] = angle(x - midX, y - midY);
+            coast.add(e);
+        }
+        coast.sort((a, b) -> Double.compare(edgeAngles[a], edgeAngles[b]));
+        slots = Math.min(slots, coast.size() / 2);
+        if (harborsPlaced > slots) {
+            throw new IllegalArgumentException("the coast is too short for the harbors");
+        }
+        this.harborSlots = new int[slots];
+        for (int k = 0; k < slots; k++) {
+            harborSlots[k] = coast.get(k * coast.size() / slots);
+        }
+    }
+
+    /**
+     * Builds a hexagonal layout of the given radius, with the tile mix and dice numbers of
+     * the standard board repeated as many times as needed. A radius of 2 gives the standard
+     * 19 hex board, and larger radii give synthetic maps for stress testing.
+     *
+     * @param radius  the number of rings around the center hex
+     *
+     * @return the new layout
+     */
+    public static BoardLayout hexagon(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must be non-negative");
+        }
+        List<int[]> cube = new ArrayList<int[]>();
+        for (int x = -radius; x <= radius; x++) {
+            int zMin = Math.max(-radius, -x - radius);
+            int zMax = Math.min(radius, -x + radius);
+            for (int z = zMin; z <= zMax; z++) {
+                cube.add(new int[] {x, z});
+            }
+        }
+        int total = cube.size();
+        int deserts = Math.max(1, total / 19);
+        int[] tileCounts = new int[Resource.values().length];
+        for (int i = 0; i < total - deserts; i++) {
+            tileCounts[STANDARD_TILE_PATTERN[i % STANDARD_TILE_PATTERN.length].ordinal()] += 1;
+        }
+        int[] dice = new int[total - deserts];
+        for (int i = 0; i < dice.length; i++) {
+            dice[i] = STANDARD_DICE_NUMS[i % STANDARD_DICE_NUMS.length];
+        }
+        int slots = 9 * (2 * radius + 1) / 5;
+        Harbor[] bag = new Harbor[slots];
+        for (int i = 0; i < slots; i++) {
+            bag[i] = STANDARD_HARBORS[i % STANDARD_HARBORS.length];
+        }
+        return new BoardLayout("hexagon-" + radius, spiral(cube), dice, tileCounts, deserts,
+                               false, slots, bag, slots, STANDARD_ROADS, STANDARD_SETTLEMENTS,
+                               STANDARD_CITIES, STANDARD_DEV_CARDS);
+    }
+
+    /**
+     * Builds the layout of the 5-6 player extension, columns of 3, 4, 5, 6, 5, 4 and 3 hexes.
+     *
+     * @return the new layout
+     */
+    private static BoardLayout extension() {
+        List<int[]> cube = new ArrayList<int[]>();
+        for (int x = -3; x <= 3; x++) {
+            for (int z = -3; z <= 2; z++) {
+                if (x + z >= -3 && x + z <= 2) {
+                    cube.add(new int[] {x, z});
+                }
+            }
+        }
+        int[] tileCounts = new int[Resource.values().length];
+        tileCounts[Resource.BRICK.ordinal()] = 5;
+        tileCounts[Resource.SHEEP.ordinal()] = 6;
+        tileCounts[Resource.ORE.ordinal()] = 5;
+        tileCounts[Resource.WHEAT.ordinal()] = 6;
+        tileCounts[Resource.WOOD.ordinal()] = 6;
+        Harbor[] bag = Arrays.copyOf(STANDARD_HARBORS, STANDARD_HARBORS.length + 2);
+        bag[STANDARD_HARBORS.length] = Harbor.SHEEP;
+        bag[STANDARD_HARBORS.length + 1] = Harbor.GENERIC;
+        return new BoardLayout("extension", spiral(cube), EXTENSION_DICE_NUMS, tileCounts, 2,
+                               false, bag.length, bag, bag.length, STANDARD_ROADS,
+                               STANDARD_SETTLEMENTS, STANDARD_CITIES, EXTENSION_DEV_CARDS);
+    }
+
+    /**
+     * Orders a set of hexes, given as cube (x, z) pairs, into a spiral and converts them to
+     * (row, col) points. The outermost ring comes first, each ring is walked clockwise by
+     * angle around the centroid starting from the west, and then the next ring in is peeled.
+     *
+     * @param cube  the hexes as (x, z) cube coordinate pairs
+     *
+     * @return the (row, col) points in spiral order
+     */
+    private static int[][] spiral(List<int[]> cube) {
+        double cx = 0;
+        double cy = 0;
+        for (int[] h : cube) {
+            cx += centerX(h[0]);
+            cy += centerY(h[0], h[1]);
+        }
+        final double centerX = cx / cube.size();
+        final double centerY = cy / cube.size();
+
+        Set<Long> remaining = new HashSet<Long>();
+        for (int[] h : cube) {
+            remaining.add(cubeKey(h[0], h[1]));
+        }
+        int[][] ordered = new int[cube.size()][];
+        int next = 0;
+        List<int[]> rest = new ArrayList<int[]>(cube);
+        while (!rest.isEmpty()) {
+            List<int[]> ring = new ArrayList<int[]>();
+            List<int[]> inner = new ArrayList<int[]>();
+            for (int[] h : rest) {
+                boolean boundary = false;
+                for (int d = 0; d < 6 && !boundary; d++) {
+                    boundary = !remaining.contains(cubeKey(h[0] + CUBE_DX[d], h[1] + CUBE_DZ[d]));
+                }
+                (boundary ? ring : inner).add(h);
+            }
+            ring.sort((a, b) -> Double.compare(
+                    angle(centerX(a[0]) - centerX, centerY(a[0], a[1]) - centerY),
+                    angle(centerX(b[0]) - centerX, centerY(b[0], b[1]) - centerY)));
+            for (int[] h : ring) {
+                remaining.remove(cubeKey(h[0], h[1]));
+                int col = h[0];
+                int row = h[1] + (col + (col & 1)) / 2;
+                ordered[next++] = new int[] {row, col};
+            }
+            rest = inner;
+        }
+        return ordered;
+    }
+
+    /** The change in cube x for each RoadLoc direction. */
+    private static final int[] CUBE_DX = {0, 1, 1, 0, -1, -1};
+
+    /** The change in cube z for each RoadLoc direction. */
+    private static final int[] CUBE_DZ = {-1, -1, 0, 1, 1, 0};
+
+    /** Packs a cube (x, z) pair into a single key. */
+    private static long cubeKey(int x, int z) {
+        return ((long) x << 32) ^ (z & 0xffffffffL);
+    }
+
+    /** The horizontal position of the center of a hex, in units of the hex radius. */
+    private static double centerX(int x) {
+        return 1.5 * x;
+    }
+
+    /** The vertical position of the center of a hex, growing downwards. */
+    private static double centerY(int x, int z) {
+        return Math.sqrt(3) * (z + x / 2.0);
+    }
+
+    /** The clockwise angle from the west, in [0, 2pi), with y growing downwards. */
+    private static double angle(double dx, double dy) {
+        double a = Math.atan2(-dy, -dx);
+        return a < 0 ? a + 2 * Math.PI : a;
+    }
+
+    /** The cube x coordinate of a hex. */
+    private int cubeX(int index) {
+        return cols[index];
+    }
+
+    /** The cube z coordinate of a hex. */
+    private int cubeZ(int index) {
+        return rows[index] - (cols[index] + (cols[index] & 1)) / 2;
+    }
+
+    /** The row of the neighbor of (row, col) in direction d. */
+    private static int neighborRow(int row, int col, int d) {
+        return row + ((col & 1) == 0 ? EVEN_ROW_OFFSETS[d] : ODD_ROW_OFFSETS[d]);
+    }
+
+    /** The cell of the bounding box for a point, assumed to be inside the box. */
+    private int cell(int row, int col) {
+        return (row - minRow) * gridCols + (col - minCol);
+    }
+
+    /**
+     * Returns the name of this layout.
+     *
+     * @return the name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the total number of hexes, including sentinels.
+     *
+     * @return the number of hexes
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Returns the number of hexes that are actually on the board.
+     *
+     * @return the number of valid hexes
+     */
+    public int validCount() {
+        return validCount;
+    }
+
+    /**
+     * Returns the index of the hex at (row, col).
+     *
+     * @param row  the row of the hex
+     * @param col  the col of the hex
+     *
+     * @return the index, or -1 if there's no hex (valid or sentinel) at that point
+     */
+    public int indexOf(int row, int col) {
+        int r = row - minRow;
+        int c = col - minCol;
+        if (r < 0 || r >= gridRows || c < 0 || c >= gridCols) {
+            return -1;
+        }
+        return grid[r * gridCols + c];
+    }
+
+    /**
+     * Returns the index of the hex at a point.
+     *
+     * @param point  the point of the hex
+     *
+     * @return the index, or -1 if there's no hex (valid or sentinel) at that point
+     */
+    public int indexOf(HexPoint point) {
+        return indexOf(point.row(), point.col());
+    }
+
+    /**
+     * Returns true if the index is one of the hexes actually on the board.
+     *
+     * @param index  the hex index to check
+     *
+     * @return whether the index is a valid hex
+     */
+    public boolean isValid(int index) {
+        return index >= 0 && index < validCount;
+    }
+
+    /**
+     * Returns the point for a hex index. The same object is returned every time.
+     *
+     * @param index  the hex index
+     *
+     * @return the point of the hex
+     */
+    public HexPoint point(int index) {
+        return points[index];
+    }
+
+    /**
+     * Returns the hex next to a hex in some direction.
+     *
+     * @param index  the hex index
+     * @param dir  the RoadLoc ordinal of the direction
+     *
+     * @return the index of the neighbor, or -1 if it's off the layout
+     */
+    public int neighbor(int index, int dir) {
+        return neighbors[index * 6 + dir];
+    }
+
+    /**
+     * Returns the dice number placed on the i-th non-desert hex in spiral order.
+     *
+     * @param i  the position in the dice sequence
+     *
+     * @return the dice number
+     */
+    public int diceNum(int i) {
+        return diceNums[i];
+    }
+
+    /**
+     * Returns the number of tiles for a resource.
+     *
+     * @param res  the resource
+     *
+     * @return the number of hexes with that resource
+     */
+    public int tileCount(Resource res) {
+        return tileCounts[res.ordinal()];
+    }
+
+    /**
+     * Copies every tile of the layout, in a fixed unshuffled order, into an array with room
+     * for validCount() entries. Deserts are copied as null.
+     *
+     * @param dest  the array to copy into
+     */
+    public void copyTiles(Resource[] dest) {
+        System.arraycopy(tiles, 0, dest, 0, tiles.length);
+    }
+
+    /**
+     * Returns the most roads each player can build.
+     *
+     * @return the number of roads
+     */
+    public int maxRoads() {
+        return maxRoads;
+    }
+
+    /**
+     * Returns the most settlements each player can have on the board at once. A settlement
+     * upgraded to a city goes back to its player.
+     *
+     * @return the number of settlements
+     */
+    public int maxSettlements() {
+        return maxSettlements;
+    }
+
+    /**
+     * Returns the most cities each player can build.
+     *
+     * @return the number of cities
+     */
+    public int maxCities() {
+        return maxCities;
+    }
+
+    /**
+     * Returns how many of a development card the full deck holds.
+     *
+     * @param card  the type of card
+     *
+     * @return the number in the full deck
+     */
+    public int devCardCount(DevelopmentCard card) {
+        return devCards[card.ordinal()];
+    }
+
+    /**
+     * Returns the number of cards in the full development deck.
+     *
+     * @return the size of the deck
+     */
+    public int devDeckSize() {
+        return devDeck.length;
+    }
+
+    /**
+     * Returns the unshuffled development deck, which must not be modified.
+     *
+     * @return the cards of the deck in a fixed order
+     */
+    DevelopmentCard[] devDeck() {
+        return devDeck;
+    }
+
+    /**
+     * Returns the number of desert tiles.
+     *
+     * @return the number of deserts
+     */
+    public int deserts() {
+        return deserts;
+    }
+
+    /**
+     * Returns the number printed on the hex that produces for a dice sum. On the two-player
+     * board the 2 and the 12 share a hex labeled 2, otherwise this is the sum itself.
+     *
+     * @param sum  the dice sum
+     *
+     * @return the hex roll number that produces on that sum
+     */
+    public int rollFor(int sum) {
+        return (mergedTwelve && sum == 12) ? 2 : sum;
+    }
+
+    /**
+     * Returns the number of vertices, the places where settlements and cities can go.
+     *
+     * @return the number of vertices
+     */
+    public int vertexCount() {
+        return vertexNeighbors.length / 3;
+    }
+
+    /**
+     * Returns the number of edges, the places where roads can go.
+     *
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return edgeVertices.length / 2;
+    }
+
+    /**
+     * Returns the vertex at a corner of a hex.
+     *
+     * @param index  the hex index
+     * @param corner  the BuildingLoc ordinal of the corner
+     *
+     * @return the vertex, or -1 if the corner only touches sentinels
+     */
+    public int vertexOf(int index, int corner) {
+        return vertexOf[index * 6 + corner];
+    }
+
+    /**
+     * Returns the edge on a side of a hex.
+     *
+     * @param index  the hex index
+     * @param side  the RoadLoc ordinal of the side
+     *
+     * @return the edge, or -1 if the side is between two sentinels
+     */
+    public int edgeOf(int index, int side) {
+        return edgeOf[index * 6 + side];
+    }
+
+    /**
+     * Returns one of the vertices next to a vertex, that is, at the other end of one of
+     * its edges.
+     *
+     * @param vertex  the vertex
+     * @param k  which neighbor, from 0 to 2
+     *
+     * @return the neighboring vertex, or -1 if there's no edge that way
+     */
+    public int vertexNeighbor(int vertex, int k) {
+        return vertexNeighbors[vertex * 3 + k];
+    }
+
+    /**
+     * Returns one of the edges touching a vertex. The k-th edge leads to the k-th neighbor.
+     *
+     * @param vertex  the vertex
+     * @param k  which edge, from 0 to 2
+     *
+     * @return the edge, or -1 if there's no edge that way
+     */
+    public int vertexEdge(int vertex, int k) {
+        return vertexEdges[vertex * 3 + k];
+    }
+
+    /**
+     * Returns one of the three hexes around a vertex. The first one is always valid.
+     *
+     * @param vertex  the vertex
+     * @param k  which hex, from 0 to 2
+     *
+     * @return the hex index, or -1 if it's off the layout
+     */
+    public int vertexHex(int vertex, int k) {
+        return vertexHexes[vertex * 3 + k];
+    }
+
+    /**
+     * Returns which corner of vertexHex(vertex, k) the vertex is.
+     *
+     * @param vertex  the vertex
+     * @param k  which hex, from 0 to 2
+     *
+     * @return the BuildingLoc ordinal of the corner
+     */
+    public int vertexCorner(int vertex, int k) {
+        return vertexCorners[vertex * 3 + k];
+    }
+
+    /**
+     * Returns one of the two vertices at the ends of an edge.
+     *
+     * @param edge  the edge
+     * @param k  which end, 0 or 1
+     *
+     * @return the vertex
+     */
+    public int edgeVertex(int edge, int k) {
+        return edgeVertices[edge * 2 + k];
+    }
+
+    /**
+     * Returns one of the two hexes on either side of an edge. The first one is always valid.
+     *
+     * @param edge  the edge
+     * @param k  which side, 0 or 1
+     *
+     * @return the hex index
+     */
+    public int edgeHex(int edge, int k) {
+        return edgeHexes[edge * 2 + k];
+    }
+
+    /**
+     * Returns which side of edgeHex(edge, k) the edge is.
+     *
+     * @param edge  the edge
+     * @param k  which side, 0 or 1
+     *
+     * @return the RoadLoc ordinal of the side
+     */
+    public int edgeSide(int edge, int k) {
+        return edgeSides[edge * 2 + k];
+    }
+
+    /**
+     * Returns the number of places on the coast where a harbor may go.
+     *
+     * @return the number of harbor slots
+     */
+    public int harborSlots() {
+        return harborSlots.length;
+    }
+
+    /**
+     * Returns the coastal edge of a harbor slot.
+     *
+     * @param slot  the slot, from 0 to harborSlots() - 1
+     *
+     * @return the edge of the slot
+     */
+    public int harborSlotEdge(int slot) {
+        return harborSlots[slot];
+    }
+
+    /**
+     * Returns the number of harbors that are placed on each board.
+     *
+     * @return the number of harbors
+     */
+    public int harborsPlaced() {
+        return harborsPlaced;
+    }
+
+    /**
+     * Copies the harbors that get shuffled into the slots into an array with room for
+     * harborBagSize() entries.
+     *
+     * @param dest  the array to copy into
+     */
+    public void copyHarbors(Harbor[] dest) {
+        System.arraycopy(harborBag, 0, dest, 0, harborBag.length);
+    }
+
+    /**
+     * Returns the number of harbors that get shuffled before some are placed.
+     *
+     * @return the size of the harbor bag
+     */
+    public int harborBagSize() {
+        return harborBag.length;
+    }
+
+    /**
+     * Returns true if the 2 and the 12 share a single hex.
+     *
+     * @return whether 12 is merged into 2
+     */
+    public boolean mergedTwelve() {
+        return mergedTwelve;
+    }
+
+    /**
+     * Returns the numbering of the actions on this layout, shared by every game on it.
+     *
+     * @return the action space
+     */
+    public ActionSpace actionSpace() {
+        ActionSpace space = actionSpace;
+        if (space == null) {
+            space = new ActionSpace(this);
+            actionSpace = space;
+        }
+        return space;
+    }
+
+    /** The dice numbers of the standard board in spiral order. */
+    private static final int[] STANDARD_DICE_NUMS = {5, 2, 6, 3, 8, 10, 9, 12, 11, 4, 8, 10,
+                                                     9, 4, 5, 6, 3, 11};
+
+    /** The dice numbers of the 5-6 player extension in spiral order. */
+    private static final int[] EXTENSION_DICE_NUMS = {2, 5, 4, 6, 3, 9, 8, 11, 11, 10, 6, 3,
+                                                      8, 4, 8, 10, 11, 12, 10, 5, 4, 9, 5, 9,
+                                                      12, 3, 2, 6};
+
+    /** The mix of the 18 non-desert tiles of the standard board. */
+    private static final Resource[] STANDARD_TILE_PATTERN = {
+        Resource.WHEAT, Resource.WOOD, Resource.SHEEP, Resource.ORE, Resource.BRICK,
+        Resource.WHEAT, Resource.WOOD, Resource.SHEEP, Resource.ORE, Resource.BRICK,
+        Resource.WHEAT, Resource.WOOD, Resource.SHEEP, Resource.ORE, Resource.BRICK,
+        Resource.WHEAT, Resource.WOOD, Resource.SHEEP};
+
+    /** The harbors of the standard board: one for each resource and four generic ones. */
+    private static final Harbor[] STANDARD_HARBORS = {
+        Harbor.BRICK, Harbor.SHEEP, Harbor.ORE, Harbor.WHEAT, Harbor.WOOD,
+        Harbor.GENERIC, Harbor.GENERIC, Harbor.GENERIC, Harbor.GENERIC};
+
+    /** The most roads each player can build in the standard game. */
+    private static final int STANDARD_ROADS = 15;
+
+    /** The most settlements each player can have at once in the standard game. */
+    private static final int STANDARD_SETTLEMENTS = 5;
+
+    /** The most cities each player can build in the standard game. */
+    private static final int STANDARD_CITIES = 4;
+
+    /**
+     * The development deck of the standard game, by card ordinal: 14 knights, 2 monopolies,
+     * 2 road building, 5 victory points and 2 years of plenty.
+     */
+    private static final int[] STANDARD_DEV_CARDS = {14, 2, 2, 5, 2};
+
+    /**
+     * The development deck of the 5-6 player extension, by card ordinal: 20 knights, 3
+     * monopolies, 3 road building, 5 victory points and 3 years of plenty.
+     */
+    private static final int[] EXTENSION_DEV_CARDS = {20, 3, 3, 5, 3};
+
+    /** The most roads each player can build in the two-player variant. */
+    private static final int TWO_PLAYER_ROADS = 13;
+
+    /** The most settlements each player can have at once in the two-player variant. */
+    private static final int TWO_PLAYER_SETTLEMENTS = 4;
+
+    /** The most cities each player can build in the two-player variant. */
+    private static final int TWO_PLAYER_CITIES = 3;
+
+    /**
+     * The development deck of the two-player variant, by card ordinal: 11 knights, 1
+     * monopoly, 1 road building, 3 victory points and 2 years of plenty.
+     */
+    private static final int[] TWO_PLAYER_DEV_CARDS = {11, 1, 1, 3, 2};
+
+    /**
+     * The 14 hex board of the two-player variant. There are 9 places for harbors, and 6 of
+     * the standard harbors are picked at random to go in 6 of them.
+     */
+    public static final BoardLayout TWO_PLAYER = new BoardLayout("two-player",
+            CatanBoard.validHexPoints, CatanBoard.diceNums,
+            new int[] {CatanBoard.HILLS, CatanBoard.PASTURES, CatanBoard.MOUNTAINS,
+                       CatanBoard.FIELDS, CatanBoard.FORESTS}, 0, true,
+            CatanBoard.HARBOR_SLOTS, STANDARD_HARBORS, CatanBoard.HARBORS,
+            TWO_PLAYER_ROADS, TWO_PLAYER_SETTLEMENTS, TWO_PLAYER_CITIES, TWO_PLAYER_DEV_CARDS);
+
+    /** The standard 19 hex board. */
+    public static final BoardLayout STANDARD = hexagon(2);
+
+    /** The 30 hex board of the 5-6 player extension. */
+    public static final BoardLayout EXTENSION = extension();
+}
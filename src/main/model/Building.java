@@ -43,6 +43,16 @@ public class Building {
         return type;
     }
 
+    /**
+     * Returns the number of resources this building collects from each adjacent hex that
+     * produces: 1 for a settlement and 2 for a city.
+     *
+     * @return the production of this building
+     */
+    public int production() {
+        return CITY.equals(type) ? 2 : 1;
+    }
+
     /** 
      * Returns the owner of this building
      *
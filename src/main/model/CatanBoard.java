@@ -1,10 +1,10 @@
 package src.main.model;
 
-import java.util.HashMap;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
-import java.awt.Color;
+import java.util.Random;
 
 /**
  * Represents the board itself in the game. Helps to handle the placing of buildings and
@@ -21,69 +21,355 @@ import java.awt.Color;
  * never be rolled, otherwise, most methods will have to check to make sure that we are working
  * with valid pieces.
  *
+ * The shape of the board comes from a BoardLayout, so the same class handles the two-player
+ * board, the standard and extension boards, and large synthetic maps.
+ *
  * @author Kevin Lowe
  */
 public class CatanBoard {
+    /** The layout that this board was built from, shared with every other board like it. */
+    private final BoardLayout layout;
+
     /** 
-     *  The internal board representation. The point (key-value) is of the form (r, c),
-     *  where r indicates the row of the hex tile, and c indicates the column. The numbering
-     *  on the board is the same as the one defined in this link:
+     *  The internal board representation, indexed by the hex index of the layout. The valid
+     *  hexes come first in spiral order, followed by the sentinels. The points of the hexes
+     *  are of the form (r, c), where r indicates the row of the hex tile, and c indicates the
+     *  column. The numbering on the board is the same as the one defined in this link:
      *  http://www.quarkphysics.ca/scripsi/hexgrid/
      *  
-     *  (0, 3) is set as the topmost sentinel node, and (2, 1) is the value of the piece with
-     *  the K on it.
+     *  On the two-player board, (0, 3) is the topmost sentinel node, and (2, 1) is the value
+     *  of the piece with the K on it.
+     */
+    private final HexPiece[] hexes;
+
+    /** The indices of the valid hexes for each roll number from 0 to 12. */
+    private final int[][] hexesByRoll;
+
+    /** The seat of the player with a building on each vertex, or -1. */
+    private final int[] vertexOwner;
+
+    /** What is built on each vertex: EMPTY, SETTLEMENT or CITY. */
+    private final int[] vertexLevel;
+
+    /** The seat of the player with a road on each edge, or -1. */
+    private final int[] edgeOwner;
+
+    /** The harbor in each harbor slot of the layout, or null for an empty slot. */
+    private final Harbor[] slotHarbors;
+
+    /** The ordinal of the harbor each vertex has access to, or -1. */
+    private final int[] vertexHarbor;
+
+    /** Scratch space for shuffling the harbors and their slots. */
+    private final Harbor[] harborDeal;
+
+    /** Scratch space for shuffling the harbor slots. */
+    private final int[] slotDeal;
+
+    /**
+     * The number of ways out of 36 that each valid hex produces on a roll of two dice.
+     * Deserts produce on none.
+     */
+    private final int[] hexPips;
+
+    /**
+     * How much each player collects from each valid hex when it produces, at
+     * hex * CatanGame.MAX_PLAYERS + player: 1 for each settlement and 2 for each city. Kept
+     * up to date as buildings go up, so that questions about production don't have to walk
+     * the buildings on the hexes.
      */
-    HashMap<HexPoint, HexPiece> board;
+    private final int[] hexProduction;
+
+    /** The index of the hex that currently has the robber, -1 if it hasn't been placed. */
+    private int robber;
+
+    /** Counts the changes to the buildings and the robber, which are what decide production. */
+    private long version;
+
+    /** Scratch space that the tiles are shuffled in when dealing a new board. */
+    private final Resource[] deal;
+
+    /** Scratch space for how far each entry of hexesByRoll has been filled. */
+    private final int[] rollFill;
 
     /**
-     *  Initialize a new CatanBoard. The resources that are set on each hex piece are
-     *  shuffled and selected at random, same with the harbors.
+     *  Initialize a new two-player CatanBoard. The resources that are set on each hex piece
+     *  are shuffled and selected at random, same with the harbors.
      */
     public CatanBoard() {
-        this.board = new HashMap<HexPoint, HexPiece>();
-        List<Resource> tiles = fillInTiles();
-        for (int i = 0; i < TOTAL_TILES; i++) {
-            Resource res;
-            if (i < tiles.size()) {
-                res = tiles.get(i);
-            } else {
-                res = null;
+        this(BoardLayout.TWO_PLAYER);
+    }
+
+    /**
+     *  Initialize a new CatanBoard for some layout, shuffled at random.
+     *
+     *  @param layout  the layout of the board
+     */
+    public CatanBoard(BoardLayout layout) {
+        this(layout, new Random());
+    }
+
+    /**
+     *  Initialize a new CatanBoard for some layout. The resources that are set on each hex
+     *  piece are shuffled with the given random number generator, and the dice numbers are
+     *  laid down in spiral order, skipping the deserts. The robber starts on the first desert,
+     *  if there is one.
+     *
+     *  @param layout  the layout of the board
+     *  @param rand  the random number generator used to shuffle the tiles
+     */
+    public CatanBoard(BoardLayout layout, Random rand) {
+        this.layout = layout;
+        this.hexes = new HexPiece[layout.size()];
+        this.deal = new Resource[layout.validCount()];
+        this.vertexOwner = new int[layout.vertexCount()];
+        this.vertexLevel = new int[layout.vertexCount()];
+        this.edgeOwner = new int[layout.edgeCount()];
+        this.hexPips = new int[layout.validCount()];
+        this.hexProduction = new int[layout.validCount() * CatanGame.MAX_PLAYERS];
+        this.slotHarbors = new Harbor[layout.harborSlots()];
+        this.vertexHarbor = new int[layout.vertexCount()];
+        this.harborDeal = new Harbor[layout.harborBagSize()];
+        this.slotDeal = new int[layout.harborSlots()];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = new HexPiece(SENTINEL_ROLL, null);
+        }
+        this.hexesByRoll = new int[SENTINEL_ROLL][];
+        this.rollFill = new int[SENTINEL_ROLL];
+        int[] counts = new int[SENTINEL_ROLL];
+        counts[DESERT_ROLL] = layout.deserts();
+        for (int i = 0; i < layout.validCount() - layout.deserts(); i++) {
+            counts[layout.diceNum(i)] += 1;
+        }
+        for (int roll = 0; roll < SENTINEL_ROLL; roll++) {
+            hexesByRoll[roll] = new int[counts[roll]];
+        }
+        reset(rand);
+    }
+
+    /**
+     * Deals a new board in place: the tiles are reshuffled, the dice numbers laid down again,
+     * and every road, building and the robber are removed. Nothing is allocated, so a board
+     * can be reused for game after game.
+     *
+     * @param rand  the random number generator used to shuffle the tiles
+     */
+    public void reset(Random rand) {
+        layout.copyTiles(deal);
+        for (int i = deal.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            Resource tmp = deal[i];
+            deal[i] = deal[j];
+            deal[j] = tmp;
+        }
+        Arrays.fill(vertexOwner, -1);
+        Arrays.fill(vertexLevel, EMPTY);
+        Arrays.fill(edgeOwner, -1);
+        robber = -1;
+        int dice = 0;
+        for (int i = 0; i < hexes.length; i++) {
+            if (!layout.isValid(i)) {
+                hexes[i].reset(SENTINEL_ROLL, null);
+                continue;
             }
-            HexPoint pos = new HexPoint(hexPoints[i][0], hexPoints[i][1]);
-            int num;
-            if (i < diceNums.length) { 
-                num = diceNums[i];
-            } else {
-                num = 13;
+            Resource res = deal[i];
+            int num = (res == null) ? DESERT_ROLL : layout.diceNum(dice++);
+            hexes[i].reset(num, res);
+            if (res == null && robber == -1) {
+                hexes[i].placeRobber();
+                robber = i;
             }
-            this.board.put(pos, new HexPiece(num, res));
         }
+        Arrays.fill(hexProduction, 0);
+        for (int i = 0; i < hexPips.length; i++) {
+            hexPips[i] = pipsFor(hexes[i].roll());
+        }
+        indexRolls();
+        placeHarbors(rand);
+        version += 1;
     }
 
     /**
-     * Fill in the tiles, with the correct number of each based on the 2-player variant.
+     * Returns the number of ways out of 36 that a hex with some number produces.
      *
-     * @return The list of tiles, shuffled
+     * @param roll  the number on the hex
+     *
+     * @return the number of dice combinations that produce on it
      */
-    private List<Resource> fillInTiles() {
-        List<Resource> tiles = new ArrayList<Resource>();
-        for (int i = 0; i < FIELDS; i++) {
-            tiles.add(Resource.WHEAT);
+    private int pipsFor(int roll) {
+        if (roll < 2 || roll > 12) {
+            return 0;
         }
-        for (int i = 0; i < FORESTS; i++) {
-            tiles.add(Resource.WOOD);
+        int pips = 6 - Math.abs(7 - roll);
+        if (roll == 2 && layout.mergedTwelve()) {
+            pips += 1;
         }
-        for (int i = 0; i < PASTURES; i++) {
-            tiles.add(Resource.SHEEP);
+        return pips;
+    }
+
+    /**
+     * Returns the number of ways out of 36 that a valid hex produces on a roll of two dice.
+     *
+     * @param hex  the hex index, which has to be a valid hex
+     *
+     * @return the number of dice combinations that produce on it, 0 for a desert
+     */
+    public int pips(int hex) {
+        return hexPips[hex];
+    }
+
+    /**
+     * Adds up the pips of the valid hexes around a vertex.
+     *
+     * @param vertex  the vertex
+     *
+     * @return the number of dice combinations out of 36 that produce on it, once per hex
+     */
+    public int vertexPips(int vertex) {
+        int total = 0;
+        for (int k = 0; k < 3; k++) {
+            int hex = layout.vertexHex(vertex, k);
+            if (layout.isValid(hex)) {
+                total += hexPips[hex];
+            }
         }
-        for (int i = 0; i < MOUNTAINS; i++) {
-            tiles.add(Resource.ORE);
+        return total;
+    }
+
+    /**
+     * Returns how much a player collects from a valid hex when it produces, ignoring the
+     * robber: 1 for each of their settlements on it and 2 for each city.
+     *
+     * @param hex  the hex index, which has to be a valid hex
+     * @param player  the seat of the player
+     *
+     * @return the player's production weight on that hex
+     */
+    public int production(int hex, int player) {
+        return hexProduction[hex * CatanGame.MAX_PLAYERS + player];
+    }
+
+    /**
+     * Adds to a player's production on the valid hexes around a vertex.
+     *
+     * @param vertex  the vertex that was built on
+     * @param player  the seat of the player
+     * @param amount  how much more the player collects from each hex
+     */
+    private void addProduction(int vertex, int player, int amount) {
+        version += 1;
+        for (int k = 0; k < 3; k++) {
+            int hex = layout.vertexHex(vertex, k);
+            if (layout.isValid(hex)) {
+                hexProduction[hex * CatanGame.MAX_PLAYERS + player] += amount;
+            }
         }
-        for (int i = 0; i < HILLS; i++) {
-            tiles.add(Resource.BRICK);
+    }
+
+    /**
+     * Picks which harbors are used and which coastal slots they go into, then fills in the
+     * harbor for each vertex so that building a settlement can look it up directly.
+     *
+     * @param rand  the random number generator used to shuffle the harbors
+     */
+    private void placeHarbors(Random rand) {
+        layout.copyHarbors(harborDeal);
+        for (int i = harborDeal.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            Harbor tmp = harborDeal[i];
+            harborDeal[i] = harborDeal[j];
+            harborDeal[j] = tmp;
         }
-        Collections.shuffle(tiles);
-        return tiles;
+        for (int i = 0; i < slotDeal.length; i++) {
+            slotDeal[i] = i;
+        }
+        for (int i = slotDeal.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = slotDeal[i];
+            slotDeal[i] = slotDeal[j];
+            slotDeal[j] = tmp;
+        }
+        Arrays.fill(slotHarbors, null);
+        Arrays.fill(vertexHarbor, -1);
+        for (int i = 0; i < layout.harborsPlaced(); i++) {
+            int slot = slotDeal[i];
+            Harbor harbor = harborDeal[i];
+            slotHarbors[slot] = harbor;
+            int edge = layout.harborSlotEdge(slot);
+            vertexHarbor[layout.edgeVertex(edge, 0)] = harbor.ordinal();
+            vertexHarbor[layout.edgeVertex(edge, 1)] = harbor.ordinal();
+        }
+    }
+
+    /**
+     * Returns the harbor in one of the layout's harbor slots.
+     *
+     * @param slot  the harbor slot
+     *
+     * @return the harbor, or null if the slot is empty on this board
+     */
+    public Harbor slotHarbor(int slot) {
+        return slotHarbors[slot];
+    }
+
+    /**
+     * Returns the harbor that a settlement on a vertex has access to.
+     *
+     * @param vertex  the vertex
+     *
+     * @return the harbor, or null if the vertex isn't on a harbor
+     */
+    public Harbor harbor(int vertex) {
+        int harbor = vertexHarbor[vertex];
+        return harbor == -1 ? null : Harbor.get(harbor);
+    }
+
+    /**
+     * Groups the valid hexes by their roll number, so that a roll only looks at the hexes
+     * that produce. The arrays were sized from the layout when the board was made.
+     */
+    private void indexRolls() {
+        int[] counts = rollFill;
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < layout.validCount(); i++) {
+            int roll = hexes[i].roll();
+            hexesByRoll[roll][counts[roll]++] = i;
+        }
+    }
+
+    /**
+     * Returns the layout that this board was built from.
+     *
+     * @return the layout
+     */
+    public BoardLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Returns the hex piece for a hex index of the layout.
+     *
+     * @param index  the hex index
+     *
+     * @return the hex piece, which may be a sentinel
+     */
+    public HexPiece hex(int index) {
+        return hexes[index];
+    }
+
+    /**
+     * Returns the indices of the valid hexes that have some roll number, in spiral order. The
+     * returned array is shared and must not be modified.
+     *
+     * @param roll  the number printed on the hex
+     *
+     * @return the indices of the hexes with that number, possibly empty
+     */
+    public int[] hexesForRoll(int roll) {
+        if (roll < 0 || roll >= hexesByRoll.length) {
+            return NO_HEXES;
+        }
+        return hexesByRoll[roll];
     }
 
     /**
@@ -93,11 +379,9 @@ public class CatanBoard {
      * @return the list of tiles except for sentinels.
      */
     public List<HexPiece> getTiles() {
-        List<HexPiece> tiles = new ArrayList<HexPiece>();
-        for (int[] p : validHexPoints) {
-            HexPoint hexPt = new HexPoint(p[0], p[1]);
-            HexPiece tile = board.get(hexPt);
-            tiles.add(tile);
+        List<HexPiece> tiles = new ArrayList<HexPiece>(layout.validCount());
+        for (int i = 0; i < layout.validCount(); i++) {
+            tiles.add(hexes[i]);
         }
         return tiles;
     }
@@ -115,48 +399,11 @@ public class CatanBoard {
      *         a sentinel piece as input.
      */
     public HexPoint getAdjacentHex(HexPoint hex, HexPiece.RoadLoc loc) {
-        if (!isValidPoint(hex)) {
+        int index = layout.indexOf(hex);
+        if (!layout.isValid(index)) {
             return null;
         }
-        int col = hex.col();
-        int adjRow = hex.row();
-        int adjCol = hex.col();
-        if (col == 2 || col == 4) {
-            switch (loc) {
-                case NW:    adjCol -= 1;
-                            break;
-                case N:     adjRow -= 1;
-                            break;
-                case NE:    adjCol += 1;
-                            break;
-                case SE:    adjRow += 1;
-                            adjCol += 1;
-                            break;
-                case S:     adjRow += 1;
-                            break;
-                case SW:    adjRow += 1;
-                            adjCol -= 1;
-                            break;
-            }
-        } else { // col == 1, 3, or 5
-            switch (loc) {
-                case NW:    adjCol -= 1;
-                            adjRow -= 1;
-                            break;
-                case N:     adjRow -= 1;
-                            break;
-                case NE:    adjCol += 1;
-                            adjRow -= 1;
-                            break;
-                case SE:    adjCol += 1;
-                            break;
-                case S:     adjRow += 1;
-                            break;
-                case SW:    adjCol -= 1;
-                            break;
-            }
-        }
-        return new HexPoint(adjRow, adjCol);
+        return layout.point(layout.neighbor(index, loc.ordinal()));
     }
 
     /**
@@ -168,14 +415,7 @@ public class CatanBoard {
      * @return boolean indicating whether given HexPoint is valid
      */
     public boolean isValidPoint(HexPoint point) {
-        int r = point.row();
-        int c = point.col();
-        for (int[] p : validHexPoints) {
-            if (p[0] == r && p[1] == c) {
-                return true;
-            }
-        }
-        return false;
+        return layout.isValid(layout.indexOf(point));
     }
 
     /**
@@ -190,8 +430,7 @@ public class CatanBoard {
         if (!isValidPoint(hexPt)) {
             return false;
         }
-        HexPiece hex = board.get(hexPt);
-        Road road = hex.getRoad(loc);
+        Road road = hexes[layout.indexOf(hexPt)].getRoad(loc);
         return road != null;
     }
 
@@ -208,8 +447,98 @@ public class CatanBoard {
         if (!isValidPoint(hexPt)) {
             return null;
         }
-        HexPiece hex = board.get(hexPt);
-        return hex.getRoad(loc);
+        return hexes[layout.indexOf(hexPt)].getRoad(loc);
+    }
+
+    /**
+     * Returns the vertex at a building location of a hex.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     *
+     * @return the vertex, or -1 if the hex isn't on the board
+     */
+    public int vertexAt(HexPoint hexPt, HexPiece.BuildingLoc loc) {
+        int index = layout.indexOf(hexPt);
+        if (!layout.isValid(index)) {
+            return -1;
+        }
+        return layout.vertexOf(index, loc.ordinal());
+    }
+
+    /**
+     * Returns the edge at a road location of a hex.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the road location on the hex
+     *
+     * @return the edge, or -1 if the hex isn't on the board
+     */
+    public int edgeAt(HexPoint hexPt, HexPiece.RoadLoc loc) {
+        int index = layout.indexOf(hexPt);
+        if (!layout.isValid(index)) {
+            return -1;
+        }
+        return layout.edgeOf(index, loc.ordinal());
+    }
+
+    /**
+     * Returns the seat of the player with a building on a vertex.
+     *
+     * @param vertex  the vertex
+     *
+     * @return the index of the owner, or -1 if there's no building there
+     */
+    public int vertexOwner(int vertex) {
+        return vertexOwner[vertex];
+    }
+
+    /**
+     * Returns what is built on a vertex, which is also how much it produces.
+     *
+     * @param vertex  the vertex
+     *
+     * @return EMPTY, SETTLEMENT or CITY
+     */
+    public int vertexLevel(int vertex) {
+        return vertexLevel[vertex];
+    }
+
+    /**
+     * Returns the seat of the player with a road on an edge.
+     *
+     * @param edge  the edge
+     *
+     * @return the index of the owner, or -1 if there's no road there
+     */
+    public int edgeOwner(int edge) {
+        return edgeOwner[edge];
+    }
+
+    /**
+     * Returns true if there is a settlement (not a city) at a building location of a hex.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     *
+     * @return whether there is a settlement there
+     */
+    public boolean hasSettlement(HexPoint hexPt, HexPiece.BuildingLoc loc) {
+        int vertex = vertexAt(hexPt, loc);
+        return vertex != -1 && vertexLevel[vertex] == SETTLEMENT;
+    }
+
+    /**
+     * Returns true if there is a city at a building location of a hex.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     *
+     * @return whether there is a city there
+     */
+    public boolean hasCity(HexPoint hexPt, HexPiece.BuildingLoc loc) {
+        int vertex = vertexAt(hexPt, loc);
+        return vertex != -1 && vertexLevel[vertex] == CITY;
     }
 
     /**
@@ -223,14 +552,31 @@ public class CatanBoard {
      * @return true for successful build, false otherwise
      */
     public boolean buildRoad(HexPoint hexPt, HexPiece.RoadLoc loc, Player player) {
-        if (!canBuildRoad(hexPt, loc, player)) {
+        return buildRoad(edgeAt(hexPt, loc), player);
+    }
+
+    /**
+     * Builds a road on an edge, if it's possible to. The road is put on the hexes on both
+     * sides of the edge, and the player's road count goes up.
+     *
+     * @param edge  the edge to build on
+     * @param player  the player that wants to build this road
+     *
+     * @return true for successful build, false otherwise
+     */
+    public boolean buildRoad(int edge, Player player) {
+        if (!canBuildRoad(edge, player)) {
             return false;
         }
-        HexPiece hex = board.get(hexPt);
-        hex.buildRoad(loc, player);
-
-        HexPiece adjHex = board.get(getAdjacentHex(hexPt, loc));
-        adjHex.buildRoad(loc.complement(), player);
+        edgeOwner[edge] = player.index();
+        int hex = layout.edgeHex(edge, 0);
+        int side = layout.edgeSide(edge, 0);
+        hexes[hex].buildRoad(HexPiece.RoadLoc.get(side), player);
+        hexes[layout.edgeHex(edge, 1)].buildRoad(HexPiece.RoadLoc.get(layout.edgeSide(edge, 1)),
+                                                 player);
+        player.buildRoad();
+        HexPoint point = layout.point(hex);
+        GameEvents.build("road", player, point.row(), point.col(), side);
         return true;
     }
 
@@ -245,77 +591,405 @@ public class CatanBoard {
      * @return true if a road can be placed here, false otherwise
      */
     public boolean canBuildRoad(HexPoint hex, HexPiece.RoadLoc loc, Player player) {
-        if (!isValidPoint(hex) || hasRoad(hex, loc)) {
+        return canBuildRoad(edgeAt(hex, loc), player);
+    }
+
+    /**
+     * Determines whether a player can build a road on an edge. The edge has to be empty, the
+     * player can't be out of roads, and one of its ends has to either have one of the
+     * player's buildings or continue one of the player's roads. A road can't be continued
+     * through a vertex with another player's building on it.
+     *
+     * @param edge  the edge to check
+     * @param player  the player that wants to build the road
+     *
+     * @return true if a road can be placed here, false otherwise
+     */
+    public boolean canBuildRoad(int edge, Player player) {
+        if (edge < 0 || edgeOwner[edge] != -1 || player.roads() >= layout.maxRoads()) {
             return false;
         }
-        Road adjRoad = getRoad(hex, loc.next());
-        if (adjRoad.owner() == player) {
-            return true;
+        int me = player.index();
+        for (int k = 0; k < 2; k++) {
+            int vertex = layout.edgeVertex(edge, k);
+            int owner = vertexOwner[vertex];
+            if (owner == me) {
+                return true;
+            }
+            if (owner != -1) {
+                continue;
+            }
+            for (int j = 0; j < 3; j++) {
+                int other = layout.vertexEdge(vertex, j);
+                if (other != -1 && other != edge && edgeOwner[other] == me) {
+                    return true;
+                }
+            }
         }
-        adjRoad = getRoad(hex, loc.prev());
-        if (adjRoad.owner() == player) {
-            return true;
+        return false;
+    }
+
+    /**
+     * Determines whether a player can build a settlement on a vertex. The vertex and all of
+     * its neighbors have to be empty (the distance rule), the player can't be out of
+     * settlements, and outside of the initial placement one of the player's roads has to
+     * lead to it. Every check is a lookup in the precomputed vertex tables.
+     *
+     * @param vertex  the vertex to check
+     * @param player  the player that wants to build the settlement
+     * @param initial  true during the initial placement, when no road is needed
+     *
+     * @return true if a settlement can be placed here, false otherwise
+     */
+    public boolean canBuildSettlement(int vertex, Player player, boolean initial) {
+        if (vertex < 0 || vertexOwner[vertex] != -1
+                || player.settlements() >= layout.maxSettlements()) {
+            return false;
         }
-        HexPoint adjHex = getAdjacentHex(hex, loc);
-        HexPiece.RoadLoc complement = loc.complement();
-        adjRoad = getRoad(adjHex, complement.next());
-        if (adjRoad.owner() == player) {
-            return true;
+        boolean connected = initial;
+        for (int k = 0; k < 3; k++) {
+            int neighbor = layout.vertexNeighbor(vertex, k);
+            if (neighbor != -1 && vertexOwner[neighbor] != -1) {
+                return false;
+            }
+            int edge = layout.vertexEdge(vertex, k);
+            if (edge != -1 && edgeOwner[edge] == player.index()) {
+                connected = true;
+            }
         }
-        adjRoad = getRoad(adjHex, complement.prev());
-        if (adjRoad.owner() == player) {
-            return true;
+        return connected;
+    }
+
+    /**
+     * Determines whether a player can build a settlement at a building location of a hex.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     * @param player  the player that wants to build the settlement
+     * @param initial  true during the initial placement, when no road is needed
+     *
+     * @return true if a settlement can be placed here, false otherwise
+     */
+    public boolean canBuildSettlement(HexPoint hexPt, HexPiece.BuildingLoc loc, Player player,
+                                      boolean initial) {
+        return canBuildSettlement(vertexAt(hexPt, loc), player, initial);
+    }
+
+    /**
+     * Builds a settlement on a vertex, if it's possible to. The same building is put on each
+     * of the hexes around the vertex, and the player's settlement count goes up.
+     *
+     * @param vertex  the vertex to build on
+     * @param player  the player that wants to build the settlement
+     * @param initial  true during the initial placement, when no road is needed
+     *
+     * @return true for successful build, false otherwise
+     */
+    public boolean buildSettlement(int vertex, Player player, boolean initial) {
+        if (!canBuildSettlement(vertex, player, initial)) {
+            return false;
         }
-        return false;
+        vertexOwner[vertex] = player.index();
+        vertexLevel[vertex] = SETTLEMENT;
+        addProduction(vertex, player.index(), 1);
+        Building building = new Building(player);
+        for (int k = 0; k < 3; k++) {
+            int hex = layout.vertexHex(vertex, k);
+            if (hex != -1) {
+                hexes[hex].placeBuilding(HexPiece.BuildingLoc.get(layout.vertexCorner(vertex, k)),
+                                         building);
+            }
+        }
+        player.buildSettlement();
+        if (vertexHarbor[vertex] != -1) {
+            player.useHarbor(Harbor.get(vertexHarbor[vertex]));
+        }
+        HexPoint point = layout.point(layout.vertexHex(vertex, 0));
+        GameEvents.build("settlement", player, point.row(), point.col(),
+                         layout.vertexCorner(vertex, 0));
+        return true;
     }
 
-    // TODO helper functions for indicating whether there are settlements or roads on tiles
-    // TODO decide on harbors (9 possible, need 6)
-    // TODO place settlement method
-    // TODO place road method
-    // TODO place city method
-    // TODO hasSettlement method
-    // TODO hasCity method
-    // TODO can build settlement (resources, not exceeding max, distance rule)
-    // TODO can build road (resources, not exceeding max, connecting rule)
-    // TODO can build cities (resources, not exceeding max, on top of previous settlement)
+    /**
+     * Builds a settlement at a building location of a hex, if it's possible to.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     * @param player  the player that wants to build the settlement
+     * @param initial  true during the initial placement, when no road is needed
+     *
+     * @return true for successful build, false otherwise
+     */
+    public boolean buildSettlement(HexPoint hexPt, HexPiece.BuildingLoc loc, Player player,
+                                   boolean initial) {
+        return buildSettlement(vertexAt(hexPt, loc), player, initial);
+    }
 
     /**
-     * The points of the hex tiles in spiral ordering, used to place the dice numbers.
-     * These are the hex points that are considered valid, the ones that are actually on
-     * the board.
+     * Determines whether a player can upgrade a settlement on a vertex to a city. The
+     * settlement has to be the player's, and the player can't be out of cities.
+     *
+     * @param vertex  the vertex to check
+     * @param player  the player that wants to build the city
+     *
+     * @return true if a city can be placed here, false otherwise
      */
-    public static final int[][] validHexPoints = {{3,1},{3,2},{4,3},{3,4},{3,5},{2,5},{1,4},
-                                                {1,3},{1,2},{2,1},{2,2},{3,3},{2,4},{2,3}};
+    public boolean canBuildCity(int vertex, Player player) {
+        return vertex >= 0 && vertexOwner[vertex] == player.index()
+            && vertexLevel[vertex] == SETTLEMENT && player.cities() < layout.maxCities();
+    }
+
     /**
-     * A list of all the hex points on the board, including the sentinel points.
+     * Determines whether a player can upgrade a settlement at a building location of a hex.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     * @param player  the player that wants to build the city
+     *
+     * @return true if a city can be placed here, false otherwise
      */
-    public static final int[][] hexPoints = {{3,1},{3,2},{4,3},{3,4},{3,5},{2,5},{1,4},{1,3},
-                                        {1,2},{2,1},{2,2},{3,3},{2,4},{2,3},{1,0},{2,0},{3,0},
-                                        {4,1},{4,2},{5,3},{4,4},{4,5},{3,6},{2,6},{1,6},{1,5},
-                                        {0,4},{0,3},{0,2},{1,1}};
+    public boolean canBuildCity(HexPoint hexPt, HexPiece.BuildingLoc loc, Player player) {
+        return canBuildCity(vertexAt(hexPt, loc), player);
+    }
+
+    /**
+     * Upgrades a settlement on a vertex to a city, if it's possible to.
+     *
+     * @param vertex  the vertex to build on
+     * @param player  the player that wants to build the city
+     *
+     * @return true for successful build, false otherwise
+     */
+    public boolean buildCity(int vertex, Player player) {
+        if (!canBuildCity(vertex, player)) {
+            return false;
+        }
+        vertexLevel[vertex] = CITY;
+        addProduction(vertex, player.index(), 1);
+        int hex = layout.vertexHex(vertex, 0);
+        int corner = layout.vertexCorner(vertex, 0);
+        hexes[hex].getBuilding(HexPiece.BuildingLoc.get(corner)).upgrade();
+        player.buildCity();
+        HexPoint point = layout.point(hex);
+        GameEvents.build("city", player, point.row(), point.col(), corner);
+        return true;
+    }
+
+    /**
+     * Upgrades a settlement at a building location of a hex to a city, if it's possible to.
+     *
+     * @param hexPt  the point identifying the hex
+     * @param loc  the building location on the hex
+     * @param player  the player that wants to build the city
+     *
+     * @return true for successful build, false otherwise
+     */
+    public boolean buildCity(HexPoint hexPt, HexPiece.BuildingLoc loc, Player player) {
+        return buildCity(vertexAt(hexPt, loc), player);
+    }
+
+    /**
+     * Returns the point of the hex that the robber is currently on.
+     *
+     * @return the robber's hex, or null if the robber has not been placed yet
+     */
+    public HexPoint robber() {
+        return robber == -1 ? null : layout.point(robber);
+    }
+
+    /**
+     * Returns a number that changes whenever a building goes up, the robber moves or the
+     * board is dealt again, and at no other time. What the hexes produce for each player
+     * can be cached for as long as it stays the same.
+     *
+     * @return the version of the board's production
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the index of the hex that the robber is currently on.
+     *
+     * @return the robber's hex index, or -1 if the robber has not been placed yet
+     */
+    public int robberHex() {
+        return robber;
+    }
+
+    /**
+     * Moves the robber onto the given hex, removing it from the hex it was on before. The
+     * robber can only be moved onto a valid hex, and it has to actually move.
+     *
+     * @param hexPt  the point identifying the hex the robber moves to
+     * @param player  the player moving the robber, may be null
+     *
+     * @return true if the robber was moved, false otherwise
+     */
+    public boolean moveRobber(HexPoint hexPt, Player player) {
+        return moveRobber(layout.indexOf(hexPt), player);
+    }
+
+    /**
+     * Moves the robber onto the hex with the given index, removing it from the hex it was on
+     * before. The robber can only be moved onto a valid hex, and it has to actually move.
+     *
+     * @param index  the index of the hex the robber moves to
+     * @param player  the player moving the robber, may be null
+     *
+     * @return true if the robber was moved, false otherwise
+     */
+    public boolean moveRobber(int index, Player player) {
+        if (!layout.isValid(index) || index == robber) {
+            return false;
+        }
+        if (robber != -1) {
+            hexes[robber].removeRobber();
+        }
+        hexes[index].placeRobber();
+        robber = index;
+        version += 1;
+        HexPoint hexPt = layout.point(index);
+        GameEvents.robberMove(player, hexPt.row(), hexPt.col());
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes write takes for a board on a layout.
+     *
+     * @param layout  the layout
+     *
+     * @return the size of an encoded board
+     */
+    static int encodedSize(BoardLayout layout) {
+        return Integer.BYTES + layout.vertexCount() + layout.edgeCount();
+    }
+
+    /**
+     * Writes what has changed on the board since it was dealt: the robber, then a byte for
+     * each vertex holding its owner plus one and its level, then a byte for each edge
+     * holding its owner plus one.
+     *
+     * @param out  the buffer to write into
+     */
+    void write(ByteBuffer out) {
+        out.putInt(robber);
+        for (int v = 0; v < vertexOwner.length; v++) {
+            out.put((byte) ((vertexOwner[v] + 1) | vertexLevel[v] << 4));
+        }
+        for (int e = 0; e < edgeOwner.length; e++) {
+            out.put((byte) (edgeOwner[e] + 1));
+        }
+    }
+
+    /**
+     * Reads back what write wrote, onto a board that has just been dealt the same way. The
+     * pieces are put straight onto the board without the checks of building them, since
+     * they came from a legal board, and the players' counts aren't touched.
+     *
+     * @param in  the buffer to read from
+     * @param players  the players, by seat
+     */
+    void read(ByteBuffer in, Player[] players) {
+        int robberHex = in.getInt();
+        if (robberHex != robber) {
+            if (robber != -1) {
+                hexes[robber].removeRobber();
+            }
+            if (robberHex != -1) {
+                hexes[robberHex].placeRobber();
+            }
+            robber = robberHex;
+            version += 1;
+        }
+        for (int v = 0; v < vertexOwner.length; v++) {
+            int b = in.get();
+            int owner = (b & 0xF) - 1;
+            if (owner == -1) {
+                continue;
+            }
+            int level = b >> 4;
+            vertexOwner[v] = owner;
+            vertexLevel[v] = level;
+            addProduction(v, owner, level);
+            Building building = new Building(players[owner]);
+            if (level == CITY) {
+                building.upgrade();
+            }
+            for (int k = 0; k < 3; k++) {
+                int hex = layout.vertexHex(v, k);
+                if (hex != -1) {
+                    hexes[hex].placeBuilding(HexPiece.BuildingLoc.get(layout.vertexCorner(v, k)),
+                                             building);
+                }
+            }
+        }
+        for (int e = 0; e < edgeOwner.length; e++) {
+            int owner = in.get() - 1;
+            if (owner == -1) {
+                continue;
+            }
+            edgeOwner[e] = owner;
+            for (int k = 0; k < 2; k++) {
+                hexes[layout.edgeHex(e, k)].buildRoad(HexPiece.RoadLoc.get(layout.edgeSide(e, k)),
+                                                      players[owner]);
+            }
+        }
+    }
+
+    /**
+     * The points of the hex tiles of the two-player board in spiral ordering, used to place
+     * the dice numbers. These are the hex points that are considered valid, the ones that are
+     * actually on the board. The sentinels around them are generated by BoardLayout.
+     */
+    public static final int[][] validHexPoints = {{3,1},{3,2},{4,3},{3,4},{3,5},{2,5},{1,4},
+                                                {1,3},{1,2},{2,1},{2,2},{3,3},{2,4},{2,3}};
 
     /** The dice numbers in spiral order, should correspond to validHexPoints. */
     public static final int[] diceNums = {5, 2, 6, 3, 8, 10, 9, 11, 4, 8, 10, 9, 5, 4};
 
-    /** The total number of tiles on the board, including sentinel pieces. */
+    /** The number of places on the coast of the two-player board where a harbor may go. */
+    public static final int HARBOR_SLOTS = 9;
+
+    /** The number of harbors on the two-player board. */
+    public static final int HARBORS = 6;
+
+    /** The total number of tiles on the two-player board, including sentinel pieces. */
     public static final int TOTAL_TILES = 30;
 
-    /** The total number of valid tiles on the board, not including sentinel pieces. */
+    /** The total number of valid tiles on the two-player board, not including sentinels. */
     public static final int TOTAL_VALID_TILES = 14;
 
-    /** The number of hexes for the wheat resource. */
+    /** The level of a vertex with nothing on it. */
+    public static final int EMPTY = 0;
+
+    /** The level of a vertex with a settlement, which is also what it produces. */
+    public static final int SETTLEMENT = 1;
+
+    /** The level of a vertex with a city, which is also what it produces. */
+    public static final int CITY = 2;
+
+    /** An empty list of hex indices. */
+    private static final int[] NO_HEXES = new int[0];
+
+    /** The roll number of a sentinel piece, which can never be rolled. */
+    public static final int SENTINEL_ROLL = 13;
+
+    /** The roll number of a desert, which never produces. */
+    public static final int DESERT_ROLL = 0;
+
+    /** The number of hexes for the wheat resource on the two-player board. */
     public static final int FIELDS = 3;
 
-    /** The number of hexes for the wood resource. */
+    /** The number of hexes for the wood resource on the two-player board. */
     public static final int FORESTS = 3;
 
-    /** The number of hexes for the sheep resource. */
+    /** The number of hexes for the sheep resource on the two-player board. */
     public static final int PASTURES = 3;
 
-    /** The number of hexes for the ore resource. */
+    /** The number of hexes for the ore resource on the two-player board. */
     public static final int MOUNTAINS = 2;
 
-    /** The number of hexes for the brick resource. */
+    /** The number of hexes for the brick resource on the two-player board. */
     public static final int HILLS = 3;
 }
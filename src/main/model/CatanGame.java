@@ -1,9 +1,9 @@
 package src.main.model;
 
-import java.util.HashMap;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Random;
 import java.awt.Color;
 
@@ -13,23 +13,27 @@ import java.awt.Color;
  * @author Kevin Lowe
  */
 public class CatanGame {
-    /** First player of the game. */
-    private Player player1;
-
-    /** Second player of the game. */
-    private Player player2;
+    /** The players of the game, in turn order. A player's index is their seat here. */
+    private Player[] players;
 
     /** A reference to the board for this game. */
     private CatanBoard board;
 
-    /** The development deck. */
-    private List<DevelopmentCard> devDeck;
+    /** The development deck. Cards at devIndex and beyond haven't been drawn yet. */
+    private DevelopmentCard[] devDeck;
 
     /** The index for the development deck to draw the next card. */
     private int devIndex;
 
-    /** The stack of resources. Internally as a hashmap mapping resource to the count left. */
-    private HashMap<Resource, Integer> resources;
+    /** The stack of resources, as the count left for each resource ordinal. */
+    private int[] resources;
+
+    /**
+     * Scratch space for distributeResources, holding the amount each player requested of
+     * each resource at index player * Resource.COUNT + resource ordinal. Kept around so that
+     * a roll doesn't allocate.
+     */
+    private int[] requested;
 
     /** The holder of the Longest Army card. Null indicates that no one has claimed it. */
     private Player longestArmyOwner;
@@ -37,51 +41,185 @@ public class CatanGame {
     /** The holder of the Longest Road card. Null indicates that not one has claimed it. */
     private Player longestRoadOwner;
 
+    /** The length of each player's longest road, kept up as roads and settlements go down. */
+    private ScoreKeeper scores;
+
     /** Random number generator. */
-    private Random rand;
+    private GameRandom rand;
+
+    /** The seed the game was dealt from. */
+    private long seed;
+
+    /** The index of the player whose turn it currently is. */
+    private int currentPlayer;
+
+    /** The number of turns that have been completed so far. */
+    private int turn;
+
+    /** The numbering of the actions on this game's layout. */
+    private ActionSpace actionSpace;
+
+    /** The phase the game is in. */
+    private TurnPhase phase;
+
+    /** The seat that acts next, which differs from the current player during the setup
+     *  and while discarding. */
+    private int acting;
+
+    /** The number of setup placements finished, each a settlement and a road. */
+    private int setupStep;
+
+    /** The settlement placed last during the setup, which the next road has to touch. */
+    private int lastSettlement;
+
+    /** The phase to go back to once the robber has been moved. */
+    private TurnPhase afterRobber;
+
+    /** The hex the robber was just moved to, for choosing whom to steal from. */
+    private int stealHex;
+
+    /** The number of cards each seat still has to discard after a 7. */
+    private int[] discards;
+
+    /** The number of free roads left from a road building card. */
+    private int freeRoads;
+
+    /** The sum of the last roll of the dice. */
+    private int lastRoll;
+
+    /** The player who has won, or null while the game is going. */
+    private Player winner;
+
+    /** The listeners told about the game as it goes. */
+    private GameListener[] listeners = NO_LISTENERS;
 
     /**
-     * Initializes a new game of Catan.
+     * Initializes a new game of Catan. The board is picked based on the number of players:
+     * the two-player board for 2, the standard board for 3 or 4, and the extension board for
+     * 5 or 6.
      * 
-     * @param color1  The color for player 1
-     * @param color2  The color for player 2
-     */
-    public CatanGame(Color color1, Color color2) {
-        this.player1 = new Player(color1);
-        this.player2 = new Player(color2);
-        this.board = new CatanBoard();
-        initializeDevDeck();
-        this.devIndex = 0;
-        this.resources = new HashMap<Resource, Integer>();
-        for (Resource r : Resource.values()) {
-            this.resources.put(r, INITIAL_RESOURCE_SIZE);
-        }
-        this.longestArmyOwner = null;
-        this.longestRoadOwner = null;
-        rand = new Random();
+     * @param colors  The colors for each player, in turn order
+     */
+    public CatanGame(Color... colors) {
+        this(defaultLayout(colors.length), colors);
     }
 
     /**
-     * Fills in a brand new development deck and shuffles it.
+     * Initializes a new seeded game of Catan, on the board that goes with the number of
+     * players.
+     *
+     * @param seed  The seed for the game's random number generator
+     * @param colors  The colors for each player, in turn order
      */
-    private void initializeDevDeck() {
-        this.devDeck = new ArrayList<DevelopmentCard>();
-        for (int i = 0; i < SOLDIERS; i++) {
-            devDeck.add(DevelopmentCard.KNIGHT);
+    public CatanGame(long seed, Color... colors) {
+        this(seed, defaultLayout(colors.length), colors);
+    }
+
+    /**
+     * Initializes a new game of Catan on a specific board layout.
+     *
+     * @param layout  The layout of the board
+     * @param colors  The colors for each player, in turn order
+     */
+    public CatanGame(BoardLayout layout, Color... colors) {
+        this(new Random().nextLong(), layout, colors);
+    }
+
+    /**
+     * Initializes a new game of Catan on a specific board layout. Everything random about the
+     * game, from the board to the dice, comes from the seed, so two games with the same seed
+     * and the same moves play out the same way.
+     *
+     * @param seed  The seed for the game's random number generator
+     * @param layout  The layout of the board
+     * @param colors  The colors for each player, in turn order
+     */
+    public CatanGame(long seed, BoardLayout layout, Color... colors) {
+        if (colors.length < MIN_PLAYERS || colors.length > MAX_PLAYERS) {
+            throw new IllegalArgumentException("a game needs between " + MIN_PLAYERS
+                                               + " and " + MAX_PLAYERS + " players");
         }
-        for (int i = 0; i < MONOPOLIES; i++) {
-            devDeck.add(DevelopmentCard.MONOPOLY);
+        this.players = new Player[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            players[i] = new Player(colors[i], i);
         }
-        for (int i = 0; i < VP_CARDS; i++) {
-            devDeck.add(DevelopmentCard.VICTORY);
+        this.seed = seed;
+        this.rand = new GameRandom(seed);
+        this.board = new CatanBoard(layout, rand);
+        this.scores = new ScoreKeeper(board, players.length);
+        this.devDeck = layout.devDeck().clone();
+        this.resources = new int[Resource.COUNT];
+        this.requested = new int[players.length * Resource.COUNT];
+        this.actionSpace = layout.actionSpace();
+        this.discards = new int[players.length];
+        startGame();
+    }
+
+    /**
+     * Reuses this game for a brand new game with the same players and layout, without
+     * allocating. The result is the same as constructing a new game with this seed.
+     *
+     * @param seed  The seed for the game's random number generator
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        rand.setSeed(seed);
+        board.reset(rand);
+        System.arraycopy(board.layout().devDeck(), 0, devDeck, 0, devDeck.length);
+        for (Player p : players) {
+            p.reset();
         }
-        for (int i = 0; i < ROAD_CARDS; i++) {
-            devDeck.add(DevelopmentCard.ROADS);
+        startGame();
+    }
+
+    /**
+     * Sets up the state shared by the constructor and reset, once the board has been dealt:
+     * shuffles the dev deck, fills the bank and starts the first turn.
+     */
+    private void startGame() {
+        for (int i = devDeck.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            DevelopmentCard tmp = devDeck[i];
+            devDeck[i] = devDeck[j];
+            devDeck[j] = tmp;
+        }
+        this.devIndex = 0;
+        Arrays.fill(resources, INITIAL_RESOURCE_SIZE);
+        this.longestArmyOwner = null;
+        this.longestRoadOwner = null;
+        scores.reset();
+        this.currentPlayer = 0;
+        this.turn = 0;
+        this.phase = TurnPhase.INITIAL_SETTLEMENT;
+        this.acting = 0;
+        this.setupStep = 0;
+        this.lastSettlement = -1;
+        this.afterRobber = TurnPhase.MAIN;
+        this.stealHex = -1;
+        Arrays.fill(discards, 0);
+        this.freeRoads = 0;
+        this.lastRoll = 0;
+        this.winner = null;
+        GameEvents.turnStart(turn, players[currentPlayer]);
+        for (GameListener listener : listeners) {
+            listener.gameStarted(this);
         }
-        for (int i = 0; i < PLENTIES; i++) {
-            devDeck.add(DevelopmentCard.PLENTY);
+    }
+
+    /**
+     * Picks the board that goes with a number of players.
+     *
+     * @param numPlayers  the number of players
+     *
+     * @return the layout to use
+     */
+    private static BoardLayout defaultLayout(int numPlayers) {
+        if (numPlayers <= 2) {
+            return BoardLayout.TWO_PLAYER;
+        } else if (numPlayers <= 4) {
+            return BoardLayout.STANDARD;
         }
-        Collections.shuffle(devDeck);
+        return BoardLayout.EXTENSION;
     }
 
     /**
@@ -90,7 +228,46 @@ public class CatanGame {
      * @return the size of the dev deck
      */
     public int devDeckSize() {
-        return devDeck.size() - devIndex;
+        return devDeck.length - devIndex;
+    }
+
+    /**
+     * Replaces the order of the development cards that haven't been drawn yet, for example
+     * with a sampled guess at the hidden deck. The cards are laid out from the counts and
+     * then shuffled.
+     *
+     * @param counts  the number of each card, indexed by card ordinal from offset, which
+     *                has to add up to the size of the deck
+     * @param offset  where the counts start in the array
+     * @param shuffle  the random number generator used to order the cards
+     */
+    public void setDevDeck(int[] counts, int offset, Random shuffle) {
+        int i = devIndex;
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            for (int n = counts[offset + c]; n > 0; n--) {
+                devDeck[i++] = DevelopmentCard.get(c);
+            }
+        }
+        if (i != devDeck.length) {
+            throw new IllegalArgumentException("counts don't match the size of the deck");
+        }
+        for (i = devDeck.length - 1; i > devIndex; i--) {
+            int j = devIndex + shuffle.nextInt(i - devIndex + 1);
+            DevelopmentCard tmp = devDeck[i];
+            devDeck[i] = devDeck[j];
+            devDeck[j] = tmp;
+        }
+    }
+
+    /**
+     * Returns how many of a development card the full deck of this game's layout holds.
+     *
+     * @param card  the type of card
+     *
+     * @return the number in the full deck
+     */
+    public int deckCount(DevelopmentCard card) {
+        return board.layout().devCardCount(card);
     }
 
     /**
@@ -101,7 +278,36 @@ public class CatanGame {
      * @return the amount of cards left for that resource
      */
     public int resourceLeft(Resource res) {
-        return resources.get(res);
+        return resources[res.ordinal()];
+    }
+
+    /**
+     * Returns the number of players in the game.
+     *
+     * @return the number of players
+     */
+    public int numPlayers() {
+        return players.length;
+    }
+
+    /**
+     * Returns the player sitting in some seat.
+     *
+     * @param index  the seat of the player, starting from 0
+     *
+     * @return the player
+     */
+    public Player player(int index) {
+        return players[index];
+    }
+
+    /**
+     * Returns the board for this game.
+     *
+     * @return the board
+     */
+    public CatanBoard board() {
+        return board;
     }
 
     /**
@@ -110,54 +316,72 @@ public class CatanGame {
      * @return a number from 1 to 6, inclusive
      */
     public int rollDice() {
-        return rand.nextInt(6) + 1;
+        int value = rand.nextInt(6) + 1;
+        GameEvents.diceRoll(value);
+        return value;
     }
 
     /**
-     * Allocates resources to the two players based on the die roll. First checks to see if
+     * Allocates resources to the players based on the die roll. First checks to see if
      * there are enough resources in supply for everyone. If there is, then distribute out,
      * otherwise do nothing for that resource.
      *
-     * TODO test distribution of resources
-     *
      * @param num  the number that was just rolled
      */
     public void distributeResources(int num) {
-        HashMap<Resource, Integer> requested1 = new HashMap<Resource, Integer>();
-        HashMap<Resource, Integer> requested2 = new HashMap<Resource, Integer>();
-        for (Resource r : Resource.values()) {
-            requested1.put(r, 0);
-            requested2.put(r, 0);
-        }
-        for (HexPiece tile : tilesForNum(num)) {
+        int[] requested = this.requested;
+        Arrays.fill(requested, 0);
+        BoardLayout layout = board.layout();
+        int[] hexes = board.hexesForRoll(layout.rollFor(num));
+        for (int h : hexes) {
+            HexPiece tile = board.hex(h);
             if (tile.hasRobber()) {
                 continue;
             }
-            Resource res = tile.resource();
-            for (Building building : tile.getBuildings()) {
-                if (building.owner() == player1) {
-                    if (building.type().equals(Building.SETTLEMENT)) {
-                        requested1.put(res, requested1.get(res) + 1);
-                    } else {
-                        requested1.put(res, requested1.get(res) + 2);
-                    }
-                } else {
-                    if (building.type().equals(Building.SETTLEMENT)) {
-                        requested2.put(res, requested2.get(res) + 1);
-                    } else {
-                        requested2.put(res, requested2.get(res) + 2);
+            int res = tile.resource().ordinal();
+            for (int corner = 0; corner < 6; corner++) {
+                int vertex = layout.vertexOf(h, corner);
+                int owner = board.vertexOwner(vertex);
+                if (owner != -1) {
+                    requested[owner * Resource.COUNT + res] += board.vertexLevel(vertex);
+                }
+            }
+        }
+        int shortedMask = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            int totalRequested = 0;
+            for (int p = r; p < requested.length; p += Resource.COUNT) {
+                totalRequested += requested[p];
+            }
+            if (totalRequested == 0) {
+                continue;
+            }
+            if (totalRequested <= resources[r]) {
+                Resource res = Resource.get(r);
+                for (int p = 0; p < players.length; p++) {
+                    int amount = requested[p * Resource.COUNT + r];
+                    if (amount > 0) {
+                        players[p].addResource(res, amount);
                     }
                 }
+                resources[r] -= totalRequested;
+            } else {
+                shortedMask |= 1 << r;
             }
         }
-        for (Resource r : Resource.values()) {
-            int totalRequested = requested1.get(r) + requested2.get(r);
-            if (totalRequested <= resources.get(r)) {
-                player1.addResource(r, requested1.get(r));
-                player2.addResource(r, requested2.get(r));
-                resources.put(r, resources.get(r) - totalRequested);
+        if (GameEvents.distributionEnabled()) {
+            int[] granted = new int[Resource.COUNT];
+            for (int p = 0; p < players.length; p++) {
+                for (int r = 0; r < Resource.COUNT; r++) {
+                    boolean shorted = (shortedMask & (1 << r)) != 0;
+                    granted[r] = shorted ? 0 : requested[p * Resource.COUNT + r];
+                }
+                GameEvents.resourceDistribution(num, players[p], granted, shortedMask);
             }
         }
+        for (GameListener listener : listeners) {
+            listener.resourcesDistributed(this, num, requested, shortedMask);
+        }
     }
 
     /**
@@ -168,18 +392,10 @@ public class CatanGame {
      * @return a list of hex tiles with the same number as num
      */
     public List<HexPiece> tilesForNum(int num) {
-        List<HexPiece> tiles = new ArrayList<HexPiece>();
-        for (HexPiece tile : board.getTiles()) {
-            if (num == 12) {
-                if (tile.roll() == 2) {
-                    tiles.add(tile);
-                    return tiles;
-                }
-            } else {
-                if (tile.roll() == num) {
-                    tiles.add(tile);
-                }
-            }
+        int[] hexes = board.hexesForRoll(board.layout().rollFor(num));
+        List<HexPiece> tiles = new ArrayList<HexPiece>(hexes.length);
+        for (int h : hexes) {
+            tiles.add(board.hex(h));
         }
         return tiles;
     }
@@ -201,44 +417,1022 @@ public class CatanGame {
      * @return true if the road building is successful, false otherwise
      */
     public boolean buildRoad(HexPoint hex, HexPiece.RoadLoc loc, Player player) {
-        // TODO check player resources first, then build road, then decrement resources
-        // TODO also put back resources into pile and increment road count
-        return false;
+        return buildRoad(board.edgeAt(hex, loc), player);
+    }
+
+    /**
+     * Builds a road on an edge for the player, paying for it if the player can afford it and
+     * the board allows it.
+     *
+     * @param edge  the edge to build on
+     * @param player  the player that wants to build this road
+     *
+     * @return true if the road building is successful, false otherwise
+     */
+    public boolean buildRoad(int edge, Player player) {
+        if (!player.canAfford(Purchase.ROAD) || !board.buildRoad(edge, player)) {
+            return false;
+        }
+        pay(player, Purchase.ROAD);
+        built(player, Purchase.ROAD, edge);
+        checkWin(player);
+        return true;
+    }
+
+    /**
+     * Builds a settlement for the player at a building location of a hex.
+     *
+     * @param hex  the point identifying the hex
+     * @param loc  the building location on the hex
+     * @param player  the player that wants to build the settlement
+     *
+     * @return true if the settlement was built, false otherwise
+     */
+    public boolean buildSettlement(HexPoint hex, HexPiece.BuildingLoc loc, Player player) {
+        return buildSettlement(board.vertexAt(hex, loc), player);
+    }
+
+    /**
+     * Builds a settlement on a vertex for the player, paying for it if the player can afford
+     * it and the board allows it. The settlement is worth a victory point.
+     *
+     * @param vertex  the vertex to build on
+     * @param player  the player that wants to build the settlement
+     *
+     * @return true if the settlement was built, false otherwise
+     */
+    public boolean buildSettlement(int vertex, Player player) {
+        if (!player.canAfford(Purchase.SETTLEMENT)
+                || !board.buildSettlement(vertex, player, false)) {
+            return false;
+        }
+        pay(player, Purchase.SETTLEMENT);
+        player.addPoints(1);
+        built(player, Purchase.SETTLEMENT, vertex);
+        checkWin(player);
+        return true;
+    }
+
+    /**
+     * Upgrades one of the player's settlements to a city at a building location of a hex.
+     *
+     * @param hex  the point identifying the hex
+     * @param loc  the building location on the hex
+     * @param player  the player that wants to build the city
+     *
+     * @return true if the city was built, false otherwise
+     */
+    public boolean buildCity(HexPoint hex, HexPiece.BuildingLoc loc, Player player) {
+        return buildCity(board.vertexAt(hex, loc), player);
+    }
+
+    /**
+     * Upgrades one of the player's settlements on a vertex to a city, paying for it if the
+     * player can afford it. The city is worth one more victory point than the settlement.
+     *
+     * @param vertex  the vertex to build on
+     * @param player  the player that wants to build the city
+     *
+     * @return true if the city was built, false otherwise
+     */
+    public boolean buildCity(int vertex, Player player) {
+        if (!player.canAfford(Purchase.CITY) || !board.buildCity(vertex, player)) {
+            return false;
+        }
+        pay(player, Purchase.CITY);
+        player.addPoints(1);
+        built(player, Purchase.CITY, vertex);
+        checkWin(player);
+        return true;
+    }
+
+    /**
+     * Places one of the free settlements of the initial placement. There is no road needed,
+     * but the distance rule still applies. For the second settlement, the player collects
+     * one of each resource from the hexes around it.
+     *
+     * @param vertex  the vertex to build on
+     * @param player  the player placing the settlement
+     * @param collect  true if the player should collect the resources around it
+     *
+     * @return true if the settlement was placed, false otherwise
+     */
+    public boolean placeInitialSettlement(int vertex, Player player, boolean collect) {
+        if (!board.buildSettlement(vertex, player, true)) {
+            return false;
+        }
+        player.addPoints(1);
+        built(player, Purchase.SETTLEMENT, vertex);
+        if (collect) {
+            BoardLayout layout = board.layout();
+            for (int k = 0; k < 3; k++) {
+                int hex = layout.vertexHex(vertex, k);
+                if (!layout.isValid(hex) || board.hex(hex).resource() == null) {
+                    continue;
+                }
+                Resource res = board.hex(hex).resource();
+                if (resources[res.ordinal()] > 0) {
+                    resources[res.ordinal()] -= 1;
+                    player.addResource(res, 1);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Places one of the free roads of the initial placement. It has to connect to one of
+     * the player's buildings or roads.
+     *
+     * @param edge  the edge to build on
+     * @param player  the player placing the road
+     *
+     * @return true if the road was placed, false otherwise
+     */
+    public boolean placeInitialRoad(int edge, Player player) {
+        if (!board.buildRoad(edge, player)) {
+            return false;
+        }
+        built(player, Purchase.ROAD, edge);
+        return true;
+    }
+
+    /**
+     * Trades resources with the bank at the player's trade cost for the resource given,
+     * which is 4 without a harbor. The bank has to have the resource asked for.
+     *
+     * @param player  the player trading
+     * @param give  the resource the player gives
+     * @param get  the resource the player receives
+     *
+     * @return true if the trade happened, false otherwise
+     */
+    public boolean maritimeTrade(Player player, Resource give, Resource get) {
+        int cost = player.tradeCost(give);
+        if (give == get || player.resourceCount(give) < cost || resources[get.ordinal()] == 0) {
+            return false;
+        }
+        for (int i = 0; i < cost; i++) {
+            player.removeResource(give);
+        }
+        resources[give.ordinal()] += cost;
+        resources[get.ordinal()] -= 1;
+        player.addResource(get, 1);
+        return true;
+    }
+
+    /**
+     * Buys a development card for the player, if they can afford it and the deck isn't empty.
+     * The card goes into the cards received this turn.
+     *
+     * @param player  the player buying the card
+     *
+     * @return the card bought, or null if the player couldn't buy one
+     */
+    public DevelopmentCard buyDevCard(Player player) {
+        if (devIndex >= devDeck.length || !player.canAfford(Purchase.DEV_CARD)) {
+            return null;
+        }
+        pay(player, Purchase.DEV_CARD);
+        DevelopmentCard card = devDeck[devIndex++];
+        player.receiveDevCard(card);
+        checkWin(player);
+        return card;
+    }
+
+    /**
+     * Moves the robber onto a hex and steals a random resource card from a victim with a
+     * building on that hex. The victim can be null when there is no one to steal from.
+     *
+     * @param hex  the index of the hex the robber moves to
+     * @param player  the player moving the robber
+     * @param victim  the player to steal from, or null
+     *
+     * @return true if the robber was moved, false otherwise
+     */
+    public boolean moveRobber(int hex, Player player, Player victim) {
+        if (!board.layout().isValid(hex)) {
+            return false;
+        }
+        if (victim != null && (victim == player || board.production(hex, victim.index()) == 0)) {
+            return false;
+        }
+        int from = board.robberHex();
+        if (!board.moveRobber(hex, player)) {
+            return false;
+        }
+        robberMoved(player, from, hex);
+        if (victim != null) {
+            steal(player, victim);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a random resource card from a victim's hand to a player's hand, if the victim
+     * has any.
+     *
+     * @param player  the player stealing
+     * @param victim  the player stolen from
+     */
+    private void steal(Player player, Player victim) {
+        if (victim.resHandSize() == 0) {
+            return;
+        }
+        int pick = rand.nextInt(victim.resHandSize());
+        for (int r = 0; r < Resource.COUNT; r++) {
+            Resource res = Resource.get(r);
+            pick -= victim.resourceCount(res);
+            if (pick < 0) {
+                victim.removeResource(res);
+                player.addResource(res, 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Plays a knight for the player: the robber moves and steals, and the player's army
+     * grows by one.
+     *
+     * @param player  the player playing the knight
+     * @param hex  the index of the hex the robber moves to
+     * @param victim  the player to steal from, or null
+     *
+     * @return true if the knight was played, false otherwise
+     */
+    public boolean playKnight(Player player, int hex, Player victim) {
+        if (!player.canPlayDev(DevelopmentCard.KNIGHT) || !moveRobber(hex, player, victim)) {
+            return false;
+        }
+        player.playDev(DevelopmentCard.KNIGHT);
+        player.playKnight();
+        GameEvents.devCardPlay(player, DevelopmentCard.KNIGHT);
+        knightPlayed();
+        checkWin(player);
+        return true;
+    }
+
+    /**
+     * Takes the cost of a purchase from the player and puts it back into the bank.
+     *
+     * @param player  the player paying
+     * @param purchase  what the player is paying for
+     */
+    private void pay(Player player, Purchase purchase) {
+        player.pay(purchase);
+        for (int r = 0; r < Resource.COUNT; r++) {
+            resources[r] += purchase.cost(r);
+        }
+    }
+
+    /**
+     * Returns the player whose turn it currently is.
+     *
+     * @return the current player
+     */
+    public Player currentPlayer() {
+        return players[currentPlayer];
+    }
+
+    /**
+     * Returns the player holding the longest road award.
+     *
+     * @return the owner of the longest road, or null if no one has it
+     */
+    public Player longestRoadOwner() {
+        return longestRoadOwner;
+    }
+
+    /**
+     * Returns the player holding the largest army award.
+     *
+     * @return the owner of the largest army, or null if no one has it
+     */
+    public Player longestArmyOwner() {
+        return longestArmyOwner;
+    }
+
+    /**
+     * Returns the number of turns that have been completed so far.
+     *
+     * @return the turn number, starting from 0
+     */
+    public int turn() {
+        return turn;
+    }
+
+    /**
+     * Ends the turn for the current player and passes play to the next player in turn order.
+     */
+    public void endTurn() {
+        GameEvents.turnEnd(turn, players[currentPlayer]);
+        for (GameListener listener : listeners) {
+            listener.turnEnded(this, turn, players[currentPlayer]);
+        }
+        players[currentPlayer].endTurn();
+        currentPlayer = (currentPlayer + 1) % players.length;
+        turn += 1;
+        phase = TurnPhase.ROLL;
+        acting = currentPlayer;
+        GameEvents.turnStart(turn, players[currentPlayer]);
+        checkWin(players[currentPlayer]);
+    }
+
+    /**
+     * Plays a monopoly card: every other player hands over all of their cards of a resource.
+     *
+     * @param player  the player playing the card
+     * @param res  the resource to take
+     *
+     * @return true if the card was played, false otherwise
+     */
+    public boolean monopoly(Player player, Resource res) {
+        if (!player.canPlayDev(DevelopmentCard.MONOPOLY)) {
+            return false;
+        }
+        player.playDev(DevelopmentCard.MONOPOLY);
+        for (Player other : players) {
+            if (other == player) {
+                continue;
+            }
+            int count = other.resourceCount(res);
+            for (int i = 0; i < count; i++) {
+                other.removeResource(res);
+            }
+            player.addResource(res, count);
+        }
+        GameEvents.devCardPlay(player, DevelopmentCard.MONOPOLY);
+        return true;
+    }
+
+    /**
+     * Plays a year of plenty card: the player takes two resources of their choice from the
+     * bank, which can be the same resource twice.
+     *
+     * @param player  the player playing the card
+     * @param first  the first resource
+     * @param second  the second resource
+     *
+     * @return true if the card was played, false otherwise
+     */
+    public boolean yearOfPlenty(Player player, Resource first, Resource second) {
+        int needed = first == second ? 2 : 1;
+        if (!player.canPlayDev(DevelopmentCard.PLENTY) || resources[first.ordinal()] < needed
+                || resources[second.ordinal()] < 1) {
+            return false;
+        }
+        player.playDev(DevelopmentCard.PLENTY);
+        resources[first.ordinal()] -= 1;
+        resources[second.ordinal()] -= 1;
+        player.addResource(first, 1);
+        player.addResource(second, 1);
+        GameEvents.devCardPlay(player, DevelopmentCard.PLENTY);
+        return true;
+    }
+
+    /**
+     * Plays a road building card: the player places up to two roads for free.
+     *
+     * @param player  the player playing the card
+     * @param first  the edge of the first road
+     * @param second  the edge of the second road, or -1 to place only one
+     *
+     * @return true if the card was played, false otherwise
+     */
+    public boolean playRoadBuilding(Player player, int first, int second) {
+        if (!player.canPlayDev(DevelopmentCard.ROADS) || !board.buildRoad(first, player)) {
+            return false;
+        }
+        built(player, Purchase.ROAD, first);
+        if (second != -1 && board.buildRoad(second, player)) {
+            built(player, Purchase.ROAD, second);
+        }
+        player.playDev(DevelopmentCard.ROADS);
+        GameEvents.devCardPlay(player, DevelopmentCard.ROADS);
+        checkWin(player);
+        return true;
+    }
+
+    /**
+     * Adds a listener to be told about the game as it goes. Listeners stay through resets.
+     *
+     * @param listener  the listener
+     */
+    public void addListener(GameListener listener) {
+        GameListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener  the listener
+     */
+    public void removeListener(GameListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                GameListener[] shrunk = new GameListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the seed the game was dealt from.
+     *
+     * @return the seed
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * Returns the number of bytes write takes for a game on a layout.
+     *
+     * @param layout  the layout
+     * @param numPlayers  the number of seats
+     *
+     * @return the size of an encoded game
+     */
+    static int encodedSize(BoardLayout layout, int numPlayers) {
+        return 2 * Long.BYTES + 1 + layout.devDeckSize() + Resource.COUNT + 1 + Integer.BYTES
+               + 3 + Integer.BYTES + 1 + Integer.BYTES + numPlayers + 5
+               + numPlayers * Player.ENCODED_SIZE + CatanBoard.encodedSize(layout);
+    }
+
+    /**
+     * Writes the game's state for GameCodec: the seed and the state of the dice, the deck
+     * and the bank, where the turn is, then each player and the board. The board is written
+     * as what's been built on it, since the seed deals the rest. Without the dice, zero is
+     * written in place of their state, so games in the same position write the same bytes
+     * whatever the dice will roll next.
+     *
+     * @param out  the buffer to write into
+     * @param dice  whether to write the state of the dice
+     */
+    void write(ByteBuffer out, boolean dice) {
+        out.putLong(seed);
+        out.putLong(dice ? rand.state() : 0L);
+        out.put((byte) devIndex);
+        for (DevelopmentCard card : devDeck) {
+            out.put((byte) card.ordinal());
+        }
+        for (int r = 0; r < Resource.COUNT; r++) {
+            out.put((byte) resources[r]);
+        }
+        out.put((byte) currentPlayer);
+        out.putInt(turn);
+        out.put((byte) phase.ordinal());
+        out.put((byte) acting);
+        out.put((byte) setupStep);
+        out.putInt(lastSettlement);
+        out.put((byte) afterRobber.ordinal());
+        out.putInt(stealHex);
+        for (int d : discards) {
+            out.put((byte) d);
+        }
+        out.put((byte) freeRoads);
+        out.put((byte) lastRoll);
+        out.put((byte) seatOf(winner));
+        out.put((byte) seatOf(longestArmyOwner));
+        out.put((byte) seatOf(longestRoadOwner));
+        for (Player p : players) {
+            p.write(out);
+        }
+        board.write(out);
+    }
+
+    /**
+     * Reads back what write wrote, dealing the board again from the seed and then putting
+     * everything else back the way it was.
+     *
+     * @param in  the buffer to read from
+     */
+    void read(ByteBuffer in) {
+        reset(in.getLong());
+        rand.setState(in.getLong());
+        devIndex = in.get();
+        for (int i = 0; i < devDeck.length; i++) {
+            devDeck[i] = DevelopmentCard.get(in.get());
+        }
+        for (int r = 0; r < Resource.COUNT; r++) {
+            resources[r] = in.get();
+        }
+        currentPlayer = in.get();
+        turn = in.getInt();
+        phase = TurnPhase.get(in.get());
+        acting = in.get();
+        setupStep = in.get();
+        lastSettlement = in.getInt();
+        afterRobber = TurnPhase.get(in.get());
+        stealHex = in.getInt();
+        for (int i = 0; i < discards.length; i++) {
+            discards[i] = in.get();
+        }
+        freeRoads = in.get();
+        lastRoll = in.get();
+        winner = playerAt(in.get());
+        longestArmyOwner = playerAt(in.get());
+        longestRoadOwner = playerAt(in.get());
+        for (Player p : players) {
+            p.read(in);
+        }
+        board.read(in, players);
+        scores.rebuild();
+    }
+
+    /**
+     * Returns the seat of a player, or -1 for null.
+     *
+     * @param player  the player
+     *
+     * @return the seat
+     */
+    private static int seatOf(Player player) {
+        return player == null ? -1 : player.index();
+    }
+
+    /**
+     * Returns the player in a seat, or null for -1.
+     *
+     * @param seat  the seat
+     *
+     * @return the player
+     */
+    private Player playerAt(int seat) {
+        return seat == -1 ? null : players[seat];
+    }
+
+    /**
+     * Returns the phase the game is in.
+     *
+     * @return the phase
+     */
+    public TurnPhase phase() {
+        return phase;
+    }
+
+    /**
+     * Returns the player who acts next. This is the current player, except during the setup
+     * and while discarding after a 7.
+     *
+     * @return the acting player
+     */
+    public Player actingPlayer() {
+        return players[acting];
+    }
+
+    /**
+     * Returns the numbering of the actions on this game's layout.
+     *
+     * @return the action space
+     */
+    public ActionSpace actionSpace() {
+        return actionSpace;
+    }
+
+    /**
+     * Returns the sum of the last roll of the dice.
+     *
+     * @return the last roll, or 0 before the first roll
+     */
+    public int lastRoll() {
+        return lastRoll;
+    }
+
+    /**
+     * Returns the player who has won.
+     *
+     * @return the winner, or null while the game is going
+     */
+    public Player winner() {
+        return winner;
+    }
+
+    /**
+     * Determines whether the acting player can take an action right now. Every check is a
+     * constant number of lookups: the phase, the player's hand, and the board's vertex and
+     * edge tables.
+     *
+     * @param action  the action, numbered by actionSpace
+     *
+     * @return true if the action is legal, false otherwise
+     */
+    public boolean isLegal(int action) {
+        if (action < 0 || action >= actionSpace.size()) {
+            return false;
+        }
+        Player p = players[acting];
+        int target = actionSpace.target(action);
+        switch (actionSpace.type(action)) {
+            case END_TURN:
+                return phase == TurnPhase.MAIN;
+            case ROLL:
+                return phase == TurnPhase.ROLL;
+            case BUY_DEV_CARD:
+                return phase == TurnPhase.MAIN && devIndex < devDeck.length
+                    && p.canAfford(Purchase.DEV_CARD);
+            case PLAY_KNIGHT:
+                return (phase == TurnPhase.ROLL || phase == TurnPhase.MAIN)
+                    && p.canPlayDev(DevelopmentCard.KNIGHT);
+            case PLAY_ROAD_BUILDING:
+                return phase == TurnPhase.MAIN && p.canPlayDev(DevelopmentCard.ROADS);
+            case SETTLEMENT:
+                if (phase == TurnPhase.INITIAL_SETTLEMENT) {
+                    return board.canBuildSettlement(target, p, true);
+                }
+                return phase == TurnPhase.MAIN && p.canAfford(Purchase.SETTLEMENT)
+                    && board.canBuildSettlement(target, p, false);
+            case CITY:
+                return phase == TurnPhase.MAIN && p.canAfford(Purchase.CITY)
+                    && board.canBuildCity(target, p);
+            case ROAD:
+                if (phase == TurnPhase.INITIAL_ROAD) {
+                    BoardLayout layout = board.layout();
+                    return board.edgeOwner(target) == -1
+                        && (layout.edgeVertex(target, 0) == lastSettlement
+                            || layout.edgeVertex(target, 1) == lastSettlement);
+                } else if (phase == TurnPhase.ROAD_BUILDING) {
+                    return board.canBuildRoad(target, p);
+                }
+                return phase == TurnPhase.MAIN && p.canAfford(Purchase.ROAD)
+                    && board.canBuildRoad(target, p);
+            case TRADE:
+                int give = target / Resource.COUNT;
+                int get = target % Resource.COUNT;
+                return phase == TurnPhase.MAIN && give != get && resources[get] > 0
+                    && p.resourceCount(Resource.get(give)) >= p.tradeCost(Resource.get(give));
+            case DISCARD:
+                return phase == TurnPhase.DISCARD && p.resourceCount(Resource.get(target)) > 0;
+            case ROBBER:
+                return phase == TurnPhase.ROBBER && target != board.robberHex();
+            case STEAL:
+                return phase == TurnPhase.STEAL && target < players.length && canStealFrom(target);
+            case MONOPOLY:
+                return phase == TurnPhase.MAIN && p.canPlayDev(DevelopmentCard.MONOPOLY);
+            case YEAR_OF_PLENTY:
+                int first = target / Resource.COUNT;
+                int second = target % Resource.COUNT;
+                return phase == TurnPhase.MAIN && first <= second
+                    && p.canPlayDev(DevelopmentCard.PLENTY)
+                    && resources[first] >= (first == second ? 2 : 1) && resources[second] >= 1;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Writes the legal actions for the acting player into a bitmask, with bit a of the mask
+     * set when action a is legal.
+     *
+     * @param mask  the mask, at least actionSpace().maskLength() long
+     */
+    public void legalActions(long[] mask) {
+        Arrays.fill(mask, 0, actionSpace.maskLength(), 0L);
+        for (int a = 0; a < actionSpace.size(); a++) {
+            if (isLegal(a)) {
+                mask[a >>> 6] |= 1L << a;
+            }
+        }
+    }
+
+    /**
+     * Takes an action for the acting player and moves the game on to the next phase. The
+     * action is rejected without changing anything if it isn't legal.
+     *
+     * @param action  the action, numbered by actionSpace
+     *
+     * @return true if the action was taken, false if it was illegal
+     */
+    public boolean act(int action) {
+        if (!isLegal(action)) {
+            return false;
+        }
+        Player p = players[acting];
+        int target = actionSpace.target(action);
+        switch (actionSpace.type(action)) {
+            case END_TURN:
+                endTurn();
+                break;
+            case ROLL:
+                roll(rollDice() + rollDice());
+                break;
+            case BUY_DEV_CARD:
+                buyDevCard(p);
+                break;
+            case PLAY_KNIGHT:
+                p.playDev(DevelopmentCard.KNIGHT);
+                p.playKnight();
+                GameEvents.devCardPlay(p, DevelopmentCard.KNIGHT);
+                knightPlayed();
+                afterRobber = phase;
+                phase = TurnPhase.ROBBER;
+                break;
+            case PLAY_ROAD_BUILDING:
+                p.playDev(DevelopmentCard.ROADS);
+                GameEvents.devCardPlay(p, DevelopmentCard.ROADS);
+                freeRoads = 2;
+                phase = TurnPhase.ROAD_BUILDING;
+                endRoadBuildingIfDone(p);
+                break;
+            case SETTLEMENT:
+                if (phase == TurnPhase.INITIAL_SETTLEMENT) {
+                    placeInitialSettlement(target, p, setupStep >= players.length);
+                    lastSettlement = target;
+                    phase = TurnPhase.INITIAL_ROAD;
+                } else {
+                    buildSettlement(target, p);
+                }
+                break;
+            case CITY:
+                buildCity(target, p);
+                break;
+            case ROAD:
+                if (phase == TurnPhase.INITIAL_ROAD) {
+                    placeInitialRoad(target, p);
+                    advanceSetup();
+                } else if (phase == TurnPhase.ROAD_BUILDING) {
+                    board.buildRoad(target, p);
+                    built(p, Purchase.ROAD, target);
+                    freeRoads -= 1;
+                    endRoadBuildingIfDone(p);
+                } else {
+                    buildRoad(target, p);
+                }
+                break;
+            case TRADE:
+                maritimeTrade(p, Resource.get(target / Resource.COUNT),
+                              Resource.get(target % Resource.COUNT));
+                break;
+            case DISCARD:
+                p.removeResource(Resource.get(target));
+                resources[target] += 1;
+                discards[acting] -= 1;
+                if (discards[acting] == 0) {
+                    nextDiscard();
+                }
+                break;
+            case ROBBER:
+                int from = board.robberHex();
+                board.moveRobber(target, p);
+                robberMoved(p, from, target);
+                stealHex = target;
+                int victims = 0;
+                int victim = -1;
+                for (int s = 0; s < players.length; s++) {
+                    if (canStealFrom(s)) {
+                        victims += 1;
+                        victim = s;
+                    }
+                }
+                if (victims == 1) {
+                    steal(p, players[victim]);
+                }
+                phase = victims > 1 ? TurnPhase.STEAL : afterRobber;
+                break;
+            case STEAL:
+                steal(p, players[target]);
+                phase = afterRobber;
+                break;
+            case MONOPOLY:
+                monopoly(p, Resource.get(target));
+                break;
+            case YEAR_OF_PLENTY:
+                yearOfPlenty(p, Resource.get(target / Resource.COUNT),
+                             Resource.get(target % Resource.COUNT));
+                break;
+            default:
+                return false;
+        }
+        checkWin(players[currentPlayer]);
+        return true;
+    }
+
+    /**
+     * Plays out a roll of the dice for the current player with a given sum, instead of
+     * rolling, for replaying a game or searching over the outcomes of the dice. On a 7,
+     * everyone holding too many cards has to discard and then the robber moves; otherwise
+     * resources are handed out.
+     *
+     * @param sum  the sum of the two dice, from 2 to 12
+     *
+     * @return true if the roll was played, false if it isn't time to roll or the sum can't
+     *         be rolled
+     */
+    public boolean roll(int sum) {
+        if (phase != TurnPhase.ROLL || sum < 2 || sum > 12) {
+            return false;
+        }
+        lastRoll = sum;
+        for (GameListener listener : listeners) {
+            listener.rolled(this, sum);
+        }
+        if (lastRoll != 7) {
+            distributeResources(lastRoll);
+            phase = TurnPhase.MAIN;
+            return true;
+        }
+        for (int s = 0; s < players.length; s++) {
+            int hand = players[s].resHandSize();
+            discards[s] = hand > DISCARD_LIMIT ? hand / 2 : 0;
+        }
+        afterRobber = TurnPhase.MAIN;
+        nextDiscard();
+        return true;
+    }
+
+    /**
+     * Hands the action to the next seat that still has to discard, going round the table
+     * from the current player, or to the current player to move the robber once everyone
+     * is done.
+     */
+    private void nextDiscard() {
+        for (int k = 0; k < players.length; k++) {
+            int s = (currentPlayer + k) % players.length;
+            if (discards[s] > 0) {
+                acting = s;
+                phase = TurnPhase.DISCARD;
+                return;
+            }
+        }
+        acting = currentPlayer;
+        phase = TurnPhase.ROBBER;
+    }
+
+    /**
+     * Returns true if the acting player can steal from a seat on the hex the robber was just
+     * moved to.
+     *
+     * @param seat  the seat
+     *
+     * @return whether the seat can be stolen from
+     */
+    private boolean canStealFrom(int seat) {
+        return seat != acting && board.production(stealHex, seat) > 0
+            && players[seat].resHandSize() > 0;
     }
 
+    /**
+     * Moves on to the next setup placement, or to the first roll once everyone has placed
+     * twice. The order snakes: seats in order, then in reverse.
+     */
+    private void advanceSetup() {
+        setupStep += 1;
+        int n = players.length;
+        if (setupStep < 2 * n) {
+            acting = setupStep < n ? setupStep : 2 * n - 1 - setupStep;
+            phase = TurnPhase.INITIAL_SETTLEMENT;
+        } else {
+            acting = currentPlayer;
+            phase = TurnPhase.ROLL;
+        }
+    }
+
+    /**
+     * Goes back to the main phase once the free roads are placed, or when none of them can
+     * be placed.
+     *
+     * @param player  the player placing the roads
+     */
+    private void endRoadBuildingIfDone(Player player) {
+        if (freeRoads > 0) {
+            for (int e = 0; e < board.layout().edgeCount(); e++) {
+                if (board.canBuildRoad(e, player)) {
+                    return;
+                }
+            }
+        }
+        freeRoads = 0;
+        phase = TurnPhase.MAIN;
+    }
 
-    // TODO build settlement method (check for harbors as well)
-    // TODO build city method
-    // TODO initial location choosing
-    // TODO handle 7 roll (remove over half of cards)
-    // TODO activate robber method
-    // TODO victory point devo card
-    // TODO road building method
-    // TODO year of plenty method
-    // TODO monopoly method
-    // TODO maritime trade
-    // TODO check win method
-    // TODO end turn method
-    // TODO calculate longest road method
+    /**
+     * Ends the game if the player whose turn it is has reached the winning points, counting
+     * the victory point cards in their hand, which they reveal to win. This is called
+     * wherever a player's points can go up, and at the start of each turn for points won
+     * during someone else's, so the game ends the moment it's won without the score ever
+     * being counted up from the board.
+     *
+     * @param player  the player to check
+     */
+    private void checkWin(Player player) {
+        if (winner == null && player == players[currentPlayer]
+                && player.points() + player.devCount(DevelopmentCard.VICTORY) >= WINNING_POINTS) {
+            winner = player;
+            phase = TurnPhase.GAME_OVER;
+            for (GameListener listener : listeners) {
+                listener.gameOver(this, player);
+            }
+        }
+    }
 
-    /** The number of cards in the development deck. */
-    public static final int DEV_DECK_SIZE = 18;
+    /**
+     * Tells the listeners about something built.
+     *
+     * @param player  the player who built it
+     * @param piece  ROAD, SETTLEMENT or CITY
+     * @param location  the edge or vertex
+     */
+    private void built(Player player, Purchase piece, int location) {
+        for (GameListener listener : listeners) {
+            listener.built(this, player, piece, location);
+        }
+        if (piece == Purchase.ROAD) {
+            scores.roadBuilt(player.index(), location);
+        } else if (piece == Purchase.SETTLEMENT) {
+            scores.settlementBuilt(player.index(), location);
+        } else {
+            return;
+        }
+        Player holder = playerAt(scores.longestRoad(seatOf(longestRoadOwner)));
+        if (holder != longestRoadOwner) {
+            moveAward(longestRoadOwner, holder);
+            Player from = longestRoadOwner;
+            longestRoadOwner = holder;
+            for (GameListener listener : listeners) {
+                listener.longestRoadMoved(this, from, holder);
+            }
+        }
+    }
+
+    /**
+     * Hands the Largest Army award to whoever should have it after a knight is played.
+     */
+    private void knightPlayed() {
+        Player holder = playerAt(ScoreKeeper.largestArmy(players, seatOf(longestArmyOwner)));
+        if (holder != longestArmyOwner) {
+            moveAward(longestArmyOwner, holder);
+            Player from = longestArmyOwner;
+            longestArmyOwner = holder;
+            for (GameListener listener : listeners) {
+                listener.largestArmyMoved(this, from, holder);
+            }
+        }
+    }
+
+    /**
+     * Moves an award's victory points from one player to another.
+     *
+     * @param from  the player losing it, or null
+     * @param to  the player getting it, or null
+     */
+    private void moveAward(Player from, Player to) {
+        if (from != null) {
+            from.addPoints(-AWARD_POINTS);
+        }
+        if (to != null) {
+            to.addPoints(AWARD_POINTS);
+        }
+    }
+
+    /**
+     * Tells the listeners the robber moved.
+     *
+     * @param player  the player who moved it
+     * @param from  the hex it was on, or -1
+     * @param to  the hex it's on now
+     */
+    private void robberMoved(Player player, int from, int to) {
+        for (GameListener listener : listeners) {
+            listener.robberMoved(this, player, from, to);
+        }
+    }
+
+    /**
+     * Returns the length of a player's longest road: the most of their roads in a row, not
+     * using any road twice or going through someone else's building.
+     *
+     * @param player  the player
+     *
+     * @return the number of roads
+     */
+    public int longestRoad(Player player) {
+        return scores.length(player.index());
+    }
+
+    /** The fewest players a game can have. */
+    public static final int MIN_PLAYERS = 2;
+
+    /** The most players a game can have. */
+    public static final int MAX_PLAYERS = 6;
 
     /** The initial size of each resource pile. */
     public static final int INITIAL_RESOURCE_SIZE = 19;
 
-    /** The number of soldiers in the development deck. */
-    public static final int SOLDIERS = 11;
-
-    /** The number of monopoly cards in the development deck. */
-    public static final int MONOPOLIES = 1;
+    /** The listeners of a game nobody is listening to. */
+    private static final GameListener[] NO_LISTENERS = new GameListener[0];
 
-    /** The number of victory point cards in the development deck. */
-    public static final int VP_CARDS = 3;
+    /** The most cards a player can hold when a 7 is rolled without having to discard. */
+    public static final int DISCARD_LIMIT = 7;
 
-    /** The number of road building cards in the development deck. */
-    public static final int ROAD_CARDS = 1;
+    /** The number of victory points needed to win. */
+    public static final int WINNING_POINTS = 10;
 
-    /** The number of year of plenty cards in the development deck. */
-    public static final int PLENTIES = 2;
+    /** The victory points the Longest Road and Largest Army awards are each worth. */
+    public static final int AWARD_POINTS = 2;
 }
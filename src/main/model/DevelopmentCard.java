@@ -11,5 +11,21 @@ public enum DevelopmentCard {
     MONOPOLY,
     ROADS,
     VICTORY,
-    PLENTY
+    PLENTY;
+
+    private static final DevelopmentCard[] cachedValues = values();
+
+    /** The number of different development cards. */
+    public static final int COUNT = cachedValues.length;
+
+    /**
+     * Returns the development card with the given ordinal, without copying the values array.
+     *
+     * @param ordinal  the ordinal of the card
+     *
+     * @return the development card
+     */
+    public static DevelopmentCard get(int ordinal) {
+        return cachedValues[ordinal];
+    }
 }
@@ -0,0 +1,95 @@
+package src.main.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs a game into a few hundred bytes and unpacks it again, for keeping games that
+ * nobody is playing right now out of the heap. The board isn't written tile by tile: the
+ * seed deals it again, so only what's been built, the robber, the hands, the deck, the bank
+ * and where the turn stands are written, along with the state of the dice so that the game
+ * rolls on the same way.
+ *
+ * The colors of the players and the layout aren't written; a game is unpacked into a game
+ * that already has them. Listeners aren't written either.
+ */
+public final class GameCodec {
+    private GameCodec() {
+    }
+
+    /**
+     * Returns the number of bytes encode writes for a game on a layout.
+     *
+     * @param layout  the layout
+     * @param numPlayers  the number of seats
+     *
+     * @return the size of an encoded game
+     */
+    public static int encodedSize(BoardLayout layout, int numPlayers) {
+        return HEADER_BYTES + CatanGame.encodedSize(layout, numPlayers);
+    }
+
+    /**
+     * Writes a game into a buffer at its position, moving the position past it.
+     *
+     * @param game  the game
+     * @param out  the buffer, with encodedSize bytes left
+     */
+    public static void encode(CatanGame game, ByteBuffer out) {
+        writeHeader(game, out);
+        game.write(out, true);
+    }
+
+    /**
+     * Writes a game's position into a buffer at its position, moving the position past it.
+     * This is what encode writes, with the state of the dice left out, so two games in the
+     * same position write the same bytes whatever dice are still to come.
+     *
+     * @param game  the game
+     * @param out  the buffer, with encodedSize bytes left
+     */
+    public static void encodePosition(CatanGame game, ByteBuffer out) {
+        writeHeader(game, out);
+        game.write(out, false);
+    }
+
+    /**
+     * Writes what comes before a game: the version, the number of seats and the layout's
+     * size.
+     *
+     * @param game  the game
+     * @param out  the buffer
+     */
+    private static void writeHeader(CatanGame game, ByteBuffer out) {
+        BoardLayout layout = game.board().layout();
+        out.put(VERSION);
+        out.put((byte) game.numPlayers());
+        out.putInt(layout.vertexCount());
+        out.putInt(layout.edgeCount());
+    }
+
+    /**
+     * Reads a game from a buffer at its position into a game with the same layout and number
+     * of players, which ends up in the state the game was in when it was encoded.
+     *
+     * @param in  the buffer
+     * @param game  the game to read into
+     */
+    public static void decode(ByteBuffer in, CatanGame game) {
+        BoardLayout layout = game.board().layout();
+        if (in.get() != VERSION) {
+            throw new IllegalArgumentException("not an encoded game of this version");
+        }
+        if (in.get() != game.numPlayers() || in.getInt() != layout.vertexCount()
+                || in.getInt() != layout.edgeCount()) {
+            throw new IllegalArgumentException("the encoded game has a different layout or "
+                                               + "number of players");
+        }
+        game.read(in);
+    }
+
+    /** The version of the format, written first. */
+    private static final byte VERSION = 3;
+
+    /** The bytes before the game: the version, the number of seats and the layout's size. */
+    private static final int HEADER_BYTES = 2 + 2 * Integer.BYTES;
+}
@@ -0,0 +1,283 @@
+package src.main.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the game engine. Each event type is a nested class, and the
+ * static helpers are what the game and board call. Every helper checks whether its event type
+ * is enabled before filling in any fields, so when a recording is not running (or the event
+ * is disabled in the recording settings) the cost is a single branch and the event object is
+ * removed by escape analysis.
+ *
+ * The events are instant events with stack traces disabled, since they fire on the hot path
+ * of simulations and the interesting correlation is with time, not with the call site.
+ */
+public final class GameEvents {
+    private GameEvents() {
+    }
+
+    /**
+     * Identifies a player inside an event by their seat.
+     *
+     * @param player  the player to identify, may be null
+     *
+     * @return the index of the player, or -1 for null
+     */
+    static int playerId(Player player) {
+        return player == null ? -1 : player.index();
+    }
+
+    /**
+     * Records the start of a turn.
+     *
+     * @param turn  the turn number, starting from 0
+     * @param player  the player whose turn it is
+     */
+    static void turnStart(int turn, Player player) {
+        TurnStart event = new TurnStart();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.turn = turn;
+        event.player = playerId(player);
+        event.commit();
+    }
+
+    /**
+     * Records the end of a turn.
+     *
+     * @param turn  the turn number, starting from 0
+     * @param player  the player whose turn just ended
+     */
+    static void turnEnd(int turn, Player player) {
+        TurnEnd event = new TurnEnd();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.turn = turn;
+        event.player = playerId(player);
+        event.commit();
+    }
+
+    /**
+     * Records a single die roll.
+     *
+     * @param value  the value rolled, from 1 to 6
+     */
+    static void diceRoll(int value) {
+        DiceRoll event = new DiceRoll();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.value = value;
+        event.commit();
+    }
+
+    /**
+     * Returns true if distribution events would be recorded, so that callers can skip
+     * gathering the per-resource counts otherwise.
+     *
+     * @return whether the ResourceDistribution event is enabled
+     */
+    static boolean distributionEnabled() {
+        return new ResourceDistribution().isEnabled();
+    }
+
+    /**
+     * Records the resources one player received on a roll.
+     *
+     * @param roll  the number that was rolled
+     * @param player  the player receiving resources
+     * @param granted  the amount granted, indexed by resource ordinal
+     * @param shortedMask  bit i is set if resource i was withheld due to a bank shortage
+     */
+    static void resourceDistribution(int roll, Player player, int[] granted, int shortedMask) {
+        ResourceDistribution event = new ResourceDistribution();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.roll = roll;
+        event.player = playerId(player);
+        event.brick = granted[Resource.BRICK.ordinal()];
+        event.sheep = granted[Resource.SHEEP.ordinal()];
+        event.ore = granted[Resource.ORE.ordinal()];
+        event.wheat = granted[Resource.WHEAT.ordinal()];
+        event.wood = granted[Resource.WOOD.ordinal()];
+        event.shortedMask = shortedMask;
+        event.commit();
+    }
+
+    /**
+     * Records a road, settlement or city being built.
+     *
+     * @param type  the kind of piece, one of "road", "settlement" or "city"
+     * @param player  the player who built it
+     * @param row  the row of the hex the piece was placed on
+     * @param col  the col of the hex the piece was placed on
+     * @param loc  the ordinal of the road or building location on that hex
+     */
+    static void build(String type, Player player, int row, int col, int loc) {
+        Build event = new Build();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.type = type;
+        event.player = playerId(player);
+        event.row = row;
+        event.col = col;
+        event.loc = loc;
+        event.commit();
+    }
+
+    /**
+     * Records the robber moving to a new hex.
+     *
+     * @param player  the player who moved the robber, may be null
+     * @param row  the row of the new hex
+     * @param col  the col of the new hex
+     */
+    static void robberMove(Player player, int row, int col) {
+        RobberMove event = new RobberMove();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.player = playerId(player);
+        event.row = row;
+        event.col = col;
+        event.commit();
+    }
+
+    /**
+     * Records a development card being played.
+     *
+     * @param player  the player who played the card
+     * @param card  the card that was played
+     */
+    static void devCardPlay(Player player, DevelopmentCard card) {
+        DevCardPlay event = new DevCardPlay();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.player = playerId(player);
+        event.card = card.name();
+        event.commit();
+    }
+
+    @Name("catan.TurnStart")
+    @Label("Turn Start")
+    @Category({"Catan", "Turns"})
+    @StackTrace(false)
+    static class TurnStart extends Event {
+        @Label("Turn")
+        int turn;
+
+        @Label("Player")
+        int player;
+    }
+
+    @Name("catan.TurnEnd")
+    @Label("Turn End")
+    @Category({"Catan", "Turns"})
+    @StackTrace(false)
+    static class TurnEnd extends Event {
+        @Label("Turn")
+        int turn;
+
+        @Label("Player")
+        int player;
+    }
+
+    @Name("catan.DiceRoll")
+    @Label("Dice Roll")
+    @Category({"Catan", "Turns"})
+    @StackTrace(false)
+    static class DiceRoll extends Event {
+        @Label("Value")
+        int value;
+    }
+
+    @Name("catan.ResourceDistribution")
+    @Label("Resource Distribution")
+    @Description("Resources handed to one player after a roll")
+    @Category({"Catan", "Resources"})
+    @StackTrace(false)
+    static class ResourceDistribution extends Event {
+        @Label("Roll")
+        int roll;
+
+        @Label("Player")
+        int player;
+
+        @Label("Brick")
+        int brick;
+
+        @Label("Sheep")
+        int sheep;
+
+        @Label("Ore")
+        int ore;
+
+        @Label("Wheat")
+        int wheat;
+
+        @Label("Wood")
+        int wood;
+
+        @Label("Shorted Resources")
+        @Description("Bit i is set if resource ordinal i was withheld due to a bank shortage")
+        int shortedMask;
+    }
+
+    @Name("catan.Build")
+    @Label("Build")
+    @Category({"Catan", "Actions"})
+    @StackTrace(false)
+    static class Build extends Event {
+        @Label("Type")
+        String type;
+
+        @Label("Player")
+        int player;
+
+        @Label("Row")
+        int row;
+
+        @Label("Col")
+        int col;
+
+        @Label("Location")
+        int loc;
+    }
+
+    @Name("catan.RobberMove")
+    @Label("Robber Move")
+    @Category({"Catan", "Actions"})
+    @StackTrace(false)
+    static class RobberMove extends Event {
+        @Label("Player")
+        int player;
+
+        @Label("Row")
+        int row;
+
+        @Label("Col")
+        int col;
+    }
+
+    @Name("catan.DevCardPlay")
+    @Label("Development Card Play")
+    @Category({"Catan", "Actions"})
+    @StackTrace(false)
+    static class DevCardPlay extends Event {
+        @Label("Player")
+        int player;
+
+        @Label("Card")
+        String card;
+    }
+}
@@ -0,0 +1,102 @@
+package src.main.model;
+
+/**
+ * Hears about what happens in a game, for code that keeps its own account of a game as it
+ * goes, like statistics or an evaluation that is updated move by move. Every method does
+ * nothing by default, so a listener only overrides what it needs. Listeners are called on
+ * the thread that changed the game, after the change has been made.
+ */
+public interface GameListener {
+    /**
+     * Called when the game starts over from a seed, after the board has been dealt.
+     *
+     * @param game  the game
+     */
+    default void gameStarted(CatanGame game) {
+    }
+
+    /**
+     * Called when a road, settlement or city is built, including the free ones of the
+     * initial placement and of a road building card.
+     *
+     * @param game  the game
+     * @param player  the player who built it
+     * @param piece  ROAD, SETTLEMENT or CITY
+     * @param location  the edge of a road, or the vertex of a settlement or city
+     */
+    default void built(CatanGame game, Player player, Purchase piece, int location) {
+    }
+
+    /**
+     * Called when the dice are rolled, before anything is handed out.
+     *
+     * @param game  the game
+     * @param sum  the sum of the dice
+     */
+    default void rolled(CatanGame game, int sum) {
+    }
+
+    /**
+     * Called after resources have been handed out for a roll. A resource the bank didn't
+     * have enough of for everyone is handed out to no one.
+     *
+     * @param game  the game
+     * @param roll  the number rolled
+     * @param requested  what each seat's buildings produced, seat * Resource.COUNT + resource,
+     *                   which is only valid during the call
+     * @param shortedMask  a bit for each resource, by ordinal, that the bank ran short of
+     */
+    default void resourcesDistributed(CatanGame game, int roll, int[] requested,
+                                      int shortedMask) {
+    }
+
+    /**
+     * Called when the robber moves, by a 7 or a knight, before anyone is stolen from.
+     *
+     * @param game  the game
+     * @param player  the player who moved it
+     * @param from  the hex it was on, or -1
+     * @param to  the hex it's on now
+     */
+    default void robberMoved(CatanGame game, Player player, int from, int to) {
+    }
+
+    /**
+     * Called when the Longest Road award changes hands, after its points have moved.
+     *
+     * @param game  the game
+     * @param from  the player who held it, or null
+     * @param to  the player who holds it now, or null if it's set aside on a tie
+     */
+    default void longestRoadMoved(CatanGame game, Player from, Player to) {
+    }
+
+    /**
+     * Called when the Largest Army award changes hands, after its points have moved.
+     *
+     * @param game  the game
+     * @param from  the player who held it, or null
+     * @param to  the player who holds it now
+     */
+    default void largestArmyMoved(CatanGame game, Player from, Player to) {
+    }
+
+    /**
+     * Called when a player ends their turn, before play passes on.
+     *
+     * @param game  the game
+     * @param turn  the turn that is ending
+     * @param player  the player whose turn it was
+     */
+    default void turnEnded(CatanGame game, int turn, Player player) {
+    }
+
+    /**
+     * Called when a player reaches the winning points.
+     *
+     * @param game  the game
+     * @param winner  the player who won
+     */
+    default void gameOver(CatanGame game, Player winner) {
+    }
+}
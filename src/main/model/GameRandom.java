@@ -0,0 +1,64 @@
+package src.main.model;
+
+import java.util.Random;
+
+/**
+ * The random number generator of a game. It produces exactly the same numbers as a
+ * java.util.Random with the same seed, but its state can be read and set, so a game can be
+ * saved in the middle and carry on rolling the same dice when it's loaded again.
+ *
+ * Unlike java.util.Random it isn't safe to share between threads, which a game never does.
+ */
+@SuppressWarnings("serial")
+public class GameRandom extends Random {
+    /** The 48-bit state of the generator. */
+    private long state;
+
+    /**
+     * Creates a generator with a seed.
+     *
+     * @param seed  the seed
+     */
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Returns the state of the generator.
+     *
+     * @return the state, which has 48 bits
+     */
+    public long state() {
+        return state;
+    }
+
+    /**
+     * Puts the generator back into a state it returned before.
+     *
+     * @param state  the state
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    /** The multiplier of the linear congruential generator, the same as java.util.Random's. */
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+
+    /** The increment of the generator. */
+    private static final long ADDEND = 0xBL;
+
+    /** The mask that keeps the state to 48 bits. */
+    private static final long MASK = (1L << 48) - 1;
+}
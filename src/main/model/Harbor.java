@@ -0,0 +1,58 @@
+package src.main.model;
+
+/**
+ * The kinds of harbors on the coast. A harbor for a resource lets a player trade 2 of that
+ * resource for any other, and a generic harbor lets them trade 3 of anything.
+ */
+public enum Harbor {
+    BRICK(Resource.BRICK),
+    SHEEP(Resource.SHEEP),
+    ORE(Resource.ORE),
+    WHEAT(Resource.WHEAT),
+    WOOD(Resource.WOOD),
+    GENERIC(null);
+
+    private static final Harbor[] cachedValues = values();
+
+    /** The resource this harbor trades, or null for a generic harbor. */
+    private final Resource resource;
+
+    Harbor(Resource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the resource this harbor trades.
+     *
+     * @return the resource, or null for a generic harbor
+     */
+    public Resource resource() {
+        return resource;
+    }
+
+    /**
+     * Returns how many cards have to be given for one card at this harbor.
+     *
+     * @return 2 for a resource harbor, 3 for a generic harbor
+     */
+    public int rate() {
+        return resource == null ? GENERIC_RATE : RESOURCE_RATE;
+    }
+
+    /**
+     * Returns the harbor with the given ordinal, without copying the values array.
+     *
+     * @param ordinal  the ordinal of the harbor
+     *
+     * @return the harbor
+     */
+    public static Harbor get(int ordinal) {
+        return cachedValues[ordinal];
+    }
+
+    /** The trade rate at a harbor for a specific resource. */
+    public static final int RESOURCE_RATE = 2;
+
+    /** The trade rate at a generic harbor. */
+    public static final int GENERIC_RATE = 3;
+}
@@ -1,6 +1,6 @@
 package src.main.model;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -21,6 +21,17 @@ public class HexPiece {
 
         private static final RoadLoc[] cachedValues = values();
 
+        /**
+         * Returns the road location with the given ordinal, without copying the values array.
+         *
+         * @param ordinal  the ordinal of the location
+         *
+         * @return the road location
+         */
+        public static RoadLoc get(int ordinal) {
+            return cachedValues[ordinal];
+        }
+
         /**
          * Returns the complementary road direction. Used mainly to help figure out
          * placing a road on two adjacent hexes.
@@ -72,6 +83,18 @@ public class HexPiece {
 
         private static final BuildingLoc[] cachedValues = values();
 
+        /**
+         * Returns the building location with the given ordinal, without copying the values
+         * array.
+         *
+         * @param ordinal  the ordinal of the location
+         *
+         * @return the building location
+         */
+        public static BuildingLoc get(int ordinal) {
+            return cachedValues[ordinal];
+        }
+
         /**
          * Returns the next building location in clockwise manner
          *
@@ -96,13 +119,13 @@ public class HexPiece {
      * The actual roads for this HexPiece. If the value is non-null for some location, that
      * indicates that a player has placed a road on that location.
      */
-    private HashMap<RoadLoc, Road> roads;
+    private Road[] roads;
 
     /** 
      * The actual buildings for this HexPiece. If the value is non-null for some location,
      * that indicates that a player has placed a building in that location.
      */
-    private HashMap<BuildingLoc, Building> buildings;
+    private Building[] buildings;
 
     /** The die roll number for this hex piece. */
     private int roll;
@@ -120,14 +143,24 @@ public class HexPiece {
      * @param resource  the type of resource for this hex piece
      */
     public HexPiece(int num, Resource resource) {
-        this.roads = new HashMap<RoadLoc, Road>();
-        for (RoadLoc loc : RoadLoc.values()) {
-            this.roads.put(loc, null);
-        }
-        this.buildings = new HashMap<BuildingLoc, Building>();
-        for (BuildingLoc loc : BuildingLoc.values()) {
-            this.buildings.put(loc, null);
-        }
+        this.roads = new Road[6];
+        this.buildings = new Building[6];
+        this.roll = num;
+        this.resource = resource;
+        this.hasRobber = false;
+    }
+
+    /**
+     * Puts this hex piece back into a freshly dealt state with a new resource and number,
+     * removing all roads, buildings and the robber. Used so that a board can be reused for
+     * another game without reallocating its pieces.
+     *
+     * @param num  the dice roll number that will be on this hex piece
+     * @param resource  the type of resource for this hex piece
+     */
+    void reset(int num, Resource resource) {
+        Arrays.fill(roads, null);
+        Arrays.fill(buildings, null);
         this.roll = num;
         this.resource = resource;
         this.hasRobber = false;
@@ -141,7 +174,7 @@ public class HexPiece {
      * @return the road, which can be null if there's no road there
      */
     public Road getRoad(RoadLoc loc) {
-        return roads.get(loc);
+        return roads[loc.ordinal()];
     }
 
 
@@ -153,7 +186,7 @@ public class HexPiece {
      * @return the building, which can be null
      */
     public Building getBuilding(BuildingLoc loc) {
-        return buildings.get(loc);
+        return buildings[loc.ordinal()];
     }
 
     /**
@@ -165,8 +198,7 @@ public class HexPiece {
      */
     public List<Building> getBuildings() {
         List<Building> buildingList = new ArrayList<Building>();
-        for (BuildingLoc l : buildings.keySet()) {
-            Building building = buildings.get(l);
+        for (Building building : buildings) {
             if (building != null) {
                 buildingList.add(building);
             }
@@ -181,7 +213,18 @@ public class HexPiece {
      * @param owner  the owner of this road
      */
     public void buildRoad(RoadLoc loc, Player owner) {
-        roads.put(loc, new Road(owner));
+        roads[loc.ordinal()] = new Road(owner);
+    }
+
+    /**
+     * Place a building on the specified location. A building sits on up to three hexes, and
+     * the same object is placed on each of them so that upgrading it upgrades all of them.
+     *
+     * @param loc  the location for the building
+     * @param building  the building to place
+     */
+    void placeBuilding(BuildingLoc loc, Building building) {
+        buildings[loc.ordinal()] = building;
     }
 
     /** 
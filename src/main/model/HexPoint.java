@@ -48,6 +48,9 @@ public class HexPoint {
 
     @Override
     public boolean equals(Object other) {
+        if (!(other instanceof HexPoint)) {
+            return false;
+        }
         HexPoint otherHP = (HexPoint) other;
         return this.row == otherHP.row() && this.col == otherHP.col();
     }
@@ -2,7 +2,9 @@ package src.main.model;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.nio.ByteBuffer;
 import java.awt.Color;
 
 /** 
@@ -14,6 +16,9 @@ public class Player {
     /** The color of the player. */
     private Color color;
 
+    /** The seat of the player in the game, used to index per-player arrays. */
+    private int index;
+
     /** Amount of victory points, incremented through buildings or special cards. */
     private int points;
 
@@ -29,8 +34,11 @@ public class Player {
     /** The number of knights that the player has played. */
     private int knights;
 
-    /** The hand of resources that the player owns. */
-    private List<Resource> hand;
+    /** The hand of resources that the player owns, as a count for each resource ordinal. */
+    private int[] hand;
+
+    /** The total number of resource cards in the hand. */
+    private int handSize;
 
     /** The hand of development cards that the player owns and has not used. */
     private List<DevelopmentCard> devHand;
@@ -43,34 +51,66 @@ public class Player {
     private List<DevelopmentCard> receivedDevCards;
 
     /** 
-     * An map for how much of a resource a player needs for maritime trade. Each
-     * resource is initialized to 4, then as the game progresses, if the player has access
-     * to harbors then the cost will go down.
+     * How much of a resource a player needs for maritime trade, indexed by resource ordinal.
+     * Each resource is initialized to 4, then as the game progresses, if the player has
+     * access to harbors then the cost will go down.
      */
-    private HashMap<Resource, Integer> tradeCosts;
+    private int[] tradeCosts;
+
+    /** How many of each development card the player has played, indexed by card ordinal. */
+    private int[] playedDevs;
 
     /** An indicator for whether the player played a development card on this turn. */
     private boolean hasPlayedDev;
 
     /**
-     * Initialize a new player, with a specified color
+     * Initialize a new player, with a specified color, sitting in the first seat.
      *
      * @param color  the color to identify the player
      */
     public Player(Color color) {
+        this(color, 0);
+    }
+
+    /**
+     * Initialize a new player, with a specified color and seat.
+     *
+     * @param color  the color to identify the player
+     * @param index  the seat of the player in the game, starting from 0
+     */
+    public Player(Color color, int index) {
         this.color = color;
+        this.index = index;
         this.points = 0;
         this.settlements = 0;
         this.roads = 0;
         this.cities = 0;
         this.knights = 0;
-        this.hand = new ArrayList<Resource>();
+        this.hand = new int[Resource.COUNT];
+        this.handSize = 0;
         this.devHand = new ArrayList<DevelopmentCard>();
         this.receivedDevCards = new ArrayList<DevelopmentCard>();
-        this.tradeCosts = new HashMap<Resource, Integer>();
-        for (Resource r : Resource.values()) {
-            this.tradeCosts.put(r, INIT_MARITIME_COST);
-        }
+        this.tradeCosts = new int[Resource.COUNT];
+        Arrays.fill(tradeCosts, INIT_MARITIME_COST);
+        this.playedDevs = new int[DevelopmentCard.COUNT];
+        this.hasPlayedDev = false;
+    }
+
+    /**
+     * Puts the player back into the state of a brand new game, keeping their color and seat.
+     */
+    public void reset() {
+        this.points = 0;
+        this.settlements = 0;
+        this.roads = 0;
+        this.cities = 0;
+        this.knights = 0;
+        Arrays.fill(hand, 0);
+        this.handSize = 0;
+        this.devHand.clear();
+        this.receivedDevCards.clear();
+        Arrays.fill(tradeCosts, INIT_MARITIME_COST);
+        Arrays.fill(playedDevs, 0);
         this.hasPlayedDev = false;
     }
 
@@ -83,6 +123,15 @@ public class Player {
         return color;
     }
 
+    /**
+     * Return the seat of this player in the game.
+     *
+     * @return the index of the player, starting from 0
+     */
+    public int index() {
+        return index;
+    }
+
     /**
      * Add n resources into the player's hand.
      *
@@ -90,9 +139,8 @@ public class Player {
      * @param n  the number of resources to add
      */
     public void addResource(Resource res, int n) {
-        for (int i = 0; i < n; i++) {
-            hand.add(res);
-        }
+        hand[res.ordinal()] += n;
+        handSize += n;
     }
 
     /**
@@ -102,7 +150,95 @@ public class Player {
      * @param res  the type of resource to remove
      */
     public void removeResource(Resource res) {
-        hand.remove(res);
+        if (hand[res.ordinal()] > 0) {
+            hand[res.ordinal()] -= 1;
+            handSize -= 1;
+        }
+    }
+
+    /**
+     * Return the number of cards of some resource in the player's hand.
+     *
+     * @param res  the resource to count
+     *
+     * @return the number of cards of that resource
+     */
+    public int resourceCount(Resource res) {
+        return hand[res.ordinal()];
+    }
+
+    /**
+     * Returns true if the player has enough resources in hand for a purchase.
+     *
+     * @param purchase  the thing the player wants to buy
+     *
+     * @return whether the player can afford it
+     */
+    public boolean canAfford(Purchase purchase) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if (hand[r] < purchase.cost(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the cost of a purchase from the player's hand. The caller is expected to have
+     * checked canAfford first.
+     *
+     * @param purchase  the thing the player is buying
+     */
+    public void pay(Purchase purchase) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            hand[r] -= purchase.cost(r);
+            handSize -= purchase.cost(r);
+        }
+    }
+
+    /**
+     * Add victory points to the player.
+     *
+     * @param n  the number of points to add
+     */
+    public void addPoints(int n) {
+        points += n;
+    }
+
+    /**
+     * Return the number of victory points the player has.
+     *
+     * @return the player's victory points
+     */
+    public int points() {
+        return points;
+    }
+
+    /**
+     * Return how many of a resource the player has to give for one card in a maritime trade.
+     *
+     * @param res  the resource being given
+     *
+     * @return the trade cost, 4 without a harbor
+     */
+    public int tradeCost(Resource res) {
+        return tradeCosts[res.ordinal()];
+    }
+
+    /**
+     * Lowers the player's trade costs for a harbor they have just built on. A generic harbor
+     * lowers every cost to 3, and a resource harbor lowers that resource's cost to 2.
+     *
+     * @param harbor  the harbor the player has access to
+     */
+    public void useHarbor(Harbor harbor) {
+        if (harbor.resource() != null) {
+            tradeCosts[harbor.resource().ordinal()] = harbor.rate();
+            return;
+        }
+        for (int r = 0; r < Resource.COUNT; r++) {
+            tradeCosts[r] = Math.min(tradeCosts[r], harbor.rate());
+        }
     }
 
     /**
@@ -122,11 +258,12 @@ public class Player {
     }
 
     /**
-     * Add a city, which for the player just increments the number of cities. The game
-     * handles the checking and removal of resources.
+     * Add a city, which for the player increments the number of cities and gives back the
+     * settlement it was built on. The game handles the checking and removal of resources.
      */
     public void buildCity() {
         cities += 1;
+        settlements -= 1;
     }
 
     /**
@@ -178,7 +315,124 @@ public class Player {
      * @return the size of the player's resource hand.
      */
     public int resHandSize() {
-        return hand.size();
+        return handSize;
+    }
+
+    /**
+     * Give the player a development card they just bought. It can't be played until their
+     * next turn.
+     *
+     * @param card  the card bought
+     */
+    public void receiveDevCard(DevelopmentCard card) {
+        receivedDevCards.add(card);
+    }
+
+    /**
+     * Returns true if the player can play a development card of some type right now: they
+     * have one that wasn't bought this turn, and haven't played one yet this turn.
+     *
+     * @param card  the type of card
+     *
+     * @return whether the card can be played
+     */
+    public boolean canPlayDev(DevelopmentCard card) {
+        return !hasPlayedDev && devHand.contains(card);
+    }
+
+    /**
+     * Returns true if the player has played a development card this turn.
+     *
+     * @return whether they have
+     */
+    public boolean hasPlayedDev() {
+        return hasPlayedDev;
+    }
+
+    /**
+     * Removes a played development card from the player's hand and marks that they have
+     * played a card this turn. The caller is expected to have checked canPlayDev first.
+     *
+     * @param card  the card played
+     */
+    public void playDev(DevelopmentCard card) {
+        devHand.remove(card);
+        playedDevs[card.ordinal()] += 1;
+        hasPlayedDev = true;
+    }
+
+    /**
+     * Returns how many of a development card the player holds, including ones bought this
+     * turn. Only the player themself knows this.
+     *
+     * @param card  the type of card
+     *
+     * @return the number held
+     */
+    public int devCount(DevelopmentCard card) {
+        int count = 0;
+        for (DevelopmentCard c : devHand) {
+            count += c == card ? 1 : 0;
+        }
+        for (DevelopmentCard c : receivedDevCards) {
+            count += c == card ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many of a development card the player holds that weren't bought this turn,
+     * the ones they could play.
+     *
+     * @param card  the type of card
+     *
+     * @return the number held from before this turn
+     */
+    public int playableCount(DevelopmentCard card) {
+        int count = 0;
+        for (DevelopmentCard c : devHand) {
+            count += c == card ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many of a development card the player has played, which everyone knows.
+     *
+     * @param card  the type of card
+     *
+     * @return the number played
+     */
+    public int playedCount(DevelopmentCard card) {
+        return playedDevs[card.ordinal()];
+    }
+
+    /**
+     * Replaces the player's development cards with the given counts, for example with a
+     * sampled guess at a hidden hand. All of the cards count as playable, since which of them
+     * were bought this turn is hidden too.
+     *
+     * @param counts  the number of each card, indexed by card ordinal from offset
+     * @param offset  where the counts start in the array
+     */
+    public void setDevHand(int[] counts, int offset) {
+        devHand.clear();
+        receivedDevCards.clear();
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            for (int n = counts[offset + c]; n > 0; n--) {
+                devHand.add(DevelopmentCard.get(c));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of development cards the player holds, including ones bought this
+     * turn.
+     *
+     * @return the number of development cards in hand
+     */
+    public int devHandSize() {
+        return devHand.size() + receivedDevCards.size();
     }
 
     /**
@@ -195,17 +449,81 @@ public class Player {
     public void endTurn() {
         hasPlayedDev = false;
         devHand.addAll(receivedDevCards);
+        receivedDevCards.clear();
     }
 
 
-    /** The maximum number of settlements that a single player can play. */
-    public static final int MAX_SETTLEMENTS = 4;
+    /**
+     * Writes the player's state for GameCodec, a byte per count: their hand, their
+     * development cards by type (playable, then bought this turn, then played), their points
+     * and pieces, their trade costs, and whether they've played a card this turn. Their color
+     * and seat aren't written.
+     *
+     * @param out  the buffer to write into
+     */
+    void write(ByteBuffer out) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            out.put((byte) hand[r]);
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            out.put((byte) Collections.frequency(devHand, DevelopmentCard.get(c)));
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            out.put((byte) Collections.frequency(receivedDevCards, DevelopmentCard.get(c)));
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            out.put((byte) playedDevs[c]);
+        }
+        out.put((byte) points);
+        out.put((byte) settlements);
+        out.put((byte) roads);
+        out.put((byte) cities);
+        out.put((byte) knights);
+        for (int r = 0; r < Resource.COUNT; r++) {
+            out.put((byte) tradeCosts[r]);
+        }
+        out.put((byte) (hasPlayedDev ? 1 : 0));
+    }
 
-    /** The maximum number of roads that a single player can play. */
-    public static final int MAX_ROADS = 13;
+    /**
+     * Reads back what write wrote.
+     *
+     * @param in  the buffer to read from
+     */
+    void read(ByteBuffer in) {
+        handSize = 0;
+        for (int r = 0; r < Resource.COUNT; r++) {
+            hand[r] = in.get() & 0xFF;
+            handSize += hand[r];
+        }
+        devHand.clear();
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            for (int n = in.get(); n > 0; n--) {
+                devHand.add(DevelopmentCard.get(c));
+            }
+        }
+        receivedDevCards.clear();
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            for (int n = in.get(); n > 0; n--) {
+                receivedDevCards.add(DevelopmentCard.get(c));
+            }
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            playedDevs[c] = in.get();
+        }
+        points = in.get();
+        settlements = in.get();
+        roads = in.get();
+        cities = in.get();
+        knights = in.get();
+        for (int r = 0; r < Resource.COUNT; r++) {
+            tradeCosts[r] = in.get();
+        }
+        hasPlayedDev = in.get() != 0;
+    }
 
-    /** The maximum number of cities that a single player can play. */
-    public static final int MAX_CITIES = 3;
+    /** The number of bytes write takes. */
+    static final int ENCODED_SIZE = 2 * Resource.COUNT + 3 * DevelopmentCard.COUNT + 6;
 
     /** The number that a player needs to trade for maritime, initially. */
     public static final int INIT_MARITIME_COST = 4;
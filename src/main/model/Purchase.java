@@ -0,0 +1,58 @@
+package src.main.model;
+
+/**
+ * The things a player can spend resources on, along with what each one costs.
+ */
+public enum Purchase {
+    ROAD(1, 0, 0, 0, 1),
+    SETTLEMENT(1, 1, 0, 1, 1),
+    CITY(0, 0, 3, 2, 0),
+    DEV_CARD(0, 1, 1, 1, 0);
+
+    private static final Purchase[] cachedValues = values();
+
+    /** The cost, indexed by resource ordinal. */
+    private final int[] cost;
+
+    Purchase(int brick, int sheep, int ore, int wheat, int wood) {
+        this.cost = new int[Resource.COUNT];
+        cost[Resource.BRICK.ordinal()] = brick;
+        cost[Resource.SHEEP.ordinal()] = sheep;
+        cost[Resource.ORE.ordinal()] = ore;
+        cost[Resource.WHEAT.ordinal()] = wheat;
+        cost[Resource.WOOD.ordinal()] = wood;
+    }
+
+    /**
+     * Returns how many of some resource this purchase costs.
+     *
+     * @param res  the resource
+     *
+     * @return the amount of that resource needed
+     */
+    public int cost(Resource res) {
+        return cost[res.ordinal()];
+    }
+
+    /**
+     * Returns how many of some resource this purchase costs.
+     *
+     * @param ordinal  the ordinal of the resource
+     *
+     * @return the amount of that resource needed
+     */
+    public int cost(int ordinal) {
+        return cost[ordinal];
+    }
+
+    /**
+     * Returns the purchase with the given ordinal, without copying the values array.
+     *
+     * @param ordinal  the ordinal of the purchase
+     *
+     * @return the purchase
+     */
+    public static Purchase get(int ordinal) {
+        return cachedValues[ordinal];
+    }
+}
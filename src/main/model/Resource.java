@@ -10,6 +10,22 @@ public enum Resource {
     WHEAT,
     WOOD;
 
+    private static final Resource[] cachedValues = values();
+
+    /** The number of different resources. */
+    public static final int COUNT = cachedValues.length;
+
+    /**
+     * Returns the resource with the given ordinal, without copying the values array.
+     *
+     * @param ordinal  the ordinal of the resource
+     *
+     * @return the resource
+     */
+    public static Resource get(int ordinal) {
+        return cachedValues[ordinal];
+    }
+
     @Override
     public String toString() {
         switch(this) {
@@ -0,0 +1,351 @@
+package src.main.model;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the length of each player's longest road as the game goes, for the Longest Road
+ * award. A length is only counted again when something that can change it happens: a road
+ * of the player's own, or a settlement of someone else's built on a vertex the player's road
+ * passes through. Nothing else ever changes a road's length, so the award never needs the
+ * whole board looked over.
+ *
+ * A new road can only make its owner's longest road longer, and only by a road through it,
+ * so only the connected piece of road it joins is walked. A settlement that cuts a road can
+ * leave the longest road anywhere, so all of that player's roads are walked again, which are
+ * kept in a list of their own rather than looked for on the board.
+ *
+ * Who holds each award is decided by static rules on the counts alone, which searches that
+ * keep counts of their own use too.
+ */
+public final class ScoreKeeper {
+    /** The board the roads are on. */
+    private final CatanBoard board;
+
+    /** The length of each seat's longest road. */
+    private final int[] lengths;
+
+    /** The edges of each seat's roads, the first roadCounts of each in use. */
+    private final int[][] roads;
+
+    /** The number of roads of each seat. */
+    private final int[] roadCounts;
+
+    /** The edges on the road being walked, scratch space for walk. */
+    private final boolean[] walked;
+
+    /** The stamp of the last search each edge was reached in, scratch space for joined. */
+    private final int[] edgeStamps;
+
+    /** The stamp of the last search each vertex was reached in, scratch space for joined. */
+    private final int[] vertexStamps;
+
+    /** The stamp of the current search. */
+    private int stamp;
+
+    /** The edges waiting to be looked at, scratch space for joined. */
+    private int[] stack;
+
+    /** The vertices of the piece of road found by joined, the first pieceSize in use. */
+    private int[] piece;
+
+    /** The number of vertices in piece. */
+    private int pieceSize;
+
+    /**
+     * Creates a keeper with no roads counted.
+     *
+     * @param board  the board the roads are on
+     * @param numPlayers  the number of seats
+     */
+    ScoreKeeper(CatanBoard board, int numPlayers) {
+        BoardLayout layout = board.layout();
+        this.board = board;
+        this.lengths = new int[numPlayers];
+        this.roads = new int[numPlayers][INITIAL_ROADS];
+        this.roadCounts = new int[numPlayers];
+        this.walked = new boolean[layout.edgeCount()];
+        this.edgeStamps = new int[layout.edgeCount()];
+        this.vertexStamps = new int[layout.vertexCount()];
+        this.stack = new int[INITIAL_ROADS];
+        this.piece = new int[INITIAL_ROADS];
+    }
+
+    /**
+     * Forgets every road, for a new game.
+     */
+    void reset() {
+        Arrays.fill(lengths, 0);
+        Arrays.fill(roadCounts, 0);
+    }
+
+    /**
+     * Collects every seat's roads from the board and counts them again, for a game that was
+     * read rather than played.
+     */
+    void rebuild() {
+        reset();
+        for (int e = 0; e < walked.length; e++) {
+            int owner = board.edgeOwner(e);
+            if (owner >= 0) {
+                addRoad(owner, e);
+            }
+        }
+        for (int s = 0; s < lengths.length; s++) {
+            lengths[s] = count(s);
+        }
+    }
+
+    /**
+     * Returns the length of a seat's longest road.
+     *
+     * @param seat  the seat
+     *
+     * @return the number of roads in it
+     */
+    int length(int seat) {
+        return lengths[seat];
+    }
+
+    /**
+     * Counts a seat's road again after they built one, walking only the piece of road the
+     * new one joins, since any road that got longer goes through it.
+     *
+     * @param seat  the seat that built it
+     * @param edge  the edge it's on
+     */
+    void roadBuilt(int seat, int edge) {
+        addRoad(seat, edge);
+        joined(seat, edge);
+        int best = lengths[seat];
+        for (int i = 0; i < pieceSize; i++) {
+            best = Math.max(best, walk(seat, piece[i], true));
+        }
+        lengths[seat] = best;
+    }
+
+    /**
+     * Counts again the roads of the other seats that a new settlement cuts, those with two
+     * or more roads meeting at its vertex.
+     *
+     * @param seat  the seat that built it
+     * @param vertex  the vertex it's on
+     */
+    void settlementBuilt(int seat, int vertex) {
+        BoardLayout layout = board.layout();
+        for (int s = 0; s < lengths.length; s++) {
+            if (s == seat) {
+                continue;
+            }
+            int cut = 0;
+            for (int k = 0; k < 3; k++) {
+                int edge = layout.vertexEdge(vertex, k);
+                if (edge >= 0 && board.edgeOwner(edge) == s) {
+                    cut += 1;
+                }
+            }
+            if (cut >= 2) {
+                lengths[s] = count(s);
+            }
+        }
+    }
+
+    /**
+     * Returns the seat that should hold the Longest Road award. The holder keeps it as long
+     * as no one's road is longer; otherwise it goes to the one seat with the longest road,
+     * if that's at least MIN_ROAD long, and to no one on a tie.
+     *
+     * @param holder  the seat holding it now, or -1
+     *
+     * @return the seat that should hold it, or -1
+     */
+    int longestRoad(int holder) {
+        return longestRoad(lengths, holder);
+    }
+
+    /**
+     * Returns the seat that should hold the Longest Road award, given the length of each
+     * seat's longest road, by the rule of longestRoad.
+     *
+     * @param lengths  the length of each seat's longest road
+     * @param holder  the seat holding it now, or -1
+     *
+     * @return the seat that should hold it, or -1
+     */
+    public static int longestRoad(int[] lengths, int holder) {
+        int best = 0;
+        int count = 0;
+        int seat = -1;
+        for (int s = 0; s < lengths.length; s++) {
+            if (lengths[s] > best) {
+                best = lengths[s];
+                count = 1;
+                seat = s;
+            } else if (lengths[s] == best) {
+                count += 1;
+            }
+        }
+        if (holder >= 0 && lengths[holder] == best && best >= MIN_ROAD) {
+            return holder;
+        }
+        return best >= MIN_ROAD && count == 1 ? seat : -1;
+    }
+
+    /**
+     * Returns the seat that should hold the Largest Army award: whoever has played the most
+     * knights, at least MIN_ARMY, with the holder keeping it on a tie.
+     *
+     * @param players  the players
+     * @param holder  the seat holding it now, or -1
+     *
+     * @return the seat that should hold it, or -1
+     */
+    static int largestArmy(Player[] players, int holder) {
+        int best = holder >= 0 ? players[holder].knights() : MIN_ARMY - 1;
+        int seat = holder;
+        for (Player p : players) {
+            if (p.knights() > best) {
+                best = p.knights();
+                seat = p.index();
+            }
+        }
+        return seat;
+    }
+
+    /**
+     * Returns the seat that should hold the Largest Army award, given the number of knights
+     * each seat has played, by the rule of largestArmy.
+     *
+     * @param knights  the knights each seat has played
+     * @param holder  the seat holding it now, or -1
+     *
+     * @return the seat that should hold it, or -1
+     */
+    public static int largestArmy(int[] knights, int holder) {
+        int best = holder >= 0 ? knights[holder] : MIN_ARMY - 1;
+        int seat = holder;
+        for (int s = 0; s < knights.length; s++) {
+            if (knights[s] > best) {
+                best = knights[s];
+                seat = s;
+            }
+        }
+        return seat;
+    }
+
+    /**
+     * Adds a road to a seat's list.
+     *
+     * @param seat  the seat
+     * @param edge  the edge of the road
+     */
+    private void addRoad(int seat, int edge) {
+        if (roadCounts[seat] == roads[seat].length) {
+            roads[seat] = Arrays.copyOf(roads[seat], 2 * roads[seat].length);
+        }
+        roads[seat][roadCounts[seat]++] = edge;
+    }
+
+    /**
+     * Finds the piece of a seat's road that an edge is part of, the roads that can be
+     * reached from it without going through another seat's building, and puts the vertices
+     * at the ends of its roads in piece.
+     *
+     * @param seat  the seat
+     * @param edge  one of the seat's roads
+     */
+    private void joined(int seat, int edge) {
+        BoardLayout layout = board.layout();
+        stamp += 1;
+        pieceSize = 0;
+        int top = 0;
+        stack[top++] = edge;
+        edgeStamps[edge] = stamp;
+        while (top > 0) {
+            int e = stack[--top];
+            for (int end = 0; end < 2; end++) {
+                int vertex = layout.edgeVertex(e, end);
+                if (vertexStamps[vertex] == stamp) {
+                    continue;
+                }
+                vertexStamps[vertex] = stamp;
+                if (pieceSize == piece.length) {
+                    piece = Arrays.copyOf(piece, 2 * piece.length);
+                }
+                piece[pieceSize++] = vertex;
+                int owner = board.vertexOwner(vertex);
+                if (owner >= 0 && owner != seat) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int next = layout.vertexEdge(vertex, k);
+                    if (next < 0 || edgeStamps[next] == stamp || board.edgeOwner(next) != seat) {
+                        continue;
+                    }
+                    edgeStamps[next] = stamp;
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    }
+                    stack[top++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the length of a seat's longest road by walking it from both ends of each of
+     * their roads.
+     *
+     * @param seat  the seat
+     *
+     * @return the number of roads in the longest road
+     */
+    private int count(int seat) {
+        BoardLayout layout = board.layout();
+        int best = 0;
+        for (int i = 0; i < roadCounts[seat]; i++) {
+            int edge = roads[seat][i];
+            for (int k = 0; k < 2; k++) {
+                best = Math.max(best, walk(seat, layout.edgeVertex(edge, k), true));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the most roads of a seat that can be walked from a vertex without using a road
+     * twice. A walk can't go on through another seat's building.
+     *
+     * @param seat  the seat
+     * @param vertex  the vertex reached
+     * @param start  true if the walk starts here
+     *
+     * @return the number of roads walked
+     */
+    private int walk(int seat, int vertex, boolean start) {
+        int owner = board.vertexOwner(vertex);
+        if (!start && owner >= 0 && owner != seat) {
+            return 0;
+        }
+        BoardLayout layout = board.layout();
+        int best = 0;
+        for (int k = 0; k < 3; k++) {
+            int edge = layout.vertexEdge(vertex, k);
+            if (edge < 0 || walked[edge] || board.edgeOwner(edge) != seat) {
+                continue;
+            }
+            walked[edge] = true;
+            best = Math.max(best, 1 + walk(seat, layout.vertexNeighbor(vertex, k), false));
+            walked[edge] = false;
+        }
+        return best;
+    }
+
+    /** The fewest roads that earn the Longest Road award. */
+    public static final int MIN_ROAD = 5;
+
+    /** The fewest knights that earn the Largest Army award. */
+    public static final int MIN_ARMY = 3;
+
+    /** The room for roads each seat starts with, grown as needed. */
+    private static final int INITIAL_ROADS = 16;
+}
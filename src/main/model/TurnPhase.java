@@ -0,0 +1,50 @@
+package src.main.model;
+
+/**
+ * The phases a game moves through. Each phase decides who acts and which actions in the
+ * ActionSpace can be legal.
+ */
+public enum TurnPhase {
+    /** A seat places a free settlement, in snake order round the table twice. */
+    INITIAL_SETTLEMENT,
+
+    /** The seat that just placed a settlement places a free road next to it. */
+    INITIAL_ROAD,
+
+    /** The current player rolls, or plays a knight first. */
+    ROLL,
+
+    /** After a 7, each seat holding more than the limit discards half, one card at a time. */
+    DISCARD,
+
+    /** The current player moves the robber, after a 7 or a knight. */
+    ROBBER,
+
+    /** The current player picks whom to steal from, when there's more than one choice. */
+    STEAL,
+
+    /** The current player builds, buys, trades and plays cards, then ends their turn. */
+    MAIN,
+
+    /** The current player places the free roads from a road building card. */
+    ROAD_BUILDING,
+
+    /** Someone has won, and nothing more can happen. */
+    GAME_OVER;
+
+    private static final TurnPhase[] cachedValues = values();
+
+    /** The number of phases. */
+    public static final int COUNT = cachedValues.length;
+
+    /**
+     * Returns the phase with the given ordinal, without copying the values array.
+     *
+     * @param ordinal  the ordinal of the phase
+     *
+     * @return the phase
+     */
+    public static TurnPhase get(int ordinal) {
+        return cachedValues[ordinal];
+    }
+}
@@ -0,0 +1,792 @@
+package src.main.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+
+/**
+ * Keeps the games of a server so that they survive the process dying. Each game has a pair
+ * of slots in a memory-mapped snapshot file, and every action taken is appended to a
+ * journal. When a checkpointer is opened on a directory that already has files, it loads
+ * each game from its newest snapshot and replays the journal on top of it.
+ *
+ * Taking an action never waits for the disk. Actions are put in a buffer, and a background
+ * thread writes the buffer out and forces it to disk every few milliseconds, so all the
+ * actions taken in that time share one fsync. Call sync to wait until everything so far is
+ * on disk. Every so often, or once the journal grows past a limit, the thread snapshots each
+ * game that has changed, forces the snapshots and starts a new journal, deleting the old
+ * one. So recovery reads one snapshot per game and at most one journal's worth of actions,
+ * however long the server has been running.
+ *
+ * A game's two slots are written in turn, each with a checksum and a counter, so a snapshot
+ * torn by a crash is ignored in favor of the other. Journal entries have checksums too, and
+ * replay stops at the first bad one.
+ *
+ * Games must only be changed through act, which is what gets journaled, and the layouts
+ * passed in must be the same, in the same order, each time a directory is opened.
+ */
+public class Checkpointer implements AutoCloseable {
+    /** The directory the files are kept in. */
+    private final Path dir;
+
+    /** The number of games the snapshot file has room for. */
+    private final int capacity;
+
+    /** The size of a snapshot slot. */
+    private final int slotBytes;
+
+    /** How long the journal buffer is left to fill between flushes. */
+    private final long flushMillis;
+
+    /** How long to go between checkpoints. */
+    private final long checkpointNanos;
+
+    /** The layouts games can have, which snapshots refer to by index. */
+    private final List<BoardLayout> layouts;
+
+    /** The snapshot file. */
+    private final FileChannel snapshotFile;
+
+    /** The snapshot file, mapped. */
+    private final MappedByteBuffer snapshots;
+
+    /** The games, by id. */
+    private final Map<Long, Session> sessions = new HashMap<>();
+
+    /** The slot pairs no game is using, as a stack. */
+    private final int[] free;
+
+    /** The number of free slot pairs. */
+    private int freeCount;
+
+    /** The counter of snapshots written, so the newest of a pair can be told apart. */
+    private long epoch;
+
+    /** The checksum, reused. */
+    private final CRC32 crc = new CRC32();
+
+    /** The journal entries waiting to be written. */
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_PENDING);
+
+    /** The buffer that's written out while pending fills. */
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_PENDING);
+
+    /** The number of journal entries appended. */
+    private long appended;
+
+    /** The number of journal entries on disk. */
+    private long durable;
+
+    /** Set when the snapshot file has been written since it was last forced. */
+    private boolean snapshotsTouched;
+
+    /** Set when someone is waiting in sync. */
+    private boolean syncRequested;
+
+    /** Set when a checkpoint has been asked for. */
+    private boolean checkpointRequested;
+
+    /** The number of the last checkpoint that was asked for and started. */
+    private long checkpointsStarted;
+
+    /** The number of the last checkpoint that was asked for and finished. */
+    private long checkpointsDone;
+
+    /** When the last checkpoint was taken. */
+    private long lastCheckpoint;
+
+    /** The bytes in the current journal. */
+    private long journalBytes;
+
+    /** Set once the checkpointer has been closed. */
+    private boolean closed;
+
+    /** The error that stopped the background thread, if any. */
+    private IOException failure;
+
+    /** The current journal, only touched by the background thread once it's started. */
+    private FileChannel journal;
+
+    /** The number of the current journal. */
+    private long segment;
+
+    /** The thread that writes the journal. */
+    private final Thread flusher;
+
+    /**
+     * Opens a checkpointer on the three standard layouts with the default timings.
+     *
+     * @param dir  the directory the files are kept in
+     * @param capacity  the number of games to keep
+     *
+     * @throws IOException if the files can't be read or created
+     */
+    public Checkpointer(Path dir, int capacity) throws IOException {
+        this(dir, capacity, DEFAULT_FLUSH_MILLIS, DEFAULT_CHECKPOINT_MILLIS,
+             BoardLayout.TWO_PLAYER, BoardLayout.STANDARD, BoardLayout.EXTENSION);
+    }
+
+    /**
+     * Opens a checkpointer, recovering the games in the directory if there are any.
+     *
+     * @param dir  the directory the files are kept in
+     * @param capacity  the number of games to keep
+     * @param flushMillis  how long to let journal entries gather before writing them
+     * @param checkpointMillis  how long to go between checkpoints
+     * @param layouts  the layouts games can have
+     *
+     * @throws IOException if the files can't be read or created
+     */
+    public Checkpointer(Path dir, int capacity, long flushMillis, long checkpointMillis,
+                        BoardLayout... layouts) throws IOException {
+        if (capacity < 1 || flushMillis < 1 || checkpointMillis < 0 || layouts.length == 0
+                || layouts.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("bad checkpointer settings");
+        }
+        int record = 0;
+        for (BoardLayout layout : layouts) {
+            record = Math.max(record, SessionRecord.size(layout, CatanGame.MAX_PLAYERS));
+        }
+        long fileBytes = FILE_HEADER + 2L * capacity * (SLOT_HEADER + record);
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many games for one snapshot file");
+        }
+        this.dir = dir;
+        this.capacity = capacity;
+        this.slotBytes = SLOT_HEADER + record;
+        this.flushMillis = flushMillis;
+        this.checkpointNanos = checkpointMillis * 1_000_000L;
+        this.layouts = List.of(layouts);
+        this.free = new int[capacity];
+
+        Files.createDirectories(dir);
+        Path path = dir.resolve(SNAPSHOT_FILE);
+        boolean existed = Files.exists(path) && Files.size(path) > 0;
+        if (existed && Files.size(path) != fileBytes) {
+            throw new IllegalArgumentException("the snapshot file has a different capacity "
+                                               + "or layouts");
+        }
+        snapshotFile = FileChannel.open(path, StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+        snapshots = snapshotFile.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        if (existed) {
+            if (snapshots.getInt(0) != MAGIC || snapshots.getInt(4) != slotBytes
+                    || snapshots.getInt(8) != capacity) {
+                snapshotFile.close();
+                throw new IllegalArgumentException("not a snapshot file for these settings");
+            }
+        } else {
+            snapshots.putInt(0, MAGIC);
+            snapshots.putInt(4, slotBytes);
+            snapshots.putInt(8, capacity);
+        }
+        recover();
+        lastCheckpoint = System.nanoTime();
+        flusher = new Thread(this::flushLoop, "checkpointer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Adds a game. It's on disk once the next flush has finished.
+     *
+     * @param id  the id of the game
+     * @param game  the game
+     */
+    public synchronized void add(long id, CatanGame game) {
+        checkOpen();
+        if (sessions.containsKey(id)) {
+            throw new IllegalArgumentException("there's already a game " + id);
+        }
+        if (freeCount == 0) {
+            throw new IllegalArgumentException("no room for another game");
+        }
+        if (!layouts.contains(game.board().layout())) {
+            throw new IllegalArgumentException("unknown layout " + game.board().layout().name());
+        }
+        Session s = new Session(id, game, free[--freeCount], ++epoch, 0);
+        writeSnapshot(s);
+        sessions.put(id, s);
+    }
+
+    /**
+     * Takes an action in a game and journals it.
+     *
+     * @param id  the id of the game
+     * @param action  the action, as ActionSpace numbers it
+     *
+     * @return true if the game exists and the action was legal
+     */
+    public synchronized boolean act(long id, int action) {
+        checkOpen();
+        Session s = sessions.get(id);
+        if (s == null || !s.game.act(action)) {
+            return false;
+        }
+        journal(s, action);
+        return true;
+    }
+
+    /**
+     * Returns a game. It mustn't be changed other than through act.
+     *
+     * @param id  the id of the game
+     *
+     * @return the game, or null
+     */
+    public synchronized CatanGame get(long id) {
+        Session s = sessions.get(id);
+        return s == null ? null : s.game;
+    }
+
+    /**
+     * Removes a game.
+     *
+     * @param id  the id of the game
+     *
+     * @return true if there was a game with that id
+     */
+    public synchronized boolean remove(long id) {
+        checkOpen();
+        Session s = sessions.remove(id);
+        if (s == null) {
+            return false;
+        }
+        journal(s, REMOVED);
+        clearSlot(s.slot);
+        return true;
+    }
+
+    /**
+     * Returns the ids of the games kept.
+     *
+     * @return the ids, sorted
+     */
+    public synchronized long[] ids() {
+        long[] ids = new long[sessions.size()];
+        int i = 0;
+        for (long id : sessions.keySet()) {
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the number of games kept.
+     *
+     * @return the number of games
+     */
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the size of the current journal, which a checkpoint starts again from zero.
+     *
+     * @return the bytes in the journal
+     */
+    public synchronized long journalBytes() {
+        return journalBytes;
+    }
+
+    /**
+     * Waits until every action taken so far is on disk.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void sync() throws InterruptedException {
+        checkOpen();
+        long target = appended;
+        syncRequested = true;
+        notifyAll();
+        while (durable < target) {
+            wait();
+            checkFailure();
+        }
+    }
+
+    /**
+     * Snapshots every game that has changed and starts a new journal, waiting until it's done.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void checkpoint() throws InterruptedException {
+        checkOpen();
+        checkpointRequested = true;
+        long target = checkpointsStarted + 1;
+        notifyAll();
+        while (checkpointsDone < target) {
+            wait();
+            checkFailure();
+        }
+    }
+
+    /**
+     * Writes out what's pending and closes the files.
+     *
+     * @throws IOException if the last flush failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        snapshotFile.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Loads the games from their snapshots, replays the journals over them, and snapshots
+     * whatever the journals changed so they can be deleted.
+     *
+     * @throws IOException if the files can't be read
+     */
+    private void recover() throws IOException {
+        Map<Long, Session> found = new HashMap<>();
+        boolean[] used = new boolean[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            int half = newestHalf(slot);
+            if (half == -1) {
+                continue;
+            }
+            ByteBuffer view = slotView(slot, half);
+            long id = view.getLong(0);
+            long slotEpoch = view.getLong(8);
+            long born = view.getLong(16);
+            Session old = found.get(id);
+            if (old != null && old.born > born) {
+                continue;
+            }
+            if (old != null) {
+                used[old.slot] = false;
+            }
+            CatanGame game = SessionRecord.read(view.position(SLOT_HEADER), layouts);
+            Session s = new Session(id, game, slot, born, view.getInt(24));
+            s.half = half;
+            found.put(id, s);
+            used[slot] = true;
+            epoch = Math.max(epoch, Math.max(slotEpoch, born));
+        }
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            if (!used[slot]) {
+                clearSlot(slot);
+            }
+        }
+        sessions.putAll(found);
+
+        List<Long> segments = segments();
+        for (long number : segments) {
+            replay(segmentPath(number));
+        }
+        for (Session s : sessions.values()) {
+            if (s.dirty) {
+                writeSnapshot(s);
+            }
+        }
+        snapshots.force();
+        snapshotsTouched = false;
+        for (long number : segments) {
+            Files.delete(segmentPath(number));
+        }
+        segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+        journal = openSegment(segment);
+    }
+
+    /**
+     * Applies the entries of a journal to the games loaded, stopping at a torn entry.
+     *
+     * @param path  the journal
+     *
+     * @throws IOException if the journal can't be read
+     */
+    private void replay(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (buf.remaining() >= ENTRY_BYTES) {
+            ByteBuffer entry = buf.slice(buf.position(), ENTRY_BYTES);
+            buf.position(buf.position() + ENTRY_BYTES);
+            if (entry.getInt(ENTRY_CRC) != checksum(entry, 0, ENTRY_CRC)) {
+                return;
+            }
+            Session s = sessions.get(entry.getLong(0));
+            int seq = entry.getInt(16);
+            if (s == null || s.born != entry.getLong(8) || seq != s.seq + 1) {
+                continue;
+            }
+            int action = entry.getInt(20);
+            s.seq = seq;
+            s.dirty = true;
+            if (action == REMOVED) {
+                sessions.remove(s.id);
+                clearSlot(s.slot);
+            } else if (!s.game.act(action)) {
+                throw new IllegalStateException("game " + s.id + " can't replay action "
+                                                + action);
+            }
+        }
+    }
+
+    /**
+     * Runs the background thread, flushing until the checkpointer is closed.
+     */
+    private void flushLoop() {
+        try {
+            while (true) {
+                boolean stop;
+                synchronized (this) {
+                    if (!closed && !checkpointRequested && !syncRequested) {
+                        wait(flushMillis);
+                    }
+                    stop = closed;
+                }
+                flush();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the pending journal entries, or takes a checkpoint if one is due.
+     *
+     * @throws IOException if the files can't be written
+     */
+    private void flush() throws IOException {
+        ByteBuffer out;
+        long target;
+        long ticket = -1;
+        boolean rotate;
+        boolean forceSnapshots;
+        synchronized (this) {
+            out = pending;
+            pending = spare;
+            spare = out;
+            target = appended;
+            syncRequested = false;
+            long now = System.nanoTime();
+            boolean changed = journalBytes > 0 || out.position() > 0;
+            rotate = checkpointRequested
+                     || changed && (journalBytes + out.position() >= SEGMENT_BYTES
+                                    || now - lastCheckpoint >= checkpointNanos);
+            if (checkpointRequested) {
+                checkpointRequested = false;
+                ticket = ++checkpointsStarted;
+            }
+            if (rotate) {
+                for (Session s : sessions.values()) {
+                    if (s.dirty) {
+                        writeSnapshot(s);
+                    }
+                }
+                lastCheckpoint = now;
+            }
+            forceSnapshots = snapshotsTouched;
+            snapshotsTouched = false;
+        }
+        out.flip();
+        long written = out.remaining();
+        if (!rotate && written > 0) {
+            while (out.hasRemaining()) {
+                journal.write(out);
+            }
+            journal.force(false);
+        }
+        out.clear();
+        if (forceSnapshots) {
+            snapshots.force();
+        }
+        if (rotate) {
+            journal.close();
+            Files.delete(segmentPath(segment));
+            segment += 1;
+            journal = openSegment(segment);
+        }
+        synchronized (this) {
+            journalBytes = rotate ? 0 : journalBytes + written;
+            durable = target;
+            if (ticket != -1) {
+                checkpointsDone = ticket;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Appends a journal entry for a game, taking its next sequence number.
+     *
+     * @param s  the game
+     * @param action  the action, or REMOVED
+     */
+    private void journal(Session s, int action) {
+        if (pending.remaining() < ENTRY_BYTES) {
+            ByteBuffer bigger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        s.seq += 1;
+        s.dirty = true;
+        ByteBuffer entry = pending.slice(pending.position(), ENTRY_BYTES);
+        entry.putLong(0, s.id);
+        entry.putLong(8, s.born);
+        entry.putInt(16, s.seq);
+        entry.putInt(20, action);
+        entry.putInt(ENTRY_CRC, checksum(entry, 0, ENTRY_CRC));
+        pending.position(pending.position() + ENTRY_BYTES);
+        appended += 1;
+    }
+
+    /**
+     * Writes a game into the slot of its pair it didn't write last.
+     *
+     * @param s  the game
+     */
+    private void writeSnapshot(Session s) {
+        s.half = 1 - s.half;
+        ByteBuffer view = slotView(s.slot, s.half);
+        view.putLong(0, s.id);
+        view.putLong(8, ++epoch);
+        view.putLong(16, s.born);
+        view.putInt(24, s.seq);
+        view.position(SLOT_HEADER);
+        int layoutIndex = layouts.indexOf(s.game.board().layout());
+        SessionRecord.write(s.game, layoutIndex, view);
+        int length = view.position() - SLOT_HEADER;
+        view.putInt(28, length);
+        view.putInt(SLOT_CRC, checksum(view, 0, SLOT_CRC) ^ checksum(view, SLOT_HEADER, length));
+        s.dirty = false;
+        snapshotsTouched = true;
+    }
+
+    /**
+     * Wipes both slots of a pair and frees it.
+     *
+     * @param slot  the slot pair
+     */
+    private void clearSlot(int slot) {
+        for (int half = 0; half < 2; half++) {
+            ByteBuffer view = slotView(slot, half);
+            for (int k = 0; k < SLOT_HEADER; k += Long.BYTES) {
+                view.putLong(k, 0L);
+            }
+        }
+        free[freeCount++] = slot;
+        snapshotsTouched = true;
+    }
+
+    /**
+     * Picks the slot of a pair with the newest intact snapshot.
+     *
+     * @param slot  the slot pair
+     *
+     * @return the half, or -1 if neither holds a snapshot
+     */
+    private int newestHalf(int slot) {
+        int best = -1;
+        long bestEpoch = 0;
+        for (int half = 0; half < 2; half++) {
+            ByteBuffer view = slotView(slot, half);
+            long slotEpoch = view.getLong(8);
+            int length = view.getInt(28);
+            if (slotEpoch <= bestEpoch || length <= 0 || length > slotBytes - SLOT_HEADER) {
+                continue;
+            }
+            int check = checksum(view, 0, SLOT_CRC) ^ checksum(view, SLOT_HEADER, length);
+            if (check == view.getInt(SLOT_CRC)) {
+                best = half;
+                bestEpoch = slotEpoch;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a view of one slot of a pair.
+     *
+     * @param slot  the slot pair
+     * @param half  which of the two
+     *
+     * @return the view, positioned at zero
+     */
+    private ByteBuffer slotView(int slot, int half) {
+        return snapshots.slice(FILE_HEADER + (2 * slot + half) * slotBytes, slotBytes);
+    }
+
+    /**
+     * Computes the checksum of part of a buffer.
+     *
+     * @param buf  the buffer
+     * @param offset  where the part starts
+     * @param length  the length of the part
+     *
+     * @return the checksum
+     */
+    private int checksum(ByteBuffer buf, int offset, int length) {
+        crc.reset();
+        crc.update(buf.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Lists the journals in the directory.
+     *
+     * @return their numbers, in order
+     *
+     * @throws IOException if the directory can't be read
+     */
+    private List<Long> segments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir, "journal-*.log")) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(8, name.length() - 4)));
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /**
+     * Returns the path of a journal.
+     *
+     * @param number  the number of the journal
+     *
+     * @return the path
+     */
+    private Path segmentPath(long number) {
+        return dir.resolve("journal-" + number + ".log");
+    }
+
+    /**
+     * Creates an empty journal.
+     *
+     * @param number  the number of the journal
+     *
+     * @return the open journal
+     *
+     * @throws IOException if it can't be created
+     */
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Throws if the checkpointer is closed or its background thread has failed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("the checkpointer has been closed");
+        }
+        checkFailure();
+    }
+
+    /**
+     * Throws if the background thread has failed.
+     */
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * A game, where its snapshots are and how far its journal has got.
+     */
+    private static final class Session {
+        private final long id;
+        private final CatanGame game;
+        private final int slot;
+        private final long born;
+        private int seq;
+        private int half = 1;
+        private boolean dirty;
+
+        Session(long id, CatanGame game, int slot, long born, int seq) {
+            this.id = id;
+            this.game = game;
+            this.slot = slot;
+            this.born = born;
+            this.seq = seq;
+        }
+    }
+
+    /** How long journal entries gather before they're written by default, in milliseconds. */
+    public static final long DEFAULT_FLUSH_MILLIS = 5;
+
+    /** How long to go between checkpoints by default, in milliseconds. */
+    public static final long DEFAULT_CHECKPOINT_MILLIS = 60_000;
+
+    /** The name of the snapshot file. */
+    private static final String SNAPSHOT_FILE = "snapshots.dat";
+
+    /** The first four bytes of a snapshot file. */
+    private static final int MAGIC = 0x43415453;
+
+    /** The bytes before the first slot: the magic, the slot size and the capacity. */
+    private static final int FILE_HEADER = 16;
+
+    /** The bytes of a slot before its record: id, epoch, born, seq, length and checksum. */
+    private static final int SLOT_HEADER = 40;
+
+    /** Where a slot's checksum is. */
+    private static final int SLOT_CRC = 32;
+
+    /** The bytes of a journal entry: id, born, seq, action and checksum. */
+    private static final int ENTRY_BYTES = 28;
+
+    /** Where an entry's checksum is. */
+    private static final int ENTRY_CRC = 24;
+
+    /** The action journaled when a game is removed. */
+    private static final int REMOVED = -1;
+
+    /** The size a journal can grow to before a checkpoint is taken. */
+    private static final long SEGMENT_BYTES = 1L << 24;
+
+    /** The starting size of the journal buffers. */
+    private static final int INITIAL_PENDING = 1 << 12;
+}
@@ -0,0 +1,447 @@
+package src.main.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+
+/**
+ * Keeps the games of a server, packing the ones nobody has touched for a while into an
+ * off-heap arena so that they cost a few hundred bytes each instead of a whole object graph.
+ * A live game is a CatanGame on the heap. A game that has been idle for longer than the
+ * timeout is hibernated by sweep: it's written with GameCodec into a slot of the arena and
+ * the CatanGame is dropped. The next get of that game reads it back into a new CatanGame.
+ *
+ * The arena is a list of direct buffers carved into fixed-size slots, and freed slots are
+ * reused before new ones are carved. Which slot a hibernated game is in is kept in an
+ * open-addressing table of primitive arrays, so a hibernated game costs no heap objects of
+ * its own. Every method is synchronized.
+ *
+ * A hibernated game keeps its players' colors and layout, but loses its listeners.
+ */
+public class Hibernator {
+    /** How long a game can go untouched before sweep hibernates it, in the clock's units. */
+    private final long idleNanos;
+
+    /** The size of a slot. */
+    private final int slotBytes;
+
+    /** The number of slots in each buffer of the arena. */
+    private final int slotsPerChunk;
+
+    /** The clock, in nanoseconds. */
+    private final LongSupplier clock;
+
+    /** The buffers of the arena. */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /** The number of slots that have been carved out of the arena. */
+    private int carved;
+
+    /** The slots that have been freed, as a stack. */
+    private int[] free = new int[INITIAL_CAPACITY];
+
+    /** The number of freed slots. */
+    private int freeCount;
+
+    /** The layouts of the games seen, which a slot refers to by index. */
+    private final List<BoardLayout> layouts = new ArrayList<>();
+
+    /** The live games, by id. */
+    private final Map<Long, Live> live = new HashMap<>();
+
+    /** The slots of the hibernated games, by id. */
+    private final SlotTable parked = new SlotTable();
+
+    /**
+     * Creates a hibernator with slots big enough for any game, on the system clock.
+     *
+     * @param idleMillis  how long a game can go untouched before it's hibernated
+     */
+    public Hibernator(long idleMillis) {
+        this(idleMillis, recordBytes(BoardLayout.EXTENSION, CatanGame.MAX_PLAYERS),
+             DEFAULT_SLOTS_PER_CHUNK, System::nanoTime);
+    }
+
+    /**
+     * Creates a hibernator.
+     *
+     * @param idleMillis  how long a game can go untouched before it's hibernated
+     * @param slotBytes  the size of a slot, at least recordBytes of the biggest game kept
+     * @param slotsPerChunk  the number of slots in each buffer of the arena
+     * @param clock  the clock, in nanoseconds
+     */
+    public Hibernator(long idleMillis, int slotBytes, int slotsPerChunk, LongSupplier clock) {
+        if (idleMillis < 0 || slotBytes < 1 || slotsPerChunk < 1
+                || (long) slotBytes * slotsPerChunk > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("bad hibernator sizes");
+        }
+        this.idleNanos = idleMillis * 1_000_000L;
+        this.slotBytes = slotBytes;
+        this.slotsPerChunk = slotsPerChunk;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the number of bytes a hibernated game takes in a slot.
+     *
+     * @param layout  the layout of the game
+     * @param numPlayers  the number of seats
+     *
+     * @return the size of a record
+     */
+    public static int recordBytes(BoardLayout layout, int numPlayers) {
+        return SessionRecord.size(layout, numPlayers);
+    }
+
+    /**
+     * Adds a live game, replacing any game with the same id.
+     *
+     * @param id  the id of the game
+     * @param game  the game
+     */
+    public synchronized void put(long id, CatanGame game) {
+        if (recordBytes(game.board().layout(), game.numPlayers()) > slotBytes) {
+            throw new IllegalArgumentException("the game doesn't fit in a slot");
+        }
+        remove(id);
+        live.put(id, new Live(game, clock.getAsLong()));
+    }
+
+    /**
+     * Returns a game, waking it up if it's hibernated, and marks it as touched.
+     *
+     * @param id  the id of the game
+     *
+     * @return the game, or null if there's no game with that id
+     */
+    public synchronized CatanGame get(long id) {
+        Live entry = live.get(id);
+        if (entry == null) {
+            int slot = parked.remove(id);
+            if (slot == -1) {
+                return null;
+            }
+            entry = new Live(inflate(slot), 0);
+            release(slot);
+            live.put(id, entry);
+        }
+        entry.touched = clock.getAsLong();
+        return entry.game;
+    }
+
+    /**
+     * Removes a game, live or hibernated.
+     *
+     * @param id  the id of the game
+     *
+     * @return true if there was a game with that id
+     */
+    public synchronized boolean remove(long id) {
+        if (live.remove(id) != null) {
+            return true;
+        }
+        int slot = parked.remove(id);
+        if (slot == -1) {
+            return false;
+        }
+        release(slot);
+        return true;
+    }
+
+    /**
+     * Hibernates a live game straight away.
+     *
+     * @param id  the id of the game
+     *
+     * @return true if the game was live and is now hibernated
+     */
+    public synchronized boolean hibernate(long id) {
+        Live entry = live.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        park(id, entry.game);
+        return true;
+    }
+
+    /**
+     * Hibernates every live game that has gone untouched for longer than the timeout.
+     *
+     * @return the number of games hibernated
+     */
+    public synchronized int sweep() {
+        long now = clock.getAsLong();
+        int count = 0;
+        for (Iterator<Map.Entry<Long, Live>> it = live.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Live> e = it.next();
+            if (now - e.getValue().touched > idleNanos) {
+                it.remove();
+                park(e.getKey(), e.getValue().game);
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if a game is hibernated.
+     *
+     * @param id  the id of the game
+     *
+     * @return whether the game is in the arena
+     */
+    public synchronized boolean isHibernated(long id) {
+        return parked.get(id) != -1;
+    }
+
+    /**
+     * Returns the number of live games.
+     *
+     * @return the number of games on the heap
+     */
+    public synchronized int liveCount() {
+        return live.size();
+    }
+
+    /**
+     * Returns the number of hibernated games.
+     *
+     * @return the number of games in the arena
+     */
+    public synchronized int hibernatedCount() {
+        return parked.size();
+    }
+
+    /**
+     * Returns the off-heap memory the arena has allocated.
+     *
+     * @return the size of the arena in bytes
+     */
+    public synchronized long arenaBytes() {
+        return (long) chunks.size() * slotsPerChunk * slotBytes;
+    }
+
+    /**
+     * Writes a game into a slot.
+     *
+     * @param id  the id of the game
+     * @param game  the game
+     */
+    private void park(long id, CatanGame game) {
+        int slot = allocate();
+        ByteBuffer buf = slice(slot);
+        BoardLayout layout = game.board().layout();
+        int layoutIndex = layouts.indexOf(layout);
+        if (layoutIndex == -1) {
+            layoutIndex = layouts.size();
+            layouts.add(layout);
+        }
+        SessionRecord.write(game, layoutIndex, buf);
+        parked.put(id, slot);
+    }
+
+    /**
+     * Reads the game in a slot into a new CatanGame.
+     *
+     * @param slot  the slot
+     *
+     * @return the game
+     */
+    private CatanGame inflate(int slot) {
+        return SessionRecord.read(slice(slot), layouts);
+    }
+
+    /**
+     * Returns a view of a slot, positioned at its start.
+     *
+     * @param slot  the slot
+     *
+     * @return the view
+     */
+    private ByteBuffer slice(int slot) {
+        ByteBuffer chunk = chunks.get(slot / slotsPerChunk);
+        int start = (slot % slotsPerChunk) * slotBytes;
+        return chunk.duplicate().position(start).limit(start + slotBytes);
+    }
+
+    /**
+     * Takes a free slot, carving a new buffer out if every slot is taken.
+     *
+     * @return the slot
+     */
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (carved == chunks.size() * slotsPerChunk) {
+            chunks.add(ByteBuffer.allocateDirect(slotsPerChunk * slotBytes));
+        }
+        return carved++;
+    }
+
+    /**
+     * Gives a slot back.
+     *
+     * @param slot  the slot
+     */
+    private void release(int slot) {
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = slot;
+    }
+
+    /**
+     * A live game and when it was last touched.
+     */
+    private static final class Live {
+        private final CatanGame game;
+        private long touched;
+
+        Live(CatanGame game, long touched) {
+            this.game = game;
+            this.touched = touched;
+        }
+    }
+
+    /**
+     * A hash table from game ids to slots, with linear probing over two primitive arrays.
+     * Removal shifts the entries after a removed one back, so there are no tombstones.
+     */
+    private static final class SlotTable {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] slots = new int[INITIAL_CAPACITY];
+        private boolean[] used = new boolean[INITIAL_CAPACITY];
+        private int size;
+
+        /**
+         * Returns the number of entries.
+         *
+         * @return the size
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Looks up an id.
+         *
+         * @param id  the id
+         *
+         * @return the slot, or -1
+         */
+        int get(long id) {
+            int i = find(id);
+            return used[i] ? slots[i] : -1;
+        }
+
+        /**
+         * Adds or replaces an entry.
+         *
+         * @param id  the id
+         * @param slot  the slot
+         */
+        void put(long id, int slot) {
+            if (3 * (size + 1) > 2 * keys.length) {
+                grow();
+            }
+            int i = find(id);
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = id;
+                size += 1;
+            }
+            slots[i] = slot;
+        }
+
+        /**
+         * Removes an entry.
+         *
+         * @param id  the id
+         *
+         * @return the slot it had, or -1
+         */
+        int remove(long id) {
+            int i = find(id);
+            if (!used[i]) {
+                return -1;
+            }
+            int slot = slots[i];
+            used[i] = false;
+            size -= 1;
+            int mask = keys.length - 1;
+            for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+                int home = home(keys[j]);
+                boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!between) {
+                    keys[i] = keys[j];
+                    slots[i] = slots[j];
+                    used[i] = true;
+                    used[j] = false;
+                    i = j;
+                }
+            }
+            return slot;
+        }
+
+        /**
+         * Finds the index holding an id, or the empty index where it would go.
+         *
+         * @param id  the id
+         *
+         * @return the index
+         */
+        private int find(long id) {
+            int mask = keys.length - 1;
+            int i = home(id);
+            while (used[i] && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * Returns the index an id hashes to.
+         *
+         * @param id  the id
+         *
+         * @return the index
+         */
+        private int home(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & (keys.length - 1);
+        }
+
+        /**
+         * Doubles the capacity.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[keys.length];
+            used = new boolean[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldSlots[i]);
+                }
+            }
+        }
+    }
+
+    /** The number of slots in each buffer of the arena by default. */
+    public static final int DEFAULT_SLOTS_PER_CHUNK = 1 << 16;
+
+    /** The starting capacity of the tables. */
+    private static final int INITIAL_CAPACITY = 64;
+}
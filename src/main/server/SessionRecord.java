@@ -0,0 +1,69 @@
+package src.main.server;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+import src.main.model.GameCodec;
+
+/**
+ * The record a game is kept as when it's out of the heap: the index of its layout in a list
+ * the owner keeps, the number of seats, the color of each seat, and then the game as
+ * GameCodec writes it.
+ */
+final class SessionRecord {
+    private SessionRecord() {
+    }
+
+    /**
+     * Returns the number of bytes a game's record takes.
+     *
+     * @param layout  the layout of the game
+     * @param numPlayers  the number of seats
+     *
+     * @return the size of a record
+     */
+    static int size(BoardLayout layout, int numPlayers) {
+        return 2 + numPlayers * Integer.BYTES + GameCodec.encodedSize(layout, numPlayers);
+    }
+
+    /**
+     * Writes a game's record at a buffer's position.
+     *
+     * @param game  the game
+     * @param layoutIndex  the index of the game's layout
+     * @param out  the buffer
+     */
+    static void write(CatanGame game, int layoutIndex, ByteBuffer out) {
+        out.put((byte) layoutIndex);
+        out.put((byte) game.numPlayers());
+        for (int p = 0; p < game.numPlayers(); p++) {
+            out.putInt(game.player(p).color().getRGB());
+        }
+        GameCodec.encode(game, out);
+    }
+
+    /**
+     * Reads a record at a buffer's position into a new game.
+     *
+     * @param in  the buffer
+     * @param layouts  the layouts the record's index refers to
+     *
+     * @return the game
+     */
+    static CatanGame read(ByteBuffer in, List<BoardLayout> layouts) {
+        int layoutIndex = in.get();
+        if (layoutIndex < 0 || layoutIndex >= layouts.size()) {
+            throw new IllegalArgumentException("unknown layout " + layoutIndex);
+        }
+        Color[] colors = new Color[in.get()];
+        for (int p = 0; p < colors.length; p++) {
+            colors[p] = new Color(in.getInt(), true);
+        }
+        CatanGame game = new CatanGame(0L, layouts.get(layoutIndex), colors);
+        GameCodec.decode(in, game);
+        return game;
+    }
+}
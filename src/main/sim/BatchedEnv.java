@@ -0,0 +1,528 @@
+package src.main.sim;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.Phaser;
+
+import src.main.model.ActionSpace;
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+import src.main.model.TurnPhase;
+
+/**
+ * Runs many games side by side for training policies. Every game is stepped with one action
+ * per call, and the results are written into direct buffers that a learner can read without
+ * copying: an observation for each game from the point of view of the seat that acts next,
+ * a reward for each seat, a done flag, the seat to act, a mask of legal actions, and a flag
+ * for an action that wasn't legal.
+ *
+ * The games themselves are CatanGames, which reset without allocating and run their own
+ * turn phases, so actions are numbered by the game's ActionSpace and the mask is the game's
+ * own legal actions. What the environment tracks per game on top of that (the seeds and the
+ * episode length) is kept in one array per field, indexed by game, and the games are split
+ * into contiguous shards that worker threads step in parallel.
+ *
+ * An action that isn't legal is replaced by the first legal one, which ends the turn in the
+ * main phase, and the game's illegal flag is set for that step so the learner can tell. A
+ * game with no legal action at all is a bug in the game, and the step throws. A game that
+ * ends is reset straight away with the next seed, so the observation
+ * after a done flag is the first of the next episode.
+ */
+public class BatchedEnv {
+    /** The number of games. */
+    private final int envs;
+
+    /** The number of seats in each game. */
+    private final int numPlayers;
+
+    /** The layout every game is played on. */
+    private final BoardLayout layout;
+
+    /** The games. */
+    private final CatanGame[] games;
+
+    /** The numbering of the actions. */
+    private final ActionSpace actionSpace;
+
+    /** The seed of each game's current episode. */
+    private final long[] seeds;
+
+    /** The number of actions taken in each game's current episode. */
+    private final int[] episodeSteps;
+
+    /** The longest an episode can run, in actions, before it's cut off. */
+    private final int maxSteps;
+
+    /** The size of an observation. */
+    private final int obsSize;
+
+    /** The number of actions. */
+    private final int actionCount;
+
+    /** The actions for the next step, one per game. */
+    private final IntBuffer actions;
+
+    /** The observations, obsSize per game. */
+    private final FloatBuffer observations;
+
+    /** The rewards of the last step, one per seat per game. */
+    private final FloatBuffer rewards;
+
+    /** The done flags of the last step: RUNNING, TERMINATED or TRUNCATED. */
+    private final ByteBuffer dones;
+
+    /** The seat that acts next in each game. */
+    private final IntBuffer players;
+
+    /** The legal actions for the seat that acts next, actionCount per game, 1 if legal. */
+    private final ByteBuffer legal;
+
+    /** 1 for each game whose action in the last step wasn't legal and was replaced. */
+    private final ByteBuffer illegal;
+
+    /** The number of shards. */
+    private final int shards;
+
+    /** An encoder for each shard, since an encoder can only be used by one thread. */
+    private final StateEncoder[] encoders;
+
+    /** A legal action bitmask for each shard to fill. */
+    private final long[][] masks;
+
+    /** Lines up the caller and the workers at the start and end of every step. */
+    private final Phaser phaser;
+
+    /** The first failure in a worker during the current step. */
+    private volatile RuntimeException failure;
+
+    /** Set when the workers should exit. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a batch of games on the board that goes with the number of players.
+     *
+     * @param envs  the number of games
+     * @param numPlayers  the number of seats in each game
+     * @param threads  the number of threads to step with, 1 to step on the calling thread
+     * @param maxSteps  the longest an episode can run, in actions
+     */
+    public BatchedEnv(int envs, int numPlayers, int threads, int maxSteps) {
+        this(envs, numPlayers, defaultLayout(numPlayers), threads, maxSteps);
+    }
+
+    /**
+     * Creates a batch of games.
+     *
+     * @param envs  the number of games
+     * @param numPlayers  the number of seats in each game
+     * @param layout  the layout every game is played on
+     * @param threads  the number of threads to step with, 1 to step on the calling thread
+     * @param maxSteps  the longest an episode can run, in actions
+     */
+    public BatchedEnv(int envs, int numPlayers, BoardLayout layout, int threads, int maxSteps) {
+        if (envs < 1 || threads < 1 || maxSteps < 1) {
+            throw new IllegalArgumentException("envs, threads and maxSteps must be positive");
+        }
+        this.envs = envs;
+        this.numPlayers = numPlayers;
+        this.layout = layout;
+        this.maxSteps = maxSteps;
+        Color[] colors = new Color[numPlayers];
+        System.arraycopy(COLORS, 0, colors, 0, numPlayers);
+        this.games = new CatanGame[envs];
+        for (int i = 0; i < envs; i++) {
+            games[i] = new CatanGame(i, layout, colors);
+        }
+        this.actionSpace = games[0].actionSpace();
+        this.seeds = new long[envs];
+        this.episodeSteps = new int[envs];
+
+        this.actionCount = actionSpace.size();
+        this.shards = Math.min(threads, envs);
+        this.encoders = new StateEncoder[shards];
+        this.masks = new long[shards][actionSpace.maskLength()];
+        for (int s = 0; s < shards; s++) {
+            encoders[s] = new StateEncoder(layout, numPlayers);
+        }
+        this.obsSize = encoders[0].size() + TurnPhase.COUNT;
+        this.actions = directInts(envs);
+        this.observations = directBytes(envs * obsSize * 4).asFloatBuffer();
+        this.rewards = directBytes(envs * numPlayers * 4).asFloatBuffer();
+        this.dones = directBytes(envs);
+        this.players = directInts(envs);
+        this.legal = directBytes(envs * actionCount);
+        this.illegal = directBytes(envs);
+
+        this.phaser = new Phaser(shards);
+        for (int s = 1; s < shards; s++) {
+            int shard = s;
+            Thread worker = new Thread(() -> work(shard), "batched-env-" + s);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long[] initial = new long[envs];
+        for (int i = 0; i < envs; i++) {
+            initial[i] = i;
+        }
+        reset(initial);
+    }
+
+    /**
+     * Starts a new episode in every game.
+     *
+     * @param newSeeds  the seed for each game
+     */
+    public void reset(long[] newSeeds) {
+        if (newSeeds.length != envs) {
+            throw new IllegalArgumentException("need one seed per game");
+        }
+        for (int i = 0; i < envs; i++) {
+            startEpisode(i, newSeeds[i]);
+            dones.put(i, RUNNING);
+            illegal.put(i, (byte) 0);
+            for (int p = 0; p < numPlayers; p++) {
+                rewards.put(i * numPlayers + p, 0f);
+            }
+            writeOutputs(i, 0);
+        }
+    }
+
+    /**
+     * Steps every game with the actions in the actions buffer, and waits for all of them.
+     */
+    public void step() {
+        failure = null;
+        if (shards == 1) {
+            stepShard(0);
+            return;
+        }
+        phaser.arriveAndAwaitAdvance();
+        stepShard(0);
+        phaser.arriveAndAwaitAdvance();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Copies actions into the actions buffer and steps every game.
+     *
+     * @param next  the action for each game
+     */
+    public void step(int[] next) {
+        for (int i = 0; i < envs; i++) {
+            actions.put(i, next[i]);
+        }
+        step();
+    }
+
+    /**
+     * Stops the worker threads. The environment can't be stepped afterwards.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            if (shards > 1) {
+                phaser.arriveAndDeregister();
+            }
+        }
+    }
+
+    /**
+     * The loop run by a worker thread: wait for a step, step the shard, report back.
+     *
+     * @param shard  the shard the worker steps
+     */
+    private void work(int shard) {
+        while (true) {
+            phaser.arriveAndAwaitAdvance();
+            if (closed) {
+                phaser.arriveAndDeregister();
+                return;
+            }
+            try {
+                stepShard(shard);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            phaser.arriveAndAwaitAdvance();
+        }
+    }
+
+    /**
+     * Steps the games of one shard.
+     *
+     * @param shard  the shard
+     */
+    private void stepShard(int shard) {
+        int from = (int) ((long) envs * shard / shards);
+        int to = (int) ((long) envs * (shard + 1) / shards);
+        for (int i = from; i < to; i++) {
+            stepGame(i, shard);
+        }
+    }
+
+    /**
+     * Steps one game with its action and writes its outputs.
+     *
+     * @param i  the game
+     * @param shard  the shard of the calling thread
+     */
+    private void stepGame(int i, int shard) {
+        CatanGame game = games[i];
+        for (int p = 0; p < numPlayers; p++) {
+            rewards.put(i * numPlayers + p, 0f);
+        }
+        dones.put(i, RUNNING);
+        episodeSteps[i] += 1;
+        boolean taken = game.act(actions.get(i));
+        illegal.put(i, taken ? (byte) 0 : (byte) 1);
+        for (int a = 0; !taken; a++) {
+            if (a == actionCount) {
+                throw new IllegalStateException("no legal action in game " + i + " in phase "
+                                                + game.phase());
+            }
+            taken = game.act(a);
+        }
+        if (game.phase() == TurnPhase.GAME_OVER) {
+            int winner = game.winner().index();
+            for (int p = 0; p < numPlayers; p++) {
+                rewards.put(i * numPlayers + p, p == winner ? 1f : -1f);
+            }
+            dones.put(i, TERMINATED);
+        } else if (episodeSteps[i] >= maxSteps) {
+            dones.put(i, TRUNCATED);
+        }
+        if (dones.get(i) != RUNNING) {
+            startEpisode(i, nextSeed(seeds[i]));
+        }
+        writeOutputs(i, shard);
+    }
+
+    /**
+     * Resets a game for a new episode.
+     *
+     * @param i  the game
+     * @param seed  the seed for the episode
+     */
+    private void startEpisode(int i, long seed) {
+        seeds[i] = seed;
+        games[i].reset(seed);
+        episodeSteps[i] = 0;
+    }
+
+    /**
+     * Writes the observation, acting seat and legal mask of a game.
+     *
+     * @param i  the game
+     * @param shard  the shard of the calling thread
+     */
+    private void writeOutputs(int i, int shard) {
+        CatanGame game = games[i];
+        int seat = game.actingPlayer().index();
+        players.put(i, seat);
+        long[] mask = masks[shard];
+        game.legalActions(mask);
+        int base = i * actionCount;
+        for (int a = 0; a < actionCount; a++) {
+            legal.put(base + a, ActionSpace.isSet(mask, a) ? (byte) 1 : (byte) 0);
+        }
+        writeObservation(i, seat, encoders[shard]);
+    }
+
+    /**
+     * Writes the observation of a game from the point of view of a seat: the encoded state,
+     * followed by a one-hot of the game's turn phase.
+     *
+     * @param i  the game
+     * @param seat  the seat observing
+     * @param encoder  the encoder of the calling thread
+     */
+    private void writeObservation(int i, int seat, StateEncoder encoder) {
+        int o = i * obsSize;
+        encoder.encode(games[i], seat, observations, o);
+        o += encoder.size();
+        int phase = games[i].phase().ordinal();
+        for (int ph = 0; ph < TurnPhase.COUNT; ph++) {
+            observations.put(o++, phase == ph ? 1f : 0f);
+        }
+    }
+
+    /**
+     * Returns the seed after another, for auto-reset.
+     *
+     * @param seed  the seed
+     *
+     * @return the next seed
+     */
+    private static long nextSeed(long seed) {
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Picks the board that goes with a number of players, like CatanGame does.
+     *
+     * @param numPlayers  the number of players
+     *
+     * @return the layout
+     */
+    private static BoardLayout defaultLayout(int numPlayers) {
+        if (numPlayers <= 2) {
+            return BoardLayout.TWO_PLAYER;
+        }
+        return numPlayers <= 4 ? BoardLayout.STANDARD : BoardLayout.EXTENSION;
+    }
+
+    /**
+     * Allocates a direct buffer in the platform's byte order.
+     *
+     * @param bytes  the size in bytes
+     *
+     * @return the buffer
+     */
+    private static ByteBuffer directBytes(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Allocates a direct int buffer in the platform's byte order.
+     *
+     * @param ints  the number of ints
+     *
+     * @return the buffer
+     */
+    private static IntBuffer directInts(int ints) {
+        return directBytes(ints * 4).asIntBuffer();
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return the number of games
+     */
+    public int envs() {
+        return envs;
+    }
+
+    /**
+     * Returns the number of actions, numbered as in actionSpace().
+     *
+     * @return the number of actions
+     */
+    public int actionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Returns the numbering of the actions.
+     *
+     * @return the action space
+     */
+    public ActionSpace actionSpace() {
+        return actionSpace;
+    }
+
+    /**
+     * Returns the number of floats in each observation.
+     *
+     * @return the observation size
+     */
+    public int observationSize() {
+        return obsSize;
+    }
+
+    /**
+     * Returns the buffer the next actions are written into, one per game.
+     *
+     * @return the actions buffer
+     */
+    public IntBuffer actions() {
+        return actions;
+    }
+
+    /**
+     * Returns the observations, observationSize floats per game.
+     *
+     * @return the observations buffer
+     */
+    public FloatBuffer observations() {
+        return observations;
+    }
+
+    /**
+     * Returns the rewards of the last step, one float per seat per game.
+     *
+     * @return the rewards buffer
+     */
+    public FloatBuffer rewards() {
+        return rewards;
+    }
+
+    /**
+     * Returns the done flags of the last step, one byte per game.
+     *
+     * @return the dones buffer
+     */
+    public ByteBuffer dones() {
+        return dones;
+    }
+
+    /**
+     * Returns the seat that acts next in each game.
+     *
+     * @return the players buffer
+     */
+    public IntBuffer players() {
+        return players;
+    }
+
+    /**
+     * Returns the legal actions for the seat that acts next, actionCount bytes per game.
+     *
+     * @return the legal mask buffer
+     */
+    public ByteBuffer legalActions() {
+        return legal;
+    }
+
+    /**
+     * Returns the illegal flags of the last step, one byte per game: 1 if the game's action
+     * wasn't legal and the first legal action was taken instead.
+     *
+     * @return the illegal flags buffer
+     */
+    public ByteBuffer illegalActions() {
+        return illegal;
+    }
+
+    /**
+     * Returns one of the games, for inspection.
+     *
+     * @param i  the game
+     *
+     * @return the game
+     */
+    public CatanGame game(int i) {
+        return games[i];
+    }
+
+    /** The done flag of a game still going. */
+    public static final byte RUNNING = 0;
+
+    /** The done flag of a game someone won. */
+    public static final byte TERMINATED = 1;
+
+    /** The done flag of a game cut off for running too long. */
+    public static final byte TRUNCATED = 2;
+
+    /** The colors handed out to seats in order. */
+    private static final Color[] COLORS = {
+        Color.WHITE, Color.BLUE, Color.RED, Color.ORANGE, Color.GREEN, Color.BLACK
+    };
+}
@@ -0,0 +1,218 @@
+package src.main.sim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import src.main.model.CatanGame;
+import src.main.model.GameListener;
+import src.main.model.Player;
+import src.main.model.Purchase;
+import src.main.model.Resource;
+
+/**
+ * Listens to a game and writes facts about it into two tables. The seats table has a row
+ * for each seat of each game: whether they won, the pips around their two opening
+ * settlements, the turn they built their first city (-1 for never), the cards they lost to
+ * the bank running short, their final points and the length of the game. The turns table
+ * has a row for each turn: the seat, the roll, the cards lost to shortage on that roll, and
+ * the seat's points at the end of the turn.
+ *
+ * A recorder follows one game at a time, so each thread playing games needs its own; the
+ * table writers can be shared. Call begin with the id to record a game under before it
+ * starts. A game that someone wins is written when it ends, and a game that's cut off is
+ * written by finish.
+ */
+public class GameRecorder implements GameListener {
+    /** Where the seat rows go. */
+    private final TableWriter seats;
+
+    /** Where the turn rows go. */
+    private final TableWriter turns;
+
+    /** The id of the game being recorded. */
+    private long gameId;
+
+    /** The settlements each seat has built so far. */
+    private final int[] settlements = new int[CatanGame.MAX_PLAYERS];
+
+    /** The pips around each seat's first two settlements. */
+    private final int[] openingPips = new int[CatanGame.MAX_PLAYERS];
+
+    /** The turn each seat built their first city, or -1. */
+    private final int[] firstCity = new int[CatanGame.MAX_PLAYERS];
+
+    /** The cards each seat has lost to shortage. */
+    private final int[] lost = new int[CatanGame.MAX_PLAYERS];
+
+    /** The cards lost to shortage by everyone this turn. */
+    private int lostThisTurn;
+
+    /** Set once the game's seat rows have been written. */
+    private boolean written;
+
+    /** The row being appended, reused. */
+    private final long[] seatRow = new long[SEAT_COLUMNS.length];
+
+    /** The row being appended, reused. */
+    private final long[] turnRow = new long[TURN_COLUMNS.length];
+
+    /**
+     * Creates a recorder.
+     *
+     * @param seats  the writer of the seats table
+     * @param turns  the writer of the turns table
+     */
+    public GameRecorder(TableWriter seats, TableWriter turns) {
+        this.seats = seats;
+        this.turns = turns;
+        clear();
+    }
+
+    /**
+     * Creates a writer for a seats table.
+     *
+     * @param dir  the directory the tables are kept in
+     *
+     * @return the writer
+     *
+     * @throws IOException if the table can't be created
+     */
+    public static TableWriter seatsTable(Path dir) throws IOException {
+        return new TableWriter(dir, SEATS, SEAT_COLUMNS);
+    }
+
+    /**
+     * Creates a writer for a turns table.
+     *
+     * @param dir  the directory the tables are kept in
+     *
+     * @return the writer
+     *
+     * @throws IOException if the table can't be created
+     */
+    public static TableWriter turnsTable(Path dir) throws IOException {
+        return new TableWriter(dir, TURNS, TURN_COLUMNS);
+    }
+
+    /**
+     * Sets the id the next game is recorded under.
+     *
+     * @param id  the game's id
+     */
+    public void begin(long id) {
+        gameId = id;
+        clear();
+    }
+
+    /**
+     * Writes the seat rows of a game that was cut off before anyone won. Does nothing if
+     * the game's rows have already been written.
+     *
+     * @param game  the game
+     */
+    public void finish(CatanGame game) {
+        if (!written) {
+            writeSeats(game, null);
+        }
+    }
+
+    @Override
+    public void gameStarted(CatanGame game) {
+        clear();
+    }
+
+    @Override
+    public void built(CatanGame game, Player player, Purchase piece, int location) {
+        int seat = player.index();
+        if (piece == Purchase.SETTLEMENT) {
+            if (settlements[seat] < 2) {
+                openingPips[seat] += game.board().vertexPips(location);
+            }
+            settlements[seat] += 1;
+        } else if (piece == Purchase.CITY && firstCity[seat] == -1) {
+            firstCity[seat] = game.turn();
+        }
+    }
+
+    @Override
+    public void resourcesDistributed(CatanGame game, int roll, int[] requested,
+                                     int shortedMask) {
+        for (int r = 0; r < Resource.COUNT; r++) {
+            if ((shortedMask & (1 << r)) == 0) {
+                continue;
+            }
+            for (int p = 0; p < game.numPlayers(); p++) {
+                lost[p] += requested[p * Resource.COUNT + r];
+                lostThisTurn += requested[p * Resource.COUNT + r];
+            }
+        }
+    }
+
+    @Override
+    public void turnEnded(CatanGame game, int turn, Player player) {
+        turnRow[0] = gameId;
+        turnRow[1] = turn;
+        turnRow[2] = player.index();
+        turnRow[3] = game.lastRoll();
+        turnRow[4] = lostThisTurn;
+        turnRow[5] = player.points();
+        turns.append(turnRow);
+        lostThisTurn = 0;
+    }
+
+    @Override
+    public void gameOver(CatanGame game, Player winner) {
+        writeSeats(game, winner);
+    }
+
+    /**
+     * Writes a row for each seat.
+     *
+     * @param game  the game
+     * @param winner  the winner, or null
+     */
+    private void writeSeats(CatanGame game, Player winner) {
+        for (int p = 0; p < game.numPlayers(); p++) {
+            seatRow[0] = gameId;
+            seatRow[1] = p;
+            seatRow[2] = winner != null && winner.index() == p ? 1 : 0;
+            seatRow[3] = openingPips[p];
+            seatRow[4] = firstCity[p];
+            seatRow[5] = lost[p];
+            seatRow[6] = game.player(p).points();
+            seatRow[7] = game.turn();
+            seats.append(seatRow);
+        }
+        written = true;
+    }
+
+    /**
+     * Forgets the game so far.
+     */
+    private void clear() {
+        Arrays.fill(settlements, 0);
+        Arrays.fill(openingPips, 0);
+        Arrays.fill(firstCity, -1);
+        Arrays.fill(lost, 0);
+        lostThisTurn = 0;
+        written = false;
+    }
+
+    /** The name of the seats table. */
+    public static final String SEATS = "seats";
+
+    /** The name of the turns table. */
+    public static final String TURNS = "turns";
+
+    /** The columns of the seats table. */
+    private static final String[] SEAT_COLUMNS = {
+        "game:long", "seat:int", "won:int", "openingPips:int", "firstCityTurn:int",
+        "lostToShortage:int", "points:int", "turns:int"
+    };
+
+    /** The columns of the turns table. */
+    private static final String[] TURN_COLUMNS = {
+        "game:long", "turn:int", "seat:int", "roll:int", "lostToShortage:int", "points:int"
+    };
+}
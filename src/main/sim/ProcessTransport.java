@@ -0,0 +1,154 @@
+package src.main.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each shard in a JVM of its own on this machine. The coordinator listens on a
+ * loopback port for each shard, and the worker connects to it and streams its records. The
+ * workers' error output goes to the coordinator's. A worker that goes quiet for longer than
+ * the read timeout is taken for hung: reading its records fails, and the coordinator plays
+ * its range again.
+ */
+public class ProcessTransport implements ShardTransport {
+    /** The java command. */
+    private final String java;
+
+    /** The class path the workers run with. */
+    private final String classPath;
+
+    /** How long a worker has to connect. */
+    private final long connectMillis;
+
+    /** How long a worker can go without sending anything. */
+    private final int readMillis;
+
+    /**
+     * Creates a transport that runs workers with the same java and class path as this JVM.
+     */
+    public ProcessTransport() {
+        this(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+             System.getProperty("java.class.path"), CONNECT_MILLIS, READ_MILLIS);
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param java  the java command
+     * @param classPath  the class path the workers run with
+     * @param connectMillis  how long a worker has to connect
+     * @param readMillis  how long a worker can go without sending anything
+     */
+    public ProcessTransport(String java, String classPath, long connectMillis, int readMillis) {
+        if (readMillis < 1) {
+            throw new IllegalArgumentException("the read timeout has to be positive");
+        }
+        this.java = java;
+        this.classPath = classPath;
+        this.connectMillis = connectMillis;
+        this.readMillis = readMillis;
+    }
+
+    @Override
+    public Shard launch(String jobClass, String[] args, long from, long to) throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            List<String> command = new ArrayList<>(Arrays.asList(
+                java, "-cp", classPath, ShardWorker.class.getName(),
+                server.getInetAddress().getHostAddress(), Integer.toString(server.getLocalPort()),
+                Long.toString(from), Long.toString(to), jobClass));
+            command.addAll(Arrays.asList(args));
+            Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+            server.setSoTimeout(POLL_MILLIS);
+            long deadline = System.currentTimeMillis() + connectMillis;
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    socket.setSoTimeout(readMillis);
+                    return new ProcessShard(process, socket);
+                } catch (SocketTimeoutException e) {
+                    if (!process.isAlive() || System.currentTimeMillis() > deadline) {
+                        process.destroyForcibly();
+                        throw new IOException("the worker didn't connect", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A worker process and its connection.
+     */
+    private static final class ProcessShard implements Shard {
+        private final Process process;
+        private final Socket socket;
+
+        ProcessShard(Process process, Socket socket) {
+            this.process = process;
+            this.socket = socket;
+        }
+
+        @Override
+        public InputStream results() {
+            try {
+                return socket.getInputStream();
+            } catch (IOException e) {
+                throw new IllegalStateException("the connection is gone", e);
+            }
+        }
+
+        @Override
+        public boolean finish() {
+            close();
+            try {
+                if (!process.waitFor(EXIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    process.destroyForcibly();
+                    return false;
+                }
+                return process.exitValue() == 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+                return false;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            close();
+            process.destroyForcibly();
+        }
+
+        /** Closes the connection, ignoring errors. */
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the worker's result is told by its exit
+            }
+        }
+    }
+
+    /** How long a worker has to connect by default. */
+    private static final long CONNECT_MILLIS = 60_000;
+
+    /** How long a worker can go without sending anything by default. */
+    private static final int READ_MILLIS = 60_000;
+
+    /** How often a worker that hasn't connected yet is checked on. */
+    private static final int POLL_MILLIS = 200;
+
+    /** How long a worker has to exit once its records are in. */
+    private static final long EXIT_MILLIS = 30_000;
+}
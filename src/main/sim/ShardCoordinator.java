@@ -0,0 +1,230 @@
+package src.main.sim;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Splits a ShardJob into ranges of items, has a ShardTransport play each range in a worker,
+ * and merges the records into the job as they arrive. A range whose worker fails, goes
+ * quiet past the transport's read timeout, or ends without sending every record, goes back
+ * in the queue and is played again, up to a number of attempts. Since an item's record
+ * follows from its number, playing a range again gives the same records, and those already
+ * merged from an earlier attempt are skipped, so the results don't depend on which attempt
+ * or which worker played what.
+ *
+ * One coordinator thread looks after each running worker, reading its records and merging
+ * them one at a time into the coordinator's own copy of the job.
+ */
+public class ShardCoordinator {
+    /** What starts the workers. */
+    private final ShardTransport transport;
+
+    /** The name of the job's class. */
+    private final String jobClass;
+
+    /** The job's arguments. */
+    private final String[] args;
+
+    /** The coordinator's copy of the job, which the records are merged into. */
+    private final ShardJob job;
+
+    /** The most items in a range. */
+    private final long shardSize;
+
+    /** The most workers running at once. */
+    private final int parallel;
+
+    /** The most times a range is tried. */
+    private final int maxAttempts;
+
+    /** The records merged so far. */
+    private final AtomicLong merged = new AtomicLong();
+
+    /** The ranges played again after a failure. */
+    private int retries;
+
+    /**
+     * Creates a coordinator.
+     *
+     * @param transport  what starts the workers
+     * @param jobClass  the name of a class implementing ShardJob
+     * @param args  the job's arguments
+     * @param shardSize  the most items in a range
+     * @param parallel  the most workers running at once
+     * @param maxAttempts  the most times a range is tried
+     */
+    public ShardCoordinator(ShardTransport transport, String jobClass, String[] args,
+                            long shardSize, int parallel, int maxAttempts) {
+        if (shardSize < 1 || shardSize > Integer.MAX_VALUE || parallel < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("bad shard settings");
+        }
+        this.transport = transport;
+        this.jobClass = jobClass;
+        this.args = args.clone();
+        this.job = ShardWorker.create(jobClass, this.args);
+        if (job.recordBytes() < Long.BYTES) {
+            throw new IllegalArgumentException("records have to start with the item");
+        }
+        this.shardSize = shardSize;
+        this.parallel = parallel;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Returns the coordinator's copy of the job, with the records merged so far.
+     *
+     * @return the job
+     */
+    public ShardJob job() {
+        return job;
+    }
+
+    /**
+     * Returns the number of records merged so far.
+     *
+     * @return the records
+     */
+    public long merged() {
+        return merged.get();
+    }
+
+    /**
+     * Returns the number of times a range has been played again after a failure.
+     *
+     * @return the retries
+     */
+    public synchronized int retries() {
+        return retries;
+    }
+
+    /**
+     * Plays the whole job and returns once every record is merged.
+     *
+     * @throws IllegalStateException if a range fails every attempt
+     */
+    public void run() {
+        long size = job.size();
+        int count = (int) ((size + shardSize - 1) / shardSize);
+        BitSet[] done = new BitSet[count];
+        int[] attempts = new int[count];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int s = 0; s < count; s++) {
+            done[s] = new BitSet();
+            queue.add(s);
+        }
+        int[] outstanding = {count};
+        RuntimeException[] failure = new RuntimeException[1];
+        Thread[] workers = new Thread[Math.max(1, Math.min(parallel, count))];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    while (true) {
+                        int s;
+                        synchronized (queue) {
+                            while (queue.isEmpty() && outstanding[0] > 0 && failure[0] == null) {
+                                queue.wait();
+                            }
+                            if (queue.isEmpty() || failure[0] != null) {
+                                return;
+                            }
+                            s = queue.poll();
+                        }
+                        long from = s * shardSize;
+                        long to = Math.min(size, from + shardSize);
+                        boolean ok = play(from, to, done[s]);
+                        synchronized (queue) {
+                            if (ok) {
+                                outstanding[0] -= 1;
+                            } else if (++attempts[s] >= maxAttempts) {
+                                failure[0] = new IllegalStateException(
+                                    "items " + from + " to " + to + " failed every attempt");
+                            } else {
+                                synchronized (this) {
+                                    retries += 1;
+                                }
+                                queue.add(s);
+                            }
+                            queue.notifyAll();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    synchronized (queue) {
+                        failure[0] = e;
+                        queue.notifyAll();
+                    }
+                }
+            }, "shard-coordinator-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for shards", e);
+            }
+        }
+        synchronized (queue) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    /**
+     * Plays one range in a worker and merges the records that aren't merged yet.
+     *
+     * @param from  the first item
+     * @param to  the item after the last
+     * @param done  the items of the range merged so far, updated
+     *
+     * @return true if the worker ended well and every item of the range is merged
+     */
+    private boolean play(long from, long to, BitSet done) {
+        ShardTransport.Shard shard = null;
+        try {
+            shard = transport.launch(jobClass, args, from, to);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(shard.results()));
+            byte[] bytes = new byte[job.recordBytes()];
+            ByteBuffer record = ByteBuffer.wrap(bytes);
+            while (true) {
+                try {
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    break;
+                }
+                long item = record.getLong(0);
+                if (item < from || item >= to) {
+                    throw new IOException("a record of item " + item + " is out of range");
+                }
+                synchronized (job) {
+                    if (!done.get((int) (item - from))) {
+                        record.clear();
+                        job.merge(record);
+                        done.set((int) (item - from));
+                        merged.incrementAndGet();
+                    }
+                }
+            }
+            boolean ended = shard.finish();
+            shard = null;
+            synchronized (job) {
+                return ended && done.cardinality() == to - from;
+            }
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (shard != null) {
+                shard.cancel();
+            }
+        }
+    }
+}
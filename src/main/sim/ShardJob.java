@@ -0,0 +1,49 @@
+package src.main.sim;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A simulation that can be split into ranges of numbered items, games for instance, and
+ * played in pieces by separate processes. Every item writes one fixed-size record, which
+ * starts with the item's number as a long, and an item's record follows from its number
+ * alone, so a range can be played again anywhere with the same results.
+ *
+ * A job is made from a list of strings, by a public constructor taking a String[], in the
+ * coordinator and again in every worker, so the arguments have to say everything about it.
+ * The coordinator's copy never plays anything; it merges the records the workers send.
+ */
+public interface ShardJob {
+    /**
+     * Returns the number of items.
+     *
+     * @return the items, numbered from 0
+     */
+    long size();
+
+    /**
+     * Returns the size of a record.
+     *
+     * @return the bytes per record, at least 8
+     */
+    int recordBytes();
+
+    /**
+     * Plays a range of items, writing each one's record to a stream and flushing it as soon
+     * as the record is written, since a worker that goes too long without sending anything
+     * is taken for hung. The stream isn't closed.
+     *
+     * @param from  the first item
+     * @param to  the item after the last
+     * @param out  where the records go
+     */
+    void run(long from, long to, OutputStream out);
+
+    /**
+     * Folds one item's record into the results. Each item is merged once, from one thread
+     * at a time, in no particular order.
+     *
+     * @param record  the record, positioned at its start with recordBytes remaining
+     */
+    void merge(ByteBuffer record);
+}
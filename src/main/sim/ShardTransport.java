@@ -0,0 +1,50 @@
+package src.main.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Starts the workers of a ShardCoordinator and carries their records back. ProcessTransport
+ * starts worker JVMs on the same machine; a transport for other machines only has to start
+ * a ShardWorker there that connects back, or otherwise hand over its records as a stream.
+ */
+public interface ShardTransport {
+    /**
+     * Starts a worker on a range of a job.
+     *
+     * @param jobClass  the name of the job's class
+     * @param args  the job's arguments
+     * @param from  the first item
+     * @param to  the item after the last
+     *
+     * @return the running shard
+     *
+     * @throws IOException if the worker can't be started
+     */
+    Shard launch(String jobClass, String[] args, long from, long to) throws IOException;
+
+    /**
+     * A worker playing a range of a job.
+     */
+    interface Shard {
+        /**
+         * Returns the worker's records as they come, ending when the worker is done or lost.
+         * A read may fail with an IOException, such as a timeout, if the worker hangs.
+         *
+         * @return the records
+         */
+        InputStream results();
+
+        /**
+         * Waits for the worker to end, once its records have been read, and cleans up.
+         *
+         * @return true if it ended well
+         */
+        boolean finish();
+
+        /**
+         * Stops the worker, if it's still going, and cleans up.
+         */
+        void cancel();
+    }
+}
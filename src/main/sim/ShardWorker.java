@@ -0,0 +1,56 @@
+package src.main.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * The main class of a worker process: plays a range of a ShardJob and sends the records to
+ * the coordinator over a socket. The arguments are the coordinator's host and port, the
+ * first item and the item after the last, the job's class and then the job's arguments. A
+ * worker that fails exits with an error, and the coordinator plays its range again.
+ */
+public final class ShardWorker {
+    private ShardWorker() {
+    }
+
+    /**
+     * Plays a range of a job.
+     *
+     * @param args  the host, port, range, job class and job arguments
+     *
+     * @throws IOException if the coordinator can't be reached
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            throw new IllegalArgumentException("usage: host port from to jobClass args...");
+        }
+        long from = Long.parseLong(args[2]);
+        long to = Long.parseLong(args[3]);
+        ShardJob job = create(args[4], Arrays.copyOfRange(args, 5, args.length));
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            job.run(from, to, out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Makes a job from its class name and arguments.
+     *
+     * @param jobClass  the name of a class implementing ShardJob
+     * @param args  the job's arguments
+     *
+     * @return the job
+     */
+    static ShardJob create(String jobClass, String[] args) {
+        try {
+            return Class.forName(jobClass).asSubclass(ShardJob.class)
+                .getConstructor(String[].class).newInstance((Object) args);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("can't make a job of " + jobClass, e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package src.main.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import src.main.model.BoardLayout;
+import src.main.model.CatanBoard;
+import src.main.model.CatanGame;
+import src.main.model.DevelopmentCard;
+import src.main.model.Harbor;
+import src.main.model.HexPiece;
+import src.main.model.Player;
+import src.main.model.Resource;
+
+/**
+ * Turns a game into a fixed-length vector of floats, from the point of view of one seat,
+ * for training and for running a policy inside a bot. The vector has the same layout for
+ * every game on the same board layout and with the same number of players:
+ *
+ * For each valid hex: a one-hot of its resource with a last slot for the desert, its pips
+ * over 6, and whether the robber is on it.
+ *
+ * For each vertex: a settlement and a city flag for each seat, then a one-hot of its harbor.
+ *
+ * For each edge: a road flag for each seat.
+ *
+ * For each seat: hand size, development cards held, points, knights played, roads,
+ * settlements and cities built, whether they hold the longest road and the largest army, and
+ * their maritime trade cost for each resource.
+ *
+ * For the observing seat only: their hand and their development cards by type.
+ *
+ * Then the bank and the size of the development deck.
+ *
+ * Seats are always listed starting with the observer and going round the table, so a policy
+ * sees itself in the same place whichever seat it plays. Values are written straight into a
+ * FloatBuffer or a ByteBuffer at an offset with absolute puts, so encoding allocates nothing
+ * and doesn't move the buffer's position. An encoder holds the buffer it is writing into
+ * while it writes, so each thread needs its own.
+ */
+public class StateEncoder {
+    /** The layout the encoder is for. */
+    private final BoardLayout layout;
+
+    /** The number of seats. */
+    private final int numPlayers;
+
+    /** The number of floats in an encoding. */
+    private final int size;
+
+    /** The float buffer being written into, or null. */
+    private FloatBuffer floats;
+
+    /** The byte buffer being written into, or null. */
+    private ByteBuffer bytes;
+
+    /** Where the next value goes, in floats for a FloatBuffer or bytes for a ByteBuffer. */
+    private int pos;
+
+    /**
+     * Creates an encoder for games on a layout with some number of players.
+     *
+     * @param layout  the layout
+     * @param numPlayers  the number of seats
+     */
+    public StateEncoder(BoardLayout layout, int numPlayers) {
+        this.layout = layout;
+        this.numPlayers = numPlayers;
+        this.size = layout.validCount() * HEX_FEATURES
+                    + layout.vertexCount() * (2 * numPlayers + HARBOR_TYPES)
+                    + layout.edgeCount() * numPlayers
+                    + numPlayers * (PLAYER_FEATURES + Resource.COUNT)
+                    + Resource.COUNT + DevelopmentCard.COUNT
+                    + Resource.COUNT + 1;
+    }
+
+    /**
+     * Returns the number of floats in an encoding.
+     *
+     * @return the size of an encoding
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Encodes a game into a float buffer.
+     *
+     * @param game  the game
+     * @param seat  the seat observing
+     * @param out  the buffer
+     * @param offset  the index of the first float to write
+     */
+    public void encode(CatanGame game, int seat, FloatBuffer out, int offset) {
+        floats = out;
+        pos = offset;
+        write(game, seat);
+        floats = null;
+    }
+
+    /**
+     * Encodes a game into a byte buffer, as floats in the buffer's byte order.
+     *
+     * @param game  the game
+     * @param seat  the seat observing
+     * @param out  the buffer
+     * @param byteOffset  the index of the first byte to write
+     */
+    public void encode(CatanGame game, int seat, ByteBuffer out, int byteOffset) {
+        bytes = out;
+        pos = byteOffset;
+        write(game, seat);
+        bytes = null;
+    }
+
+    /**
+     * Writes every feature in order.
+     *
+     * @param game  the game
+     * @param seat  the seat observing
+     */
+    private void write(CatanGame game, int seat) {
+        CatanBoard board = game.board();
+        for (int h = 0; h < layout.validCount(); h++) {
+            HexPiece tile = board.hex(h);
+            int res = tile.resource() == null ? Resource.COUNT : tile.resource().ordinal();
+            for (int r = 0; r <= Resource.COUNT; r++) {
+                flag(r == res);
+            }
+            put(board.pips(h) / 6f);
+            flag(h == board.robberHex());
+        }
+        for (int v = 0; v < layout.vertexCount(); v++) {
+            int owner = relative(board.vertexOwner(v), seat);
+            int level = board.vertexLevel(v);
+            for (int k = 0; k < numPlayers; k++) {
+                flag(owner == k && level == CatanBoard.SETTLEMENT);
+                flag(owner == k && level == CatanBoard.CITY);
+            }
+            Harbor harbor = board.harbor(v);
+            for (int t = 0; t < HARBOR_TYPES; t++) {
+                flag(harbor != null && harbor.ordinal() == t);
+            }
+        }
+        for (int e = 0; e < layout.edgeCount(); e++) {
+            int owner = relative(board.edgeOwner(e), seat);
+            for (int k = 0; k < numPlayers; k++) {
+                flag(owner == k);
+            }
+        }
+        for (int k = 0; k < numPlayers; k++) {
+            Player p = game.player((seat + k) % numPlayers);
+            put(p.resHandSize());
+            put(p.devHandSize());
+            put(p.points());
+            put(p.knights());
+            put(p.roads());
+            put(p.settlements());
+            put(p.cities());
+            flag(game.longestRoadOwner() == p);
+            flag(game.longestArmyOwner() == p);
+            for (int r = 0; r < Resource.COUNT; r++) {
+                put(p.tradeCost(Resource.get(r)));
+            }
+        }
+        Player me = game.player(seat);
+        for (int r = 0; r < Resource.COUNT; r++) {
+            put(me.resourceCount(Resource.get(r)));
+        }
+        for (int c = 0; c < DevelopmentCard.COUNT; c++) {
+            put(me.devCount(DevelopmentCard.get(c)));
+        }
+        for (int r = 0; r < Resource.COUNT; r++) {
+            put(game.resourceLeft(Resource.get(r)));
+        }
+        put(game.devDeckSize());
+    }
+
+    /**
+     * Turns an owner's seat into their place counting round the table from the observer.
+     *
+     * @param owner  the seat of the owner, or -1
+     * @param seat  the seat observing
+     *
+     * @return the relative seat, or -1 for no owner
+     */
+    private int relative(int owner, int seat) {
+        return owner == -1 ? -1 : (owner - seat + numPlayers) % numPlayers;
+    }
+
+    /**
+     * Writes 1 or 0.
+     *
+     * @param set  whether the flag is set
+     */
+    private void flag(boolean set) {
+        put(set ? 1f : 0f);
+    }
+
+    /**
+     * Writes the next value.
+     *
+     * @param value  the value
+     */
+    private void put(float value) {
+        if (floats != null) {
+            floats.put(pos, value);
+            pos += 1;
+        } else {
+            bytes.putFloat(pos, value);
+            pos += Float.BYTES;
+        }
+    }
+
+    /** The number of features for each hex. */
+    private static final int HEX_FEATURES = Resource.COUNT + 3;
+
+    /** The number of kinds of harbor. */
+    private static final int HARBOR_TYPES = Harbor.values().length;
+
+    /** The number of features for each seat, before their trade costs. */
+    private static final int PLAYER_FEATURES = 9;
+}
@@ -0,0 +1,574 @@
+package src.main.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A table written by TableWriter, memory-mapped for reading, with a few aggregate queries
+ * that scan it in parallel. A query is a sum, a count or a grouping over the rows that pass
+ * some ranges, one range per filtered column. The ranges are pushed down to the zone maps:
+ * a block of rows whose smallest and largest values miss a range is skipped without being
+ * read, and a range that covers a block's whole span isn't checked row by row in that block.
+ *
+ * Blocks are shared out among the threads of the common fork-join pool. The mapped files
+ * are only read with absolute gets, so any number of queries can run at once.
+ */
+public class Table {
+    /** The name of the table. */
+    private final String name;
+
+    /** The columns, by name. */
+    private final Map<String, Column> columns = new TreeMap<>();
+
+    /** The number of rows. */
+    private final long rows;
+
+    /** The number of blocks. */
+    private final int blockCount;
+
+    /**
+     * Opens a table.
+     *
+     * @param dir  the directory the tables are kept in
+     * @param table  the name of the table
+     *
+     * @throws IOException if the table can't be read or isn't a table
+     */
+    public Table(Path dir, String table) throws IOException {
+        this.name = table;
+        long rowCount = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir.resolve(table),
+                                                                    "*" + EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                Column column = new Column(file);
+                if (rowCount != -1 && column.rows != rowCount) {
+                    throw new IOException("column " + fileName + " has " + column.rows
+                                          + " rows, expected " + rowCount);
+                }
+                rowCount = column.rows;
+                columns.put(fileName.substring(0, fileName.length() - EXTENSION.length()),
+                            column);
+            }
+        }
+        if (rowCount == -1) {
+            throw new IOException("table " + table + " has no columns");
+        }
+        this.rows = rowCount;
+        this.blockCount = (int) ((rows + BLOCK_ROWS - 1) / BLOCK_ROWS);
+    }
+
+    /**
+     * Returns the name of the table.
+     *
+     * @return the name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the names of the columns.
+     *
+     * @return the column names, in alphabetical order
+     */
+    public String[] columns() {
+        return columns.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Returns one value, for spot checks. Queries don't read values this way.
+     *
+     * @param column  the column
+     * @param row  the row
+     *
+     * @return the value
+     */
+    public long get(String column, long row) {
+        Column col = column(column);
+        int block = (int) (row / BLOCK_ROWS);
+        return col.get(col.segment(block), col.offset(block), (int) (row % BLOCK_ROWS));
+    }
+
+    /**
+     * Counts the rows that pass every range.
+     *
+     * @param where  the ranges
+     *
+     * @return the number of rows
+     */
+    public long count(Range... where) {
+        return scan(null, null, where).count;
+    }
+
+    /**
+     * Adds up a column over the rows that pass every range.
+     *
+     * @param column  the column to add up
+     * @param where  the ranges
+     *
+     * @return the sum
+     */
+    public long sum(String column, Range... where) {
+        return scan(null, column(column), where).sum;
+    }
+
+    /**
+     * Averages a column over the rows that pass every range.
+     *
+     * @param column  the column to average
+     * @param where  the ranges
+     *
+     * @return the mean, or NaN if no row passes
+     */
+    public double average(String column, Range... where) {
+        Partial p = scan(null, column(column), where);
+        return p.count == 0 ? Double.NaN : (double) p.sum / p.count;
+    }
+
+    /**
+     * Groups the rows that pass every range by the value of one column, and counts the rows
+     * and adds up another column in each group.
+     *
+     * @param key  the column to group by
+     * @param value  the column to add up
+     * @param where  the ranges
+     *
+     * @return the groups, in order of key
+     */
+    public Groups groupBy(String key, String value, Range... where) {
+        Partial p = scan(column(key), column(value), where);
+        return new Groups(p.groups);
+    }
+
+    /**
+     * Runs a scan over every block.
+     *
+     * @param key  the column to group by, or null
+     * @param value  the column to add up, or null
+     * @param where  the ranges
+     *
+     * @return the totals
+     */
+    private Partial scan(Column key, Column value, Range[] where) {
+        Column[] filtered = new Column[where.length];
+        for (int i = 0; i < where.length; i++) {
+            filtered[i] = column(where[i].column);
+        }
+        return ForkJoinPool.commonPool().invoke(
+            new Scan(0, blockCount, key, value, filtered, where));
+    }
+
+    /**
+     * Looks up a column.
+     *
+     * @param column  the name
+     *
+     * @return the column
+     */
+    private Column column(String column) {
+        Column col = columns.get(column);
+        if (col == null) {
+            throw new IllegalArgumentException("no column " + column + " in table " + name);
+        }
+        return col;
+    }
+
+    /**
+     * Returns the range of values from lo to hi, both included, of a column.
+     *
+     * @param column  the column
+     * @param lo  the smallest value that passes
+     * @param hi  the largest value that passes
+     *
+     * @return the range
+     */
+    public static Range between(String column, long lo, long hi) {
+        return new Range(column, lo, hi);
+    }
+
+    /**
+     * Returns the range of one value of a column.
+     *
+     * @param column  the column
+     * @param value  the value that passes
+     *
+     * @return the range
+     */
+    public static Range eq(String column, long value) {
+        return new Range(column, value, value);
+    }
+
+    /**
+     * Returns the range of values of a column from lo up.
+     *
+     * @param column  the column
+     * @param lo  the smallest value that passes
+     *
+     * @return the range
+     */
+    public static Range atLeast(String column, long lo) {
+        return new Range(column, lo, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the range of values of a column up to hi.
+     *
+     * @param column  the column
+     * @param hi  the largest value that passes
+     *
+     * @return the range
+     */
+    public static Range atMost(String column, long hi) {
+        return new Range(column, Long.MIN_VALUE, hi);
+    }
+
+    /**
+     * The values of a column from lo to hi, both included, that a row has to have to pass.
+     */
+    public static final class Range {
+        private final String column;
+        private final long lo;
+        private final long hi;
+
+        private Range(String column, long lo, long hi) {
+            this.column = column;
+            this.lo = lo;
+            this.hi = hi;
+        }
+    }
+
+    /**
+     * The result of a grouping: a count and a sum for each key.
+     */
+    public static final class Groups {
+        private final long[] keys;
+        private final long[] counts;
+        private final long[] sums;
+
+        private Groups(Map<Long, long[]> groups) {
+            this.keys = new long[groups.size()];
+            this.counts = new long[keys.length];
+            this.sums = new long[keys.length];
+            int i = 0;
+            for (Map.Entry<Long, long[]> e : new TreeMap<>(groups).entrySet()) {
+                keys[i] = e.getKey();
+                counts[i] = e.getValue()[0];
+                sums[i] = e.getValue()[1];
+                i++;
+            }
+        }
+
+        /**
+         * Returns the number of groups.
+         *
+         * @return the number of groups
+         */
+        public int size() {
+            return keys.length;
+        }
+
+        /**
+         * Returns the key of a group.
+         *
+         * @param i  the group, in order of key
+         *
+         * @return the key
+         */
+        public long key(int i) {
+            return keys[i];
+        }
+
+        /**
+         * Returns the number of rows in a group.
+         *
+         * @param i  the group
+         *
+         * @return the count
+         */
+        public long count(int i) {
+            return counts[i];
+        }
+
+        /**
+         * Returns the sum of the value column over a group.
+         *
+         * @param i  the group
+         *
+         * @return the sum
+         */
+        public long sum(int i) {
+            return sums[i];
+        }
+
+        /**
+         * Returns the mean of the value column over a group.
+         *
+         * @param i  the group
+         *
+         * @return the mean
+         */
+        public double mean(int i) {
+            return (double) sums[i] / counts[i];
+        }
+    }
+
+    /**
+     * The totals of part of a scan.
+     */
+    private static final class Partial {
+        private long count;
+        private long sum;
+        private Map<Long, long[]> groups;
+
+        /**
+         * Adds the totals of another part.
+         *
+         * @param other  the other part
+         */
+        void merge(Partial other) {
+            count += other.count;
+            sum += other.sum;
+            if (other.groups != null) {
+                for (Map.Entry<Long, long[]> e : other.groups.entrySet()) {
+                    long[] g = groups.computeIfAbsent(e.getKey(), k -> new long[2]);
+                    g[0] += e.getValue()[0];
+                    g[1] += e.getValue()[1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a range of blocks, splitting it in half until it's small enough for one thread.
+     */
+    @SuppressWarnings("serial")
+    private final class Scan extends RecursiveTask<Partial> {
+        private final int from;
+        private final int to;
+        private final Column key;
+        private final Column value;
+        private final Column[] filtered;
+        private final Range[] where;
+
+        Scan(int from, int to, Column key, Column value, Column[] filtered, Range[] where) {
+            this.from = from;
+            this.to = to;
+            this.key = key;
+            this.value = value;
+            this.filtered = filtered;
+            this.where = where;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > LEAF_BLOCKS) {
+                int mid = (from + to) >>> 1;
+                Scan left = new Scan(from, mid, key, value, filtered, where);
+                Scan right = new Scan(mid, to, key, value, filtered, where);
+                left.fork();
+                Partial p = right.compute();
+                p.merge(left.join());
+                return p;
+            }
+            Partial p = new Partial();
+            if (key != null) {
+                p.groups = new HashMap<>();
+            }
+            boolean[] check = new boolean[where.length];
+            for (int b = from; b < to; b++) {
+                scanBlock(b, p, check);
+            }
+            return p;
+        }
+
+        /**
+         * Scans one block, unless its zone map rules it out.
+         *
+         * @param b  the block
+         * @param p  the totals to add to
+         * @param check  scratch space for which ranges need checking row by row
+         */
+        private void scanBlock(int b, Partial p, boolean[] check) {
+            boolean any = false;
+            for (int i = 0; i < where.length; i++) {
+                long min = filtered[i].zoneMin[b];
+                long max = filtered[i].zoneMax[b];
+                if (max < where[i].lo || min > where[i].hi) {
+                    return;
+                }
+                check[i] = min < where[i].lo || max > where[i].hi;
+                any |= check[i];
+            }
+            int n = (int) Math.min(BLOCK_ROWS, rows - (long) b * BLOCK_ROWS);
+            ByteBuffer valueSeg = value == null ? null : value.segment(b);
+            int valueOff = value == null ? 0 : value.offset(b);
+            if (!any && key == null) {
+                p.count += n;
+                if (value != null) {
+                    for (int r = 0; r < n; r++) {
+                        p.sum += value.get(valueSeg, valueOff, r);
+                    }
+                }
+                return;
+            }
+            ByteBuffer keySeg = key == null ? null : key.segment(b);
+            int keyOff = key == null ? 0 : key.offset(b);
+            rowLoop:
+            for (int r = 0; r < n; r++) {
+                for (int i = 0; i < where.length; i++) {
+                    if (check[i]) {
+                        Column c = filtered[i];
+                        long v = c.get(c.segment(b), c.offset(b), r);
+                        if (v < where[i].lo || v > where[i].hi) {
+                            continue rowLoop;
+                        }
+                    }
+                }
+                long v = value == null ? 0 : value.get(valueSeg, valueOff, r);
+                p.count += 1;
+                p.sum += v;
+                if (key != null) {
+                    long[] g = p.groups.computeIfAbsent(key.get(keySeg, keyOff, r),
+                                                        k -> new long[2]);
+                    g[0] += 1;
+                    g[1] += v;
+                }
+            }
+        }
+    }
+
+    /**
+     * A mapped column file.
+     */
+    private static final class Column {
+        private final int width;
+        private final long rows;
+        private final int blocksPerSegment;
+        private final ByteBuffer[] segments;
+        private final long[] zoneMin;
+        private final long[] zoneMax;
+
+        /**
+         * Maps a column file and reads its zone map.
+         *
+         * @param file  the file
+         *
+         * @throws IOException if the file can't be read or isn't a column file
+         */
+        Column(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                                           .order(ByteOrder.LITTLE_ENDIAN);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IOException(file + " isn't a column file");
+                }
+                this.width = header.getInt(4);
+                this.rows = header.getLong(8);
+                if (header.getInt(16) != BLOCK_ROWS) {
+                    throw new IOException(file + " has a different block size");
+                }
+                long zoneOffset = header.getLong(24);
+                int blocks = (int) ((rows + BLOCK_ROWS - 1) / BLOCK_ROWS);
+
+                long blockBytes = (long) BLOCK_ROWS * width;
+                this.blocksPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / blockBytes);
+                int segmentCount = (blocks + blocksPerSegment - 1) / blocksPerSegment;
+                this.segments = new ByteBuffer[segmentCount];
+                long valuesEnd = HEADER_BYTES + rows * width;
+                for (int s = 0; s < segmentCount; s++) {
+                    long start = HEADER_BYTES + s * blocksPerSegment * blockBytes;
+                    long size = Math.min(blocksPerSegment * blockBytes, valuesEnd - start);
+                    MappedByteBuffer seg = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                                       size);
+                    segments[s] = seg.order(ByteOrder.LITTLE_ENDIAN);
+                }
+
+                ByteBuffer zone = channel.map(FileChannel.MapMode.READ_ONLY, zoneOffset,
+                                              (long) blocks * 2 * Long.BYTES)
+                                         .order(ByteOrder.LITTLE_ENDIAN);
+                this.zoneMin = new long[blocks];
+                this.zoneMax = new long[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    zoneMin[b] = zone.getLong(16 * b);
+                    zoneMax[b] = zone.getLong(16 * b + 8);
+                }
+            }
+        }
+
+        /**
+         * Returns the mapped segment a block is in.
+         *
+         * @param block  the block
+         *
+         * @return the segment
+         */
+        ByteBuffer segment(int block) {
+            return segments[block / blocksPerSegment];
+        }
+
+        /**
+         * Returns where a block starts in its segment.
+         *
+         * @param block  the block
+         *
+         * @return the byte offset
+         */
+        int offset(int block) {
+            return (block % blocksPerSegment) * BLOCK_ROWS * width;
+        }
+
+        /**
+         * Reads a value of a block.
+         *
+         * @param seg  the block's segment
+         * @param offset  where the block starts in the segment
+         * @param row  the row within the block
+         *
+         * @return the value
+         */
+        long get(ByteBuffer seg, int offset, int row) {
+            return width == Integer.BYTES ? seg.getInt(offset + row * Integer.BYTES)
+                                          : seg.getLong(offset + row * Long.BYTES);
+        }
+    }
+
+    /** The extension of column files. */
+    static final String EXTENSION = ".col";
+
+    /** The first int of every column file. */
+    static final int MAGIC = 0x43415443;
+
+    /** The size of a column file's header. */
+    static final int HEADER_BYTES = 32;
+
+    /** The number of rows in a block, the unit of the zone maps. */
+    static final int BLOCK_ROWS = 4096;
+
+    /** The number of blocks one thread scans without splitting further. */
+    private static final int LEAF_BLOCKS = 16;
+
+    /** The most bytes mapped at once, below the 2 GB a buffer can address. */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+}
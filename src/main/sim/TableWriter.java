@@ -0,0 +1,221 @@
+package src.main.sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a table of facts, like one row per game or per turn, in a columnar format that
+ * Table can memory-map and scan. A table is a directory with one file per column. Each file
+ * has a header, then the column's values packed one after another, then a zone map holding
+ * the smallest and largest value of each block of rows, which lets a scan skip every block
+ * a predicate rules out.
+ *
+ * Columns are declared as "name:int" or "name:long". Every value is passed as a long, and
+ * an int column keeps the low 32 bits. Rows are appended as arrays in the order the columns
+ * were declared. Appending is synchronized, so threads can share a writer, and each column
+ * only buffers one block, so a writer uses the same memory however many rows it writes.
+ */
+public class TableWriter implements AutoCloseable {
+    /** The names of the columns. */
+    private final String[] names;
+
+    /** The bytes per value of each column, 4 or 8. */
+    private final int[] widths;
+
+    /** The file of each column. */
+    private final FileChannel[] channels;
+
+    /** The block being filled for each column. */
+    private final ByteBuffer[] blocks;
+
+    /** The smallest value of each column in the block being filled. */
+    private final long[] mins;
+
+    /** The largest value of each column in the block being filled. */
+    private final long[] maxes;
+
+    /** The zone map of each column, a min and a max per finished block. */
+    private long[][] zones;
+
+    /** The number of rows written. */
+    private long rows;
+
+    /** Set once the writer has been closed. */
+    private boolean closed;
+
+    /**
+     * Creates a table, replacing any table of the same name, including columns it had that
+     * this one doesn't.
+     *
+     * @param dir  the directory the tables are kept in
+     * @param table  the name of the table
+     * @param columns  the columns, each "name:int" or "name:long"
+     *
+     * @throws IOException if the files can't be created
+     */
+    public TableWriter(Path dir, String table, String... columns) throws IOException {
+        Path tableDir = dir.resolve(table);
+        Files.createDirectories(tableDir);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(tableDir,
+                                                                    "*" + Table.EXTENSION)) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+        this.names = new String[columns.length];
+        this.widths = new int[columns.length];
+        this.channels = new FileChannel[columns.length];
+        this.blocks = new ByteBuffer[columns.length];
+        this.mins = new long[columns.length];
+        this.maxes = new long[columns.length];
+        this.zones = new long[columns.length][2 * INITIAL_ZONES];
+        for (int c = 0; c < columns.length; c++) {
+            String[] parts = columns[c].split(":");
+            if (parts.length != 2 || !(parts[1].equals("int") || parts[1].equals("long"))) {
+                throw new IllegalArgumentException("bad column " + columns[c]
+                                                   + ", expected name:int or name:long");
+            }
+            names[c] = parts[0];
+            widths[c] = parts[1].equals("int") ? Integer.BYTES : Long.BYTES;
+            channels[c] = FileChannel.open(tableDir.resolve(parts[0] + Table.EXTENSION),
+                                           StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                           StandardOpenOption.TRUNCATE_EXISTING);
+            channels[c].position(Table.HEADER_BYTES);
+            blocks[c] = ByteBuffer.allocate(Table.BLOCK_ROWS * widths[c])
+                                  .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        resetZone();
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param row  a value for each column, in the order they were declared
+     */
+    public synchronized void append(long[] row) {
+        if (closed) {
+            throw new IllegalStateException("the table has been closed");
+        }
+        if (row.length != names.length) {
+            throw new IllegalArgumentException("expected " + names.length + " values");
+        }
+        for (int c = 0; c < names.length; c++) {
+            long value = widths[c] == Integer.BYTES ? (int) row[c] : row[c];
+            if (widths[c] == Integer.BYTES) {
+                blocks[c].putInt((int) value);
+            } else {
+                blocks[c].putLong(value);
+            }
+            mins[c] = Math.min(mins[c], value);
+            maxes[c] = Math.max(maxes[c], value);
+        }
+        rows += 1;
+        if (rows % Table.BLOCK_ROWS == 0) {
+            finishBlock();
+        }
+    }
+
+    /**
+     * Returns the number of rows written.
+     *
+     * @return the number of rows
+     */
+    public synchronized long rows() {
+        return rows;
+    }
+
+    /**
+     * Writes out the last block, the zone maps and the headers, and closes the files.
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (rows % Table.BLOCK_ROWS != 0) {
+            finishBlock();
+        }
+        int blockCount = (int) ((rows + Table.BLOCK_ROWS - 1) / Table.BLOCK_ROWS);
+        for (int c = 0; c < names.length; c++) {
+            FileChannel channel = channels[c];
+            long zoneOffset = channel.position();
+            ByteBuffer zone = ByteBuffer.allocate(blockCount * 2 * Long.BYTES)
+                                        .order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < 2 * blockCount; k++) {
+                zone.putLong(zones[c][k]);
+            }
+            zone.flip();
+            writeFully(channel, zone);
+            ByteBuffer header = ByteBuffer.allocate(Table.HEADER_BYTES)
+                                          .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(Table.MAGIC);
+            header.putInt(widths[c]);
+            header.putLong(rows);
+            header.putInt(Table.BLOCK_ROWS);
+            header.putInt(0);
+            header.putLong(zoneOffset);
+            header.flip();
+            channel.position(0);
+            writeFully(channel, header);
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the block being filled to every column's file and records its zone.
+     */
+    private void finishBlock() {
+        int block = (int) ((rows - 1) / Table.BLOCK_ROWS);
+        try {
+            for (int c = 0; c < names.length; c++) {
+                if (zones[c].length < 2 * (block + 1)) {
+                    zones[c] = Arrays.copyOf(zones[c], zones[c].length * 2);
+                }
+                zones[c][2 * block] = mins[c];
+                zones[c][2 * block + 1] = maxes[c];
+                blocks[c].flip();
+                writeFully(channels[c], blocks[c]);
+                blocks[c].clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resetZone();
+    }
+
+    /**
+     * Starts the zone of a new block.
+     */
+    private void resetZone() {
+        Arrays.fill(mins, Long.MAX_VALUE);
+        Arrays.fill(maxes, Long.MIN_VALUE);
+    }
+
+    /**
+     * Writes all of a buffer to a channel.
+     *
+     * @param channel  the channel
+     * @param buf  the buffer
+     *
+     * @throws IOException if the channel can't be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /** The number of blocks a zone map has room for before it grows. */
+    private static final int INITIAL_ZONES = 64;
+}
@@ -0,0 +1,622 @@
+package src.main.sim;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import src.main.ai.BotPolicy;
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+import src.main.model.TurnPhase;
+
+/**
+ * Plays bots against each other over many games to compare them. Bots meet head to head on
+ * seeded two-player boards, either every pair of bots (a round robin) or the first bot
+ * registered against each of the others (a gauntlet). Every seed is played twice with the
+ * seats swapped, so neither bot gets more of the first player's advantage or of a good board.
+ *
+ * Games are numbered, and a game's bots, seed and seating all follow from its number, so the
+ * schedule is never stored. Worker threads take the next number, play the game with a
+ * CatanGame of their own that is reset for each game, and append a fixed-size record to the
+ * results stream as soon as it finishes, flushing it so a reader at the other end of a pipe
+ * or socket sees each game as it's done. Memory stays the same however many games are
+ * played.
+ *
+ * Wins are also counted per pair of bots, and standings() fits Bradley-Terry ratings to them
+ * on the Elo scale at any time, including while games are still being played. A game cut off
+ * before anyone wins counts as half a win for each side.
+ */
+public class Tournament {
+    /** How the bots are paired up. */
+    public enum Schedule {
+        /** Every bot plays every other bot. */
+        ROUND_ROBIN,
+
+        /** The first bot plays each of the others. */
+        GAUNTLET
+    }
+
+    /** The layout every game is played on. */
+    private final BoardLayout layout;
+
+    /** How the bots are paired up. */
+    private final Schedule schedule;
+
+    /** The number of seeds each pair of bots plays, each one twice. */
+    private final int seedsPerPair;
+
+    /** The seed the game seeds are made from. */
+    private final long baseSeed;
+
+    /** The number of threads playing games. */
+    private final int threads;
+
+    /** The most actions a game can take before it's cut off. */
+    private final int maxActions;
+
+    /** The names of the bots, in order of registration. */
+    private final List<String> names = new ArrayList<>();
+
+    /** The bots, in order of registration. */
+    private final List<BotPolicy> bots = new ArrayList<>();
+
+    /** The pairs of bots, two entries per pair. */
+    private int[] pairs;
+
+    /** The games played by each pair of bots, indexed by row bot * bots + column bot. */
+    private long[] played;
+
+    /** Twice the wins of the row bot over the column bot, so that half wins stay exact. */
+    private long[] doubleWins;
+
+    /** The next game number to hand out. */
+    private final AtomicLong next = new AtomicLong();
+
+    /** The game number after the last one of the range being played. */
+    private volatile long end;
+
+    /** The number of games finished. */
+    private final AtomicLong finished = new AtomicLong();
+
+    /**
+     * Creates a tournament on the two-player board.
+     *
+     * @param schedule  how the bots are paired up
+     * @param seedsPerPair  the number of seeds each pair plays, each one twice
+     * @param baseSeed  the seed the game seeds are made from
+     * @param threads  the number of threads to play games on
+     * @param maxActions  the most actions a game can take before it's cut off
+     */
+    public Tournament(Schedule schedule, int seedsPerPair, long baseSeed, int threads,
+                      int maxActions) {
+        this(BoardLayout.TWO_PLAYER, schedule, seedsPerPair, baseSeed, threads, maxActions);
+    }
+
+    /**
+     * Creates a tournament.
+     *
+     * @param layout  the layout every game is played on
+     * @param schedule  how the bots are paired up
+     * @param seedsPerPair  the number of seeds each pair plays, each one twice
+     * @param baseSeed  the seed the game seeds are made from
+     * @param threads  the number of threads to play games on
+     * @param maxActions  the most actions a game can take before it's cut off
+     */
+    public Tournament(BoardLayout layout, Schedule schedule, int seedsPerPair, long baseSeed,
+                      int threads, int maxActions) {
+        if (seedsPerPair < 1 || threads < 1 || maxActions < 1) {
+            throw new IllegalArgumentException(
+                "seedsPerPair, threads and maxActions must be positive");
+        }
+        this.layout = layout;
+        this.schedule = schedule;
+        this.seedsPerPair = seedsPerPair;
+        this.baseSeed = baseSeed;
+        this.threads = threads;
+        this.maxActions = maxActions;
+    }
+
+    /**
+     * Adds a bot to the tournament. Bots have to be registered before it runs.
+     *
+     * @param name  the name to report the bot under
+     * @param bot  the bot
+     *
+     * @return the bot's index, as used in the results
+     */
+    public int register(String name, BotPolicy bot) {
+        if (pairs != null) {
+            throw new IllegalStateException("bots have to be registered before the run");
+        }
+        names.add(name);
+        bots.add(bot);
+        return bots.size() - 1;
+    }
+
+    /**
+     * Returns the number of games the tournament plays.
+     *
+     * @return the number of games
+     */
+    public long totalGames() {
+        int n = bots.size();
+        long pairCount = schedule == Schedule.ROUND_ROBIN ? (long) n * (n - 1) / 2 : n - 1;
+        return pairCount * seedsPerPair * 2;
+    }
+
+    /**
+     * Returns the number of games finished so far.
+     *
+     * @return the number of games
+     */
+    public long gamesFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Plays every game, writing a record of each one to a stream as it finishes, and
+     * returns once they're all done. The stream isn't closed.
+     *
+     * @param out  the stream the results go to
+     */
+    public void run(OutputStream out) {
+        run(out, 0, totalGames());
+    }
+
+    /**
+     * Plays the games numbered from one number up to another, writing a record of each one
+     * to a stream as it finishes, and returns once they're all done. Since a game follows
+     * from its number, a range can be played anywhere, and the ranges of a tournament
+     * played in separate processes and merged give the same results as playing it whole.
+     * The win counts add up over every range played. The stream isn't closed.
+     *
+     * @param out  the stream the results go to
+     * @param from  the first game
+     * @param to  the game after the last
+     */
+    public void run(OutputStream out, long from, long to) {
+        prepare();
+        if (from < 0 || from > to || to > totalGames()) {
+            throw new IllegalArgumentException("games out of range");
+        }
+        next.set(from);
+        end = to;
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        Thread[] workers = new Thread[threads];
+        RuntimeException[] failure = new RuntimeException[1];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    play(data);
+                } catch (RuntimeException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "tournament-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for games", e);
+            }
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        try {
+            data.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds a game played elsewhere, for instance by another process playing a range of the
+     * same tournament, to the win counts.
+     *
+     * @param record  the game's record
+     */
+    public void merge(GameRecord record) {
+        prepare();
+        int n = bots.size();
+        if (record.first() < 0 || record.first() >= n || record.second() < 0
+                || record.second() >= n) {
+            throw new IllegalArgumentException("the record is of another tournament");
+        }
+        record(record.first(), record.second(), record.winner());
+        finished.incrementAndGet();
+    }
+
+    /**
+     * Works out the pairs of bots and sets up the win counts, the first time the
+     * tournament is run or merged into.
+     */
+    private synchronized void prepare() {
+        if (pairs != null) {
+            return;
+        }
+        if (bots.size() < 2) {
+            throw new IllegalStateException("a tournament needs at least two bots");
+        }
+        int n = bots.size();
+        List<Integer> pairList = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (schedule == Schedule.ROUND_ROBIN || i == 0) {
+                    pairList.add(i);
+                    pairList.add(j);
+                }
+            }
+        }
+        int[] built = new int[pairList.size()];
+        for (int k = 0; k < built.length; k++) {
+            built[k] = pairList.get(k);
+        }
+        played = new long[n * n];
+        doubleWins = new long[n * n];
+        pairs = built;
+    }
+
+    /**
+     * The loop of a worker thread: take the next game number and play that game, until
+     * there are none left.
+     *
+     * @param data  the stream the results go to
+     */
+    private void play(DataOutputStream data) {
+        CatanGame game = new CatanGame(0L, layout, Color.WHITE, Color.BLUE);
+        Random rand = new Random();
+        for (long g = next.getAndIncrement(); g < end; g = next.getAndIncrement()) {
+            int pair = (int) (g / (2L * seedsPerPair));
+            long seed = seedOf(g / 2);
+            boolean swapped = (g & 1) == 1;
+            int first = pairs[2 * pair + (swapped ? 1 : 0)];
+            int second = pairs[2 * pair + (swapped ? 0 : 1)];
+            game.reset(seed);
+            rand.setSeed(~seed);
+            int actions = 0;
+            while (game.phase() != TurnPhase.GAME_OVER && actions < maxActions) {
+                int seat = game.actingPlayer().index();
+                BotPolicy bot = bots.get(seat == 0 ? first : second);
+                BotPolicy.play(bot, game, rand);
+                actions += 1;
+            }
+            int winner = game.winner() == null ? -1 : game.winner().index();
+            record(first, second, winner);
+            synchronized (data) {
+                try {
+                    data.writeLong(g);
+                    data.writeLong(seed);
+                    data.writeShort(first);
+                    data.writeShort(second);
+                    data.writeByte(winner);
+                    data.writeInt(actions);
+                    data.writeShort(game.turn());
+                    data.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            finished.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds a game to the win counts.
+     *
+     * @param first  the bot in the first seat
+     * @param second  the bot in the second seat
+     * @param winner  the winning seat, or -1 if the game was cut off
+     */
+    private synchronized void record(int first, int second, int winner) {
+        int n = bots.size();
+        played[first * n + second] += 1;
+        played[second * n + first] += 1;
+        if (winner == -1) {
+            doubleWins[first * n + second] += 1;
+            doubleWins[second * n + first] += 1;
+        } else {
+            int w = winner == 0 ? first : second;
+            int l = winner == 0 ? second : first;
+            doubleWins[w * n + l] += 2;
+        }
+    }
+
+    /**
+     * Fits Bradley-Terry ratings to the games finished so far and puts them on the Elo
+     * scale, with their mean at 0. The fit uses the minorize-maximize iteration, with every
+     * bot given one virtual draw against a bot of rating 0 so that a bot that has won or
+     * lost every game still gets a finite rating. The intervals come from the curvature of
+     * the likelihood for each bot on its own, which ignores how uncertain the other ratings
+     * are and so is a little narrow.
+     *
+     * @return a rating for each bot, in order of registration
+     */
+    public Rating[] standings() {
+        int n = bots.size();
+        long[] games;
+        long[] wins;
+        synchronized (this) {
+            if (played == null) {
+                games = new long[n * n];
+                wins = new long[n * n];
+            } else {
+                games = played.clone();
+                wins = doubleWins.clone();
+            }
+        }
+        double[] gamma = new double[n];
+        Arrays.fill(gamma, 1.0);
+        for (int iter = 0; iter < FIT_ITERATIONS; iter++) {
+            double[] updated = new double[n];
+            double logSum = 0;
+            for (int i = 0; i < n; i++) {
+                double won = PRIOR_GAMES / 2.0;
+                double denom = PRIOR_GAMES / (gamma[i] + 1.0);
+                for (int j = 0; j < n; j++) {
+                    if (j != i && games[i * n + j] > 0) {
+                        won += wins[i * n + j] / 2.0;
+                        denom += games[i * n + j] / (gamma[i] + gamma[j]);
+                    }
+                }
+                updated[i] = won / denom;
+                logSum += Math.log(updated[i]);
+            }
+            double scale = Math.exp(logSum / n);
+            for (int i = 0; i < n; i++) {
+                gamma[i] = updated[i] / scale;
+            }
+        }
+        Rating[] ratings = new Rating[n];
+        for (int i = 0; i < n; i++) {
+            double info = PRIOR_GAMES * gamma[i] / ((gamma[i] + 1) * (gamma[i] + 1));
+            long total = 0;
+            for (int j = 0; j < n; j++) {
+                if (j != i && games[i * n + j] > 0) {
+                    double p = gamma[i] / (gamma[i] + gamma[j]);
+                    info += games[i * n + j] * p * (1 - p);
+                    total += games[i * n + j];
+                }
+            }
+            double elo = ELO_PER_NATURAL_LOG * Math.log(gamma[i]);
+            double margin = Z_95 * ELO_PER_NATURAL_LOG / Math.sqrt(info);
+            ratings[i] = new Rating(names.get(i), elo, elo - margin, elo + margin, total);
+        }
+        return ratings;
+    }
+
+    /**
+     * Returns the seed of the boards of a pair of games.
+     *
+     * @param index  the number of the pair of games
+     *
+     * @return the seed
+     */
+    private long seedOf(long index) {
+        long z = baseSeed + index * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * A bot's rating, on the Elo scale.
+     */
+    public static final class Rating {
+        private final String name;
+        private final double elo;
+        private final double lower;
+        private final double upper;
+        private final long games;
+
+        Rating(String name, double elo, double lower, double upper, long games) {
+            this.name = name;
+            this.elo = elo;
+            this.lower = lower;
+            this.upper = upper;
+            this.games = games;
+        }
+
+        /**
+         * Returns the bot's name.
+         *
+         * @return the bot's name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the rating.
+         *
+         * @return the rating
+         */
+        public double elo() {
+            return elo;
+        }
+
+        /**
+         * Returns the bottom of the 95% confidence interval.
+         *
+         * @return the bottom of the 95% confidence interval
+         */
+        public double lower() {
+            return lower;
+        }
+
+        /**
+         * Returns the top of the 95% confidence interval.
+         *
+         * @return the top of the 95% confidence interval
+         */
+        public double upper() {
+            return upper;
+        }
+
+        /**
+         * Returns the number of games the rating is based on.
+         *
+         * @return the number of games the rating is based on
+         */
+        public long games() {
+            return games;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %.0f [%.0f, %.0f] (%d games)", name, elo, lower, upper,
+                                 games);
+        }
+    }
+
+    /**
+     * One game's record in a results stream.
+     */
+    public static final class GameRecord {
+        private final long game;
+        private final long seed;
+        private final int first;
+        private final int second;
+        private final int winner;
+        private final int actions;
+        private final int turns;
+
+        private GameRecord(long game, long seed, int first, int second, int winner,
+                           int actions, int turns) {
+            this.game = game;
+            this.seed = seed;
+            this.first = first;
+            this.second = second;
+            this.winner = winner;
+            this.actions = actions;
+            this.turns = turns;
+        }
+
+        /**
+         * Reads the next record from a results stream.
+         *
+         * @param in  the stream
+         *
+         * @return the record, or null at the end of the stream
+         *
+         * @throws IOException if the stream can't be read
+         */
+        public static GameRecord read(DataInputStream in) throws IOException {
+            long game;
+            try {
+                game = in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            return new GameRecord(game, in.readLong(), in.readShort(), in.readShort(),
+                                  in.readByte(), in.readInt(), in.readShort());
+        }
+
+        /**
+         * Reads a record from a buffer, at its position.
+         *
+         * @param in  the buffer, with RECORD_BYTES remaining
+         *
+         * @return the record
+         */
+        public static GameRecord read(ByteBuffer in) {
+            return new GameRecord(in.getLong(), in.getLong(), in.getShort(), in.getShort(),
+                                  in.get(), in.getInt(), in.getShort());
+        }
+
+        /**
+         * Returns the number of the game in the schedule.
+         *
+         * @return the number of the game in the schedule
+         */
+        public long game() {
+            return game;
+        }
+
+        /**
+         * Returns the seed of the game.
+         *
+         * @return the seed of the game
+         */
+        public long seed() {
+            return seed;
+        }
+
+        /**
+         * Returns the bot in the first seat.
+         *
+         * @return the bot in the first seat
+         */
+        public int first() {
+            return first;
+        }
+
+        /**
+         * Returns the bot in the second seat.
+         *
+         * @return the bot in the second seat
+         */
+        public int second() {
+            return second;
+        }
+
+        /**
+         * Returns the winning seat, or -1 if the game was cut off.
+         *
+         * @return the winning seat, or -1 if the game was cut off
+         */
+        public int winner() {
+            return winner;
+        }
+
+        /**
+         * Returns the number of actions taken.
+         *
+         * @return the number of actions taken
+         */
+        public int actions() {
+            return actions;
+        }
+
+        /**
+         * Returns the number of turns completed.
+         *
+         * @return the number of turns completed
+         */
+        public int turns() {
+            return turns;
+        }
+    }
+
+    /** The number of bytes in each record of a results stream. */
+    public static final int RECORD_BYTES = 8 + 8 + 2 + 2 + 1 + 4 + 2;
+
+    /** The number of minorize-maximize iterations in a ratings fit. */
+    private static final int FIT_ITERATIONS = 200;
+
+    /** The virtual games each bot plays against a bot of rating 0. */
+    private static final double PRIOR_GAMES = 1.0;
+
+    /** Elo points per unit of the log of a Bradley-Terry strength. */
+    private static final double ELO_PER_NATURAL_LOG = 400 / Math.log(10);
+
+    /** The number of standard errors either side of a 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+}
@@ -0,0 +1,105 @@
+package src.main.sim;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import src.main.ai.BotPolicy;
+import src.main.ai.GreedyBot;
+import src.main.ai.RandomBot;
+import src.main.model.BoardLayout;
+
+/**
+ * A Tournament as a ShardJob, each game an item. The arguments are the layout's name, the
+ * schedule, the seeds per pair, the base seed, the threads each worker plays on, the most
+ * actions a game can take, and then the bots by name: "greedy" or "random".
+ */
+public class TournamentJob implements ShardJob {
+    /** The tournament. */
+    private final Tournament tournament;
+
+    /**
+     * Makes a tournament from its arguments.
+     *
+     * @param args  the arguments
+     */
+    public TournamentJob(String[] args) {
+        if (args.length < 8) {
+            throw new IllegalArgumentException("a tournament job needs six settings and bots");
+        }
+        BoardLayout layout = layout(args[0]);
+        tournament = new Tournament(layout, Tournament.Schedule.valueOf(args[1]),
+                                    Integer.parseInt(args[2]), Long.parseLong(args[3]),
+                                    Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+        for (int i = 6; i < args.length; i++) {
+            tournament.register(args[i], bot(args[i]));
+        }
+    }
+
+    /**
+     * Returns the tournament, whose standings are those of the records merged so far.
+     *
+     * @return the tournament
+     */
+    public Tournament tournament() {
+        return tournament;
+    }
+
+    @Override
+    public long size() {
+        return tournament.totalGames();
+    }
+
+    @Override
+    public int recordBytes() {
+        return Tournament.RECORD_BYTES;
+    }
+
+    @Override
+    public void run(long from, long to, OutputStream out) {
+        tournament.run(out, from, to);
+    }
+
+    @Override
+    public void merge(ByteBuffer record) {
+        tournament.merge(Tournament.GameRecord.read(record));
+    }
+
+    /**
+     * Finds a layout by name.
+     *
+     * @param name  the name
+     *
+     * @return the layout
+     */
+    private static BoardLayout layout(String name) {
+        for (BoardLayout layout : LAYOUTS) {
+            if (layout.name().equals(name)) {
+                return layout;
+            }
+        }
+        throw new IllegalArgumentException("no layout called " + name);
+    }
+
+    /**
+     * Makes a bot by name.
+     *
+     * @param name  the name
+     *
+     * @return the bot
+     */
+    private static BotPolicy bot(String name) {
+        switch (name) {
+            case "greedy":
+                return new GreedyBot();
+            case "random":
+                return new RandomBot();
+            default:
+                throw new IllegalArgumentException("no bot called " + name);
+        }
+    }
+
+    /** The layouts that can be named. */
+    private static final BoardLayout[] LAYOUTS = {
+        BoardLayout.TWO_PLAYER, BoardLayout.STANDARD, BoardLayout.EXTENSION
+    };
+}
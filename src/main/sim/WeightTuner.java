@@ -0,0 +1,405 @@
+package src.main.sim;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import src.main.ai.BotPolicy;
+import src.main.ai.EvalBot;
+import src.main.ai.Evaluator;
+import src.main.ai.EvaluatorWeights;
+import src.main.model.BoardLayout;
+import src.main.model.CatanGame;
+import src.main.model.TurnPhase;
+
+/**
+ * Tunes an Evaluator's weights by self-play, with simultaneous perturbation stochastic
+ * approximation (SPSA). Each step nudges every weight up or down at random at once, plays
+ * the weights nudged one way against the weights nudged the other way, and moves the
+ * weights towards whichever side won, by an amount that shrinks as the steps go on. Only
+ * two sets of weights are played per step however many weights there are.
+ *
+ * A match is played on pairs of games, each seed twice with the seats swapped. The seeds
+ * are the same for every match, so two candidates always meet on the same boards and the
+ * same dice, and the difference between them isn't drowned out by luck. Pairs are played in
+ * batches spread over worker threads, each with a CatanGame and an Evaluator of its own, and
+ * after each batch the match stops early once the mean result is further from even than
+ * Z_STOP standard errors. A pair's result depends only on its seed, so a match comes out the
+ * same with any number of threads.
+ */
+public class WeightTuner {
+    /** The layout every game is played on. */
+    private final BoardLayout layout;
+
+    /** The most pairs of games a match plays. */
+    private final int maxPairs;
+
+    /** The seed the game seeds and the perturbations are made from. */
+    private final long baseSeed;
+
+    /** The number of threads playing games. */
+    private final int threads;
+
+    /** The most actions a game can take before it's cut off. */
+    private final int maxActions;
+
+    /** The step size at the first step. */
+    private double gain = DEFAULT_GAIN;
+
+    /** The size of the perturbation at the first step. */
+    private double perturbation = DEFAULT_PERTURBATION;
+
+    /** The weights so far. */
+    private EvaluatorWeights weights;
+
+    /** The number of steps taken. */
+    private int steps;
+
+    /** The number of games played so far, over every match. */
+    private long gamesPlayed;
+
+    /**
+     * Creates a tuner on the two-player board.
+     *
+     * @param start  the weights to start from
+     * @param maxPairs  the most pairs of games a match plays
+     * @param baseSeed  the seed the game seeds and the perturbations are made from
+     * @param threads  the number of threads to play games on
+     * @param maxActions  the most actions a game can take before it's cut off
+     */
+    public WeightTuner(EvaluatorWeights start, int maxPairs, long baseSeed, int threads,
+                       int maxActions) {
+        this(BoardLayout.TWO_PLAYER, start, maxPairs, baseSeed, threads, maxActions);
+    }
+
+    /**
+     * Creates a tuner.
+     *
+     * @param layout  the layout every game is played on
+     * @param start  the weights to start from
+     * @param maxPairs  the most pairs of games a match plays
+     * @param baseSeed  the seed the game seeds and the perturbations are made from
+     * @param threads  the number of threads to play games on
+     * @param maxActions  the most actions a game can take before it's cut off
+     */
+    public WeightTuner(BoardLayout layout, EvaluatorWeights start, int maxPairs, long baseSeed,
+                       int threads, int maxActions) {
+        if (maxPairs < 1 || threads < 1 || maxActions < 1) {
+            throw new IllegalArgumentException(
+                "maxPairs, threads and maxActions must be positive");
+        }
+        this.layout = layout;
+        this.weights = start;
+        this.maxPairs = maxPairs;
+        this.baseSeed = baseSeed;
+        this.threads = threads;
+        this.maxActions = maxActions;
+    }
+
+    /**
+     * Sets the sizes of the first step and perturbation, which then shrink with the usual
+     * SPSA exponents.
+     *
+     * @param gain  how far the weights move at the first step per unit of estimated slope
+     * @param perturbation  how far each weight is nudged at the first step
+     */
+    public void setGains(double gain, double perturbation) {
+        if (!(gain > 0) || !(perturbation > 0)) {
+            throw new IllegalArgumentException("gains must be positive");
+        }
+        this.gain = gain;
+        this.perturbation = perturbation;
+    }
+
+    /**
+     * Returns the weights so far.
+     *
+     * @return the weights
+     */
+    public EvaluatorWeights weights() {
+        return weights;
+    }
+
+    /**
+     * Returns the number of steps taken.
+     *
+     * @return the steps
+     */
+    public int steps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of games played so far.
+     *
+     * @return the games
+     */
+    public long gamesPlayed() {
+        return gamesPlayed;
+    }
+
+    /**
+     * Takes a number of steps.
+     *
+     * @param count  the number of steps
+     *
+     * @return the weights afterwards
+     */
+    public EvaluatorWeights tune(int count) {
+        for (int i = 0; i < count; i++) {
+            step();
+        }
+        return weights;
+    }
+
+    /**
+     * Takes one step: plays the weights nudged up against the weights nudged down, and
+     * moves towards the winner.
+     *
+     * @return the match that was played, the weights nudged up being the first side
+     */
+    public Result step() {
+        int k = steps;
+        double a = gain / Math.pow(k + 1 + STABILITY, ALPHA);
+        double c = perturbation / Math.pow(k + 1, GAMMA);
+        double[] theta = weights.toArray();
+        double[] plus = new double[theta.length];
+        double[] minus = new double[theta.length];
+        double[] delta = new double[theta.length];
+        Random rand = new Random(baseSeed ^ (k + 1) * 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < theta.length; i++) {
+            delta[i] = rand.nextBoolean() ? 1 : -1;
+            plus[i] = theta[i] + c * delta[i];
+            minus[i] = theta[i] - c * delta[i];
+        }
+        Result result = compare(weights.with(plus), weights.with(minus));
+        for (int i = 0; i < theta.length; i++) {
+            theta[i] += a * result.score() / (2 * c * delta[i]);
+        }
+        weights = weights.with(theta);
+        steps += 1;
+        return result;
+    }
+
+    /**
+     * Plays two sets of weights against each other, on the tuner's seeds, until the result
+     * is significant or the most pairs have been played.
+     *
+     * @param first  the first side
+     * @param second  the second side
+     *
+     * @return the result, from the first side's point of view
+     */
+    public Result compare(EvaluatorWeights first, EvaluatorWeights second) {
+        double[] outcome = new double[maxPairs];
+        int done = 0;
+        double sum = 0;
+        double squares = 0;
+        while (done < maxPairs) {
+            int end = Math.min(maxPairs, done + Math.max(BATCH_PAIRS, threads));
+            playPairs(first, second, done, end, outcome);
+            for (int i = done; i < end; i++) {
+                sum += outcome[i];
+                squares += outcome[i] * outcome[i];
+            }
+            gamesPlayed += 2L * (end - done);
+            done = end;
+            if (done >= MIN_PAIRS && significant(sum, squares, done)) {
+                break;
+            }
+        }
+        double mean = sum / done;
+        double variance = done > 1 ? (squares - sum * mean) / (done - 1) : 0;
+        return new Result(done, mean, Math.sqrt(Math.max(variance, 0) / done));
+    }
+
+    /**
+     * Plays a range of pairs of games on worker threads.
+     *
+     * @param first  the first side
+     * @param second  the second side
+     * @param start  the first pair
+     * @param end  the pair after the last
+     * @param outcome  where each pair's result goes, for the first side, from -1 to 1
+     */
+    private void playPairs(EvaluatorWeights first, EvaluatorWeights second, int start,
+                           int end, double[] outcome) {
+        AtomicInteger next = new AtomicInteger(start);
+        Thread[] workers = new Thread[Math.min(threads, end - start)];
+        RuntimeException[] failure = new RuntimeException[1];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    CatanGame game = new CatanGame(0L, layout, Color.WHITE, Color.BLUE);
+                    Evaluator evaluator = new Evaluator(game, first);
+                    game.addListener(evaluator);
+                    EvalBot one = new EvalBot(evaluator, first);
+                    EvalBot two = new EvalBot(evaluator, second);
+                    Random rand = new Random();
+                    for (int i = next.getAndIncrement(); i < end; i = next.getAndIncrement()) {
+                        long seed = seedOf(i);
+                        double won = play(game, rand, seed, one, two)
+                                     - play(game, rand, seed, two, one);
+                        outcome[i] = won / 2;
+                    }
+                } catch (RuntimeException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "weight-tuner-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for games", e);
+            }
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param game  the thread's game
+     * @param rand  the thread's random numbers
+     * @param seed  the seed of the game
+     * @param seat0  the bot in the first seat
+     * @param seat1  the bot in the second seat
+     *
+     * @return 1 if the first seat won, -1 if the second did, 0 if the game was cut off
+     */
+    private int play(CatanGame game, Random rand, long seed, EvalBot seat0, EvalBot seat1) {
+        game.reset(seed);
+        rand.setSeed(~seed);
+        for (int actions = 0; game.phase() != TurnPhase.GAME_OVER && actions < maxActions;
+             actions++) {
+            EvalBot bot = game.actingPlayer().index() == 0 ? seat0 : seat1;
+            BotPolicy.play(bot, game, rand);
+        }
+        if (game.winner() == null) {
+            return 0;
+        }
+        return game.winner().index() == 0 ? 1 : -1;
+    }
+
+    /**
+     * Returns true if a mean is further from 0 than Z_STOP standard errors.
+     *
+     * @param sum  the sum of the results
+     * @param squares  the sum of their squares
+     * @param n  the number of results
+     *
+     * @return whether to stop
+     */
+    private static boolean significant(double sum, double squares, int n) {
+        double mean = sum / n;
+        double variance = (squares - sum * mean) / (n - 1);
+        if (variance <= 0) {
+            return mean != 0;
+        }
+        return Math.abs(mean) > Z_STOP * Math.sqrt(variance / n);
+    }
+
+    /**
+     * Returns the seed of a pair of games.
+     *
+     * @param index  the number of the pair
+     *
+     * @return the seed
+     */
+    private long seedOf(long index) {
+        long z = baseSeed + index * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The result of a match between two sets of weights.
+     */
+    public static final class Result {
+        private final int pairs;
+        private final double score;
+        private final double error;
+
+        Result(int pairs, double score, double error) {
+            this.pairs = pairs;
+            this.score = score;
+            this.error = error;
+        }
+
+        /**
+         * Returns the number of pairs of games played.
+         *
+         * @return the pairs
+         */
+        public int pairs() {
+            return pairs;
+        }
+
+        /**
+         * Returns the first side's mean result per pair: 1 for winning both games, -1 for
+         * losing both.
+         *
+         * @return the mean, from -1 to 1
+         */
+        public double score() {
+            return score;
+        }
+
+        /**
+         * Returns the standard error of the score.
+         *
+         * @return the standard error
+         */
+        public double error() {
+            return error;
+        }
+
+        /**
+         * Returns true if the score is further from even than Z_STOP standard errors.
+         *
+         * @return whether one side is better
+         */
+        public boolean significant() {
+            return error == 0 ? score != 0 : Math.abs(score) > Z_STOP * error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%+.3f +/- %.3f (%d pairs)", score, error, pairs);
+        }
+    }
+
+    /** How many standard errors from even a match stops at. */
+    public static final double Z_STOP = 2.576;
+
+    /** The fewest pairs a match plays before it can stop. */
+    public static final int MIN_PAIRS = 32;
+
+    /** The pairs played between checks on the result. */
+    private static final int BATCH_PAIRS = 32;
+
+    /** The default step size at the first step. */
+    private static final double DEFAULT_GAIN = 0.02;
+
+    /** The default perturbation at the first step. */
+    private static final double DEFAULT_PERTURBATION = 0.05;
+
+    /** How fast the step size shrinks. */
+    private static final double ALPHA = 0.602;
+
+    /** How fast the perturbation shrinks. */
+    private static final double GAMMA = 0.101;
+
+    /** Steps added to the count in the step size, so the first steps aren't too large. */
+    private static final double STABILITY = 10;
+}
@@ -1,6 +1,9 @@
 package src.test.java;
 
 import src.main.model.*;
+import src.main.ai.*;
+import src.main.sim.*;
+import src.main.server.*;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -8,10 +11,32 @@ import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.awt.Color;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 /**
  * Tests for Settlers of Catan
@@ -118,10 +143,52 @@ public class CatanTests {
         assertEquals(board.getAdjacentHex(test6, HexPiece.RoadLoc.NE), new HexPoint(2, 6));
     }
 
+    @Test
+    public void testBoardLayouts() {
+        BoardLayout twoPlayer = BoardLayout.TWO_PLAYER;
+        assertEquals(CatanBoard.TOTAL_TILES, twoPlayer.size());
+        assertEquals(CatanBoard.TOTAL_VALID_TILES, twoPlayer.validCount());
+        int[][] sentinels = {{1,0},{2,0},{3,0},{4,1},{4,2},{5,3},{4,4},{4,5},{3,6},{2,6},{1,6},
+                             {1,5},{0,4},{0,3},{0,2},{1,1}};
+        for (int[] p : sentinels) {
+            int index = twoPlayer.indexOf(p[0], p[1]);
+            assertTrue(index >= 0);
+            assertFalse(twoPlayer.isValid(index));
+        }
+
+        assertEquals(19, BoardLayout.STANDARD.validCount());
+        assertEquals(1, BoardLayout.STANDARD.deserts());
+        assertEquals(30, BoardLayout.EXTENSION.validCount());
+        assertEquals(2, BoardLayout.EXTENSION.deserts());
+
+        BoardLayout large = BoardLayout.hexagon(30);
+        assertEquals(3 * 30 * 31 + 1, large.validCount());
+        for (int i = 0; i < large.validCount(); i++) {
+            for (HexPiece.RoadLoc loc : HexPiece.RoadLoc.values()) {
+                int adj = large.neighbor(i, loc.ordinal());
+                assertTrue(adj >= 0);
+                assertEquals(i, large.neighbor(adj, loc.complement().ordinal()));
+            }
+        }
+
+        CatanBoard board = new CatanBoard(BoardLayout.STANDARD);
+        int deserts = 0;
+        for (HexPiece tile : board.getTiles()) {
+            if (tile.resource() == null) {
+                deserts += 1;
+                assertEquals(CatanBoard.DESERT_ROLL, tile.roll());
+                assertTrue(tile.hasRobber());
+            } else {
+                assertTrue(tile.roll() >= 2 && tile.roll() <= 12);
+            }
+        }
+        assertEquals(1, deserts);
+    }
+
     @Test
     public void testGameandPlayerInitialization() {
         CatanGame g = new CatanGame(Color.WHITE, Color.BLUE);
-        assertEquals(g.devDeckSize(), CatanGame.DEV_DECK_SIZE);
+        assertEquals(g.devDeckSize(), BoardLayout.TWO_PLAYER.devDeckSize());
         for (Resource r : Resource.values()) {
             assertEquals(g.resourceLeft(r), CatanGame.INITIAL_RESOURCE_SIZE);
         }
@@ -134,6 +201,1563 @@ public class CatanTests {
         assertEquals(0, p.knights());
     }
 
+    @Test
+    public void testMultiplayerGame() {
+        CatanGame g = new CatanGame(Color.WHITE, Color.BLUE, Color.RED, Color.ORANGE);
+        assertEquals(4, g.numPlayers());
+        assertEquals(19, g.board().getTiles().size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i % 4, g.currentPlayer().index());
+            assertEquals(g.player(i % 4), g.currentPlayer());
+            g.endTurn();
+        }
+        g.distributeResources(6);
+        for (Resource r : Resource.values()) {
+            assertEquals(CatanGame.INITIAL_RESOURCE_SIZE, g.resourceLeft(r));
+        }
+
+        Player p = g.player(2);
+        p.addResource(Resource.ORE, 3);
+        p.addResource(Resource.WOOD, 1);
+        p.removeResource(Resource.ORE);
+        p.removeResource(Resource.BRICK);
+        assertEquals(2, p.resourceCount(Resource.ORE));
+        assertEquals(0, p.resourceCount(Resource.BRICK));
+        assertEquals(3, p.resHandSize());
+    }
+
+    @Test
+    public void testSeededReset() {
+        CatanGame fresh = new CatanGame(42L, Color.WHITE, Color.BLUE);
+        CatanGame reused = new CatanGame(7L, Color.WHITE, Color.BLUE);
+        reused.player(0).addResource(Resource.ORE, 2);
+        reused.endTurn();
+        reused.reset(42L);
+        List<HexPiece> expected = fresh.board().getTiles();
+        List<HexPiece> actual = reused.board().getTiles();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).resource(), actual.get(i).resource());
+            assertEquals(expected.get(i).roll(), actual.get(i).roll());
+        }
+        assertEquals(0, reused.player(0).resHandSize());
+        assertEquals(0, reused.currentPlayer().index());
+        assertEquals(reused.board().layout().devDeckSize(), reused.devDeckSize());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(fresh.rollDice(), reused.rollDice());
+        }
+    }
+
+    @Test
+    public void testVertexTables() {
+        BoardLayout layout = BoardLayout.STANDARD;
+        assertEquals(54, layout.vertexCount());
+        assertEquals(72, layout.edgeCount());
+        for (int v = 0; v < layout.vertexCount(); v++) {
+            int neighbors = 0;
+            for (int k = 0; k < 3; k++) {
+                int n = layout.vertexNeighbor(v, k);
+                if (n == -1) {
+                    continue;
+                }
+                neighbors += 1;
+                int e = layout.vertexEdge(v, k);
+                assertTrue(layout.edgeVertex(e, 0) == v || layout.edgeVertex(e, 1) == v);
+                assertTrue(layout.edgeVertex(e, 0) == n || layout.edgeVertex(e, 1) == n);
+                boolean back = false;
+                for (int j = 0; j < 3; j++) {
+                    back |= layout.vertexNeighbor(n, j) == v;
+                }
+                assertTrue(back);
+            }
+            assertTrue(neighbors == 2 || neighbors == 3);
+        }
+    }
+
+    @Test
+    public void testSettlementRules() {
+        CatanGame g = new CatanGame(3L, Color.WHITE, Color.BLUE);
+        CatanBoard board = g.board();
+        Player p1 = g.player(0);
+        Player p2 = g.player(1);
+        HexPoint center = new HexPoint(2, 3);
+        int vertex = board.vertexAt(center, HexPiece.BuildingLoc.E);
+        int next = board.vertexAt(center, HexPiece.BuildingLoc.SE);
+        assertFalse(board.canBuildSettlement(vertex, p1, false));
+        assertTrue(g.placeInitialSettlement(vertex, p1, false));
+        assertTrue(board.hasSettlement(center, HexPiece.BuildingLoc.E));
+        assertEquals(1, p1.points());
+        assertFalse(board.canBuildSettlement(next, p2, true));
+
+        int road = board.edgeAt(center, HexPiece.RoadLoc.SE);
+        assertFalse(board.canBuildRoad(road, p2));
+        assertTrue(g.placeInitialRoad(road, p1));
+        assertTrue(board.hasRoad(center, HexPiece.RoadLoc.SE));
+        assertEquals(1, p1.roads());
+        int far = board.vertexAt(center, HexPiece.BuildingLoc.SW);
+        assertFalse(board.canBuildSettlement(far, p1, false));
+
+        assertFalse(g.buildCity(vertex, p1));
+        p1.addResource(Resource.WHEAT, 2);
+        p1.addResource(Resource.ORE, 3);
+        assertTrue(g.buildCity(vertex, p1));
+        assertTrue(board.hasCity(center, HexPiece.BuildingLoc.E));
+        assertEquals(0, p1.resHandSize());
+        assertEquals(2, p1.points());
+        assertEquals(1, p1.cities());
+        assertEquals(0, p1.settlements());
+
+        HexPiece tile = board.hex(board.layout().indexOf(center));
+        g.distributeResources(tile.roll());
+        assertEquals(2, p1.resourceCount(tile.resource()));
+        assertEquals(0, p2.resHandSize());
+    }
+
+    @Test
+    public void testHarbors() {
+        CatanGame g = new CatanGame(11L, Color.WHITE, Color.BLUE);
+        CatanBoard board = g.board();
+        BoardLayout layout = board.layout();
+        assertEquals(CatanBoard.HARBOR_SLOTS, layout.harborSlots());
+        int placed = 0;
+        int harborVertex = -1;
+        Harbor harbor = null;
+        for (int slot = 0; slot < layout.harborSlots(); slot++) {
+            if (board.slotHarbor(slot) == null) {
+                continue;
+            }
+            placed += 1;
+            int edge = layout.harborSlotEdge(slot);
+            assertFalse(layout.isValid(layout.edgeHex(edge, 1)));
+            harborVertex = layout.edgeVertex(edge, 0);
+            harbor = board.slotHarbor(slot);
+            assertEquals(harbor, board.harbor(layout.edgeVertex(edge, 1)));
+        }
+        assertEquals(CatanBoard.HARBORS, placed);
+
+        Player p = g.player(0);
+        for (Resource r : Resource.values()) {
+            assertEquals(Player.INIT_MARITIME_COST, p.tradeCost(r));
+        }
+        assertTrue(g.placeInitialSettlement(harborVertex, p, false));
+        for (Resource r : Resource.values()) {
+            int expected = Player.INIT_MARITIME_COST;
+            if (harbor == Harbor.GENERIC) {
+                expected = Harbor.GENERIC_RATE;
+            } else if (harbor.resource() == r) {
+                expected = Harbor.RESOURCE_RATE;
+            }
+            assertEquals(expected, p.tradeCost(r));
+        }
+    }
+
+    @Test
+    public void testTradePlanner() {
+        CatanGame g = new CatanGame(5L, Color.WHITE, Color.BLUE);
+        Player p = g.player(0);
+        p.addResource(Resource.SHEEP, 4);
+        p.addResource(Resource.WOOD, 5);
+        p.addResource(Resource.BRICK, 1);
+        long plan = TradePlanner.plan(p, Purchase.CITY);
+        assertEquals(TradePlanner.IMPOSSIBLE, plan);
+        plan = TradePlanner.plan(p, Purchase.SETTLEMENT);
+        assertEquals(1, TradePlanner.trades(plan));
+        assertEquals(1, TradePlanner.received(plan, Resource.WHEAT.ordinal()));
+        assertEquals(4, TradePlanner.given(plan, Resource.WOOD.ordinal()));
+
+        p.useHarbor(Harbor.SHEEP);
+        plan = TradePlanner.plan(p, Purchase.SETTLEMENT);
+        assertEquals(2, TradePlanner.given(plan, Resource.SHEEP.ordinal()));
+        assertEquals(0, TradePlanner.given(plan, Resource.WOOD.ordinal()));
+        int mask = TradePlanner.affordableMask(TradePlanner.packHand(p), TradePlanner.packCosts(p));
+        assertTrue((mask & (1 << Purchase.ROAD.ordinal())) != 0);
+        assertTrue((mask & (1 << Purchase.DEV_CARD.ordinal())) != 0);
+        assertEquals(0, mask & (1 << Purchase.CITY.ordinal()));
+
+        assertTrue(TradePlanner.execute(g, p, plan));
+        assertTrue(p.canAfford(Purchase.SETTLEMENT));
+        assertEquals(9, p.resHandSize());
+        assertEquals(CatanGame.INITIAL_RESOURCE_SIZE + 2, g.resourceLeft(Resource.SHEEP));
+    }
+
+    @Test
+    public void testRobberEvaluator() {
+        CatanGame g = new CatanGame(9L, Color.WHITE, Color.BLUE);
+        CatanBoard board = g.board();
+        BoardLayout layout = board.layout();
+        Player p1 = g.player(0);
+        Player p2 = g.player(1);
+        int v2 = -1;
+        for (int v = 0; v < layout.vertexCount() && v2 < 0; v++) {
+            if (board.pips(layout.vertexHex(v, 0)) > 0) {
+                v2 = v;
+            }
+        }
+        assertTrue(g.placeInitialSettlement(v2, p2, false));
+        int hex = layout.vertexHex(v2, 0);
+        assertEquals(1, board.production(hex, p2.index()));
+        assertEquals(0, board.production(hex, p1.index()));
+
+        RobberEvaluator evaluator = new RobberEvaluator();
+        int best = evaluator.bestHex(g, p1);
+        assertTrue(board.production(best, p2.index()) > 0);
+        assertEquals(p2, evaluator.victim(g, p1, best));
+        assertNull(evaluator.victim(g, p2, best));
+
+        p2.addResource(Resource.ORE, 1);
+        assertTrue(evaluator.moveRobber(g, p1));
+        assertEquals(best, board.robberHex());
+        assertEquals(1, p1.resourceCount(Resource.ORE));
+        assertEquals(0, p2.resHandSize());
+        assertNotEquals(best, evaluator.bestHex(g, p1));
+    }
+
+    @Test
+    public void testPlayKnight() {
+        CatanGame g = new CatanGame(3L, Color.WHITE, Color.BLUE);
+        Player p = g.player(0);
+        DevelopmentCard card = null;
+        while (card != DevelopmentCard.KNIGHT) {
+            p.addResource(Resource.SHEEP, 1);
+            p.addResource(Resource.ORE, 1);
+            p.addResource(Resource.WHEAT, 1);
+            card = g.buyDevCard(p);
+            assertNotNull(card);
+        }
+        int hex = g.board().robberHex() == 0 ? 1 : 0;
+        assertFalse(g.playKnight(p, hex, null));
+        p.endTurn();
+        assertTrue(g.playKnight(p, hex, null));
+        assertEquals(1, p.knights());
+        assertEquals(hex, g.board().robberHex());
+    }
+
+    @Test
+    public void testDeterminizationSampler() {
+        CatanGame g = new CatanGame(21L, Color.WHITE, Color.BLUE, Color.RED);
+        Player me = g.player(0);
+        Player rival = g.player(1);
+        Player leader = g.player(2);
+        for (Player p : new Player[] {me, rival, rival, leader, leader}) {
+            p.addResource(Resource.SHEEP, 1);
+            p.addResource(Resource.ORE, 1);
+            p.addResource(Resource.WHEAT, 1);
+            assertNotNull(g.buyDevCard(p));
+        }
+        leader.addPoints(CatanGame.WINNING_POINTS - 1);
+
+        DeterminizationSampler sampler = new DeterminizationSampler(g.numPlayers());
+        sampler.observe(g, me);
+        int[] world = new int[sampler.worldSize()];
+        Random rand = new Random(4L);
+        int[] rivalVps = new int[3];
+        for (int i = 0; i < 2000; i++) {
+            sampler.sample(rand, world);
+            int total = 0;
+            for (DevelopmentCard card : DevelopmentCard.values()) {
+                int c = card.ordinal();
+                assertEquals(me.devCount(card), world[c]);
+                int sum = 0;
+                for (int p = 0; p <= g.numPlayers(); p++) {
+                    sum += world[p * DevelopmentCard.COUNT + c];
+                }
+                assertEquals(g.deckCount(card), sum);
+                total += world[DevelopmentCard.COUNT + c];
+            }
+            assertEquals(2, total);
+            assertEquals(0, world[2 * DevelopmentCard.COUNT + DevelopmentCard.VICTORY.ordinal()]);
+            rivalVps[world[DevelopmentCard.COUNT + DevelopmentCard.VICTORY.ordinal()]] += 1;
+        }
+        assertTrue(rivalVps[0] > 0 && rivalVps[1] > 0);
+
+        sampler.apply(g, world, rand);
+        assertEquals(2, rival.devHandSize());
+        assertEquals(g.board().layout().devDeckSize() - 5, g.devDeckSize());
+        assertEquals(me.devCount(DevelopmentCard.KNIGHT), world[DevelopmentCard.KNIGHT.ordinal()]);
+        DevelopmentCard next = sampler.drawCard(rand, world);
+        assertTrue(world[g.numPlayers() * DevelopmentCard.COUNT + next.ordinal()]
+                   < g.deckCount(next));
+    }
+
+    @Test
+    public void testEndgameSolver() {
+        CatanGame g = new CatanGame(13L, Color.WHITE, Color.BLUE);
+        BoardLayout layout = g.board().layout();
+        Player p1 = g.player(0);
+        Player p2 = g.player(1);
+        int v1 = 0;
+        while (!g.placeInitialSettlement(v1, p1, false)) {
+            v1++;
+        }
+        int v2 = layout.vertexCount() - 1;
+        while (!g.placeInitialSettlement(v2, p2, false)) {
+            v2--;
+        }
+        p1.addPoints(CatanGame.WINNING_POINTS - 2);
+        p1.addResource(Resource.ORE, 3);
+        p1.addResource(Resource.WHEAT, 2);
+        assertTrue(EndgameSolver.isEndgame(g, 1));
+
+        EndgameSolver solver = new EndgameSolver(2, 16);
+        EndgameSolver.Result result = solver.solve(g, 5000, 3);
+        assertEquals(EndgameSolver.WIN, result.value(), 1e-9);
+        assertEquals(EndgameSolver.move(EndgameSolver.BUILD_CITY, v1), result.move());
+        assertTrue(result.depth() >= 1);
+        assertTrue(EndgameSolver.play(g, result.move()));
+        assertEquals(CatanGame.WINNING_POINTS, p1.points());
+
+        g.reset(13L);
+        assertTrue(g.placeInitialSettlement(v1, p1, false));
+        assertTrue(g.placeInitialSettlement(v2, p2, false));
+        p1.addPoints(CatanGame.WINNING_POINTS - 3);
+        p2.addPoints(CatanGame.WINNING_POINTS - 2);
+        p1.addResource(Resource.SHEEP, 1);
+        result = solver.solve(g, 2000, 4);
+        assertTrue(result.depth() >= 1);
+        assertTrue(result.value() > -EndgameSolver.WIN && result.value() < EndgameSolver.WIN);
+        assertTrue(result.nodes() > 0);
+
+        CatanGame large = new CatanGame(13L, BoardLayout.hexagon(30), Color.WHITE, Color.BLUE);
+        int far = large.board().layout().vertexCount() - 1;
+        while (!large.placeInitialSettlement(far, large.player(0), false)) {
+            far--;
+        }
+        assertTrue(far >= 4096);
+        large.player(0).addPoints(CatanGame.WINNING_POINTS - 2);
+        large.player(0).addResource(Resource.ORE, 3);
+        large.player(0).addResource(Resource.WHEAT, 2);
+        result = solver.solve(large, 5000, 2);
+        assertEquals(EndgameSolver.move(EndgameSolver.BUILD_CITY, far), result.move());
+        assertEquals(EndgameSolver.BUILD_CITY, EndgameSolver.moveType(result.move()));
+        assertEquals(far, EndgameSolver.moveArg(result.move()));
+        solver.shutdown();
+    }
+
+    @Test
+    public void testBatchedEnv() {
+        BatchedEnv single = new BatchedEnv(6, 2, 1, 200);
+        BatchedEnv sharded = new BatchedEnv(6, 2, 3, 200);
+        long[] seeds = {3L, 1L, 4L, 1L, 5L, 9L};
+        single.reset(seeds);
+        sharded.reset(seeds);
+        Random rand = new Random(8L);
+        int[] next = new int[single.envs()];
+        int finished = 0;
+        for (int step = 0; step < 600; step++) {
+            for (int i = 0; i < single.envs(); i++) {
+                int base = i * single.actionCount();
+                int legal = 0;
+                for (int a = 0; a < single.actionCount(); a++) {
+                    legal += single.legalActions().get(base + a);
+                }
+                assertTrue(legal > 0);
+                int pick = rand.nextInt(legal);
+                for (int a = 0; a < single.actionCount(); a++) {
+                    if (single.legalActions().get(base + a) == 1 && pick-- == 0) {
+                        next[i] = a;
+                        break;
+                    }
+                }
+            }
+            single.step(next);
+            sharded.step(next);
+            for (int i = 0; i < single.envs(); i++) {
+                assertEquals(0, single.illegalActions().get(i));
+                assertEquals(single.dones().get(i), sharded.dones().get(i));
+                assertEquals(single.players().get(i), sharded.players().get(i));
+                if (single.dones().get(i) != BatchedEnv.RUNNING) {
+                    finished += 1;
+                }
+            }
+        }
+        assertTrue(finished > 0);
+        for (int k = 0; k < single.envs() * single.observationSize(); k++) {
+            assertEquals(single.observations().get(k), sharded.observations().get(k), 0);
+        }
+
+        Arrays.fill(next, -1);
+        sharded.step(next);
+        for (int i = 0; i < sharded.envs(); i++) {
+            assertEquals(1, sharded.illegalActions().get(i));
+        }
+        sharded.close();
+    }
+
+    @Test
+    public void testStateEncoder() {
+        CatanGame g = new CatanGame(17L, Color.WHITE, Color.BLUE);
+        BoardLayout layout = g.board().layout();
+        StateEncoder encoder = new StateEncoder(layout, g.numPlayers());
+        int vertex = 0;
+        while (!g.placeInitialSettlement(vertex, g.player(1), false)) {
+            vertex++;
+        }
+        g.player(0).addResource(Resource.WOOD, 3);
+
+        FloatBuffer floats = FloatBuffer.allocate(encoder.size() + 4);
+        ByteBuffer bytes = ByteBuffer.allocateDirect((encoder.size() + 2) * 4)
+                                     .order(ByteOrder.nativeOrder());
+        encoder.encode(g, 0, floats, 4);
+        encoder.encode(g, 0, bytes, 8);
+        for (int k = 0; k < encoder.size(); k++) {
+            assertEquals(floats.get(4 + k), bytes.getFloat(8 + 4 * k), 0);
+        }
+        assertEquals(0, floats.position());
+
+        int hexFeatures = Resource.COUNT + 3;
+        int vertexFeatures = 2 * g.numPlayers() + Harbor.values().length;
+        int v = 4 + layout.validCount() * hexFeatures + vertex * vertexFeatures;
+        assertEquals(0f, floats.get(v), 0);
+        assertEquals(1f, floats.get(v + 2), 0);
+        encoder.encode(g, 1, floats, 0);
+        v -= 4;
+        assertEquals(1f, floats.get(v), 0);
+        assertEquals(0f, floats.get(v + 2), 0);
+
+        int own = encoder.size() - 2 * Resource.COUNT - DevelopmentCard.COUNT - 1;
+        encoder.encode(g, 0, floats, 0);
+        assertEquals(3f, floats.get(own + Resource.WOOD.ordinal()), 0);
+    }
+
+    @Test
+    public void testTurnPhases() {
+        CatanGame g = new CatanGame(21L, Color.WHITE, Color.BLUE);
+        ActionSpace space = g.actionSpace();
+        long[] mask = new long[space.maskLength()];
+        assertEquals(TurnPhase.INITIAL_SETTLEMENT, g.phase());
+        assertFalse(g.act(space.action(ActionSpace.Type.ROLL, 0)));
+        assertFalse(g.act(space.action(ActionSpace.Type.END_TURN, 0)));
+
+        int[] order = {0, 1, 1, 0};
+        for (int seat : order) {
+            assertEquals(seat, g.actingPlayer().index());
+            g.legalActions(mask);
+            int settlement = -1;
+            for (int a = 0; a < space.size(); a++) {
+                assertEquals(g.isLegal(a), ActionSpace.isSet(mask, a));
+                if (settlement == -1 && g.isLegal(a)) {
+                    settlement = a;
+                }
+            }
+            assertEquals(ActionSpace.Type.SETTLEMENT, space.type(settlement));
+            assertTrue(g.act(settlement));
+            assertEquals(TurnPhase.INITIAL_ROAD, g.phase());
+            assertFalse(g.act(settlement));
+            int road = space.action(ActionSpace.Type.ROAD, 0);
+            while (!g.isLegal(road)) {
+                road++;
+            }
+            assertTrue(g.act(road));
+        }
+        assertEquals(2, g.player(0).settlements());
+        assertEquals(2, g.player(1).roads());
+        assertEquals(TurnPhase.ROLL, g.phase());
+        assertEquals(0, g.actingPlayer().index());
+
+        assertTrue(g.act(space.action(ActionSpace.Type.ROLL, 0)));
+        assertTrue(g.lastRoll() >= 2 && g.lastRoll() <= 12);
+        while (g.phase() != TurnPhase.MAIN) {
+            int a = 0;
+            while (!g.isLegal(a)) {
+                a++;
+            }
+            assertTrue(g.act(a));
+        }
+        assertFalse(g.act(space.action(ActionSpace.Type.ROLL, 0)));
+        assertTrue(g.act(space.action(ActionSpace.Type.END_TURN, 0)));
+        assertEquals(TurnPhase.ROLL, g.phase());
+        assertEquals(1, g.actingPlayer().index());
+
+        int roll = space.action(ActionSpace.Type.ROLL, 0);
+        int endTurn = space.action(ActionSpace.Type.END_TURN, 0);
+        for (int turn = 0; turn < 200 && g.lastRoll() != 7; turn++) {
+            g.player(0).addResource(Resource.WOOD, 9);
+            g.actingPlayer().addResource(Resource.ORE, 9);
+            assertTrue(g.act(roll));
+            if (g.phase() == TurnPhase.MAIN) {
+                assertTrue(g.act(endTurn));
+            }
+        }
+        assertEquals(7, g.lastRoll());
+        assertEquals(TurnPhase.DISCARD, g.phase());
+        Player discarding = g.actingPlayer();
+        int before = discarding.resHandSize();
+        assertFalse(g.act(endTurn));
+        int wood = space.action(ActionSpace.Type.DISCARD, Resource.WOOD.ordinal());
+        int ore = space.action(ActionSpace.Type.DISCARD, Resource.ORE.ordinal());
+        while (g.phase() == TurnPhase.DISCARD) {
+            assertTrue(g.act(g.isLegal(wood) ? wood : ore));
+        }
+        assertEquals(before - before / 2, discarding.resHandSize());
+        assertEquals(TurnPhase.ROBBER, g.phase());
+        assertEquals(g.currentPlayer(), g.actingPlayer());
+        assertFalse(g.act(space.action(ActionSpace.Type.ROBBER, g.board().robberHex())));
+        int hex = g.board().robberHex() == 0 ? 1 : 0;
+        assertTrue(g.act(space.action(ActionSpace.Type.ROBBER, hex)));
+        assertEquals(hex, g.board().robberHex());
+        while (g.phase() == TurnPhase.STEAL) {
+            int a = space.action(ActionSpace.Type.STEAL, 0);
+            while (!g.isLegal(a)) {
+                a++;
+            }
+            assertTrue(g.act(a));
+        }
+        assertEquals(TurnPhase.MAIN, g.phase());
+    }
+
+    @Test
+    public void testPerft() {
+        Color[] colors = {Color.WHITE, Color.BLUE};
+        CatanGame g = new CatanGame(5L, BoardLayout.TWO_PLAYER, colors);
+        long[] mask = new long[g.actionSpace().maskLength()];
+        g.legalActions(mask);
+        long legal = 0;
+        for (long word : mask) {
+            legal += Long.bitCount(word);
+        }
+        Perft single = new Perft(5L, BoardLayout.TWO_PLAYER, colors, 1);
+        Perft split = new Perft(5L, BoardLayout.TWO_PLAYER, colors, 3);
+        assertEquals(1, single.count(0));
+        assertEquals(legal, single.count(1));
+        for (int depth = 2; depth <= 4; depth++) {
+            assertEquals(single.count(depth), split.count(depth));
+        }
+        assertTrue(single.movesMade() > 0);
+
+        int[] prefix = new int[8];
+        int[] moves = new int[g.actionSpace().size() + 11];
+        for (int i = 0; i < prefix.length; i++) {
+            Perft.moves(g, moves);
+            prefix[i] = moves[0];
+            assertTrue(Perft.play(g, prefix[i]));
+        }
+        assertEquals(TurnPhase.ROLL, g.phase());
+        Perft rolls = new Perft(5L, BoardLayout.TWO_PLAYER, colors, prefix, 2);
+        Map<Integer, Long> divided = rolls.divide(2);
+        assertEquals(11, divided.size());
+        long total = 0;
+        for (int sum = 2; sum <= 12; sum++) {
+            assertTrue(divided.get(-sum) > 0);
+            total += divided.get(-sum);
+        }
+        assertEquals(total, rolls.count(2));
+        split.shutdown();
+        rolls.shutdown();
+    }
+
+    @Test
+    public void testTournament() throws IOException {
+        Tournament t = new Tournament(Tournament.Schedule.ROUND_ROBIN, 4, 11L, 3, 3000);
+        t.register("greedy", new GreedyBot());
+        t.register("random", new RandomBot());
+        t.register("greedy2", new GreedyBot());
+        assertEquals(3 * 4 * 2, t.totalGames());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.run(out);
+        assertEquals(t.totalGames(), t.gamesFinished());
+        assertEquals(t.totalGames() * Tournament.RECORD_BYTES, out.size());
+
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(out.toByteArray()));
+        boolean[] seen = new boolean[(int) t.totalGames()];
+        Tournament.GameRecord rec;
+        while ((rec = Tournament.GameRecord.read(in)) != null) {
+            assertFalse(seen[(int) rec.game()]);
+            seen[(int) rec.game()] = true;
+            assertNotEquals(rec.first(), rec.second());
+        }
+        for (boolean s : seen) {
+            assertTrue(s);
+        }
+
+        Tournament.Rating[] ratings = t.standings();
+        assertEquals(3, ratings.length);
+        assertEquals(16, ratings[1].games());
+        assertTrue(ratings[0].elo() > ratings[1].elo());
+        assertTrue(ratings[0].lower() < ratings[0].elo() && ratings[0].elo() < ratings[0].upper());
+        assertEquals(0, ratings[0].elo() + ratings[1].elo() + ratings[2].elo(), 1e-6);
+
+        Tournament broken = new Tournament(Tournament.Schedule.GAUNTLET, 1, 11L, 2, 3000);
+        broken.register("greedy", new GreedyBot());
+        broken.register("broken", (game, rand) -> -1);
+        try {
+            broken.run(new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("illegal action -1"));
+        }
+    }
+
+    @Test
+    public void testColumnStore() throws IOException {
+        Path dir = Files.createTempDirectory("catan-store");
+        TableWriter seats = GameRecorder.seatsTable(dir);
+        TableWriter turns = GameRecorder.turnsTable(dir);
+        GameRecorder recorder = new GameRecorder(seats, turns);
+        CatanGame g = new CatanGame(0L, BoardLayout.TWO_PLAYER, Color.WHITE, Color.BLUE);
+        g.addListener(recorder);
+        BotPolicy bot = new GreedyBot();
+        Random rand = new Random(4L);
+        int games = 30;
+        int wins = 0;
+        long totalTurns = 0;
+        for (int id = 0; id < games; id++) {
+            recorder.begin(id);
+            g.reset(1000L + id);
+            for (int step = 0; step < 2000 && g.phase() != TurnPhase.GAME_OVER; step++) {
+                assertTrue(g.act(bot.act(g, rand)));
+            }
+            recorder.finish(g);
+            wins += g.winner() == null ? 0 : 1;
+            totalTurns += g.turn();
+        }
+        seats.close();
+        turns.close();
+
+        Table seatTable = new Table(dir, GameRecorder.SEATS);
+        Table turnTable = new Table(dir, GameRecorder.TURNS);
+        assertEquals(2 * games, seatTable.rows());
+        assertEquals(totalTurns, turnTable.rows());
+        assertTrue(turnTable.rows() > 4096);
+        assertEquals(wins, seatTable.count(Table.eq("won", 1)));
+        assertEquals(wins, seatTable.sum("won"));
+
+        Table.Groups byPips = seatTable.groupBy("openingPips", "won");
+        long grouped = 0;
+        for (int i = 0; i < byPips.size(); i++) {
+            grouped += byPips.count(i);
+            assertTrue(byPips.mean(i) >= 0 && byPips.mean(i) <= 1);
+        }
+        assertEquals(seatTable.rows(), grouped);
+
+        long late = 0;
+        long lateSevens = 0;
+        for (long r = 0; r < turnTable.rows(); r++) {
+            if (turnTable.get("turn", r) >= 100) {
+                late += 1;
+                lateSevens += turnTable.get("roll", r) == 7 ? 1 : 0;
+            }
+        }
+        assertEquals(late, turnTable.count(Table.atLeast("turn", 100)));
+        assertEquals(lateSevens,
+                     turnTable.count(Table.atLeast("turn", 100), Table.eq("roll", 7)));
+        assertEquals(0, turnTable.count(Table.between("roll", 13, 20)));
+        double firstCity = seatTable.average("firstCityTurn", Table.atLeast("firstCityTurn", 0));
+        assertTrue(firstCity > 0);
+
+        try (TableWriter old = new TableWriter(dir, "schema", "a:int", "b:long")) {
+            old.append(new long[] {1, 2});
+            old.append(new long[] {3, 4});
+        }
+        try (TableWriter fresh = new TableWriter(dir, "schema", "a:int")) {
+            fresh.append(new long[] {5});
+        }
+        Table schema = new Table(dir, "schema");
+        assertEquals(1, schema.rows());
+        assertEquals(5, schema.get("a", 0));
+    }
+
+    @Test
+    public void testHibernation() {
+        long[] now = {0L};
+        Hibernator h = new Hibernator(1000L, Hibernator.recordBytes(BoardLayout.STANDARD, 4),
+                                      2, () -> now[0]);
+        BotPolicy bot = new GreedyBot();
+        Random rand = new Random(8L);
+        for (long id = 0; id < 3; id++) {
+            CatanGame g = new CatanGame(40L + id, Color.WHITE, Color.BLUE, Color.RED,
+                                        Color.ORANGE);
+            for (int step = 0; step < 300; step++) {
+                g.act(bot.act(g, rand));
+            }
+            h.put(id, g);
+        }
+        CatanGame kept = h.get(1L);
+        StateEncoder encoder = new StateEncoder(kept.board().layout(), kept.numPlayers());
+        FloatBuffer before = FloatBuffer.allocate(encoder.size());
+        encoder.encode(kept, 0, before, 0);
+
+        now[0] = 500_000_000L;
+        h.get(2L);
+        assertEquals(0, h.sweep());
+        now[0] = 1_200_000_000L;
+        assertEquals(2, h.sweep());
+        assertTrue(h.isHibernated(0L) && h.isHibernated(1L) && !h.isHibernated(2L));
+        assertEquals(2, h.hibernatedCount());
+        assertEquals(1, h.liveCount());
+        assertTrue(h.hibernate(2L));
+        long arena = h.arenaBytes();
+
+        CatanGame woken = h.get(1L);
+        assertNotSame(kept, woken);
+        assertFalse(h.isHibernated(1L));
+        FloatBuffer after = FloatBuffer.allocate(encoder.size());
+        encoder.encode(woken, 0, after, 0);
+        assertEquals(before, after);
+        assertEquals(kept.seed(), woken.seed());
+        assertEquals(kept.phase(), woken.phase());
+        assertEquals(kept.player(3).color(), woken.player(3).color());
+        Random r1 = new Random(9L);
+        Random r2 = new Random(9L);
+        for (int step = 0; step < 2000 && kept.phase() != TurnPhase.GAME_OVER; step++) {
+            assertTrue(kept.act(bot.act(kept, r1)));
+            assertTrue(woken.act(bot.act(woken, r2)));
+        }
+        assertEquals(kept.turn(), woken.turn());
+        assertEquals(kept.lastRoll(), woken.lastRoll());
+
+        assertTrue(h.hibernate(1L));
+        assertEquals(arena, h.arenaBytes());
+        assertTrue(h.remove(0L));
+        assertFalse(h.remove(0L));
+        assertNull(h.get(0L));
+        assertEquals(2, h.hibernatedCount());
+
+        ByteBuffer buf = ByteBuffer.allocate(GameCodec.encodedSize(BoardLayout.STANDARD, 4));
+        GameCodec.encode(woken, buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        try {
+            GameCodec.decode(buf, new CatanGame(Color.WHITE, Color.BLUE));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // a two-player game can't take a four-player encoding
+        }
+    }
+
+    @Test
+    public void testCheckpointer() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("catan-checkpoint");
+        Checkpointer cp = new Checkpointer(dir, 4, 2L, 60_000L, BoardLayout.TWO_PLAYER,
+                                           BoardLayout.STANDARD);
+        cp.add(1L, new CatanGame(61L, Color.WHITE, Color.BLUE, Color.RED));
+        cp.add(2L, new CatanGame(62L, Color.WHITE, Color.BLUE));
+        cp.add(3L, new CatanGame(63L, Color.WHITE, Color.BLUE));
+        try {
+            cp.add(4L, new CatanGame(64L, Color.WHITE, Color.BLUE, Color.RED, Color.ORANGE,
+                                     Color.GREEN));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the extension layout wasn't passed in
+        }
+        BotPolicy bot = new GreedyBot();
+        Random rand = new Random(10L);
+        for (int step = 0; step < 200; step++) {
+            for (long id = 1; id <= 3; id++) {
+                assertTrue(cp.act(id, bot.act(cp.get(id), rand)));
+            }
+        }
+        assertFalse(cp.act(9L, 0));
+        cp.checkpoint();
+        assertEquals(0, cp.journalBytes());
+        for (int step = 0; step < 50; step++) {
+            for (long id = 1; id <= 3; id++) {
+                assertTrue(cp.act(id, bot.act(cp.get(id), rand)));
+            }
+        }
+        assertTrue(cp.remove(3L));
+        cp.sync();
+        assertTrue(cp.journalBytes() > 0);
+
+        Path crashed = Files.createTempDirectory("catan-crashed");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Path copy = crashed.resolve(file.getFileName());
+                Files.copy(file, copy);
+                if (file.toString().endsWith(".log")) {
+                    Files.write(copy, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11},
+                                StandardOpenOption.APPEND);
+                }
+            }
+        }
+        Checkpointer recovered = new Checkpointer(crashed, 4, 2L, 60_000L,
+                                                  BoardLayout.TWO_PLAYER, BoardLayout.STANDARD);
+        assertArrayEquals(new long[] {1L, 2L}, recovered.ids());
+        assertEquals(0, recovered.journalBytes());
+        for (long id = 1; id <= 2; id++) {
+            CatanGame before = cp.get(id);
+            CatanGame after = recovered.get(id);
+            StateEncoder encoder = new StateEncoder(before.board().layout(), before.numPlayers());
+            FloatBuffer a = FloatBuffer.allocate(encoder.size());
+            FloatBuffer b = FloatBuffer.allocate(encoder.size());
+            encoder.encode(before, 0, a, 0);
+            encoder.encode(after, 0, b, 0);
+            assertEquals(a, b);
+            assertEquals(before.turn(), after.turn());
+            assertEquals(before.phase(), after.phase());
+        }
+        cp.close();
+        recovered.close();
+    }
+
+    @Test
+    public void testOpeningBook() throws IOException {
+        BoardLayout layout = BoardLayout.STANDARD;
+        BoardSymmetry symmetry = new BoardSymmetry(layout);
+        assertEquals(12, symmetry.size());
+        CatanGame g = new CatanGame(71L, layout, Color.WHITE, Color.BLUE);
+        byte[] description = new byte[symmetry.descriptionLength()];
+        byte[] moved = new byte[description.length];
+        byte[] canonical = new byte[description.length];
+        byte[] other = new byte[description.length];
+        symmetry.describe(g.board(), description);
+        symmetry.canonicalize(description, canonical);
+        for (int s = 0; s < symmetry.size(); s++) {
+            for (int v = 0; v < layout.vertexCount(); v++) {
+                assertEquals(v, symmetry.unmapVertex(s, symmetry.mapVertex(s, v)));
+                int n = layout.vertexNeighbor(v, 0);
+                int mapped = symmetry.mapVertex(s, n);
+                int image = symmetry.mapVertex(s, v);
+                assertTrue(mapped == layout.vertexNeighbor(image, 0)
+                           || mapped == layout.vertexNeighbor(image, 1)
+                           || mapped == layout.vertexNeighbor(image, 2));
+            }
+            symmetry.transform(s, description, moved);
+            symmetry.canonicalize(moved, other);
+            assertEquals(BoardSymmetry.fingerprint(canonical), BoardSymmetry.fingerprint(other));
+        }
+
+        Path file = Files.createTempFile("catan-book", ".bin");
+        long[] seeds = {71L, 72L, 71L, 73L};
+        OpeningBookBuilder builder = new OpeningBookBuilder(layout, 2, new GreedyBot(), 2, 2);
+        assertEquals(3, builder.build(seeds, file));
+        OpeningBook book = new OpeningBook(file, layout);
+        assertEquals(3, book.size());
+        int[] places = new int[book.width()];
+        assertEquals(OpeningBookBuilder.WIDTH, book.placements(g.board(), places));
+        int action = book.bestSettlement(g);
+        assertEquals(g.actionSpace().action(ActionSpace.Type.SETTLEMENT, places[0]), action);
+        assertTrue(g.act(action));
+        assertEquals(-1, book.bestSettlement(g));
+        CatanGame unseen = new CatanGame(99L, layout, Color.WHITE, Color.BLUE);
+        assertEquals(0, book.placements(unseen.board(), places));
+
+        Path again = Files.createTempFile("catan-book", ".bin");
+        new OpeningBookBuilder(layout, 2, new GreedyBot(), 2, 1).build(seeds, again);
+        assertTrue(Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(again)));
+    }
+
+    @Test
+    public void testIncomeEngine() {
+        CatanGame g = new CatanGame(81L, Color.WHITE, Color.BLUE, Color.RED);
+        BotPolicy bot = new GreedyBot();
+        Random rand = new Random(2L);
+        while (g.phase() != TurnPhase.ROLL) {
+            assertTrue(g.act(bot.act(g, rand)));
+        }
+        CatanBoard board = g.board();
+        IncomeEngine engine = new IncomeEngine(g);
+        int[] amounts = new int[IncomeEngine.MAX_OUTCOMES * Resource.COUNT];
+        double[] probabilities = new double[IncomeEngine.MAX_OUTCOMES];
+        for (int p = 0; p < g.numPlayers(); p++) {
+            int n = engine.distribution(p, amounts, probabilities);
+            double total = 0;
+            for (int o = 0; o < n; o++) {
+                total += probabilities[o];
+            }
+            assertEquals(1.0, total, 1e-12);
+            for (Resource res : Resource.values()) {
+                double expected = 0;
+                for (int sum = 2; sum <= 12; sum++) {
+                    for (int h : board.hexesForRoll(board.layout().rollFor(sum))) {
+                        if (sum != 7 && h != board.robberHex() && board.hex(h).resource() == res) {
+                            expected += IncomeEngine.rollProbability(sum) * board.production(h, p);
+                        }
+                    }
+                }
+                assertEquals(expected, engine.expectedIncome(p, res), 1e-12);
+            }
+        }
+
+        int[] income = new int[Resource.COUNT];
+        Resource wheat = Resource.WHEAT;
+        double hit = 0;
+        for (int sum = 2; sum <= 12; sum++) {
+            engine.income(0, sum, income);
+            hit += income[wheat.ordinal()] > 0 ? IncomeEngine.rollProbability(sum) : 0;
+        }
+        assertTrue(hit > 0);
+        int[] cost = new int[Resource.COUNT];
+        cost[wheat.ordinal()] = g.player(0).resourceCount(wheat) + 1;
+        double wheatWait = engine.expectedRolls(0, cost);
+        assertTrue(wheatWait > 0 && wheatWait <= 1 / hit + 1e-9);
+        assertTrue(engine.probabilityWithin(0, cost, 5) >= 1 - Math.pow(1 - hit, 5) - 1e-12);
+        double mean = 1 - engine.probabilityWithin(0, cost, 1999);
+        for (int k = 0; k < 1999; k++) {
+            mean += 1 - engine.probabilityWithin(0, cost, k);
+        }
+        assertEquals(wheatWait, mean, 1e-6);
+        assertEquals(0, engine.expectedRolls(0, new int[Resource.COUNT]), 0);
+        double city = engine.expectedRolls(0, Purchase.CITY);
+        assertTrue(city > 0);
+
+        double toWin = engine.expectedRollsToWin(0);
+        assertTrue(toWin > city);
+        double[] chances = new double[g.numPlayers()];
+        engine.winProbabilities(400, chances);
+        double sum = 0;
+        for (double c : chances) {
+            assertTrue(c >= 0);
+            sum += c;
+        }
+        assertTrue(sum > 0.5 && sum <= 1 + 1e-9);
+
+        long version = board.version();
+        int target = -1;
+        for (int h = 0; h < board.layout().validCount() && target == -1; h++) {
+            if (h != board.robberHex() && board.production(h, 0) > 0 && board.pips(h) > 0
+                    && board.hex(h).resource() == wheat) {
+                target = h;
+            }
+        }
+        if (target != -1) {
+            double before = engine.expectedIncome(0, wheat);
+            assertTrue(board.moveRobber(target, null));
+            assertTrue(board.version() > version);
+            assertTrue(engine.expectedIncome(0, wheat) < before);
+        }
+    }
+
+    @Test
+    public void testEvaluator() throws IOException {
+        CatanGame g = new CatanGame(83L, Color.WHITE, Color.BLUE, Color.RED);
+        Evaluator eval = new Evaluator(g, EvaluatorWeights.DEFAULT);
+        g.addListener(eval);
+        BotPolicy bot = new GreedyBot();
+        Random rand = new Random(4L);
+        ActionSpace space = g.actionSpace();
+        int previews = 0;
+        for (int step = 0; step < 600 && g.phase() != TurnPhase.GAME_OVER; step++) {
+            int action = bot.act(g, rand);
+            ActionSpace.Type type = space.type(action);
+            Purchase piece = type == ActionSpace.Type.ROAD ? Purchase.ROAD
+                             : type == ActionSpace.Type.SETTLEMENT ? Purchase.SETTLEMENT
+                             : type == ActionSpace.Type.CITY ? Purchase.CITY : null;
+            Player actor = g.actingPlayer();
+            int points = actor.points();
+            double preview = piece == null ? 0
+                             : eval.evaluateBuild(actor.index(), piece, space.target(action));
+            assertTrue(g.act(action));
+            if (piece != null && actor.points() == points + (piece == Purchase.ROAD ? 0 : 1)) {
+                assertEquals(preview, eval.evaluate(actor.index()), 1e-9);
+                previews += 1;
+            }
+            if (step % 50 == 0 || g.phase() == TurnPhase.GAME_OVER) {
+                Evaluator fresh = new Evaluator(g, EvaluatorWeights.DEFAULT);
+                for (int p = 0; p < g.numPlayers(); p++) {
+                    for (int f = 0; f < Evaluator.FEATURES; f++) {
+                        assertEquals(fresh.feature(p, f), eval.feature(p, f), 1e-9);
+                    }
+                }
+            }
+        }
+        assertTrue(previews > 10);
+
+        double dot = EvaluatorWeights.DEFAULT.get(Evaluator.FEATURES);
+        for (int f = 0; f < Evaluator.FEATURES; f++) {
+            dot += EvaluatorWeights.DEFAULT.get(f) * eval.feature(1, f);
+        }
+        assertEquals(dot, eval.value(1), 1e-9);
+        double mean = (eval.value(0) + eval.value(2)) / 2;
+        assertEquals(eval.value(1) - mean, eval.evaluate(1), 1e-9);
+
+        double[] params = new double[(Evaluator.FEATURES + 1) * 4 + 5];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = rand.nextGaussian();
+        }
+        EvaluatorWeights net = new EvaluatorWeights(4, params);
+        Path file = Files.createTempFile("catan-weights", ".txt");
+        net.save(file);
+        assertEquals(net, EvaluatorWeights.load(file));
+        eval.setWeights(EvaluatorWeights.load(file));
+        assertEquals(net.hidden(), eval.weights().hidden());
+        Files.write(file, "0 1 2 3".getBytes());
+        try {
+            EvaluatorWeights.load(file);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // a linear set needs a weight per feature and a bias
+        }
+    }
+
+    @Test
+    public void testWeightTuner() {
+        double[] params = EvaluatorWeights.DEFAULT.toArray();
+        params[Evaluator.ROADS] = -10;
+        EvaluatorWeights noRoads = EvaluatorWeights.DEFAULT.with(params);
+        WeightTuner tuner = new WeightTuner(EvaluatorWeights.DEFAULT, 48, 5L, 3, 3000);
+        WeightTuner.Result result = tuner.compare(EvaluatorWeights.DEFAULT, noRoads);
+        assertTrue(result.significant());
+        assertTrue(result.score() > 0);
+        assertTrue(result.pairs() < 48);
+        WeightTuner.Result alone = new WeightTuner(EvaluatorWeights.DEFAULT, 48, 5L, 1, 3000)
+            .compare(EvaluatorWeights.DEFAULT, noRoads);
+        assertEquals(result.pairs(), alone.pairs());
+        assertEquals(result.score(), alone.score(), 0);
+
+        WeightTuner.Result same = tuner.compare(noRoads, noRoads);
+        assertEquals(48, same.pairs());
+        assertEquals(0, same.score(), 0);
+        assertFalse(same.significant());
+
+        long games = tuner.gamesPlayed();
+        tuner.step();
+        assertEquals(1, tuner.steps());
+        assertTrue(tuner.gamesPlayed() > games);
+        assertFalse(tuner.weights().equals(EvaluatorWeights.DEFAULT));
+        assertEquals(EvaluatorWeights.DEFAULT.size(), tuner.weights().size());
+    }
+
+    @Test
+    public void testShardCoordinator() throws IOException {
+        String[] args = {"two-player", "ROUND_ROBIN", "3", "21", "1", "3000",
+                         "greedy", "random", "greedy"};
+        TournamentJob whole = new TournamentJob(args);
+        whole.tournament().run(new ByteArrayOutputStream());
+
+        ShardCoordinator coordinator = new ShardCoordinator(
+            new ProcessTransport(), TournamentJob.class.getName(), args, 5, 2, 2);
+        coordinator.run();
+        assertEquals(18, coordinator.merged());
+        assertEquals(0, coordinator.retries());
+        Tournament.Rating[] expected = whole.tournament().standings();
+        Tournament.Rating[] sharded = ((TournamentJob) coordinator.job()).tournament().standings();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].elo(), sharded[i].elo(), 1e-9);
+            assertEquals(expected[i].games(), sharded[i].games());
+        }
+
+        ShardTransport local = new ProcessTransport();
+        boolean[] failed = new boolean[1];
+        ShardTransport flaky = (jobClass, jobArgs, from, to) -> {
+            ShardTransport.Shard shard = local.launch(jobClass, jobArgs, from, to);
+            if (from != 5 || failed[0]) {
+                return shard;
+            }
+            failed[0] = true;
+            byte[] cut = new byte[Tournament.RECORD_BYTES * 5 / 2];
+            new DataInputStream(shard.results()).readFully(cut);
+            return new ShardTransport.Shard() {
+                @Override
+                public InputStream results() {
+                    return new ByteArrayInputStream(cut);
+                }
+
+                @Override
+                public boolean finish() {
+                    shard.cancel();
+                    return false;
+                }
+
+                @Override
+                public void cancel() {
+                    shard.cancel();
+                }
+            };
+        };
+        ShardCoordinator retried = new ShardCoordinator(
+            flaky, TournamentJob.class.getName(), args, 5, 3, 2);
+        retried.run();
+        assertEquals(1, retried.retries());
+        assertEquals(18, retried.merged());
+        sharded = ((TournamentJob) retried.job()).tournament().standings();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].elo(), sharded[i].elo(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testPonderer() {
+        BotPolicy bot = new GreedyBot();
+        Ponderer.Search search = game -> bot.act(game, new Random(0L));
+        Ponderer ponderer = new Ponderer(search, bot, 2, 64);
+        CatanGame g = new CatanGame(91L, BoardLayout.TWO_PLAYER, Color.WHITE, Color.BLUE);
+        Random rand = new Random(5L);
+        int roll = g.actionSpace().action(ActionSpace.Type.ROLL, 0);
+        for (int step = 0; step < 1500 && g.phase() != TurnPhase.GAME_OVER; step++) {
+            if (g.actingPlayer().index() == 0) {
+                if (g.phase() == TurnPhase.ROLL) {
+                    ponderer.ponder(g, 1);
+                }
+                assertTrue(g.act(bot.act(g, rand)));
+            } else if (g.phase() == TurnPhase.ROLL) {
+                assertTrue(g.act(roll));
+            } else {
+                int action = ponderer.decide(g);
+                assertEquals(bot.act(g, new Random(0L)), action);
+                assertTrue(g.act(action));
+            }
+        }
+        assertTrue(ponderer.hits() > 0);
+        assertTrue(ponderer.misses() > 0);
+
+        ponderer.ponder(g, 1 - g.currentPlayer().index());
+        ponderer.cancel();
+        assertEquals(0, ponderer.pending());
+        ponderer.shutdown();
+
+        int size = GameCodec.encodedSize(BoardLayout.TWO_PLAYER, 2);
+        ByteBuffer before = ByteBuffer.allocate(size);
+        GameCodec.encodePosition(g, before);
+        ByteBuffer state = ByteBuffer.allocate(size);
+        GameCodec.encode(g, state);
+        g.rollDice();
+        ByteBuffer after = ByteBuffer.allocate(size);
+        GameCodec.encodePosition(g, after);
+        ByteBuffer moved = ByteBuffer.allocate(size);
+        GameCodec.encode(g, moved);
+        assertEquals(before.flip(), after.flip());
+        assertNotEquals(state.flip(), moved.flip());
+    }
+
+    @Test
+    public void testScoring() {
+        BotPolicy bot = new GreedyBot();
+        int[] moves = new int[2];
+        GameListener awards = new GameListener() {
+            @Override
+            public void longestRoadMoved(CatanGame game, Player from, Player to) {
+                moves[0] += 1;
+            }
+
+            @Override
+            public void largestArmyMoved(CatanGame game, Player from, Player to) {
+                moves[1] += 1;
+            }
+        };
+        int size = GameCodec.encodedSize(BoardLayout.STANDARD, 3);
+        for (long seed = 1; seed <= 3; seed++) {
+            CatanGame g = new CatanGame(seed, Color.WHITE, Color.BLUE, Color.RED);
+            g.addListener(awards);
+            Random rand = new Random(seed);
+            for (int step = 0; step < 3000 && g.phase() != TurnPhase.GAME_OVER; step++) {
+                assertTrue(g.act(bot.act(g, rand)));
+                ByteBuffer buf = ByteBuffer.allocate(size);
+                GameCodec.encode(g, buf);
+                buf.flip();
+                CatanGame copy = new CatanGame(0L, Color.WHITE, Color.BLUE, Color.RED);
+                GameCodec.decode(buf, copy);
+                for (int p = 0; p < g.numPlayers(); p++) {
+                    Player player = g.player(p);
+                    int points = 0;
+                    for (int v = 0; v < g.board().layout().vertexCount(); v++) {
+                        if (g.board().vertexOwner(v) == p) {
+                            points += g.board().vertexLevel(v);
+                        }
+                    }
+                    if (g.longestRoadOwner() == player) {
+                        points += CatanGame.AWARD_POINTS;
+                        assertTrue(g.longestRoad(player) >= 5);
+                    }
+                    if (g.longestArmyOwner() == player) {
+                        points += CatanGame.AWARD_POINTS;
+                        assertTrue(player.knights() >= 3);
+                    }
+                    assertEquals(points, player.points());
+                    assertEquals(copy.longestRoad(copy.player(p)), g.longestRoad(player));
+                    Player road = g.longestRoadOwner();
+                    assertTrue(road == null || g.longestRoad(road) >= g.longestRoad(player));
+                    Player army = g.longestArmyOwner();
+                    assertTrue(army == null || army.knights() >= player.knights());
+                }
+                Player current = g.currentPlayer();
+                boolean won = current.points() + current.devCount(DevelopmentCard.VICTORY)
+                              >= CatanGame.WINNING_POINTS;
+                assertEquals(won, g.phase() == TurnPhase.GAME_OVER);
+                assertTrue(!won || g.winner() == current);
+            }
+            assertEquals(TurnPhase.GAME_OVER, g.phase());
+        }
+        assertTrue(moves[0] > 0);
+    }
+
+    @Test
+    public void testGameEvents() throws IOException {
+        Recording recording = new Recording();
+        for (String name : new String[] {"TurnStart", "TurnEnd", "DiceRoll", "Build"}) {
+            recording.enable("catan." + name);
+        }
+        recording.start();
+        CatanGame g = new CatanGame(7L, Color.WHITE, Color.BLUE, Color.RED);
+        ActionSpace space = g.actionSpace();
+        BoardLayout layout = g.board().layout();
+        int vertex = 0;
+        while (!g.isLegal(space.action(ActionSpace.Type.SETTLEMENT, vertex))) {
+            vertex += 1;
+        }
+        assertTrue(g.act(space.action(ActionSpace.Type.SETTLEMENT, vertex)));
+        BotPolicy bot = new GreedyBot();
+        Random rand = new Random(7L);
+        while (g.phase() != TurnPhase.ROLL) {
+            assertTrue(g.act(bot.act(g, rand)));
+        }
+        int turn = g.turn();
+        int seat = g.currentPlayer().index();
+        assertTrue(g.act(space.action(ActionSpace.Type.ROLL, 0)));
+        int roll = g.lastRoll();
+        while (g.phase() != TurnPhase.ROLL) {
+            assertTrue(g.act(bot.act(g, rand)));
+        }
+        recording.stop();
+        Path file = Files.createTempFile("catan", ".jfr");
+        recording.dump(file);
+        recording.close();
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        HexPoint point = layout.point(layout.vertexHex(vertex, 0));
+        int starts = 0;
+        int ends = 0;
+        int dice = 0;
+        int builds = 0;
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case "catan.TurnStart":
+                    if (event.getInt("turn") == 0) {
+                        assertEquals(0, event.getInt("player"));
+                    }
+                    if (event.getInt("turn") == turn + 1) {
+                        assertEquals((seat + 1) % 3, event.getInt("player"));
+                    }
+                    starts += 1;
+                    break;
+                case "catan.TurnEnd":
+                    assertEquals(turn, event.getInt("turn"));
+                    assertEquals(seat, event.getInt("player"));
+                    ends += 1;
+                    break;
+                case "catan.DiceRoll":
+                    assertTrue(event.getInt("value") >= 1 && event.getInt("value") <= 6);
+                    dice += event.getInt("value");
+                    break;
+                case "catan.Build":
+                    if (builds == 0) {
+                        assertEquals("settlement", event.getString("type"));
+                        assertEquals(0, event.getInt("player"));
+                        assertEquals(point.row(), event.getInt("row"));
+                        assertEquals(point.col(), event.getInt("col"));
+                        assertEquals(layout.vertexCorner(vertex, 0), event.getInt("loc"));
+                    }
+                    builds += 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        assertEquals(2, starts);
+        assertEquals(1, ends);
+        assertEquals(roll, dice);
+        assertTrue(builds >= 12);
+    }
+
+    @Test
+    public void testBankShortage() {
+        CatanGame g = new CatanGame(11L, Color.WHITE, Color.BLUE, Color.RED);
+        CatanBoard board = g.board();
+        BoardLayout layout = board.layout();
+        int hex = 0;
+        while (!layout.isValid(hex) || board.hex(hex).resource() == null
+               || board.hex(hex).hasRobber()) {
+            hex += 1;
+        }
+        int roll = 0;
+        for (int sum = 2; sum <= 12; sum++) {
+            for (int h : board.hexesForRoll(layout.rollFor(sum))) {
+                if (h == hex) {
+                    roll = sum;
+                }
+            }
+        }
+        assertTrue(g.placeInitialSettlement(layout.vertexOf(hex, 0), g.player(1), false));
+        assertTrue(g.placeInitialSettlement(layout.vertexOf(hex, 3), g.player(2), false));
+
+        Resource res = board.hex(hex).resource();
+        Resource give = Resource.get((res.ordinal() + 1) % Resource.COUNT);
+        Player trader = g.player(0);
+        trader.addResource(give, 4 * (CatanGame.INITIAL_RESOURCE_SIZE - 1));
+        while (g.resourceLeft(res) > 1) {
+            assertTrue(g.maritimeTrade(trader, give, res));
+        }
+        int[] shorted = new int[1];
+        g.addListener(new GameListener() {
+            @Override
+            public void resourcesDistributed(CatanGame game, int roll, int[] requested,
+                                             int shortedMask) {
+                shorted[0] = shortedMask;
+            }
+        });
+        g.distributeResources(roll);
+        assertEquals(1 << res.ordinal(), shorted[0] & (1 << res.ordinal()));
+        assertEquals(1, g.resourceLeft(res));
+        assertEquals(0, g.player(1).resourceCount(res));
+        assertEquals(0, g.player(2).resourceCount(res));
+        assertEquals(CatanGame.INITIAL_RESOURCE_SIZE - 1, trader.resourceCount(res));
+    }
+
+    @Test
+    public void testMoveRobberOffBoard() {
+        CatanGame g = new CatanGame(3L, BoardLayout.TWO_PLAYER, Color.WHITE, Color.BLUE);
+        int robber = g.board().robberHex();
+        int size = g.board().layout().validCount();
+        for (int hex : new int[] {-1, size, size + 15, 9999}) {
+            assertFalse(g.moveRobber(hex, g.player(0), g.player(1)));
+            assertFalse(g.moveRobber(hex, g.player(0), null));
+        }
+        assertEquals(robber, g.board().robberHex());
+    }
+
+    @Test
+    public void testLargeActionSpace() {
+        BoardLayout layout = BoardLayout.hexagon(60);
+        ActionSpace space = new ActionSpace(layout);
+        int edge = layout.edgeCount() - 1;
+        assertTrue(edge > Short.MAX_VALUE);
+        int action = space.action(ActionSpace.Type.ROAD, edge);
+        assertEquals(ActionSpace.Type.ROAD, space.type(action));
+        assertEquals(edge, space.target(action));
+
+        CatanGame a = new CatanGame(1L, BoardLayout.TWO_PLAYER, Color.WHITE, Color.BLUE);
+        CatanGame b = new CatanGame(2L, BoardLayout.TWO_PLAYER, Color.WHITE, Color.BLUE);
+        assertSame(a.actionSpace(), b.actionSpace());
+        assertSame(BoardLayout.TWO_PLAYER.actionSpace(), a.actionSpace());
+    }
+
+    @Test
+    public void testLargeLayoutCodec() {
+        BoardLayout layout = BoardLayout.hexagon(80);
+        CatanGame g = new CatanGame(5L, layout, Color.WHITE, Color.BLUE);
+        ActionSpace space = g.actionSpace();
+        int vertex = layout.vertexCount() - 1;
+        while (!g.isLegal(space.action(ActionSpace.Type.SETTLEMENT, vertex))) {
+            vertex--;
+        }
+        assertTrue(vertex > Short.MAX_VALUE);
+        assertTrue(g.act(space.action(ActionSpace.Type.SETTLEMENT, vertex)));
+
+        ByteBuffer buf = ByteBuffer.allocate(GameCodec.encodedSize(layout, 2));
+        GameCodec.encode(g, buf);
+        buf.flip();
+        CatanGame copy = new CatanGame(0L, layout, Color.WHITE, Color.BLUE);
+        GameCodec.decode(buf, copy);
+        for (int k = 0; k < 3; k++) {
+            int edge = layout.vertexEdge(vertex, k);
+            if (edge >= 0) {
+                assertTrue(copy.isLegal(space.action(ActionSpace.Type.ROAD, edge)));
+            }
+        }
+        ByteBuffer again = ByteBuffer.allocate(GameCodec.encodedSize(layout, 2));
+        GameCodec.encode(copy, again);
+        assertEquals(buf.rewind(), again.rewind());
+    }
+
+    @Test
+    public void testShardTimeout() throws IOException {
+        Path marker = Files.createTempDirectory("catan-shard").resolve("hung");
+        String[] args = {marker.toString()};
+        ShardTransport transport = new ProcessTransport(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            System.getProperty("java.class.path"), 60_000, 1000);
+        ShardCoordinator coordinator = new ShardCoordinator(
+            transport, HangingJob.class.getName(), args, 4, 1, 2);
+        coordinator.run();
+        assertTrue(Files.exists(marker));
+        assertEquals(1, coordinator.retries());
+        assertEquals(4, coordinator.merged());
+        assertEquals(4, ((HangingJob) coordinator.job()).merged);
+    }
+
+    @Test
+    public void testShardSlowWorker() throws IOException {
+        ShardTransport transport = new ProcessTransport(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            System.getProperty("java.class.path"), 60_000, 2000);
+        ShardCoordinator coordinator = new ShardCoordinator(
+            transport, SlowTournamentJob.class.getName(), new String[0], 8, 1, 1);
+        coordinator.run();
+        assertEquals(0, coordinator.retries());
+        assertEquals(8, coordinator.merged());
+        assertEquals(8, ((SlowTournamentJob) coordinator.job()).merged);
+    }
+
+    /**
+     * A tournament job whose games each take longer than half a second, so a range of them
+     * takes longer than the coordinator waits to hear from a worker, though each record is
+     * ready well within it.
+     */
+    public static class SlowTournamentJob implements ShardJob {
+        private final Tournament tournament =
+            new Tournament(Tournament.Schedule.GAUNTLET, 4, 5L, 1, 200);
+        private int merged;
+
+        public SlowTournamentJob(String[] args) {
+            BotPolicy greedy = new GreedyBot();
+            tournament.register("greedy", greedy);
+            tournament.register("slow", (game, rand) -> {
+                if (game.phase() == TurnPhase.INITIAL_SETTLEMENT
+                        && game.actingPlayer().settlements() == 0) {
+                    try {
+                        Thread.sleep(600);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return greedy.act(game, rand);
+            });
+        }
+
+        @Override
+        public long size() {
+            return tournament.totalGames();
+        }
+
+        @Override
+        public int recordBytes() {
+            return Tournament.RECORD_BYTES;
+        }
+
+        @Override
+        public void run(long from, long to, OutputStream out) {
+            tournament.run(out, from, to);
+        }
+
+        @Override
+        public void merge(ByteBuffer record) {
+            merged += 1;
+        }
+    }
+
+    /**
+     * A job whose first worker hangs after connecting, and whose later workers send a record
+     * for each item.
+     */
+    public static class HangingJob implements ShardJob {
+        private final Path marker;
+        private int merged;
+
+        public HangingJob(String[] args) {
+            this.marker = Paths.get(args[0]);
+        }
+
+        @Override
+        public long size() {
+            return 4;
+        }
+
+        @Override
+        public int recordBytes() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void run(long from, long to, OutputStream out) {
+            try {
+                if (!Files.exists(marker)) {
+                    Files.createFile(marker);
+                    Thread.sleep(60_000);
+                }
+                DataOutputStream data = new DataOutputStream(out);
+                for (long item = from; item < to; item++) {
+                    data.writeLong(item);
+                }
+                data.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void merge(ByteBuffer record) {
+            merged += 1;
+        }
+    }
+
+    @Test
+    public void testPieceLimitsFollowLayout() {
+        CatanGame four = new CatanGame(13L, Color.WHITE, Color.BLUE, Color.RED, Color.ORANGE);
+        CatanGame two = new CatanGame(13L, Color.WHITE, Color.BLUE);
+        CatanGame six = new CatanGame(13L, Color.WHITE, Color.BLUE, Color.RED, Color.ORANGE,
+                                      Color.GREEN, Color.BLACK);
+        assertEquals(25, four.devDeckSize());
+        assertEquals(14, four.deckCount(DevelopmentCard.KNIGHT));
+        assertEquals(18, two.devDeckSize());
+        assertEquals(34, six.devDeckSize());
+
+        int[] placed = new int[2];
+        CatanGame[] games = {four, two};
+        for (int i = 0; i < games.length; i++) {
+            CatanGame g = games[i];
+            Player p = g.player(0);
+            for (int v = 0; v < g.board().layout().vertexCount(); v++) {
+                if (g.board().canBuildSettlement(v, p, true)) {
+                    assertTrue(g.placeInitialSettlement(v, p, false));
+                    placed[i] += 1;
+                }
+            }
+        }
+        assertEquals(5, placed[0]);
+        assertEquals(5, four.player(0).settlements());
+        assertEquals(4, placed[1]);
+        assertEquals(15, four.board().layout().maxRoads());
+        assertEquals(4, four.board().layout().maxCities());
+        assertEquals(13, two.board().layout().maxRoads());
+    }
+
+    @Test
+    public void testEndgameSolverAwards() {
+        CatanGame g = new CatanGame(13L, Color.WHITE, Color.BLUE);
+        BoardLayout layout = g.board().layout();
+        Player p1 = g.player(0);
+        Player p2 = g.player(1);
+        int v1 = 0;
+        while (!g.placeInitialSettlement(v1, p1, false)) {
+            v1++;
+        }
+        int v2 = layout.vertexCount() - 1;
+        while (!g.placeInitialSettlement(v2, p2, false)) {
+            v2--;
+        }
+        int end = v1;
+        for (int built = 0; built < 4; built++) {
+            for (int k = 0; k < 3; k++) {
+                int edge = layout.vertexEdge(end, k);
+                if (edge >= 0 && g.placeInitialRoad(edge, p1)) {
+                    end = layout.vertexNeighbor(end, k);
+                    break;
+                }
+            }
+        }
+        assertEquals(4, g.longestRoad(p1));
+        p1.addPoints(CatanGame.WINNING_POINTS - 3);
+        p1.addResource(Resource.BRICK, 1);
+        p1.addResource(Resource.WOOD, 1);
+
+        EndgameSolver solver = new EndgameSolver(2, 16);
+        EndgameSolver.Result result = solver.solve(g, 5000, 2);
+        assertEquals(EndgameSolver.WIN, result.value(), 1e-9);
+        assertEquals(EndgameSolver.BUILD_ROAD, EndgameSolver.moveType(result.move()));
+        assertTrue(EndgameSolver.play(g, result.move()));
+        assertEquals(p1, g.longestRoadOwner());
+        assertEquals(CatanGame.WINNING_POINTS, p1.points());
+
+        g.reset(13L);
+        assertTrue(g.placeInitialSettlement(v1, p1, false));
+        assertTrue(g.placeInitialSettlement(v2, p2, false));
+        p1.addPoints(CatanGame.WINNING_POINTS - 3);
+        p1.playKnight();
+        p1.playKnight();
+        int[] hand = new int[DevelopmentCard.COUNT];
+        hand[DevelopmentCard.KNIGHT.ordinal()] = 1;
+        p1.setDevHand(hand, 0);
+        result = solver.solve(g, 5000, 2);
+        assertEquals(EndgameSolver.WIN, result.value(), 1e-9);
+        assertEquals(EndgameSolver.PLAY_KNIGHT, EndgameSolver.moveType(result.move()));
+        assertTrue(EndgameSolver.play(g, result.move()));
+        assertEquals(p1, g.longestArmyOwner());
+        assertEquals(CatanGame.WINNING_POINTS, p1.points());
+        solver.shutdown();
+    }
+
     @Test
     public void testTilesForNum() {
         CatanGame g = new CatanGame(Color.WHITE, Color.BLUE);